@@ -0,0 +1,163 @@
+package org.opendaylight.controller.org.pcmm.impl;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import org.pcmm.gates.impl.GateResult;
+import org.pcmm.rcd.IPCMMPolicyServer.IPSCMTSClient;
+import org.pcmm.rcd.impl.CMTSSupervisor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Issues a gate command on a set of CMTSs concurrently and aggregates the
+ * results. The commands sent to one CMTS are capped, the commands over the
+ * cap wait in a queue of the CMTS without holding a thread. The commands sent
+ * while a CMTS is reconnecting are queued by its {@link CMTSSupervisor}.
+ *
+ * @param <K> the key of the CMTSs
+ */
+class CmtsFanOut<K> {
+
+	private static final Logger logger = LoggerFactory.getLogger(CmtsFanOut.class);
+
+	private final Executor executor;
+	private final int maxPerCmts;
+	private final ConcurrentMap<K, Limiter> limiters;
+
+	/**
+	 * @param executor the executor issuing the commands, a direct executor
+	 *            is enough since the supervisors queue or send the commands
+	 *            without blocking
+	 * @param maxPerCmts the maximum number of commands outstanding per CMTS
+	 */
+	CmtsFanOut(final Executor executor, final int maxPerCmts) {
+		if (maxPerCmts <= 0)
+			throw new IllegalArgumentException("The concurrency per CMTS must be positive");
+		this.executor = executor;
+		this.maxPerCmts = maxPerCmts;
+		limiters = Maps.newConcurrentMap();
+	}
+
+	/**
+	 * Sends the command to every CMTS
+	 *
+	 * @param clients the supervisors of the CMTS connections
+	 * @param command sends the command on a connection
+	 * @return the result of each CMTS, null for a CMTS whose command failed
+	 */
+	ListenableFuture<Map<K, GateResult>> execute(final Map<K, CMTSSupervisor> clients,
+			final Function<IPSCMTSClient, ListenableFuture<GateResult>> command) {
+		final List<K> keys = new ArrayList<>(clients.size());
+		final List<ListenableFuture<GateResult>> futures = new ArrayList<>(clients.size());
+		for (final Map.Entry<K, CMTSSupervisor> entry : clients.entrySet()) {
+			keys.add(entry.getKey());
+			futures.add(submit(entry.getKey(), entry.getValue(), command));
+		}
+		return Futures.transform(Futures.successfulAsList(futures),
+				new Function<List<GateResult>, Map<K, GateResult>>() {
+					@Override
+					public Map<K, GateResult> apply(final List<GateResult> results) {
+						final Map<K, GateResult> map = Maps.newLinkedHashMap();
+						for (int i = 0; i < keys.size(); i++)
+							map.put(keys.get(i), results.get(i));
+						return map;
+					}
+				}, MoreExecutors.directExecutor());
+	}
+
+	/**
+	 * Forgets a CMTS, its queued commands still run
+	 *
+	 * @param cmts the CMTS key
+	 */
+	void remove(final K cmts) {
+		limiters.remove(cmts);
+	}
+
+	private ListenableFuture<GateResult> submit(final K cmts, final CMTSSupervisor client,
+			final Function<IPSCMTSClient, ListenableFuture<GateResult>> command) {
+		Limiter limiter = limiters.get(cmts);
+		if (limiter == null) {
+			final Limiter created = new Limiter();
+			limiter = limiters.putIfAbsent(cmts, created);
+			if (limiter == null)
+				limiter = created;
+		}
+		final SettableFuture<GateResult> future = SettableFuture.create();
+		final Limiter owner = limiter;
+		owner.submit(new Runnable() {
+			@Override
+			public void run() {
+				ListenableFuture<GateResult> result;
+				try {
+					result = client.submit(command);
+				} catch (final RuntimeException e) {
+					result = Futures.immediateFailedFuture(e);
+				}
+				Futures.addCallback(result, new FutureCallback<GateResult>() {
+					@Override
+					public void onSuccess(final GateResult gateResult) {
+						owner.done();
+						future.set(gateResult);
+					}
+
+					@Override
+					public void onFailure(final Throwable t) {
+						logger.error("Gate command to " + cmts + " failed", t);
+						owner.done();
+						future.setException(t);
+					}
+				}, MoreExecutors.directExecutor());
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Queue and permits of a CMTS
+	 */
+	private class Limiter {
+		private final Semaphore permits = new Semaphore(maxPerCmts);
+		private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+
+		void submit(final Runnable task) {
+			queue.add(task);
+			drain();
+		}
+
+		/**
+		 * Called once a command has completed
+		 */
+		void done() {
+			permits.release();
+			drain();
+		}
+
+		private void drain() {
+			while (!queue.isEmpty() && permits.tryAcquire()) {
+				final Runnable task = queue.poll();
+				if (task == null) {
+					// taken by a concurrent drain
+					permits.release();
+					continue;
+				}
+				executor.execute(task);
+			}
+		}
+	}
+
+}
@@ -1,93 +1,214 @@
 package org.opendaylight.controller.org.pcmm.impl;
 
+import com.google.common.base.Function;
 import com.google.common.collect.Maps;
+import com.google.common.net.InetAddresses;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.opendaylight.controller.org.pcmm.api.PcmmService;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.IpAddress;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.node.cmts.broker.rev140909.CmtsAdded;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.node.cmts.broker.rev140909.CmtsRemoved;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.node.cmts.broker.rev140909.CmtsUpdated;
-import org.pcmm.rcd.IPCMMPolicyServer;
+import org.pcmm.PCMMConstants;
+import org.pcmm.PCMMProperties;
+import org.pcmm.gates.impl.GateResult;
 import org.pcmm.rcd.IPCMMPolicyServer.IPSCMTSClient;
-import org.pcmm.rcd.impl.PCMMPolicyServer;
+import org.pcmm.rcd.impl.CMTSSupervisor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class PcmmServiceImpl implements PcmmService {
 
 	private static final Logger logger = LoggerFactory.getLogger(PcmmServiceImpl.class);
 
-	private final Map<IpAddress, IPSCMTSClient> cmtsClients;
-	private final IPCMMPolicyServer policyServer;
+	private static final int DEFAULT_MAX_PER_CMTS = 32;
+	// ms
+	private static final int DEFAULT_GATE_TIMEOUT = 10000;
+
+	/**
+	 * The CMTSs notified, their connections are owned by the provider
+	 */
+	private final Set<IpAddress> cmtses;
+	/**
+	 * Issues the commands to the CMTSs concurrently, from the calling thread
+	 * and the completions of the previous commands: sending never blocks
+	 */
+	private final CmtsFanOut<IpAddress> fanOut;
+	/**
+	 * the time the synchronous commands wait for the CMTSs (ms), a command
+	 * waits at most the gate timeout for the connection then as much for the
+	 * answer
+	 */
+	private final long timeout;
 
 	public PcmmServiceImpl() {
-		policyServer = new PCMMPolicyServer();
-		cmtsClients = Maps.newConcurrentMap();
+		cmtses = Collections.newSetFromMap(Maps.<IpAddress, Boolean>newConcurrentMap());
+		fanOut = new CmtsFanOut<>(MoreExecutors.directExecutor(),
+				PCMMProperties.get(PCMMConstants.PS_MAX_INFLIGHT, Integer.class, DEFAULT_MAX_PER_CMTS));
+		timeout = 2L * PCMMProperties.get(PCMMConstants.PS_GATE_TIMEOUT, Integer.class, DEFAULT_GATE_TIMEOUT);
 	}
 
 	@Override
 	public void onCmtsAdded(final CmtsAdded notification) {
         logger.info("CMTS Added");
-		String ipv4 = notification.getAddress().getIpv4Address().getValue();
-		IPSCMTSClient client = policyServer.requestCMTSConnection(ipv4);
-		if (client.isConnected()) {
-			cmtsClients.put(notification.getAddress(), client);
-		}
+		// the provider has opened the connection before notifying, the
+		// commands are sent on its supervisor
+		cmtses.add(notification.getAddress());
 	}
 
 	@Override
 	public void onCmtsRemoved(final CmtsRemoved notification) {
         logger.info("CMTS Removed");
-		if (cmtsClients.containsKey(notification.getAddress())) {
-			cmtsClients.remove(notification.getAddress()).disconnect();
-		}
+		if (cmtses.remove(notification.getAddress()))
+			fanOut.remove(notification.getAddress());
 	}
 
 	@Override
 	public void onCmtsUpdated(final CmtsUpdated notification) {
         logger.info("CMTS Updated");
-		// TODO
+		// the previous address is forgotten once its supervisor is closed
+		cmtses.add(notification.getAddress());
 	}
 
 	@Override
 	public Boolean sendGateDelete() {
         logger.info("Sending Gate Delete");
 		// TODO change me
-		boolean ret = true;
-        for (final IPSCMTSClient client : cmtsClients.values()) {
-            ret &= client.gateDelete();
-        }
-		return ret;
+		return succeeded(sendGateDeleteAsync());
 	}
 
 	@Override
 	public Boolean sendGateSynchronize() {
         logger.info("Sending Gate Synchronize");
-		boolean ret = true;
-        for (final IPSCMTSClient client : cmtsClients.values()) {
-            ret &= client.gateSynchronize();
-        }
-		return ret;
+		return succeeded(sendGateSynchronizeAsync());
 	}
 
 	@Override
 	public Boolean sendGateInfo() {
         logger.info("Sending Gate Info");
-		boolean ret = true;
-        for (final IPSCMTSClient client : cmtsClients.values()) {
-            ret &= client.gateInfo();
-        }
-		return ret;
+		return succeeded(sendGateInfoAsync());
 	}
 
 	@Override
 	public Boolean sendGateSet() {
         logger.info("Sending Gate Set");
+		return succeeded(sendGateSetAsync());
+	}
+
+	/**
+	 * Sends a Gate-Delete to every CMTS concurrently
+	 *
+	 * @return the result of each CMTS, null when the command failed
+	 */
+	public ListenableFuture<Map<IpAddress, GateResult>> sendGateDeleteAsync() {
+		return fanOut.execute(supervisors(), new Function<IPSCMTSClient, ListenableFuture<GateResult>>() {
+			@Override
+			public ListenableFuture<GateResult> apply(final IPSCMTSClient client) {
+				return client.gateDeleteAsync();
+			}
+		});
+	}
+
+	/**
+	 * Synchronizes the gates of every CMTS concurrently
+	 *
+	 * @return the result of each CMTS, null when the command failed
+	 */
+	public ListenableFuture<Map<IpAddress, GateResult>> sendGateSynchronizeAsync() {
+		return fanOut.execute(supervisors(), new Function<IPSCMTSClient, ListenableFuture<GateResult>>() {
+			@Override
+			public ListenableFuture<GateResult> apply(final IPSCMTSClient client) {
+				return client.gateSynchronizeAsync();
+			}
+		});
+	}
+
+	/**
+	 * Sends a Gate-Info to every CMTS concurrently
+	 *
+	 * @return the result of each CMTS, null when the command failed
+	 */
+	public ListenableFuture<Map<IpAddress, GateResult>> sendGateInfoAsync() {
+		return fanOut.execute(supervisors(), new Function<IPSCMTSClient, ListenableFuture<GateResult>>() {
+			@Override
+			public ListenableFuture<GateResult> apply(final IPSCMTSClient client) {
+				return client.gateInfoAsync();
+			}
+		});
+	}
+
+	/**
+	 * Sends a Gate-Set to every CMTS concurrently
+	 *
+	 * @return the result of each CMTS, null when the command failed
+	 */
+	public ListenableFuture<Map<IpAddress, GateResult>> sendGateSetAsync() {
+		return fanOut.execute(supervisors(), new Function<IPSCMTSClient, ListenableFuture<GateResult>>() {
+			@Override
+			public ListenableFuture<GateResult> apply(final IPSCMTSClient client) {
+				return client.gateSetAsync();
+			}
+		});
+	}
+
+	/**
+	 * @return the supervisors of the CMTSs notified, the CMTSs whose
+	 *         supervisor has been closed by the provider are forgotten
+	 */
+	private Map<IpAddress, CMTSSupervisor> supervisors() {
+		final Map<IpAddress, CMTSSupervisor> supervisors = Maps.newLinkedHashMap();
+		for (final IpAddress address : cmtses) {
+			if (address.getIpv4Address() == null)
+				continue;
+			final CMTSSupervisor supervisor = CMTSSupervisor.get(InetAddresses.forString(address.getIpv4Address()
+					.getValue()));
+			if (supervisor != null) {
+				supervisors.put(address, supervisor);
+			} else {
+				// replaced by an update of the CMTS node
+				logger.info("CMTS " + address + " no longer supervised");
+				cmtses.remove(address);
+				fanOut.remove(address);
+			}
+		}
+		return supervisors;
+	}
+
+	/**
+	 * Waits for the results of all the CMTSs, no longer than the timeout
+	 *
+	 * @return true when every CMTS acknowledged the command in time
+	 */
+	private boolean succeeded(final ListenableFuture<Map<IpAddress, GateResult>> future) {
+		final Map<IpAddress, GateResult> results;
+		try {
+			results = future.get(timeout, TimeUnit.MILLISECONDS);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (final ExecutionException e) {
+			logger.error("Gate command failed", e.getCause());
+			return false;
+		} catch (final TimeoutException e) {
+			logger.error("Gate command not answered within " + timeout + " ms");
+			return false;
+		}
 		boolean ret = true;
-        for (final IPSCMTSClient client : cmtsClients.values()) {
-            ret &= client.gateSet();
-        }
+		for (final Map.Entry<IpAddress, GateResult> entry : results.entrySet()) {
+			final GateResult result = entry.getValue();
+			if (result == null || !result.isSuccess()) {
+				logger.error("Gate command to " + entry.getKey() + " failed: " + result);
+				ret = false;
+			}
+		}
 		return ret;
 	}
 }
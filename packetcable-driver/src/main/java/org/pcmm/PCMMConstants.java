@@ -4,8 +4,8 @@ public interface PCMMConstants {
 
 	// Port used by the PCMM
 	public static final String PCMM_PORT = "pcmm.port";
-	// Pool size, determining the number of connections that could be
-	// established with CMTSs
+	// Pool size, the number of threads running the workers, a connection
+	// with a CMTS does not hold a thread
 	public static final String PS_POOL_SIZE = "pcmm.ps.pool.size";
 	// Default keep-alive timer value (secs)
 	public static final String KA_TIMER = "pcmm.keep.alive.timer";
@@ -15,5 +15,34 @@ public interface PCMMConstants {
 	public static final String DEFAULT_MASK = "pcmm.default.mask";
 	// default timeout
 	public static final String DEFAULT_TIEMOUT = "pcmm.default.timeout";
+	// Maximum number of gate commands in flight per CMTS connection
+	public static final String PS_MAX_INFLIGHT = "pcmm.ps.max.inflight";
+	// Time to wait for the report answering a gate command (ms)
+	public static final String PS_GATE_TIMEOUT = "pcmm.ps.gate.timeout";
+	// Maximum number of gate commands sent per second per CMTS, 0 for no limit
+	public static final String PS_RATE_LIMIT = "pcmm.ps.rate.limit";
+	// Number of gate commands a CMTS can be sent at once above the rate
+	public static final String PS_RATE_BURST = "pcmm.ps.rate.burst";
+	// Maximum number of gate commands waiting for their admission per CMTS, the
+	// CMTSSupervisor paces its drains and batches below it
+	public static final String PS_MAX_QUEUED = "pcmm.ps.max.queued";
+	// Time allowed to establish the TCP connection with a CMTS (ms)
+	public static final String PS_CONNECT_TIMEOUT = "pcmm.ps.connect.timeout";
+	// Time allowed to each step of the COPS handshake with a CMTS (ms)
+	public static final String PS_HANDSHAKE_TIMEOUT = "pcmm.ps.handshake.timeout";
+	// Delay before reconnecting to a CMTS after a connection loss (ms)
+	public static final String PS_RECONNECT_MIN_DELAY = "pcmm.ps.reconnect.min.delay";
+	// Maximum delay between two reconnections to a CMTS (ms)
+	public static final String PS_RECONNECT_MAX_DELAY = "pcmm.ps.reconnect.max.delay";
+	// Maximum number of operations queued per CMTS while its connection is down
+	public static final String PS_RECONNECT_MAX_QUEUED = "pcmm.ps.reconnect.max.queued";
+	// Gate table storage, "heap" or "offheap"
+	public static final String GATE_STORE = "pcmm.gate.store";
+	// Directory of the gate table journal, no journal when empty
+	public static final String GATE_JOURNAL_DIR = "pcmm.gate.journal.dir";
+	// Size of a gate table journal segment (bytes)
+	public static final String GATE_JOURNAL_SEGMENT_SIZE = "pcmm.gate.journal.segment.size";
+	// Number of journal segments written before a gate table snapshot
+	public static final String GATE_JOURNAL_SEGMENTS = "pcmm.gate.journal.segments";
 
 }
\ No newline at end of file
@@ -4,7 +4,6 @@
 
 package org.pcmm;
 
-import org.pcmm.gates.ITransactionID;
 import org.pcmm.gates.impl.PCMMGateReq;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -98,22 +97,7 @@ public class PCMMPdpDataProcess implements COPSPdpDataProcess {
      */
     public void successReport(final PCMMPdpReqStateMan man, final PCMMGateReq gateMsg) {
         logger.info("Success Report notified.");
-
-        if ( gateMsg.getTransactionID().getGateCommandType() == ITransactionID.GateDeleteAck ) {
-            logger.info("GateDeleteAck: GateID = " + gateMsg.getGateID().getGateID());
-            if (gateMsg.getGateID().getGateID() == PCMMGlobalConfig.getGateID1())
-                PCMMGlobalConfig.setGateID1(0);
-            if (gateMsg.getGateID().getGateID() == PCMMGlobalConfig.getGateID2())
-                PCMMGlobalConfig.setGateID2(0);
-
-        }
-        if ( gateMsg.getTransactionID().getGateCommandType() == ITransactionID.GateSetAck ) {
-            logger.info("GateSetAck: GateID = " + gateMsg.getGateID().getGateID());
-            if (0 == PCMMGlobalConfig.getGateID1())
-                PCMMGlobalConfig.setGateID1(gateMsg.getGateID().getGateID());
-            if (0 == PCMMGlobalConfig.getGateID2())
-                PCMMGlobalConfig.setGateID2(gateMsg.getGateID().getGateID());
-        }
+        man.recordGate(gateMsg);
     }
 
     @Override
@@ -4,12 +4,16 @@
 
 package org.pcmm;
 
+import org.pcmm.concurrent.impl.TokenBucket;
+import org.pcmm.concurrent.impl.TransactionIDAllocator;
 import org.pcmm.gates.*;
 import org.pcmm.gates.IGateSpec.DSCPTOS;
 import org.pcmm.gates.IGateSpec.Direction;
 import org.pcmm.gates.impl.*;
+import org.pcmm.objects.SyncOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.umu.cops.COPSTimerWheel;
 import org.umu.cops.prpdp.COPSPdpException;
 import org.umu.cops.prpdp.COPSPdpMsgSender;
 import org.umu.cops.stack.*;
@@ -18,6 +22,10 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 //temp
 //pcmm
@@ -40,7 +48,43 @@ public class PCMMPdpMsgSender extends COPSPdpMsgSender {
 
     private final static Logger logger = LoggerFactory.getLogger(PCMMPdpMsgSender.class);
 
+    // gate commands per second, 0 for no limit
+    private static final int DEFAULT_RATE_LIMIT = 200;
+    private static final int DEFAULT_RATE_BURST = 50;
+    private static final int DEFAULT_MAX_INFLIGHT = 32;
+    // ms
+    private static final int DEFAULT_ADMISSION_TIMEOUT = 10000;
+
+    /**
+     * The TransactionID of the last command sent
+     */
     protected transient short _transactionID;
+    /**
+     * The TransactionIDs of the commands not answered yet
+     */
+    protected final TransactionIDAllocator _transactionIDs;
+    /**
+     * Paces the commands sent to the PEP
+     */
+    protected final TokenBucket _rateLimit;
+    /**
+     * Maximum number of commands not answered yet
+     */
+    protected final int _maxInFlight;
+    /**
+     * Time to wait for the answer of a command (ms), its TransactionID is released once expired. Also the time to
+     * wait for an answer once _maxInFlight commands are not answered.
+     */
+    protected final int _admissionTimeout;
+    private final Object _admission = new Object();
+    /**
+     * Expires the TransactionIDs not answered in time
+     */
+    private final COPSTimerWheel _timerWheel;
+    /**
+     * The expiry of each TransactionID in flight, guarded by _admission
+     */
+    private final Map<Short, Expiry> _expiries = new HashMap<>();
     protected transient short _classifierID;
     // XXX - this does not need to be here
     protected int _gateID;
@@ -57,9 +101,32 @@ public class PCMMPdpMsgSender extends COPSPdpMsgSender {
     }
 
     public PCMMPdpMsgSender(final short clientType, final short tID, final COPSHandle clientHandle, final Socket sock) {
+        this(clientType, tID, clientHandle, sock, COPSTimerWheel.getDefault());
+    }
+
+    /**
+     * Creates a PCMMPdpMsgSender
+     *
+     * @param clientType   - COPS client-type
+     * @param tID          - the first TransactionID tried, 0 for a random one
+     * @param clientHandle - Client handle
+     * @param sock         - Socket to the PEP
+     * @param timerWheel   - expires the TransactionIDs not answered in time
+     */
+    public PCMMPdpMsgSender(final short clientType, final short tID, final COPSHandle clientHandle, final Socket sock,
+                            final COPSTimerWheel timerWheel) {
         super(clientType, clientHandle, sock);
+        _timerWheel = timerWheel;
         _transactionID = tID;
+        _transactionIDs = tID == 0 ? new TransactionIDAllocator() : new TransactionIDAllocator(tID);
         _classifierID = 0;
+        final InetAddress pep = sock == null ? null : sock.getInetAddress();
+        _rateLimit = new TokenBucket(
+                PCMMProperties.get(PCMMConstants.PS_RATE_LIMIT, pep, Integer.class, DEFAULT_RATE_LIMIT),
+                PCMMProperties.get(PCMMConstants.PS_RATE_BURST, pep, Integer.class, DEFAULT_RATE_BURST));
+        _maxInFlight = PCMMProperties.get(PCMMConstants.PS_MAX_INFLIGHT, pep, Integer.class, DEFAULT_MAX_INFLIGHT);
+        _admissionTimeout = PCMMProperties.get(PCMMConstants.PS_GATE_TIMEOUT, pep, Integer.class,
+                DEFAULT_ADMISSION_TIMEOUT);
     }
 
     /**
@@ -70,26 +137,34 @@ public class PCMMPdpMsgSender extends COPSPdpMsgSender {
      */
     public void sendGateSet(final IPCMMGate gate) throws COPSPdpException {
         logger.info("Sending gate set");
-        // Common Header with the same ClientType as the request
-
-        final COPSHeader hdr = new COPSHeader(COPSHeader.COPS_OP_DEC, getClientType());
-
-        // Client Handle with the same clientHandle as the request
-        final COPSHandle handle = new COPSHandle(getClientHandle().getId());
-        final COPSDecisionMsg decisionMsg = new COPSDecisionMsg();
         final ITransactionID trID = new TransactionID();
 
         // set transaction ID to gate set
         trID.setGateCommandType(ITransactionID.GateSet);
-        _transactionID = (_transactionID == 0 ? (short) (Math.random() * hashCode()) : _transactionID);
+        _transactionID = allocateTransactionID();
         trID.setTransactionIdentifier(_transactionID);
 
         gate.setTransactionID(trID);
+        sendGateCommand(gate.getData());
+    }
+
+    /**
+     * Sends a PCMM gate command COPS Decision message
+     *
+     * @param data - the encoded gate command
+     * @throws COPSPdpException
+     */
+    private void sendGateCommand(final byte[] data) throws COPSPdpException {
+        // Common Header with the same ClientType as the request
+
+        final COPSHeader hdr = new COPSHeader(COPSHeader.COPS_OP_DEC, getClientType());
 
+        // Client Handle with the same clientHandle as the request
+        final COPSHandle handle = new COPSHandle(getClientHandle().getId());
+        final COPSDecisionMsg decisionMsg = new COPSDecisionMsg();
 
         // new pcmm specific clientsi
         final COPSClientSI clientSD = new COPSClientSI(COPSObjHeader.COPS_DEC, (byte) 4);
-        byte[] data = gate.getData();
         clientSD.setData(new COPSData(data, 0, data.length));
         try {
             decisionMsg.add(hdr);
@@ -195,7 +270,7 @@ public class PCMMPdpMsgSender extends COPSPdpMsgSender {
 
         // set transaction ID to gate set
         trID.setGateCommandType(ITransactionID.GateSet);
-        _transactionID = (_transactionID == 0 ? (short) (Math.random() * hashCode()) : _transactionID);
+        _transactionID = allocateTransactionID();
         trID.setTransactionIdentifier(_transactionID);
 
         amid.setApplicationType((short) 1);
@@ -366,7 +441,7 @@ public class PCMMPdpMsgSender extends COPSPdpMsgSender {
 
         // set transaction ID to gate set
         trID.setGateCommandType(ITransactionID.GateSet);
-        _transactionID = (_transactionID == 0 ? (short) (Math.random() * hashCode()) : _transactionID);
+        _transactionID = allocateTransactionID();
         trID.setTransactionIdentifier(_transactionID);
 
         amid.setApplicationType((short) 1);
@@ -485,14 +560,15 @@ public class PCMMPdpMsgSender extends COPSPdpMsgSender {
                 if (reportMsg.getClientSI().size() == 0) {
                     return false;
                 }
-                final COPSClientSI clientSI = reportMsg.getClientSI().get(0);
-                final IPCMMGate responseGate = new PCMMGateReq(clientSI.getData().getData());
-                if (responseGate.getTransactionID() != null &&
-                        responseGate.getTransactionID().getGateCommandType() == ITransactionID.GateSetAck) {
+                // local, handleGateReport may be called by several threads
+                final GateReportView responseGate = new GateReportView().wrap(reportMsg.getClientSI().get(0));
+                if (responseGate.hasTransactionID())
+                    releaseTransactionID(responseGate.getTransactionIdentifier());
+                if (responseGate.getGateCommandType() == ITransactionID.GateSetAck && responseGate.hasGateID()) {
                     logger.info("The CMTS has sent a Gate-Set-Ack response");
                     // here CMTS responded that he acknowledged the Gate-Set
                     // TODO do further check of Gate-Set-Ack GateID etc...
-                    _gateID = responseGate.getGateID().getGateID();
+                    _gateID = responseGate.getGateID();
                     return true;
                 } else {
                     return false;
@@ -543,7 +619,7 @@ public class PCMMPdpMsgSender extends COPSPdpMsgSender {
 
         // set transaction ID to gate set
         trID.setGateCommandType(ITransactionID.GateSet);
-        _transactionID = (_transactionID == 0 ? (short) (Math.random() * hashCode()) : _transactionID);
+        _transactionID = allocateTransactionID();
         trID.setTransactionIdentifier(_transactionID);
 
         amid.setApplicationType((short) 1);
@@ -651,7 +727,7 @@ public class PCMMPdpMsgSender extends COPSPdpMsgSender {
 
         // set transaction ID to gate set
         trID.setGateCommandType(ITransactionID.GateDelete);
-        _transactionID = (_transactionID == 0 ? (short) (Math.random() * hashCode()) : _transactionID);
+        _transactionID = allocateTransactionID();
         trID.setTransactionIdentifier(_transactionID);
 
         amid.setApplicationType((short) 1);
@@ -813,6 +889,151 @@ public class PCMMPdpMsgSender extends COPSPdpMsgSender {
         }
     }
 
+    /**
+     * Sends a PCMM Gate-Synch-Request, the CMTS answers with a Synch-Report
+     * per gate then a Synch-Complete
+     *
+     * @param synchType - {@link SyncOptions#FULL_SYNCHRONIZATION} or {@link SyncOptions#INCREMENTAL_SYNCHRONIZATION}
+     * @throws COPSPdpException
+     */
+    public void sendGateSynchronize(final byte synchType) throws COPSPdpException {
+        logger.info("Sending gate synchronize");
+        /*
+         * <Synch-Request> = <Decision Header> <TransactionID> <AMID> [<SubscriberID>] [<SyncOptions>]
+         */
+        final IPCMMGate gate = new PCMMGateReq();
+        final ITransactionID trID = new TransactionID();
+        trID.setGateCommandType(ITransactionID.SynchRequest);
+        _transactionID = allocateTransactionID();
+        trID.setTransactionIdentifier(_transactionID);
+        final IAMID amid = new AMID();
+        amid.setApplicationType((short) 1);
+        amid.setApplicationMgrTag((short) 1);
+        gate.setTransactionID(trID);
+        gate.setAMID(amid);
+
+        final byte[] options = new SyncOptions(SyncOptions.COMPLETE_GATE_DATA, synchType).getAsBinaryArray();
+        final byte[] data = Arrays.copyOf(gate.getData(), gate.getDataLength() + options.length);
+        System.arraycopy(options, 0, data, gate.getDataLength(), options.length);
+        sendGateCommand(data);
+    }
+
+    /**
+     * Releases the TransactionID of a command once answered by the PEP
+     *
+     * @param transactionID - the TransactionID of the report
+     */
+    public void releaseTransactionID(final short transactionID) {
+        synchronized (_admission) {
+            final Expiry expiry = _expiries.remove(transactionID);
+            // a late report of a command expired or released on close
+            if (expiry == null)
+                return;
+            expiry.timeout.cancel();
+            _transactionIDs.release(transactionID);
+            _admission.notifyAll();
+        }
+    }
+
+    /**
+     * Gives a command answered by a stream of reports, e.g. a Synch-Request, the gate timeout again from now
+     *
+     * @param transactionID - the TransactionID of the report
+     */
+    public void restartTransactionTimeout(final short transactionID) {
+        synchronized (_admission) {
+            final Expiry expiry = _expiries.get(transactionID);
+            if (expiry != null && expiry.timeout.cancel())
+                expire(transactionID);
+        }
+    }
+
+    /**
+     * Releases the TransactionIDs of all the commands not answered yet, called once the connection is closed
+     */
+    public void releaseTransactionIDs() {
+        synchronized (_admission) {
+            for (final Expiry expiry : _expiries.values())
+                expiry.timeout.cancel();
+            _expiries.clear();
+            final int released = _transactionIDs.releaseAll();
+            if (released > 0)
+                logger.info("Released " + released + " TransactionIDs not answered");
+            _admission.notifyAll();
+        }
+    }
+
+    /**
+     * @return the number of commands not answered yet
+     */
+    public int getTransactionsInFlight() {
+        return _transactionIDs.inFlight();
+    }
+
+    /**
+     * Allocates the TransactionID of a new command once the rate limit and
+     * the in-flight limit of the PEP allow it to be sent, the caller waits
+     * until then
+     *
+     * @return the TransactionID
+     * @throws COPSPdpException when too many commands are not answered in time
+     */
+    private short allocateTransactionID() throws COPSPdpException {
+        try {
+            _rateLimit.acquire();
+            synchronized (_admission) {
+                final long deadline = System.currentTimeMillis() + _admissionTimeout;
+                while (_transactionIDs.inFlight() >= _maxInFlight) {
+                    final long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0)
+                        throw new COPSPdpException("Too many gate commands in flight: " + _transactionIDs.inFlight());
+                    _admission.wait(remaining);
+                }
+                final short transactionID = _transactionIDs.allocate();
+                expire(transactionID);
+                return transactionID;
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new COPSPdpException("Interrupted waiting to send a gate command");
+        }
+    }
+
+    /**
+     * Called holding _admission, arms the release of a TransactionID not answered in time
+     *
+     * @param transactionID - the TransactionID allocated
+     */
+    private void expire(final short transactionID) {
+        final Expiry expiry = new Expiry(transactionID);
+        _expiries.put(transactionID, expiry);
+        expiry.timeout = _timerWheel.schedule(expiry, _admissionTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Releases a TransactionID not answered in time
+     */
+    private class Expiry implements Runnable {
+        private final short transactionID;
+        private COPSTimerWheel.Timeout timeout;
+
+        Expiry(final short transactionID) {
+            this.transactionID = transactionID;
+        }
+
+        @Override
+        public void run() {
+            synchronized (_admission) {
+                if (_expiries.get(transactionID) != this)
+                    return;
+                _expiries.remove(transactionID);
+                logger.warn("No report received for TransactionID " + transactionID + ", released");
+                _transactionIDs.release(transactionID);
+                _admission.notifyAll();
+            }
+        }
+    }
+
     // XXX - Temp
     public void sendSyncRequestState() throws COPSPdpException {
     }
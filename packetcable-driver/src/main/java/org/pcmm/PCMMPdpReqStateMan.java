@@ -5,15 +5,20 @@
 package org.pcmm;
 
 import org.pcmm.gates.ITransactionID;
+import org.pcmm.gates.impl.GateResult;
 import org.pcmm.gates.impl.PCMMGateReq;
+import org.pcmm.state.IGateTable;
+import org.pcmm.state.impl.GateRecord;
+import org.pcmm.state.impl.GateTable;
+import org.pcmm.state.impl.GateSynchronizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.umu.cops.prpdp.COPSPdpException;
 import org.umu.cops.prpdp.COPSPdpReqStateMan;
 import org.umu.cops.stack.*;
 
+import java.net.InetAddress;
 import java.net.Socket;
-import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -25,6 +30,16 @@ public class PCMMPdpReqStateMan extends COPSPdpReqStateMan {
 
     private final PCMMPdpDataProcess _thisProcess;
 
+    /**
+     * The CMTS of the request state
+     */
+    protected transient InetAddress _cmts;
+
+    /**
+     * The gate synchronization in progress or null
+     */
+    protected transient GateSynchronizer _synchronizer;
+
     /**
      * Creates a request state manager
      *
@@ -47,9 +62,84 @@ public class PCMMPdpReqStateMan extends COPSPdpReqStateMan {
         logger.info("Initializing request state");
         // Inits an object for sending COPS messages to the PEP
         _sender = new PCMMPdpMsgSender(_clientType, _handle, sock);
+        _cmts = sock.getInetAddress();
         init();
     }
 
+    /**
+     * @return the CMTS of the request state
+     */
+    public InetAddress getCMTS() {
+        return _cmts;
+    }
+
+    /**
+     * Starts the synchronization of the gate table with the CMTS, incremental
+     * when its gates are already known. The Synch-Reports are reconciled as
+     * they are received.
+     *
+     * @return the synchronizer of the Synch-Reports
+     * @throws COPSPdpException
+     */
+    public GateSynchronizer synchronizeGates() throws COPSPdpException {
+        final IGateTable table = GateTable.getDefault();
+        final GateSynchronizer synchronizer = new GateSynchronizer(table, _cmts,
+                GateSynchronizer.synchType(table, _cmts));
+        _synchronizer = synchronizer;
+        ((PCMMPdpMsgSender) _sender).sendGateSynchronize(synchronizer.getSynchType());
+        return synchronizer;
+    }
+
+    /**
+     * Records in the gate table the gate acknowledged by a successful report,
+     * the Synch-Reports of a synchronization in progress are reconciled
+     *
+     * @param gateMsg - the gate message of the report
+     */
+    public void recordGate(final PCMMGateReq gateMsg) {
+        if (gateMsg.getTransactionID() == null || _cmts == null) {
+            return;
+        }
+        final GateSynchronizer synchronizer = _synchronizer;
+        if (synchronizer != null
+                && gateMsg.getTransactionID().getGateCommandType() == ITransactionID.SynchComplete) {
+            synchronizer.complete();
+            _synchronizer = null;
+            return;
+        }
+        if (gateMsg.getGateID() == null) {
+            return;
+        }
+        final int gateID = gateMsg.getGateID().getGateID();
+        if (synchronizer != null
+                && gateMsg.getTransactionID().getGateCommandType() == ITransactionID.SynchReport) {
+            synchronizer.onReport(new GateResult(gateMsg.getTransactionID().getTransactionIdentifier(),
+                    ITransactionID.SynchReport, gateID, gateMsg.getError(), gateMsg));
+            return;
+        }
+        if (gateMsg.getTransactionID().getGateCommandType() == ITransactionID.GateDeleteAck) {
+            logger.info("GateDeleteAck: GateID = " + gateID);
+            GateTable.getDefault().remove(_cmts, gateID);
+        }
+        if (gateMsg.getTransactionID().getGateCommandType() == ITransactionID.GateSetAck) {
+            logger.info("GateSetAck: GateID = " + gateID);
+            GateTable.getDefault().put(GateRecord.fromGate(_cmts, gateID, gateMsg, 0));
+        }
+    }
+
+    /**
+     * The commands not answered will never be, their TransactionIDs are released
+     *
+     * @param error the reason of the close
+     * @throws COPSException
+     */
+    @Override
+    public void processClosedConnection(final COPSError error) throws COPSException {
+        if (_sender instanceof PCMMPdpMsgSender)
+            ((PCMMPdpMsgSender) _sender).releaseTransactionIDs();
+        super.processClosedConnection(error);
+    }
+
     /**
      * Processes a report
      *
@@ -84,11 +174,21 @@ public class PCMMPdpReqStateMan extends COPSPdpReqStateMan {
         // Named ClientSI
         final List<COPSClientSI> clientSIs = msg.getClientSI();
         final COPSClientSI myclientSI = msg.getClientSI().get(0);
-        byte[] data = Arrays.copyOfRange(myclientSI.getData().getData(), 0, myclientSI.getData().getData().length);
 
         // PCMMUtils.WriteBinaryDump("COPSReportClientSI", data);
         logger.info("PCMMGateReq Parse Gate Message");
-        final PCMMGateReq gateMsg = new PCMMGateReq(data);
+        // PCMMGateReq copies every object it parses, no need for a defensive copy of the ClientSI
+        final PCMMGateReq gateMsg = new PCMMGateReq(myclientSI.getData().getData());
+        // the TransactionID of the command answered can be reused, except
+        // during a synchronization which ends with the Synch-Complete
+        if (gateMsg.getTransactionID() != null
+                && gateMsg.getTransactionID().getGateCommandType() != ITransactionID.SynchReport) {
+            ((PCMMPdpMsgSender) _sender).releaseTransactionID(gateMsg.getTransactionID().getTransactionIdentifier());
+        } else if (gateMsg.getTransactionID() != null) {
+            // each Synch-Report gives the synchronization more time
+            ((PCMMPdpMsgSender) _sender).restartTransactionTimeout(
+                    gateMsg.getTransactionID().getTransactionIdentifier());
+        }
 
 //        final Map<String, String> repSIs = new HashMap<>();
         String strobjprid = "";
@@ -120,26 +220,7 @@ public class PCMMPdpReqStateMan extends COPSPdpReqStateMan {
             if (_thisProcess != null) {
                 _thisProcess.successReport(this, gateMsg);
             } else {
-                if (gateMsg.getTransactionID().getGateCommandType() == ITransactionID.GateDeleteAck) {
-                    logger.info("GateDeleteAck: GateID = " + gateMsg.getGateID().getGateID());
-                    if (gateMsg.getGateID().getGateID() == PCMMGlobalConfig.getGateID1()) {
-                        PCMMGlobalConfig.setGateID1(0);
-                    }
-                    if (gateMsg.getGateID().getGateID() == PCMMGlobalConfig.getGateID2()) {
-                        PCMMGlobalConfig.setGateID2(0);
-                    }
-
-                }
-                if (gateMsg.getTransactionID().getGateCommandType() == ITransactionID.GateSetAck) {
-                    logger.info("GateSetAck: GateID = " + gateMsg.getGateID().getGateID());
-                    if (0 == PCMMGlobalConfig.getGateID1()) {
-                        PCMMGlobalConfig.setGateID1(gateMsg.getGateID().getGateID());
-                    }
-                    if (0 == PCMMGlobalConfig.getGateID2()) {
-                        PCMMGlobalConfig.setGateID2(gateMsg.getGateID().getGateID());
-                    }
-                }
-
+                recordGate(gateMsg);
             }
         } else {
             if (rtypemsg.isFailure()) {
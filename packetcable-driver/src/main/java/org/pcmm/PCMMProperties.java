@@ -1,10 +1,12 @@
 package org.pcmm;
 
+import org.pcmm.utils.IPAddressCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.InetAddress;
 import java.util.Properties;
 
 /**
@@ -57,4 +59,13 @@ public class PCMMProperties implements PCMMConstants {
 		return get(key, type, null);
 	}
 
+	/**
+	 * Reads a property of a CMTS, the property suffixed with the address of
+	 * the CMTS (e.g. pcmm.ps.rate.limit.10.0.0.1) overrides the common one
+	 */
+	public static <T> T get(String key, InetAddress host, Class<T> type, Object _default) {
+		final T common = get(key, type, _default);
+		return host == null ? common : get(key + "." + IPAddressCodec.format(host.getAddress()), type, common);
+	}
+
 }
@@ -6,6 +6,7 @@ package org.pcmm.base;
 
 import java.io.IOException;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 
 import org.umu.cops.stack.COPSData;
 
@@ -75,6 +76,15 @@ public interface IPCMMBaseObject {
 
     void writeData(Socket id) throws IOException;
 
+    /**
+     * encodes the object, header and padding included, at the current
+     * position of the buffer
+     *
+     * @param buf
+     *            a buffer with at least {@link #getLength()} bytes remaining
+     */
+    void writeTo(ByteBuffer buf);
+
 	byte[] getAsBinaryArray();
 
 }
@@ -5,6 +5,7 @@ package org.pcmm.base.impl;
 
 import java.io.IOException;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import org.pcmm.base.IPCMMBaseObject;
@@ -21,8 +22,13 @@ public class PCMMBaseObject /* extends COPSPrObjBase */implements
 	private byte sType;
 	private byte sNum;
 	private short len;
-	private COPSData copsData;
-	private COPSData pad;
+	/**
+	 * wire image of the object: the header, the data then the padding to the
+	 * next 32 bits boundary. The accessors read and write the data in place.
+	 */
+	private byte[] buffer;
+	private int dataLength;
+	private int padLength;
 	protected final short offset = (short) 4;
 
 	public PCMMBaseObject(byte[] data) {
@@ -30,100 +36,112 @@ public class PCMMBaseObject /* extends COPSPrObjBase */implements
 	}
 
 	public PCMMBaseObject(short len, byte sType, byte sNum) {
-		this.len = (len);
 		this.sType = (sType);
 		this.sNum = (sNum);
-		byte[] array = new byte[len - offset];
-		Arrays.fill(array, (byte) 0);
-		setData(new COPSData(array, 0, array.length));
-	}
-
-	protected COPSData getPadding(int len) {
-		byte[] padBuf = new byte[len];
-		Arrays.fill(padBuf, (byte) 0);
-		COPSData d = new COPSData(padBuf, 0, len);
-		return d;
-	}
-
-	/**
-	 * Add head padding to the specified byte array filled with zeros
-	 * 
-	 * @param off
-	 *            offset
-	 * @param array
-	 *            input array
-	 * @return byte array
-	 */
-	protected byte[] headPadding(int off, byte[] array) {
-		byte[] returnArray = new byte[array.length + off];
-		Arrays.fill(returnArray, (byte) 0);
-		System.arraycopy(array, 0, returnArray, off, array.length);
-		return returnArray;
+		allocate(len - offset);
 	}
 
 	protected void parse(byte[] data) {
 		if (data == null || data.length == 0)
 			throw new IllegalArgumentException("data could not be null");
-		len = 0;
-		len |= ((short) data[0]) << 8;
-		len |= ((short) data[1]) & 0xFF;
+		len = (short) (((data[0] & 0xFF) << 8) | (data[1] & 0xFF));
 		sNum = data[2];
 		sType = data[3];
-		copsData = new COPSData(data, offset, data.length - offset);
+		buffer = Arrays.copyOf(data, data.length);
+		dataLength = data.length - offset;
+		padLength = 0;
+	}
+
+	/**
+	 * Resets the data to the given number of zeros, the buffer is only
+	 * reallocated when its size changes
+	 * 
+	 * @param length
+	 *            data length
+	 */
+	protected void allocate(int length) {
+		final int pad = length % offset == 0 ? 0 : offset - (length % offset);
+		final int size = offset + length + pad;
+		if (buffer != null && buffer.length == size)
+			Arrays.fill(buffer, (byte) 0);
+		else
+			buffer = new byte[size];
+		dataLength = length;
+		padLength = pad;
+		len = (short) (length + offset);
 	}
 
 	protected void setShort(short value, short startPos) {
-		byte[] data = getData().getData();
-		data[startPos] = (byte) (value >> 8);
-		data[startPos + 1] = (byte) value;
-		setData(new COPSData(data, 0, data.length));
+		final int pos = offset + startPos;
+		buffer[pos] = (byte) (value >> 8);
+		buffer[pos + 1] = (byte) value;
 	}
 
 	protected short getShort(short startPos) {
-		byte[] data = getData().getData();
-		short retVal = 0;
-		retVal |= ((short) data[startPos]) << 8;
-		retVal |= ((short) data[startPos + 1]) & 0xFF;
-		return retVal;
+		final int pos = offset + startPos;
+		return (short) (((buffer[pos] & 0xFF) << 8) | (buffer[pos + 1] & 0xFF));
 	}
 
 	protected void setInt(int value, short startPos) {
-		byte[] data = getData().getData();
-		data[startPos] = (byte) (value >> 24);
-		data[startPos + 1] = (byte) (value >> 16);
-		data[startPos + 2] = (byte) (value >> 8);
-		data[startPos + 3] = (byte) value;
-		setData(new COPSData(data, 0, data.length));
+		final int pos = offset + startPos;
+		buffer[pos] = (byte) (value >> 24);
+		buffer[pos + 1] = (byte) (value >> 16);
+		buffer[pos + 2] = (byte) (value >> 8);
+		buffer[pos + 3] = (byte) value;
 	}
 
 	protected int getInt(short startPos) {
-		byte[] data = getData().getData();
-		int retVal = 0;
-		retVal |= ((short) data[startPos]) << 24;
-		retVal |= ((short) data[startPos + 1]) << 16;
-		retVal |= ((short) data[startPos + 2]) << 8;
-		retVal |= ((short) data[startPos + 3]) & 0xFF;
-		return retVal;
+		final int pos = offset + startPos;
+		return ((buffer[pos] & 0xFF) << 24) | ((buffer[pos + 1] & 0xFF) << 16)
+				| ((buffer[pos + 2] & 0xFF) << 8) | (buffer[pos + 3] & 0xFF);
 	}
 
 	protected void setBytes(byte[] value, short startPos) {
-		byte[] data = getData().getData();
-		for (byte b : value)
-			data[startPos++] = b;
-		setData(new COPSData(data, 0, data.length));
+		setBytes(value, 0, value.length, startPos);
+	}
+
+	/**
+	 * Copies a range of the given array in the data
+	 * 
+	 * @param value
+	 *            source array
+	 * @param from
+	 *            first byte copied
+	 * @param length
+	 *            number of bytes copied
+	 * @param startPos
+	 *            position in the data
+	 */
+	protected void setBytes(byte[] value, int from, int length, short startPos) {
+		System.arraycopy(value, from, buffer, offset + startPos, length);
 	}
 
 	protected byte[] getBytes(short startPos, short size) {
-		return Arrays.copyOfRange(getData().getData(), startPos, startPos
-				+ size);
+		return Arrays.copyOfRange(buffer, offset + startPos, offset + startPos + size);
+	}
+
+	/**
+	 * Copies a range of the data of another object in the data
+	 * 
+	 * @param source
+	 *            source object
+	 * @param sourcePos
+	 *            position in the data of the source object
+	 * @param length
+	 *            number of bytes copied
+	 * @param startPos
+	 *            position in the data
+	 */
+	protected void setBytes(PCMMBaseObject source, short sourcePos, int length, short startPos) {
+		System.arraycopy(source.buffer, offset + sourcePos, buffer, offset + startPos, length);
 	}
 
 	protected void setByte(byte value, short startPos) {
-		setBytes(new byte[] { value }, startPos);
+		buffer[offset + startPos] = value;
 	}
 
 	protected byte getByte(short startPos) {
-		return getBytes(startPos, (short) 1)[0];
+		return buffer[offset + startPos];
 	}
 
 	/*
@@ -184,7 +202,7 @@ public class PCMMBaseObject /* extends COPSPrObjBase */implements
 	 */
 	@Override
 	public short getLength() {
-		return (short) (len + (pad != null ? pad.length() : 0));
+		return (short) (len + padLength);
 	}
 
 	/*
@@ -194,12 +212,8 @@ public class PCMMBaseObject /* extends COPSPrObjBase */implements
 	 */
 	@Override
 	public void setData(COPSData data) {
-		this.copsData = data;
-		if (data.length() % offset != 0) {
-			int padLen = offset - (data.length() % offset);
-			pad = getPadding(padLen);
-		}
-		len = (short) (data.length() + offset);
+		allocate(data.length());
+		setBytes(data.getData(), 0, data.length(), (short) 0);
 	}
 
 	/*
@@ -209,7 +223,7 @@ public class PCMMBaseObject /* extends COPSPrObjBase */implements
 	 */
 	@Override
 	public COPSData getData() {
-		return copsData;
+		return new COPSData(buffer, offset, dataLength);
 	}
 
 	/*
@@ -229,16 +243,33 @@ public class PCMMBaseObject /* extends COPSPrObjBase */implements
 	 */
 	@Override
 	public byte[] getAsBinaryArray() {
-		byte[] array = new byte[getLength()];
-		array[0] = (byte) (len >> 8);
-		array[1] = (byte) len;
-		array[2] = sNum;
-		array[3] = sType;
-		System.arraycopy(getData().getData(), 0, array, offset, getData()
-				.length());
-		if (pad != null)
-			System.arraycopy(pad.getData(), 0, array, offset
-					+ getData().length(), pad.length());
-		return array;
+		writeHeader();
+		return Arrays.copyOf(buffer, getLength());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.pcmm.base.IPCMMBaseObject#writeTo(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void writeTo(ByteBuffer buf) {
+		writeHeader();
+		final int length = getLength();
+		if (length <= buffer.length) {
+			buf.put(buffer, 0, length);
+		} else {
+			// length set beyond the data
+			buf.put(buffer);
+			for (int i = buffer.length; i < length; i++)
+				buf.put((byte) 0);
+		}
+	}
+
+	private void writeHeader() {
+		buffer[0] = (byte) (len >> 8);
+		buffer[1] = (byte) len;
+		buffer[2] = sNum;
+		buffer[3] = sType;
 	}
 }
@@ -9,7 +9,8 @@ import org.pcmm.base.IAdapter;
  * 
  */
 public interface IWorkerPool extends IAdapter<IWorker> {
-	// handles 32 workers
+	// 32 threads running the workers, a worker waiting for its start
+	// does not hold a thread
 	static int DEFAULT_MAX_WORKERS = 32;
 
 	/**
@@ -35,7 +36,24 @@ public interface IWorkerPool extends IAdapter<IWorker> {
 	int schedule(IWorker worker);
 
 	/**
-	 * kills the worker with the specified pid
+	 * schedules a worker for beginning its task after t milliseconds, the
+	 * workers scheduled with the same key run one at a time in the order
+	 * they become due.
+	 * 
+	 * @param key
+	 *            : the key serializing the workers, a CMTS for instance
+	 * @param worker
+	 *            : the worker
+	 * @param t
+	 *            : time to wait
+	 * @return the id of the worker (PID) to be used for killing the worker if
+	 *         needed
+	 */
+	int schedule(Object key, IWorker worker, int t);
+
+	/**
+	 * kills the worker with the specified pid, it is not started if still
+	 * waiting
 	 * 
 	 * @param pid - the process ID
 	 */
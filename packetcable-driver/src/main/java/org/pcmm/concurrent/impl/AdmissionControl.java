@@ -0,0 +1,295 @@
+/**
+ @header@
+ */
+package org.pcmm.concurrent.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.umu.cops.COPSTimerWheel;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Admission control of the commands sent to a peer, e.g. the gate commands
+ * sent to a CMTS.
+ * </p>
+ * <p>
+ * A command is admitted when a token of the {@link TokenBucket} is available
+ * and fewer than maxInFlight commands are outstanding, else it is deferred in
+ * a FIFO queue of at most maxQueued commands and rejected beyond. Nothing
+ * blocks: the deferred commands are run by the thread completing a command
+ * or by the timer wheel once a token is available, so their start is
+ * rounded to the tick of the wheel.
+ * </p>
+ * <p>
+ * An admitted command must be followed by a call to {@link #done()} once
+ * answered, failed or cancelled.
+ * </p>
+ */
+public class AdmissionControl {
+
+	private final static Logger logger = LoggerFactory.getLogger(AdmissionControl.class);
+
+	private final TokenBucket bucket;
+	private final int maxInFlight;
+	private final int maxQueued;
+	private final COPSTimerWheel timerWheel;
+
+	/**
+	 * guarded by this
+	 */
+	private final Queue<Runnable> queue;
+	private int inFlight;
+	private boolean dispatching;
+	private COPSTimerWheel.Timeout timer;
+	private long admitted;
+	private long deferred;
+	private long rejected;
+
+	/**
+	 * @param bucket
+	 *            the rate of the commands
+	 * @param maxInFlight
+	 *            maximum number of outstanding commands
+	 * @param maxQueued
+	 *            maximum number of deferred commands, 0 to reject the
+	 *            commands not admitted at once
+	 * @param timerWheel
+	 *            timer running the deferred commands once a token is
+	 *            available
+	 */
+	public AdmissionControl(final TokenBucket bucket, final int maxInFlight, final int maxQueued,
+			final COPSTimerWheel timerWheel) {
+		if (maxInFlight <= 0 || maxQueued < 0)
+			throw new IllegalArgumentException("Invalid in-flight depth " + maxInFlight + " or queue depth "
+					+ maxQueued);
+		this.bucket = bucket;
+		this.maxInFlight = maxInFlight;
+		this.maxQueued = maxQueued;
+		this.timerWheel = timerWheel;
+		this.queue = new ArrayDeque<>();
+	}
+
+	/**
+	 * Runs the command now or once admitted
+	 *
+	 * @param command
+	 *            the command, run by the caller when admitted at once
+	 * @return false when the command is rejected, the queue being full
+	 */
+	public boolean submit(final Runnable command) {
+		synchronized (this) {
+			if (!queue.isEmpty() || inFlight >= maxInFlight || !bucket.tryAcquire()) {
+				if (queue.size() >= maxQueued) {
+					rejected++;
+					return false;
+				}
+				queue.add(command);
+				deferred++;
+				schedule();
+				return true;
+			}
+			inFlight++;
+			admitted++;
+		}
+		run(command);
+		return true;
+	}
+
+	/**
+	 * Called once an admitted command is answered, failed or cancelled
+	 */
+	public void done() {
+		synchronized (this) {
+			if (inFlight > 0)
+				inFlight--;
+		}
+		dispatch();
+	}
+
+	/**
+	 * Runs the deferred commands at once, called when the connection is lost
+	 * so they fail instead of waiting for their turn
+	 */
+	public void flush() {
+		final Runnable[] commands;
+		synchronized (this) {
+			commands = queue.toArray(new Runnable[queue.size()]);
+			queue.clear();
+			inFlight += commands.length;
+			admitted += commands.length;
+			if (timer != null) {
+				timer.cancel();
+				timer = null;
+			}
+		}
+		for (final Runnable command : commands)
+			run(command);
+	}
+
+	/**
+	 * @return a snapshot of the counters
+	 */
+	public synchronized Stats getStats() {
+		return new Stats(System.nanoTime(), queue.size(), inFlight, admitted, deferred, rejected);
+	}
+
+	/**
+	 * Runs the deferred commands admitted, a single thread at a time so a
+	 * command completed while run does not recurse
+	 */
+	private void dispatch() {
+		while (true) {
+			final Runnable command;
+			synchronized (this) {
+				if (dispatching)
+					return;
+				command = next();
+				if (command == null)
+					return;
+				dispatching = true;
+			}
+			try {
+				run(command);
+			} finally {
+				synchronized (this) {
+					dispatching = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Called holding the lock
+	 *
+	 * @return the next deferred command admitted or null
+	 */
+	private Runnable next() {
+		if (queue.isEmpty() || inFlight >= maxInFlight)
+			return null;
+		if (!bucket.tryAcquire()) {
+			schedule();
+			return null;
+		}
+		inFlight++;
+		admitted++;
+		return queue.poll();
+	}
+
+	/**
+	 * Called holding the lock, arms the timer once a token is missing
+	 */
+	private void schedule() {
+		if (timer != null || queue.isEmpty() || inFlight >= maxInFlight)
+			return;
+		timer = timerWheel.schedule(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (AdmissionControl.this) {
+					timer = null;
+				}
+				dispatch();
+			}
+		}, Math.max(1, bucket.delay(TimeUnit.MILLISECONDS)), TimeUnit.MILLISECONDS);
+	}
+
+	private void run(final Runnable command) {
+		try {
+			command.run();
+		} catch (RuntimeException e) {
+			logger.error("Admitted command failed", e);
+			done();
+		}
+	}
+
+	/**
+	 * Counters of an admission control at a point in time, the rates are
+	 * derived from two snapshots
+	 */
+	public static class Stats {
+		private final long time;
+		private final int queueDepth;
+		private final int inFlight;
+		private final long admitted;
+		private final long deferred;
+		private final long rejected;
+
+		Stats(final long time, final int queueDepth, final int inFlight, final long admitted, final long deferred,
+				final long rejected) {
+			this.time = time;
+			this.queueDepth = queueDepth;
+			this.inFlight = inFlight;
+			this.admitted = admitted;
+			this.deferred = deferred;
+			this.rejected = rejected;
+		}
+
+		/**
+		 * @return the number of commands waiting for their admission
+		 */
+		public int getQueueDepth() {
+			return queueDepth;
+		}
+
+		/**
+		 * @return the number of commands admitted and not done
+		 */
+		public int getInFlight() {
+			return inFlight;
+		}
+
+		/**
+		 * @return the number of commands admitted so far
+		 */
+		public long getAdmitted() {
+			return admitted;
+		}
+
+		/**
+		 * @return the number of commands deferred so far
+		 */
+		public long getDeferred() {
+			return deferred;
+		}
+
+		/**
+		 * @return the number of commands rejected so far
+		 */
+		public long getRejected() {
+			return rejected;
+		}
+
+		/**
+		 * @param previous
+		 *            an earlier snapshot of the same admission control
+		 * @return the commands deferred per second since the earlier snapshot
+		 */
+		public double getDeferredRate(final Stats previous) {
+			return rate(deferred - previous.deferred, previous);
+		}
+
+		/**
+		 * @param previous
+		 *            an earlier snapshot of the same admission control
+		 * @return the commands rejected per second since the earlier snapshot
+		 */
+		public double getRejectedRate(final Stats previous) {
+			return rate(rejected - previous.rejected, previous);
+		}
+
+		private double rate(final long count, final Stats previous) {
+			final long elapsed = time - previous.time;
+			return elapsed <= 0 ? 0 : count * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+		}
+
+		@Override
+		public String toString() {
+			return "queued=" + queueDepth + " inFlight=" + inFlight + " admitted=" + admitted + " deferred="
+					+ deferred + " rejected=" + rejected;
+		}
+	}
+
+}
@@ -0,0 +1,118 @@
+/**
+ @header@
+ */
+package org.pcmm.concurrent.impl;
+
+import com.google.common.base.Ticker;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Token bucket bounding the rate of the commands sent to a peer.
+ * </p>
+ * <p>
+ * The bucket holds up to burst tokens and is refilled at the given rate, a
+ * command takes one token. The tokens are computed from the elapsed time when
+ * asked for, no thread refills the bucket. A rate of 0 disables the limit.
+ * </p>
+ */
+public class TokenBucket {
+
+	private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private final Ticker ticker;
+	private final long nanosPerToken;
+	private final long capacity;
+	/**
+	 * the time at which the bucket is full, the tokens available are derived
+	 * from it, guarded by this
+	 */
+	private long fullAt;
+
+	/**
+	 * @param rate
+	 *            the number of tokens per second, 0 for no limit
+	 * @param burst
+	 *            the number of tokens the bucket holds
+	 */
+	public TokenBucket(final int rate, final int burst) {
+		this(rate, burst, Ticker.systemTicker());
+	}
+
+	/**
+	 * @param rate
+	 *            the number of tokens per second, 0 for no limit
+	 * @param burst
+	 *            the number of tokens the bucket holds
+	 * @param ticker
+	 *            the source of time
+	 */
+	public TokenBucket(final int rate, final int burst, final Ticker ticker) {
+		if (rate < 0 || burst <= 0)
+			throw new IllegalArgumentException("Invalid rate " + rate + " or burst " + burst);
+		this.ticker = ticker;
+		this.nanosPerToken = rate == 0 ? 0 : Math.max(1, NANOS_PER_SECOND / rate);
+		this.capacity = nanosPerToken * burst;
+		// starts full
+		this.fullAt = ticker.read();
+	}
+
+	/**
+	 * @return true when the bucket does not limit the rate
+	 */
+	public boolean isUnlimited() {
+		return nanosPerToken == 0;
+	}
+
+	/**
+	 * Takes a token if one is available
+	 *
+	 * @return true when a token has been taken
+	 */
+	public synchronized boolean tryAcquire() {
+		if (isUnlimited())
+			return true;
+		final long now = ticker.read();
+		// the time the bucket is full again once the token is taken
+		final long next = Math.max(fullAt, now) + nanosPerToken;
+		if (next - now > capacity)
+			return false;
+		fullAt = next;
+		return true;
+	}
+
+	/**
+	 * Takes a token, waits until one is available
+	 *
+	 * @throws InterruptedException
+	 *             when interrupted while waiting
+	 */
+	public void acquire() throws InterruptedException {
+		while (!tryAcquire())
+			TimeUnit.NANOSECONDS.sleep(Math.max(1, delay(TimeUnit.NANOSECONDS)));
+	}
+
+	/**
+	 * @param unit
+	 *            the unit of the result
+	 * @return the time until a token is available, 0 when available now
+	 */
+	public synchronized long delay(final TimeUnit unit) {
+		if (isUnlimited())
+			return 0;
+		final long wait = fullAt - capacity + nanosPerToken - ticker.read();
+		return wait <= 0 ? 0 : unit.convert(wait + unit.toNanos(1) - 1, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @return the number of tokens available now
+	 */
+	public synchronized long available() {
+		if (isUnlimited())
+			return Long.MAX_VALUE;
+		final long now = ticker.read();
+		return (capacity - Math.max(0, fullAt - now)) / nanosPerToken;
+	}
+
+}
@@ -0,0 +1,134 @@
+/**
+ @header@
+ */
+package org.pcmm.concurrent.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * Lock-free allocator of the 16 bits PCMM TransactionIDs of a connection.
+ * </p>
+ * <p>
+ * A cursor walks the identifier space round robin and a bitmap of 65536 bits
+ * marks the identifiers in flight, an identifier is only handed out again
+ * once released. The cursor wraps around and skips the identifiers still
+ * outstanding as well as 0, which is left to mean "not set".
+ * </p>
+ */
+public class TransactionIDAllocator {
+
+	private static final int SIZE = 1 << 16;
+	private static final int MASK = SIZE - 1;
+
+	private final AtomicInteger cursor;
+	private final AtomicLongArray inFlight;
+	private final AtomicInteger count;
+
+	/**
+	 * Starts from a random identifier so a new connection does not reuse the
+	 * identifiers of the previous one first
+	 */
+	public TransactionIDAllocator() {
+		this((short) (Math.random() * SIZE));
+	}
+
+	/**
+	 * @param first
+	 *            the first identifier tried
+	 */
+	public TransactionIDAllocator(final short first) {
+		cursor = new AtomicInteger(first & MASK);
+		inFlight = new AtomicLongArray(SIZE >>> 6);
+		count = new AtomicInteger();
+	}
+
+	/**
+	 * Allocates an identifier not in flight
+	 *
+	 * @return the identifier, never 0
+	 * @throws IllegalStateException
+	 *             when every identifier is in flight
+	 */
+	public short allocate() {
+		for (int attempt = 0; attempt < SIZE; attempt++) {
+			final int id = cursor.getAndIncrement() & MASK;
+			if (id != 0 && acquire(id)) {
+				count.incrementAndGet();
+				return (short) id;
+			}
+		}
+		throw new IllegalStateException("All the TransactionIDs are in flight");
+	}
+
+	/**
+	 * Releases an identifier, it can be allocated again
+	 *
+	 * @param transactionID
+	 *            the identifier
+	 * @return false when the identifier was not in flight
+	 */
+	public boolean release(final short transactionID) {
+		final int id = transactionID & MASK;
+		final int word = id >>> 6;
+		final long bit = 1L << (id & 63);
+		while (true) {
+			final long value = inFlight.get(word);
+			if ((value & bit) == 0)
+				return false;
+			if (inFlight.compareAndSet(word, value, value & ~bit)) {
+				count.decrementAndGet();
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Releases every identifier in flight, e.g. once the connection is
+	 * closed and no report can answer them
+	 *
+	 * @return the number of identifiers released
+	 */
+	public int releaseAll() {
+		int released = 0;
+		for (int word = 0; word < inFlight.length(); word++) {
+			final int bits = Long.bitCount(inFlight.getAndSet(word, 0));
+			if (bits != 0) {
+				count.addAndGet(-bits);
+				released += bits;
+			}
+		}
+		return released;
+	}
+
+	/**
+	 * @param transactionID
+	 *            an identifier
+	 * @return true when the identifier is allocated and not released
+	 */
+	public boolean isInFlight(final short transactionID) {
+		final int id = transactionID & MASK;
+		return (inFlight.get(id >>> 6) & (1L << (id & 63))) != 0;
+	}
+
+	/**
+	 * @return the number of identifiers in flight
+	 */
+	public int inFlight() {
+		return count.get();
+	}
+
+	private boolean acquire(final int id) {
+		final int word = id >>> 6;
+		final long bit = 1L << (id & 63);
+		while (true) {
+			final long value = inFlight.get(word);
+			if ((value & bit) != 0)
+				return false;
+			if (inFlight.compareAndSet(word, value, value | bit))
+				return true;
+		}
+	}
+
+}
@@ -35,9 +35,9 @@ public class Worker implements IWorker {
 	@Override
 	public void run() {
         logger.info("Running");
+		// the wait is applied by the pool scheduling the worker, no thread
+		// sleeps meanwhile
 		try {
-			if (waitTimer > 0)
-				Thread.sleep(waitTimer);
 			task.call();
 		} catch (Throwable e) {
 			logger.error(e.getMessage());
@@ -66,6 +66,13 @@ public class Worker implements IWorker {
 		waitTimer = t;
 	}
 
+	/**
+	 * @return the wait time before the start, in ms
+	 */
+	public int getWaitTimer() {
+		return waitTimer;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
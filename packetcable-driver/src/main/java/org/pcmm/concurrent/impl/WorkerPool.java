@@ -5,23 +5,40 @@ import org.pcmm.concurrent.IWorkerPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Pool to manage PCMM workers
+ *
+ * The workers are run by a scheduled executor, a worker waiting for its start
+ * does not hold a thread. Each worker gets its own PID until it is done, the
+ * workers scheduled with a key run one at a time on the shared threads.
  */
 public class WorkerPool implements IWorkerPool {
 
     private static final Logger logger = LoggerFactory.getLogger(IWorkerPool.class);
 
-	private final Map<Integer, WeakReference<IWorker>> workersMap;
+	private final ConcurrentMap<Integer, Task> workersMap;
 
-	private final ExecutorService executor;
+	private final ScheduledThreadPoolExecutor executor;
+
+	/**
+	 * workers of a key waiting or running, guarded by itself
+	 */
+	private final Map<Object, Serial> serials;
+
+	private final AtomicInteger pids;
 
 	public WorkerPool() {
 		this(DEFAULT_MAX_WORKERS);
@@ -30,20 +47,25 @@ public class WorkerPool implements IWorkerPool {
 	public WorkerPool(final int size) {
 		logger.info("Pool size :" + size);
 		workersMap = new ConcurrentHashMap<>();
-		executor = Executors.newFixedThreadPool(size);
+		executor = new ScheduledThreadPoolExecutor(size, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				// like the reactor and the timer wheel threads
+				final Thread thread = new Thread(runnable, "PCMM-worker-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.setRemoveOnCancelPolicy(true);
+		serials = new HashMap<>();
+		pids = new AtomicInteger();
 	}
 
 	@Override
 	public int schedule(final IWorker worker, final int t) {
-		if (worker == null)
-			return -1;
-		logger.debug("woker[" + worker + "] added, starts in " + t + " ms");
-        final WeakReference<IWorker> workerRef = new WeakReference<>(worker);
-        final int ref = workerRef.hashCode();
-		workersMap.put(ref, new WeakReference<>(worker));
-		worker.shouldWait(t);
-		executor.execute(worker);
-		return ref;
+		return schedule(null, worker, t);
 	}
 
 	@Override
@@ -51,54 +73,53 @@ public class WorkerPool implements IWorkerPool {
 		return schedule(worker, 0);
 	}
 
+	@Override
+	public int schedule(final Object key, final IWorker worker, final int t) {
+		if (worker == null)
+			return -1;
+		logger.debug("woker[" + worker + "] added, starts in " + t + " ms");
+		int pid;
+		do {
+			pid = pids.incrementAndGet() & Integer.MAX_VALUE;
+		} while (pid == 0 || workersMap.containsKey(pid));
+		final Task task = new Task(pid, key, worker);
+		workersMap.put(pid, task);
+		worker.shouldWait(t);
+		if (key != null && t <= 0)
+			// queued at once so the workers of a key keep the order of the calls
+			task.run();
+		else
+			task.future = executor.schedule(task, Math.max(0, t), TimeUnit.MILLISECONDS);
+		return pid;
+	}
+
 	@Override
 	public void sendKillSignal(int pid) {
         logger.info("Sending kill signal to pid - " + pid);
-		if (workersMap.size() > 0) {
-			WeakReference<IWorker> weakRef = workersMap.get(pid);
-			if (weakRef != null) {
-				IWorker ref = weakRef.get();
-				if (ref != null)
-					ref.done();
-				if (!weakRef.isEnqueued()) {
-					weakRef.clear();
-					weakRef.enqueue();
-				}
-			}
-		}
-
+		final Task task = workersMap.remove(pid);
+		if (task != null)
+			task.kill();
 	}
 
 	@Override
 	public void killAll() {
         logger.info("Killing all workers");
-		for (WeakReference<IWorker> weakRef : workersMap.values()) {
-			IWorker ref = weakRef.get();
-			if (ref != null)
-				ref.done();
-			if (!weakRef.isEnqueued()) {
-				weakRef.clear();
-				weakRef.enqueue();
-			}
-		}
+		for (final Integer pid : workersMap.keySet())
+			sendKillSignal(pid);
 		recycle();
 	}
 
 	@Override
 	public void recycle() {
         logger.info("Recycling all workers");
-        for (final Map.Entry<Integer, WeakReference<IWorker>> entry : workersMap.entrySet()) {
-			WeakReference<IWorker> weakRef = entry.getValue();
-			IWorker ref = weakRef.get();
-			if (ref == null) {
-				if (!weakRef.isEnqueued()) {
-					weakRef.clear();
-					weakRef.enqueue();
-				}
-				workersMap.remove(entry.getKey());
-			}
-		}
+		executor.purge();
+	}
 
+	/**
+	 * @return the number of workers waiting or running
+	 */
+	public int size() {
+		return workersMap.size();
 	}
 
 	@Override
@@ -130,4 +151,104 @@ public class WorkerPool implements IWorkerPool {
 		return worker;
 	}
 
+	/**
+	 * A scheduled worker
+	 */
+	private final class Task implements Runnable {
+		private final int pid;
+		private final Object key;
+		private final IWorker worker;
+		private volatile ScheduledFuture<?> future;
+		private volatile boolean killed;
+
+		Task(final int pid, final Object key, final IWorker worker) {
+			this.pid = pid;
+			this.key = key;
+			this.worker = worker;
+		}
+
+		/**
+		 * Called when due
+		 */
+		@Override
+		public void run() {
+			if (key == null) {
+				work();
+				return;
+			}
+			synchronized (serials) {
+				Serial serial = serials.get(key);
+				if (serial == null) {
+					serial = new Serial(key);
+					serials.put(key, serial);
+				}
+				serial.add(this);
+			}
+		}
+
+		void work() {
+			if (killed)
+				return;
+			try {
+				worker.run();
+			} catch (RuntimeException e) {
+				logger.error("Worker " + pid + " failed", e);
+			} finally {
+				workersMap.remove(pid, this);
+			}
+		}
+
+		void kill() {
+			killed = true;
+			final ScheduledFuture<?> scheduled = future;
+			if (scheduled != null)
+				scheduled.cancel(false);
+			worker.done();
+		}
+	}
+
+	/**
+	 * Runs the workers of a key one at a time, a worker is run per turn so a
+	 * busy key does not keep a thread
+	 */
+	private final class Serial implements Runnable {
+		private final Object key;
+		private final Queue<Task> tasks;
+		private boolean running;
+
+		Serial(final Object key) {
+			this.key = key;
+			this.tasks = new ArrayDeque<>();
+		}
+
+		/**
+		 * Called holding the lock of the serials
+		 */
+		void add(final Task task) {
+			tasks.add(task);
+			if (!running) {
+				running = true;
+				executor.execute(this);
+			}
+		}
+
+		@Override
+		public void run() {
+			final Task next;
+			synchronized (serials) {
+				next = tasks.poll();
+				if (next == null) {
+					running = false;
+					serials.remove(key);
+					return;
+				}
+			}
+			try {
+				next.work();
+			} finally {
+				executor.execute(this);
+			}
+		}
+	}
+
 }
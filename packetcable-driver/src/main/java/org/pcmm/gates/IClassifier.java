@@ -61,6 +61,28 @@ public interface IClassifier extends IPCMMBaseObject {
 
     void setDestinationIPAddress(InetAddress address);
 
+    /**
+     * @param address
+     *            the 4 bytes of the destination address
+     */
+    void setDestinationIPAddress(byte[] address);
+
+    /**
+     * @param address
+     *            the IPv4 destination address, most significant byte first
+     */
+    void setDestinationIPAddress(int address);
+
+    /**
+     * @return the bytes of the destination address
+     */
+    byte[] getDestinationAddress();
+
+    /**
+     * @return the IPv4 destination address, most significant byte first
+     */
+    int getDestinationIPv4();
+
     short getDestinationPort();
 
     void setDestinationPort(short p);
@@ -76,6 +98,28 @@ public interface IClassifier extends IPCMMBaseObject {
 
     void setSourceIPAddress(InetAddress a);
 
+    /**
+     * @param address
+     *            the 4 bytes of the source address
+     */
+    void setSourceIPAddress(byte[] address);
+
+    /**
+     * @param address
+     *            the IPv4 source address, most significant byte first
+     */
+    void setSourceIPAddress(int address);
+
+    /**
+     * @return the bytes of the source address
+     */
+    byte[] getSourceAddress();
+
+    /**
+     * @return the IPv4 source address, most significant byte first
+     */
+    int getSourceIPv4();
+
     short getSourcePort();
 
     void setSourcePort(short p);
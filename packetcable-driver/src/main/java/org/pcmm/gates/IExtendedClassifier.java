@@ -17,6 +17,18 @@ public interface IExtendedClassifier extends IClassifier {
 
     void setIPDestinationMask(InetAddress m);
 
+    /**
+     * @param mask
+     *            the IPv4 source mask, most significant byte first
+     */
+    void setIPSourceMask(int mask);
+
+    /**
+     * @param mask
+     *            the IPv4 destination mask, most significant byte first
+     */
+    void setIPDestinationMask(int mask);
+
     void setSourcePortStart(short p);
 
     void setSourcePortEnd(short p);
@@ -53,6 +65,16 @@ public interface IExtendedClassifier extends IClassifier {
 
     InetAddress getIPDestinationMask();
 
+    /**
+     * @return the IPv4 source mask, most significant byte first
+     */
+    int getIPSourceMaskIPv4();
+
+    /**
+     * @return the IPv4 destination mask, most significant byte first
+     */
+    int getIPDestinationMaskIPv4();
+
     short getSourcePortStart();
 
     short getSourcePortEnd();
@@ -5,6 +5,7 @@
 
 package org.pcmm.gates;
 
+import java.nio.ByteBuffer;
 
 /**
  * <p>
@@ -136,6 +137,20 @@ public interface IPCMMGate {
      * @return cops data
      */
     byte[] getData();
+
+    /**
+     * @return the length of the encoded gate objects
+     */
+    int getDataLength();
+
+    /**
+     * Encodes the gate objects at the current position of the buffer
+     *
+     * @param buf
+     *            a buffer with at least {@link #getDataLength()} bytes
+     *            remaining
+     */
+    void writeTo(ByteBuffer buf);
     // Event Generation Info (optional)
     // Time-Based Usage Limit (optional)
     // Volume-Based Usage Limit (optional)
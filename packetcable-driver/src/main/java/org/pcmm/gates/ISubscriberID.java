@@ -36,6 +36,8 @@ public interface ISubscriberID extends IPCMMBaseObject {
     static final short LENGTH = 8;
     static final byte SNUM = 3;
     static final byte STYPE = 1;
+    static final short IPV6_LENGTH = 20;
+    static final byte IPV6_STYPE = 2;
 
     /**
      * source IP address for the PCMM gate.
@@ -46,4 +48,29 @@ public interface ISubscriberID extends IPCMMBaseObject {
 
     void setSourceIPAddress(InetAddress address);
 
+    /**
+     * @param address
+     *            the 4 bytes of an IPv4 or the 16 bytes of an IPv6 address,
+     *            the S-Type follows the address family
+     */
+    void setSourceIPAddress(byte[] address);
+
+    /**
+     * @param address
+     *            an IPv4 address, most significant byte first
+     */
+    void setSourceIPAddress(int address);
+
+    /**
+     * @return the 4 or 16 bytes of the address
+     */
+    byte[] getSourceAddress();
+
+    /**
+     * @return the IPv4 address, most significant byte first
+     * @throws IllegalStateException
+     *             when the address is an IPv6 address
+     */
+    int getSourceIPv4();
+
 }
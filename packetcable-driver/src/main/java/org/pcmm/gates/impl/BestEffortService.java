@@ -7,8 +7,8 @@ import org.pcmm.base.impl.PCMMBaseObject;
 import org.pcmm.gates.ITrafficProfile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.umu.cops.stack.COPSData;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
@@ -61,11 +61,11 @@ public class BestEffortService extends PCMMBaseObject implements
         logger.info("Constructing new BestEffortService with bytes - " + Arrays.toString(bytes));
 
         byte e = getEnvelop();
-		authorizedEnvelop = new BEEnvelop(headPadding(offset, Arrays.copyOfRange(bytes, 8, LENGTH)));
+		authorizedEnvelop = new BEEnvelop(bytes, 8);
 		if (e > 1) {
-			reservedEnvelop = new BEEnvelop(headPadding(offset, Arrays.copyOfRange(bytes, LENGTH, 80)));
+			reservedEnvelop = new BEEnvelop(bytes, LENGTH);
 			if (e == 7)
-				committedEnvelop = new BEEnvelop(headPadding(offset, Arrays.copyOfRange(bytes, 80, 116)));
+				committedEnvelop = new BEEnvelop(bytes, 80);
 		}
 	}
 
@@ -73,11 +73,8 @@ public class BestEffortService extends PCMMBaseObject implements
 	public void setEnvelop(byte e) {
         logger.info("Setting envelope with byte - " + e);
 
-        setLength((short) (e == 1 ? LENGTH : (e == 7 ? 116 : 80)));
 		// reset cops data to fit the new length
-		byte[] array = new byte[getLength() - offset];
-		Arrays.fill(array, (byte) 0);
-		setData(new COPSData(array, 0, array.length));
+		allocate((e == 1 ? LENGTH : (e == 7 ? 116 : 80)) - offset);
 		setByte(e, (short) 0);
 	}
 
@@ -101,22 +98,25 @@ public class BestEffortService extends PCMMBaseObject implements
 
 	@Override
 	public byte[] getAsBinaryArray() {
-		byte[] returnBuffer = super.getAsBinaryArray();
+		fillEnvelops();
+		return super.getAsBinaryArray();
+	}
 
-		{// fill buffer with the Authorized Envelop
-			byte[] authEnv = Arrays.copyOfRange(getAuthorizedEnvelop().getAsBinaryArray(), offset, BEEnvelop.LENGHT);
-			// offset + 4 since the Envelop data begin from byte nb 8
-			System.arraycopy(authEnv, 0, returnBuffer, offset + 4, authEnv.length);
-		}
-		if (getReservedEnvelop() != null) {
-			byte[] reservedEnv = Arrays.copyOfRange(getReservedEnvelop().getAsBinaryArray(), offset, BEEnvelop.LENGHT);
-			System.arraycopy(reservedEnv, 0, returnBuffer, LENGTH, reservedEnv.length);
-		}
-		if (getCommittedEnvelop() != null) {
-			byte[] commitEnv = Arrays.copyOfRange(getCommittedEnvelop().getAsBinaryArray(), offset, BEEnvelop.LENGHT);
-			System.arraycopy(commitEnv, 0, returnBuffer, LENGTH + 36, commitEnv.length);
-		}
-		return returnBuffer;
+	@Override
+	public void writeTo(ByteBuffer buf) {
+		fillEnvelops();
+		super.writeTo(buf);
+	}
+
+	/**
+	 * copies the envelops in the data, the Envelop data begin from byte nb 8
+	 */
+	private void fillEnvelops() {
+		setBytes(getAuthorizedEnvelop(), (short) 0, BEEnvelop.LENGHT - offset, (short) 4);
+		if (getReservedEnvelop() != null)
+			setBytes(getReservedEnvelop(), (short) 0, BEEnvelop.LENGHT - offset, (short) (LENGTH - offset));
+		if (getCommittedEnvelop() != null)
+			setBytes(getCommittedEnvelop(), (short) 0, BEEnvelop.LENGHT - offset, (short) (LENGTH + 36 - offset));
 	}
 
 	/**
@@ -138,6 +138,17 @@ public class BestEffortService extends PCMMBaseObject implements
 			super(buffer);
 		}
 
+		/**
+		 * @param bytes
+		 *            the Best Effort Service object
+		 * @param from
+		 *            position of the envelop data in the object
+		 */
+		protected BEEnvelop(byte[] bytes, int from) {
+			super(LENGHT, (byte) 0, (byte) 0);
+			setBytes(bytes, from, LENGHT - offset, (short) 0);
+		}
+
 		public void setTrafficPriority(byte p) {
 			setByte(p, (short) 0);
 		}
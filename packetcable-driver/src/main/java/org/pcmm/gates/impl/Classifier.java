@@ -9,6 +9,7 @@ import java.net.UnknownHostException;
 
 import org.pcmm.base.impl.PCMMBaseObject;
 import org.pcmm.gates.IClassifier;
+import org.pcmm.utils.IPAddressCodec;
 
 /**
  *
@@ -60,7 +61,49 @@ public class Classifier extends PCMMBaseObject implements IClassifier {
      */
     @Override
     public void setDestinationIPAddress(InetAddress address) {
-        setBytes(address.getAddress(), (short) 8);
+        setDestinationIPAddress(address.getAddress());
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.pcmm.gates.IClassifier#setDestinationIPAddress(byte[])
+     */
+    @Override
+    public void setDestinationIPAddress(byte[] address) {
+        if (address.length != IPAddressCodec.IPV4_LENGTH)
+            throw new IllegalArgumentException("Not an IPv4 address, length " + address.length);
+        setBytes(address, (short) 8);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.pcmm.gates.IClassifier#setDestinationIPAddress(int)
+     */
+    @Override
+    public void setDestinationIPAddress(int address) {
+        setInt(address, (short) 8);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.pcmm.gates.IClassifier#getDestinationAddress()
+     */
+    @Override
+    public byte[] getDestinationAddress() {
+        return getBytes((short) 8, (short) 4);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.pcmm.gates.IClassifier#getDestinationIPv4()
+     */
+    @Override
+    public int getDestinationIPv4() {
+        return getInt((short) 8);
     }
 
     /*
@@ -104,7 +147,49 @@ public class Classifier extends PCMMBaseObject implements IClassifier {
      */
     @Override
     public void setSourceIPAddress(InetAddress a) {
-        setBytes(a.getAddress(), (short) 4);
+        setSourceIPAddress(a.getAddress());
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.pcmm.gates.IClassifier#setSourceIPAddress(byte[])
+     */
+    @Override
+    public void setSourceIPAddress(byte[] address) {
+        if (address.length != IPAddressCodec.IPV4_LENGTH)
+            throw new IllegalArgumentException("Not an IPv4 address, length " + address.length);
+        setBytes(address, (short) 4);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.pcmm.gates.IClassifier#setSourceIPAddress(int)
+     */
+    @Override
+    public void setSourceIPAddress(int address) {
+        setInt(address, (short) 4);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.pcmm.gates.IClassifier#getSourceAddress()
+     */
+    @Override
+    public byte[] getSourceAddress() {
+        return getBytes((short) 4, (short) 4);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.pcmm.gates.IClassifier#getSourceIPv4()
+     */
+    @Override
+    public int getSourceIPv4() {
+        return getInt((short) 4);
     }
 
     /*
@@ -155,7 +240,7 @@ public class Classifier extends PCMMBaseObject implements IClassifier {
      */
     @Override
     public byte getPriority() {
-        return getBytes((short) 16, (short) 1)[0];
+        return getByte((short) 16);
     }
 
     /*
@@ -165,28 +250,28 @@ public class Classifier extends PCMMBaseObject implements IClassifier {
      */
     @Override
     public void setPriority(byte p) {
-        setBytes(new byte[] { p }, (short) 16);
+        setByte(p, (short) 16);
     }
 
     @Override
     public byte getDSCPTOS() {
-        return getBytes((short) 2, (short) 1)[0];
+        return getByte((short) 2);
     }
 
     @Override
     public void setDSCPTOS(byte v) {
-        setBytes(new byte[] { v }, (short) 2);
+        setByte(v, (short) 2);
 
     }
 
     @Override
     public byte getDSCPTOSMask() {
-        return getBytes((short) 3, (short) 1)[0];
+        return getByte((short) 3);
     }
 
     @Override
     public void setDSCPTOSMask(byte v) {
-        setBytes(new byte[] { v }, (short) 3);
+        setByte(v, (short) 3);
 
     }
 
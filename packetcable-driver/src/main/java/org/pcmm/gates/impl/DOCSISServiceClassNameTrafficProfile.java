@@ -61,7 +61,7 @@ public class DOCSISServiceClassNameTrafficProfile extends PCMMBaseObject
      */
     @Override
     public byte getEnvelop() {
-        return getBytes((short) 0, (short) 1)[0];
+        return getByte((short) 0);
     }
 
     /*
@@ -71,6 +71,6 @@ public class DOCSISServiceClassNameTrafficProfile extends PCMMBaseObject
      */
     @Override
     public void setEnvelop(byte en) {
-        setBytes(new byte[] { en }, (short) 0);
+        setByte(en, (short) 0);
     }
 }
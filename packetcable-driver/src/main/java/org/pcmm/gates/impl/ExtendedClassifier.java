@@ -8,6 +8,7 @@ import java.net.UnknownHostException;
 
 import org.pcmm.base.impl.PCMMBaseObject;
 import org.pcmm.gates.IExtendedClassifier;
+import org.pcmm.utils.IPAddressCodec;
 
 /**
  *
@@ -58,7 +59,49 @@ public class ExtendedClassifier extends PCMMBaseObject implements
      */
     @Override
     public void setDestinationIPAddress(InetAddress address) {
-        setBytes(address.getAddress(), (short) 12);
+        setDestinationIPAddress(address.getAddress());
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.pcmm.gates.IClassifier#setDestinationIPAddress(byte[])
+     */
+    @Override
+    public void setDestinationIPAddress(byte[] address) {
+        if (address.length != IPAddressCodec.IPV4_LENGTH)
+            throw new IllegalArgumentException("Not an IPv4 address, length " + address.length);
+        setBytes(address, (short) 12);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.pcmm.gates.IClassifier#setDestinationIPAddress(int)
+     */
+    @Override
+    public void setDestinationIPAddress(int address) {
+        setInt(address, (short) 12);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.pcmm.gates.IClassifier#getDestinationAddress()
+     */
+    @Override
+    public byte[] getDestinationAddress() {
+        return getBytes((short) 12, (short) 4);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.pcmm.gates.IClassifier#getDestinationIPv4()
+     */
+    @Override
+    public int getDestinationIPv4() {
+        return getInt((short) 12);
     }
 
     /*
@@ -103,7 +146,49 @@ public class ExtendedClassifier extends PCMMBaseObject implements
      */
     @Override
     public void setSourceIPAddress(InetAddress a) {
-        setBytes(a.getAddress(), (short) 4);
+        setSourceIPAddress(a.getAddress());
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.pcmm.gates.IClassifier#setSourceIPAddress(byte[])
+     */
+    @Override
+    public void setSourceIPAddress(byte[] address) {
+        if (address.length != IPAddressCodec.IPV4_LENGTH)
+            throw new IllegalArgumentException("Not an IPv4 address, length " + address.length);
+        setBytes(address, (short) 4);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.pcmm.gates.IClassifier#setSourceIPAddress(int)
+     */
+    @Override
+    public void setSourceIPAddress(int address) {
+        setInt(address, (short) 4);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.pcmm.gates.IClassifier#getSourceAddress()
+     */
+    @Override
+    public byte[] getSourceAddress() {
+        return getBytes((short) 4, (short) 4);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.pcmm.gates.IClassifier#getSourceIPv4()
+     */
+    @Override
+    public int getSourceIPv4() {
+        return getInt((short) 4);
     }
 
     /*
@@ -192,6 +277,26 @@ public class ExtendedClassifier extends PCMMBaseObject implements
         setBytes(a.getAddress(), (short) 8);
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.pcmm.gates.IExtendedClassifier#setIPSourceMask(int)
+     */
+    @Override
+    public void setIPSourceMask(int mask) {
+        setInt(mask, (short) 8);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.pcmm.gates.IExtendedClassifier#getIPSourceMaskIPv4()
+     */
+    @Override
+    public int getIPSourceMaskIPv4() {
+        return getInt((short) 8);
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -219,6 +324,26 @@ public class ExtendedClassifier extends PCMMBaseObject implements
         setBytes(m.getAddress(), (short) 16);
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.pcmm.gates.IExtendedClassifier#setIPDestinationMask(int)
+     */
+    @Override
+    public void setIPDestinationMask(int mask) {
+        setInt(mask, (short) 16);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.pcmm.gates.IExtendedClassifier#getIPDestinationMaskIPv4()
+     */
+    @Override
+    public int getIPDestinationMaskIPv4() {
+        return getInt((short) 16);
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -0,0 +1,273 @@
+/**
+ @header@
+ */
+package org.pcmm.gates.impl;
+
+import org.pcmm.gates.IGateID;
+import org.pcmm.gates.IPCMMError;
+import org.pcmm.gates.ITransactionID;
+import org.umu.cops.stack.COPSClientSI;
+import org.umu.cops.stack.COPSData;
+import org.umu.cops.stack.COPSObjHeader;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Read-only flyweight over the PCMM objects of a received Gate report
+ * (Gate-Set-Ack, Gate-Delete-Ack, Gate-Info-Ack, ... or their error
+ * counterpart). Nothing is copied, the view only records where the
+ * TransactionID, GateID, PCMMError and GateState objects start within the
+ * wrapped buffer the first time one of them is accessed and decodes the
+ * requested field straight from the bytes.
+ * </p>
+ * <p>
+ * A view can be re-used for any number of reports by calling one of the wrap
+ * methods again, it is not thread safe and must not outlive the wrapped
+ * buffer.
+ * </p>
+ */
+public class GateReportView {
+
+    private static final int NONE = -1;
+
+    /**
+     * COPS common header length
+     */
+    private static final int COPS_HEADER_LENGTH = 8;
+
+    /**
+     * COPS object header and PCMM object header length
+     */
+    private static final int OBJ_HEADER_LENGTH = 4;
+
+    /**
+     * GateState object, State (2 bytes) and Reason (2 bytes)
+     */
+    private static final byte GATE_STATE_SNUM = 15;
+    private static final int GATE_STATE_LENGTH = 8;
+
+    private byte[] data;
+    private int offset;
+    private int length;
+
+    private boolean scanned;
+    private int transactionIDPos;
+    private int gateIDPos;
+    private int errorPos;
+    private int gateStatePos;
+
+    public GateReportView() {
+        reset(null, 0, 0);
+    }
+
+    /**
+     * Wraps the PCMM objects carried by a ClientSI
+     * @param data - the buffer holding the PCMM objects
+     * @param offset - position of the first PCMM object
+     * @param length - number of bytes of PCMM objects
+     * @return this view
+     */
+    public GateReportView wrap(final byte[] data, final int offset, final int length) {
+        if (data == null || offset < 0 || length < 0 || offset + length > data.length)
+            throw new IllegalArgumentException("Invalid report bounds");
+        reset(data, offset, length);
+        return this;
+    }
+
+    /**
+     * Wraps the PCMM objects carried by a ClientSI
+     * @param clientSI - the ClientSI of a received report
+     * @return this view
+     */
+    public GateReportView wrap(final COPSClientSI clientSI) {
+        final COPSData csiData = clientSI.getData();
+        return wrap(csiData.getData(), 0, csiData.length());
+    }
+
+    /**
+     * Wraps the first Named ClientSI of a raw COPS Report frame, the frame is
+     * never parsed into a COPSReportMsg
+     * @param frame - the buffer holding the COPS message
+     * @param offset - position of the COPS common header
+     * @param length - length of the COPS message
+     * @return this view or null when the report carries no ClientSI
+     */
+    public GateReportView wrapReport(final byte[] frame, final int offset, final int length) {
+        if (frame == null || offset < 0 || length < COPS_HEADER_LENGTH || offset + length > frame.length)
+            throw new IllegalArgumentException("Invalid report bounds");
+        final int end = offset + length;
+        int pos = offset + COPS_HEADER_LENGTH;
+        while (pos + OBJ_HEADER_LENGTH <= end) {
+            final int objLen = readUnsignedShort(frame, pos);
+            if (objLen < OBJ_HEADER_LENGTH || pos + objLen > end)
+                break;
+            if (frame[pos + 2] == COPSObjHeader.COPS_CSI)
+                return wrap(frame, pos + OBJ_HEADER_LENGTH, objLen - OBJ_HEADER_LENGTH);
+            // COPS objects are aligned on 32 bits
+            pos += (objLen + 3) & ~3;
+        }
+        return null;
+    }
+
+    /**
+     * @return true when the report carries a TransactionID
+     */
+    public boolean hasTransactionID() {
+        scan();
+        return transactionIDPos != NONE;
+    }
+
+    /**
+     * @return the transaction identifier or 0 when absent
+     */
+    public short getTransactionIdentifier() {
+        return hasTransactionID() ? readShort(transactionIDPos) : 0;
+    }
+
+    /**
+     * @return the gate command type or 0 when absent
+     */
+    public short getGateCommandType() {
+        return hasTransactionID() ? readShort(transactionIDPos + 2) : 0;
+    }
+
+    /**
+     * @return true when the report carries a GateID
+     */
+    public boolean hasGateID() {
+        scan();
+        return gateIDPos != NONE;
+    }
+
+    /**
+     * @return the gate identifier or 0 when absent
+     */
+    public int getGateID() {
+        if (!hasGateID())
+            return 0;
+        return ((data[gateIDPos] & 0xFF) << 24) | ((data[gateIDPos + 1] & 0xFF) << 16)
+                | ((data[gateIDPos + 2] & 0xFF) << 8) | (data[gateIDPos + 3] & 0xFF);
+    }
+
+    /**
+     * @return true when the report carries a PCMMError
+     */
+    public boolean hasError() {
+        scan();
+        return errorPos != NONE;
+    }
+
+    /**
+     * @return the error code or 0 when absent
+     */
+    public short getErrorCode() {
+        return hasError() ? readShort(errorPos) : 0;
+    }
+
+    /**
+     * @return the error sub-code or 0 when absent
+     */
+    public short getErrorSubcode() {
+        return hasError() ? readShort(errorPos + 2) : 0;
+    }
+
+    /**
+     * @return the State of the GateState object, e.g. {@link GateResult#STATE_IDLE_CLOSED}, or 0 when absent
+     */
+    public short getGateState() {
+        scan();
+        return gateStatePos != NONE ? readShort(gateStatePos) : 0;
+    }
+
+    /**
+     * Copies the wrapped PCMM objects, only meant for the reports carrying a
+     * complete gate
+     * @return a new byte[]
+     */
+    public byte[] copyData() {
+        return Arrays.copyOfRange(data, offset, offset + length);
+    }
+
+    /**
+     * Materializes the error, only meant for the error path
+     * @return a new PCMMError or null when absent
+     */
+    public IPCMMError getError() {
+        return hasError() ? new PCMMError(getErrorCode(), getErrorSubcode()) : null;
+    }
+
+    @Override
+    public String toString() {
+        if (!hasTransactionID())
+            return "GateReportView: no TransactionID";
+        final StringBuilder sb = new StringBuilder("GateReportView: TransactionID=")
+                .append(getTransactionIdentifier())
+                .append(" command=").append(getGateCommandType());
+        if (hasGateID())
+            sb.append(" GateID=").append(getGateID());
+        if (hasError())
+            sb.append(" error=").append(getErrorCode()).append('/')
+                    .append(Integer.toHexString(getErrorSubcode() & 0xFFFF));
+        return sb.toString();
+    }
+
+    private void reset(final byte[] data, final int offset, final int length) {
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+        scanned = false;
+        transactionIDPos = NONE;
+        gateIDPos = NONE;
+        errorPos = NONE;
+        gateStatePos = NONE;
+    }
+
+    /**
+     * Single pass over the PCMM object headers, only positions are recorded
+     */
+    private void scan() {
+        if (scanned)
+            return;
+        scanned = true;
+        final int end = offset + length;
+        int pos = offset;
+        while (pos + OBJ_HEADER_LENGTH <= end) {
+            final int objLen = readUnsignedShort(data, pos);
+            if (objLen < OBJ_HEADER_LENGTH || pos + objLen > end)
+                break;
+            final byte sNum = data[pos + 2];
+            final int body = pos + OBJ_HEADER_LENGTH;
+            switch (sNum) {
+            case ITransactionID.SNUM:
+                if (objLen >= ITransactionID.LENGTH)
+                    transactionIDPos = body;
+                break;
+            case IGateID.SNUM:
+                if (objLen >= IGateID.LENGTH)
+                    gateIDPos = body;
+                break;
+            case IPCMMError.SNUM:
+                if (objLen >= IPCMMError.LENGTH)
+                    errorPos = body;
+                break;
+            case GATE_STATE_SNUM:
+                if (objLen >= GATE_STATE_LENGTH)
+                    gateStatePos = body;
+                break;
+            default:
+                break;
+            }
+            pos += objLen;
+        }
+    }
+
+    private short readShort(final int pos) {
+        return (short) (((data[pos] & 0xFF) << 8) | (data[pos + 1] & 0xFF));
+    }
+
+    private static int readUnsignedShort(final byte[] buf, final int pos) {
+        return ((buf[pos] & 0xFF) << 8) | (buf[pos + 1] & 0xFF);
+    }
+
+}
@@ -0,0 +1,147 @@
+/**
+ @header@
+ */
+package org.pcmm.gates.impl;
+
+import org.pcmm.gates.IPCMMError;
+import org.pcmm.gates.IPCMMGate;
+import org.pcmm.gates.ITransactionID;
+
+/**
+ * <p>
+ * Outcome of a gate command sent to a CMTS, built from the Gate report the
+ * CMTS answered with. The identifiers are always decoded, the complete gate
+ * is only parsed for the responses carrying gate state (Gate-Info-Ack and
+ * Synch-Report).
+ * </p>
+ */
+public class GateResult {
+
+    /**
+     * State of a GateState object reported for a gate the CMTS has closed
+     */
+    public static final short STATE_IDLE_CLOSED = 1;
+
+    private final short transactionID;
+    private final short commandType;
+    private final int gateID;
+    private final IPCMMError error;
+    private final IPCMMGate gate;
+    private final short gateState;
+
+    /**
+     * @param transactionID
+     *            the transaction identifier of the command
+     * @param commandType
+     *            the gate command type of the response
+     * @param gateID
+     *            the gate identifier or 0 when absent
+     * @param error
+     *            the error returned by the CMTS or null
+     * @param gate
+     *            the complete gate or null when not parsed
+     */
+    public GateResult(final short transactionID, final short commandType, final int gateID,
+            final IPCMMError error, final IPCMMGate gate) {
+        this(transactionID, commandType, gateID, error, gate, (short) 0);
+    }
+
+    /**
+     * @param transactionID
+     *            the transaction identifier of the command
+     * @param commandType
+     *            the gate command type of the response
+     * @param gateID
+     *            the gate identifier or 0 when absent
+     * @param error
+     *            the error returned by the CMTS or null
+     * @param gate
+     *            the complete gate or null when not parsed
+     * @param gateState
+     *            the State of the GateState object or 0 when absent
+     */
+    public GateResult(final short transactionID, final short commandType, final int gateID,
+            final IPCMMError error, final IPCMMGate gate, final short gateState) {
+        this.gateState = gateState;
+        this.transactionID = transactionID;
+        this.commandType = commandType;
+        this.gateID = gateID;
+        this.error = error;
+        this.gate = gate;
+    }
+
+    /**
+     * Builds the result of a report, the view must wrap the report ClientSI
+     *
+     * @param view
+     *            the decoded report, its data is only copied and parsed for
+     *            Gate-Info-Ack and Synch-Report
+     * @return the result
+     */
+    public static GateResult fromReport(final GateReportView view) {
+        final short commandType = view.getGateCommandType();
+        final IPCMMGate gate;
+        if (!view.hasError()
+                && (commandType == ITransactionID.GateInfoAck || commandType == ITransactionID.SynchReport))
+            gate = new PCMMGateReq(view.copyData());
+        else
+            gate = null;
+        return new GateResult(view.getTransactionIdentifier(), commandType, view.getGateID(), view.getError(), gate,
+                view.getGateState());
+    }
+
+    public short getTransactionID() {
+        return transactionID;
+    }
+
+    public short getCommandType() {
+        return commandType;
+    }
+
+    public int getGateID() {
+        return gateID;
+    }
+
+    /**
+     * @return the error returned by the CMTS or null
+     */
+    public IPCMMError getError() {
+        return error;
+    }
+
+    /**
+     * @return true when the CMTS did not return an error
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * @return the complete gate or null when not parsed
+     */
+    public IPCMMGate getGate() {
+        return gate;
+    }
+
+    /**
+     * @return the State of the GateState object or 0 when absent
+     */
+    public short getGateState() {
+        return gateState;
+    }
+
+    /**
+     * @return true when the CMTS reported the gate Idle/Closed, it no
+     *         longer exists on the CMTS
+     */
+    public boolean isClosed() {
+        return gateState == STATE_IDLE_CLOSED;
+    }
+
+    @Override
+    public String toString() {
+        return "GateResult: TransactionID=" + transactionID + " command=" + commandType + " GateID=" + gateID
+                + (error != null ? " error=" + error : "");
+    }
+
+}
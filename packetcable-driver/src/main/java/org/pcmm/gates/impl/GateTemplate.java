@@ -0,0 +1,217 @@
+/**
+ @header@
+ */
+package org.pcmm.gates.impl;
+
+import org.pcmm.gates.IClassifier;
+import org.pcmm.gates.IGateID;
+import org.pcmm.gates.IPCMMGate;
+import org.pcmm.gates.ISubscriberID;
+import org.pcmm.gates.ITransactionID;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * Pre-encoded gate used to produce many Gate-Sets sharing the same AMID,
+ * GateSpec and Traffic Profile. The gate is encoded once when the template is
+ * built and the position of the variable objects (TransactionID, GateID,
+ * SubscriberID and Classifier) is recorded, producing a gate is then a copy
+ * of the template followed by a few stores at these positions.
+ * </p>
+ * <p>
+ * The template is immutable and may be shared between threads, the patched
+ * objects must keep the length they had in the template gate.
+ * </p>
+ */
+public class GateTemplate {
+
+    private static final int HEADER_LENGTH = 4;
+
+    private final byte[] image;
+    private final int transactionIDPos;
+    private final int gateIDPos;
+    private final int subscriberIDPos;
+    private final int subscriberIDLength;
+    private final int classifierPos;
+    private final int classifierLength;
+
+    /**
+     * @param gate
+     *            the template gate, its TransactionID is mandatory and its
+     *            variable objects are only placeholders
+     */
+    public GateTemplate(final IPCMMGate gate) {
+        if (gate.getTransactionID() == null)
+            throw new IllegalArgumentException("The template gate must have a TransactionID");
+        image = gate.getData();
+        int transactionID = -1;
+        int gateID = -1;
+        int subscriberID = -1;
+        int subscriberIDLen = 0;
+        int classifier = -1;
+        int classifierLen = 0;
+        int offset = 0;
+        while (offset + HEADER_LENGTH <= image.length) {
+            final int len = ((image[offset] & 0xFF) << 8) | (image[offset + 1] & 0xFF);
+            if (len < HEADER_LENGTH)
+                throw new IllegalArgumentException("Invalid object length " + len + " at " + offset);
+            switch (image[offset + 2]) {
+            case ITransactionID.SNUM:
+                transactionID = offset;
+                break;
+            case IGateID.SNUM:
+                gateID = offset;
+                break;
+            case ISubscriberID.SNUM:
+                subscriberID = offset;
+                subscriberIDLen = len - HEADER_LENGTH;
+                break;
+            case IClassifier.SNUM:
+                classifier = offset;
+                classifierLen = len;
+                break;
+            default:
+                break;
+            }
+            // objects are padded to 32 bits
+            offset += (len + 3) & ~3;
+        }
+        transactionIDPos = transactionID;
+        gateIDPos = gateID;
+        subscriberIDPos = subscriberID;
+        subscriberIDLength = subscriberIDLen;
+        classifierPos = classifier;
+        classifierLength = classifierLen;
+    }
+
+    /**
+     * @return the length of the encoded gates
+     */
+    public int getDataLength() {
+        return image.length;
+    }
+
+    /**
+     * @return true when the gates carry a GateID
+     */
+    public boolean hasGateID() {
+        return gateIDPos >= 0;
+    }
+
+    /**
+     * @param subscriberID
+     *            the subscriber address
+     * @param classifier
+     *            the classifier
+     * @return true when both can be patched in the template, i.e. they keep
+     *         the length of the template objects
+     */
+    public boolean accepts(final byte[] subscriberID, final IClassifier classifier) {
+        return subscriberIDPos >= 0 && subscriberID.length == subscriberIDLength && classifierPos >= 0
+                && classifier.getLength() == classifierLength;
+    }
+
+    /**
+     * Copies the template at the current position of the buffer
+     *
+     * @param buf
+     *            a buffer with at least {@link #getDataLength()} bytes
+     *            remaining
+     * @return the position of the gate in the buffer, used to patch it
+     */
+    public int writeTo(final ByteBuffer buf) {
+        final int start = buf.position();
+        buf.put(image);
+        return start;
+    }
+
+    /**
+     * Builds the data of a gate
+     *
+     * @param transactionID
+     *            the transaction identifier
+     * @param subscriberID
+     *            the subscriber address, null to keep the template one
+     * @param classifier
+     *            the classifier, null to keep the template one
+     * @return the gate data
+     */
+    public byte[] getData(final short transactionID, final byte[] subscriberID, final IClassifier classifier) {
+        final ByteBuffer buf = ByteBuffer.allocate(image.length);
+        writeTo(buf);
+        setTransactionID(buf, 0, transactionID);
+        if (subscriberID != null)
+            setSubscriberID(buf, 0, subscriberID);
+        if (classifier != null)
+            setClassifier(buf, 0, classifier);
+        return buf.array();
+    }
+
+    /**
+     * @param buf
+     *            the buffer holding the gate
+     * @param start
+     *            the position of the gate in the buffer
+     * @param transactionID
+     *            the transaction identifier
+     */
+    public void setTransactionID(final ByteBuffer buf, final int start, final short transactionID) {
+        buf.putShort(start + transactionIDPos + HEADER_LENGTH, transactionID);
+    }
+
+    /**
+     * @param buf
+     *            the buffer holding the gate
+     * @param start
+     *            the position of the gate in the buffer
+     * @param gateID
+     *            the gate identifier
+     */
+    public void setGateID(final ByteBuffer buf, final int start, final int gateID) {
+        if (gateIDPos < 0)
+            throw new IllegalStateException("The template gate has no GateID");
+        buf.putInt(start + gateIDPos + HEADER_LENGTH, gateID);
+    }
+
+    /**
+     * @param buf
+     *            the buffer holding the gate
+     * @param start
+     *            the position of the gate in the buffer
+     * @param address
+     *            the subscriber address, of the template address length
+     */
+    public void setSubscriberID(final ByteBuffer buf, final int start, final byte[] address) {
+        if (subscriberIDPos < 0)
+            throw new IllegalStateException("The template gate has no SubscriberID");
+        if (address.length != subscriberIDLength)
+            throw new IllegalArgumentException("Subscriber address of " + address.length + " bytes, expected "
+                    + subscriberIDLength);
+        final int position = buf.position();
+        buf.position(start + subscriberIDPos + HEADER_LENGTH);
+        buf.put(address);
+        buf.position(position);
+    }
+
+    /**
+     * @param buf
+     *            the buffer holding the gate
+     * @param start
+     *            the position of the gate in the buffer
+     * @param classifier
+     *            the classifier, of the template classifier type
+     */
+    public void setClassifier(final ByteBuffer buf, final int start, final IClassifier classifier) {
+        if (classifierPos < 0)
+            throw new IllegalStateException("The template gate has no Classifier");
+        if (classifier.getLength() != classifierLength)
+            throw new IllegalArgumentException("Classifier of " + classifier.getLength() + " bytes, expected "
+                    + classifierLength);
+        final int position = buf.position();
+        buf.position(start + classifierPos);
+        classifier.writeTo(buf);
+        buf.position(position);
+    }
+
+}
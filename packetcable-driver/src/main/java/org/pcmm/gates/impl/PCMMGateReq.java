@@ -8,6 +8,7 @@ import org.pcmm.gates.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
@@ -230,38 +231,36 @@ public class PCMMGateReq implements IPCMMGate {
 
     @Override
     public byte[] getData() {
-        logger.info("Retrieving data");
-        byte[] array = new byte[0];
-        if (getTransactionID() != null) {
-            array = fill(array, getTransactionID());
-        }
-        if (getGateID() != null) {
-            array = fill(array, getGateID());
-        }
-        if (getAMID() != null) {
-            array = fill(array, getAMID());
-
-        }
-        if (getSubscriberID() != null) {
-            array = fill(array, getSubscriberID());
-        }
-        if (getGateSpec() != null) {
-            array = fill(array, getGateSpec());
-        }
-        if (getTrafficProfile() != null) {
-            array = fill(array, getTrafficProfile());
-        }
-        if (getClassifier() != null) {
-            array = fill(array, getClassifier());
-        }
+        logger.debug("Retrieving data");
+        final byte[] array = new byte[getDataLength()];
+        writeTo(ByteBuffer.wrap(array));
         return array;
     }
 
-    private byte[] fill(byte[] array, IPCMMBaseObject obj) {
-        byte[] a = obj.getAsBinaryArray();
-        int offset = array.length;
-        array = Arrays.copyOf(array, offset + a.length);
-        System.arraycopy(a, 0, array, offset, a.length);
-        return array;
+    @Override
+    public int getDataLength() {
+        return length(getTransactionID()) + length(getGateID()) + length(getAMID()) + length(getSubscriberID())
+                + length(getGateSpec()) + length(getTrafficProfile()) + length(getClassifier());
+    }
+
+    @Override
+    public void writeTo(final ByteBuffer buf) {
+        write(buf, getTransactionID());
+        write(buf, getGateID());
+        write(buf, getAMID());
+        write(buf, getSubscriberID());
+        write(buf, getGateSpec());
+        write(buf, getTrafficProfile());
+        write(buf, getClassifier());
+    }
+
+    private static int length(final IPCMMBaseObject obj) {
+        return obj != null ? obj.getLength() : 0;
+    }
+
+    private static void write(final ByteBuffer buf, final IPCMMBaseObject obj) {
+        if (obj != null) {
+            obj.writeTo(buf);
+        }
     }
 }
@@ -3,12 +3,12 @@
  */
 package org.pcmm.gates.impl;
 
-import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 
 import org.pcmm.base.impl.PCMMBaseObject;
 import org.pcmm.gates.ISubscriberID;
+import org.pcmm.utils.IPAddressCodec;
 
 /**
  *
@@ -46,7 +46,7 @@ public class SubscriberID extends PCMMBaseObject implements ISubscriberID {
     @Override
     public InetAddress getSourceIPAddress() {
         try {
-            return Inet4Address.getByAddress(getBytes((short) 0, (short) 4));
+            return InetAddress.getByAddress(getSourceAddress());
         } catch (UnknownHostException e) {
             return null;
         }
@@ -60,7 +60,63 @@ public class SubscriberID extends PCMMBaseObject implements ISubscriberID {
      */
     @Override
     public void setSourceIPAddress(InetAddress address) {
-        setBytes(address.getAddress(), (short) 0);
+        setSourceIPAddress(address.getAddress());
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.pcmm.gates.ISubscriberID#setSourceIPAddress(byte[])
+     */
+    @Override
+    public void setSourceIPAddress(byte[] address) {
+        if (address.length == IPAddressCodec.IPV6_LENGTH) {
+            if (getSType() != IPV6_STYPE) {
+                setSType(IPV6_STYPE);
+                allocate(IPV6_LENGTH - offset);
+            }
+        } else if (address.length == IPAddressCodec.IPV4_LENGTH) {
+            if (getSType() != STYPE) {
+                setSType(STYPE);
+                allocate(LENGTH - offset);
+            }
+        } else {
+            throw new IllegalArgumentException("Invalid address length " + address.length);
+        }
+        setBytes(address, (short) 0);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.pcmm.gates.ISubscriberID#setSourceIPAddress(int)
+     */
+    @Override
+    public void setSourceIPAddress(int address) {
+        setSourceIPAddress(IPAddressCodec.toBytes(address));
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.pcmm.gates.ISubscriberID#getSourceAddress()
+     */
+    @Override
+    public byte[] getSourceAddress() {
+        return getBytes((short) 0, (short) (getSType() == IPV6_STYPE ? IPAddressCodec.IPV6_LENGTH
+                : IPAddressCodec.IPV4_LENGTH));
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.pcmm.gates.ISubscriberID#getSourceIPv4()
+     */
+    @Override
+    public int getSourceIPv4() {
+        if (getSType() == IPV6_STYPE)
+            throw new IllegalStateException("The subscriber address is an IPv6 address");
+        return getInt((short) 0);
     }
 
 }
@@ -1,35 +1,58 @@
 /**
- * 
+ *
  */
 package org.pcmm.nio;
 
+import com.google.common.base.Predicate;
 import org.pcmm.PCMMProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.umu.cops.stack.COPSException;
-import org.umu.cops.stack.COPSHeader;
+import org.umu.cops.stack.COPSFrameListener;
 import org.umu.cops.stack.COPSMsg;
-import org.umu.cops.stack.COPSMsgParser;
+import org.umu.cops.stack.COPSMsgListener;
+import org.umu.cops.stack.COPSReactor;
+import org.umu.cops.stack.COPSTransceiver;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.Socket;
-import java.util.Date;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * this class provides a set of utilities to efficiently read/write data from a
  * stream, it could parameterized with a reading timeout or -1 for blocking
- * until get a message
- * 
+ * until get a message.
+ *
+ * When created with a {@link COPSReactor} the socket is switched to
+ * non-blocking mode and read by the reactor thread, the framed messages are
+ * queued until {@link #receiveMessage()} is called. Keep-alive messages are
+ * connection level traffic, they are only handed to the registered
+ * {@link COPSMsgListener}s and never queued. A {@link FrameFilter} can
+ * consume frames before they are even parsed.
+ *
  */
-public class PCMMChannel {
+public class PCMMChannel implements COPSFrameListener {
 
 	private static final Logger logger = LoggerFactory.getLogger(PCMMChannel.class);
 
-    // TODO - What is the ByteBuffer used for. It isn't doing anything here
-//	private final ByteBuffer dataBuffer;
+	/**
+	 * marks the end of the inbound queue once the channel has been closed
+	 */
+	private static final Object CLOSED = new Object();
+
 	private final Socket socket;
 	private final int timeout;
+	private final COPSReactor reactor;
+	private final BlockingQueue<Object> inbound;
+	private final List<COPSMsgListener> listeners;
+	private volatile Predicate<? super COPSMsg> inboundFilter;
+	private volatile FrameFilter frameFilter;
 	public static final int DEFAULT_BYTE_BUFFER_SIZE = 2048;
 	public static final int DEFAULT_READ_TIMEOUT = -1;
 
@@ -38,35 +61,55 @@ public class PCMMChannel {
 	}
 
 	public PCMMChannel(final Socket socket, final int timeout) {
+		this(socket, timeout, null);
+	}
+
+	/**
+	 * @param socket
+	 *            the connected socket, it must have a channel when a reactor
+	 *            is provided
+	 * @param timeout
+	 *            read timeout in milliseconds, -1 to block
+	 * @param reactor
+	 *            the reactor reading the socket or null for blocking reads
+	 */
+	public PCMMChannel(final Socket socket, final int timeout, final COPSReactor reactor) {
 		this.socket = socket;
-//        dataBuffer = ByteBuffer.allocateDirect(DEFAULT_BYTE_BUFFER_SIZE);
-		logger.info("Allocated byte buffer with size = "
-				+ DEFAULT_BYTE_BUFFER_SIZE);
 		this.timeout = timeout;
+		this.reactor = reactor;
+		this.inbound = new LinkedBlockingQueue<>();
+		this.listeners = new CopyOnWriteArrayList<>();
 		logger.info("Set read/write timeout to : " + timeout);
-
+		try {
+			if (reactor != null) {
+				final SocketChannel channel = socket.getChannel();
+				if (channel == null) {
+					throw new IllegalArgumentException("Socket has no channel, it cannot be registered with a reactor");
+				}
+				reactor.register(channel, this);
+			} else if (timeout > 0) {
+				socket.setSoTimeout(timeout);
+			}
+		} catch (IOException e) {
+			logger.error("Unable to setup channel for " + socket, e);
+		}
 	}
 
 	public int readData(final byte[] dataRead, final int nchar) throws IOException {
-        final InputStream input = getSocket().getInputStream();
-        int nread = 0;
-        int startTime = (int) (new Date().getTime());
-		do {
-			if (timeout == -1 || input.available() != 0) {
-				nread += input.read(dataRead, nread, nchar - nread);
-				startTime = (int) (new Date().getTime());
-			} else {
-				int nowTime = (int) (new Date().getTime());
-				if ((nowTime - startTime) > timeout)
-					break;
-			}
-		} while (nread != nchar);
+		final InputStream input = getSocket().getInputStream();
+		int nread = 0;
+		while (nread < nchar) {
+			final int count = input.read(dataRead, nread, nchar - nread);
+			if (count < 0)
+				break;
+			nread += count;
+		}
 		return nread;
 	}
 
 	/**
 	 * Method sendMsg
-	 * 
+	 *
 	 * @param msg
 	 *            a COPSMsg
 	 * @throws IOException
@@ -74,8 +117,7 @@ public class PCMMChannel {
 	 */
 	public void sendMsg(final COPSMsg msg) throws IOException, COPSException {
 		logger.debug("sendMsg({})==>{}", getSocket(), msg);
-		msg.checkSanity();
-		msg.writeData(getSocket());
+		COPSTransceiver.sendMsg(msg, getSocket());
 	}
 
 	/**
@@ -85,34 +127,126 @@ public class PCMMChannel {
 	 * @throws COPSException
 	 */
 	public COPSMsg receiveMessage() throws IOException, COPSException {
-		byte[] hBuf = new byte[8];
-
 		logger.debug("receiveMessage({})", getSocket());
+		if (reactor == null) {
+			return COPSTransceiver.receiveMsg(getSocket());
+		}
 
-		int nread = readData(hBuf, 8);
-
-		if (nread == 0) {
+		final Object next;
+		try {
+			if (timeout > 0)
+				next = inbound.poll(timeout, TimeUnit.MILLISECONDS);
+			else
+				next = inbound.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new COPSException("Interrupted while waiting for a COPS message");
+		}
+		if (next == null) {
+			throw new COPSException("Timed out waiting for a COPS message");
+		}
+		if (next == CLOSED) {
+			// leave the marker for any other reader
+			inbound.offer(CLOSED);
 			throw new COPSException("Error reading connection");
 		}
+		return (COPSMsg) next;
+	}
 
-		if (nread != 8) {
-			throw new COPSException("Bad COPS message");
-		}
+	/**
+	 * Registers a listener notified of every message received on this
+	 * channel, only used when the channel is driven by a reactor
+	 *
+	 * @param listener
+	 *            a COPSMsgListener
+	 */
+	public void addListener(final COPSMsgListener listener) {
+		listeners.add(listener);
+	}
 
-        final COPSHeader hdr = new COPSHeader(hBuf);
-        final int dataLen = hdr.getMsgLength() - hdr.getHdrLength();
-		logger.debug("COPS Msg length :[" + dataLen + "]\n");
-        final byte[] buf = new byte[dataLen + 1];
+	/**
+	 * Method removeListener
+	 *
+	 * @param listener
+	 *            a COPSMsgListener
+	 */
+	public void removeListener(final COPSMsgListener listener) {
+		listeners.remove(listener);
+	}
 
-		nread = readData(buf, dataLen);
-		buf[dataLen] = (byte) '\0';
-		logger.debug("Data read length:[" + nread + "]\n");
+	/**
+	 * Sets the filter consuming inbound messages before they are queued, the
+	 * messages it accepts are never returned by {@link #receiveMessage()}.
+	 * Only used when the channel is driven by a reactor, the filter is called
+	 * from the reactor thread.
+	 *
+	 * @param filter
+	 *            the filter or null to queue all the messages
+	 */
+	public void setInboundFilter(final Predicate<? super COPSMsg> filter) {
+		this.inboundFilter = filter;
+	}
+
+	/**
+	 * Sets the filter consuming raw inbound frames before they are parsed,
+	 * the frames it accepts are neither queued nor handed to the listeners
+	 * but the {@link COPSFrameListener}s still see them. Only used when the
+	 * channel is driven by a reactor, the filter is called from the reactor
+	 * thread.
+	 *
+	 * @param filter
+	 *            the filter or null to parse all the frames
+	 */
+	public void setFrameFilter(final FrameFilter filter) {
+		this.frameFilter = filter;
+	}
+
+	/**
+	 * @return true when the socket is read by a reactor
+	 */
+	public boolean isReactorDriven() {
+		return reactor != null;
+	}
+
+	@Override
+	public boolean onFrame(final SocketChannel channel, final byte[] frame, final int offset, final int length) {
+		final FrameFilter filter = frameFilter;
+		if (filter == null || !filter.apply(frame, offset, length))
+			return false;
+		for (final COPSMsgListener listener : listeners) {
+			if (listener instanceof COPSFrameListener)
+				((COPSFrameListener) listener).onFrame(channel, frame, offset, length);
+		}
+		return true;
+	}
 
-		if (nread != dataLen) {
-			throw new COPSException("Bad COPS message");
+	@Override
+	public void onMessage(final SocketChannel channel, final COPSMsg msg) {
+		for (final COPSMsgListener listener : listeners) {
+			listener.onMessage(channel, msg);
 		}
-		final COPSMsgParser prser = new COPSMsgParser();
-		return prser.parse(hdr, buf);
+		if (msg.getHeader().isAKeepAlive())
+			return;
+		final Predicate<? super COPSMsg> filter = inboundFilter;
+		if (filter == null || !filter.apply(msg))
+			inbound.offer(msg);
+	}
+
+	@Override
+	public void onClose(final SocketChannel channel, final Exception cause) {
+		logger.info("Channel {} closed", channel);
+		for (final COPSMsgListener listener : listeners) {
+			listener.onClose(channel, cause);
+		}
+		inbound.offer(CLOSED);
+	}
+
+	/**
+	 * Stops reading the socket, the socket itself is left open
+	 */
+	public void close() {
+		if (reactor != null && socket.getChannel() != null)
+			reactor.unregister(socket.getChannel());
 	}
 
 	/**
@@ -122,4 +256,21 @@ public class PCMMChannel {
 		return socket;
 	}
 
+	/**
+	 * Consumes raw COPS frames, called from the reactor thread
+	 */
+	public interface FrameFilter {
+
+		/**
+		 * @param frame
+		 *            the buffer holding the frame, only valid during the call
+		 * @param offset
+		 *            position of the COPS common header
+		 * @param length
+		 *            length of the COPS message
+		 * @return true when the frame has been consumed
+		 */
+		boolean apply(byte[] frame, int offset, int length);
+	}
+
 }
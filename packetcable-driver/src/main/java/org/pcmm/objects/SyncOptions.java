@@ -25,10 +25,14 @@ public class SyncOptions extends PCMMBaseObject {
 		this(STANDARD_REPORT_DATA, FULL_SYNCHRONIZATION);
 	}
 
+	/**
+	 * <Report Type> <reserved> <Synch Type> <reserved>, the positions are
+	 * relative to the data following the object header
+	 */
 	public SyncOptions(byte reportType, byte synchType) {
 		super((short) 8, (byte) 1, (byte) 18);
-		setByte(this.reportType = reportType, (short) 4);
-		setByte(this.synchType = synchType, (short) 6);
+		setByte(this.reportType = reportType, (short) 0);
+		setByte(this.synchType = synchType, (short) 2);
 	}
 
 	/**
@@ -36,8 +40,8 @@ public class SyncOptions extends PCMMBaseObject {
 	 */
 	public SyncOptions(byte[] dataPtr) {
 		super(dataPtr);
-		reportType = getByte((short) 4);
-		synchType = getByte((short) 6);
+		reportType = getByte((short) 0);
+		synchType = getByte((short) 2);
 	}
 
 	/**
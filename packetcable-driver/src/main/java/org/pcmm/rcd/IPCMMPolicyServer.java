@@ -4,6 +4,10 @@
 
 package org.pcmm.rcd;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import org.pcmm.concurrent.impl.AdmissionControl;
+import org.pcmm.gates.IPCMMGate;
+import org.pcmm.gates.impl.GateResult;
 import org.pcmm.objects.MMVersionInfo;
 import org.pcmm.state.IStateful;
 
@@ -149,6 +153,17 @@ public interface IPCMMPolicyServer extends IPCMMServer, IStateful {
 	 */
 	IPSCMTSClient requestCMTSConnection(InetAddress host);
 
+	/**
+	 * establishes COPS connection with the CMTS without blocking, each stage
+	 * of the handshake is bounded by a timeout
+	 * 
+	 * @param host
+	 *            : remote ip address
+	 * @return completed with the connected client or failed when the CMTS
+	 *         could not be reached or refused the connection
+	 */
+	ListenableFuture<IPSCMTSClient> requestCMTSConnectionAsync(InetAddress host);
+
 	/**
 	 * <p>
 	 * In the PacketCable model, the CMTS (PEP) is the one that listens on the
@@ -205,6 +220,89 @@ public interface IPCMMPolicyServer extends IPCMMServer, IStateful {
 		 */
 		boolean gateSynchronize();
 
+		/**
+		 * initiates a Gate-Set with the CMTS without waiting for the
+		 * Gate-Set-Ack, several commands can be in flight on the connection
+		 *
+		 * @return - the result completed by the Gate-Set-Ack or Gate-Set-Err
+		 */
+		ListenableFuture<GateResult> gateSetAsync();
+
+		/**
+		 * initiates a Gate-Set of the given gate without waiting for the
+		 * Gate-Set-Ack, the objects missing from the gate take the default
+		 * values except the SubscriberID, a gate without one is failed. A
+		 * gate carrying a GateID modifies that gate.
+		 *
+		 * @param gate
+		 *            the gate, with its subscriber, classifier and traffic
+		 *            profile
+		 * @param flowID
+		 *            the flow the gate is recorded for in the gate table, 0
+		 *            for none
+		 * @return - the result completed by the Gate-Set-Ack or Gate-Set-Err
+		 */
+		ListenableFuture<GateResult> gateSetAsync(IPCMMGate gate, long flowID);
+
+		/**
+		 * initiates a Gate-Info with the CMTS without waiting for the answer
+		 *
+		 * @return - the result completed by the Gate-Info-Ack or Gate-Info-Err
+		 */
+		ListenableFuture<GateResult> gateInfoAsync();
+
+		/**
+		 * initiates a Gate-Delete with the CMTS without waiting for the answer
+		 *
+		 * @return - the result completed by the Gate-Delete-Ack or
+		 *         Gate-Delete-Err
+		 */
+		ListenableFuture<GateResult> gateDeleteAsync();
+
+		/**
+		 * initiates a Gate-Delete of a gate without waiting for the answer
+		 *
+		 * @param gateID
+		 *            the GateID assigned by the CMTS
+		 * @return - the result completed by the Gate-Delete-Ack or
+		 *         Gate-Delete-Err
+		 */
+		ListenableFuture<GateResult> gateDeleteAsync(int gateID);
+
+		/**
+		 * sends synch request without waiting for the answer, incremental
+		 * when the gates of the CMTS are already known, full otherwise
+		 *
+		 * @return - the result completed by the Synch-Complete once the
+		 *         Synch-Reports have been reconciled with the gate table
+		 */
+		ListenableFuture<GateResult> gateSynchronizeAsync();
+
+		/**
+		 * sends synch request without waiting for the answer
+		 *
+		 * @param synchType
+		 *            {@link org.pcmm.objects.SyncOptions#FULL_SYNCHRONIZATION}
+		 *            or
+		 *            {@link org.pcmm.objects.SyncOptions#INCREMENTAL_SYNCHRONIZATION}
+		 * @return - the result completed by the Synch-Complete once the
+		 *         Synch-Reports have been reconciled with the gate table
+		 */
+		ListenableFuture<GateResult> gateSynchronizeAsync(byte synchType);
+
+		/**
+		 * 
+		 * @return - completed with the cause once the connection with the
+		 *         CMTS is lost, never completed by {@link #disconnect()}
+		 */
+		ListenableFuture<Throwable> connectionLost();
+
+		/**
+		 * @return the counters of the admission control of the gate commands
+		 *         sent to the CMTS, null until connected
+		 */
+		AdmissionControl.Stats getAdmissionStats();
+
 		/**
 		 * Sets the value of the multi-media version info.
 		 * 
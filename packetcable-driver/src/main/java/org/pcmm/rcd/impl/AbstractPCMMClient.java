@@ -9,11 +9,14 @@ import org.pcmm.rcd.IPCMMClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.umu.cops.stack.COPSMsg;
+import org.umu.cops.stack.COPSReactor;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.channels.SocketChannel;
 
 // import org.junit.Assert;
 
@@ -38,7 +41,22 @@ public class AbstractPCMMClient implements IPCMMClient {
 
 	private PCMMChannel channel;
 
+	/**
+	 * reactor reading the socket, null for blocking reads
+	 */
+	private final COPSReactor reactor;
+
 	public AbstractPCMMClient() {
+		this(null);
+	}
+
+	/**
+	 * @param reactor
+	 *            the reactor that will read the client socket or null for
+	 *            blocking reads
+	 */
+	public AbstractPCMMClient(final COPSReactor reactor) {
+		this.reactor = reactor;
 	}
 
 	/*
@@ -95,9 +113,8 @@ public class AbstractPCMMClient implements IPCMMClient {
 	public boolean tryConnect(final InetAddress address, final int port) {
         logger.info("Attempting to connect to " + address + ':' + port);
 
-        // TODO - This does not appear to be connecting to anything. See overloaded method above
 		try {
-			setSocket(new Socket(address, port));
+			setSocket(SocketChannel.open(new InetSocketAddress(address, port)).socket());
 		} catch (IOException e) {
 			logger.error(e.getMessage());
 			return false;
@@ -114,6 +131,8 @@ public class AbstractPCMMClient implements IPCMMClient {
         logger.info("Disconnecting");
 		if (isConnected()) {
 			try {
+				if (channel != null)
+					channel.close();
 				socket.close();
 				channel = null;
 			} catch (IOException e) {
@@ -139,7 +158,15 @@ public class AbstractPCMMClient implements IPCMMClient {
 		if (this.socket != null
 				&& (this.channel == null || !this.channel.getSocket().equals(
 						this.socket)))
-			channel = new PCMMChannel(this.socket);
+			channel = reactor != null && this.socket.getChannel() != null ? new PCMMChannel(this.socket,
+					PCMMChannel.DEFAULT_READ_TIMEOUT, reactor) : new PCMMChannel(this.socket);
+	}
+
+	/**
+	 * @return the channel used to exchange messages with the server
+	 */
+	public PCMMChannel getChannel() {
+		return channel;
 	}
 
 	/*
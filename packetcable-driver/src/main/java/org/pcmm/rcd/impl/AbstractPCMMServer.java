@@ -9,10 +9,14 @@ import org.pcmm.concurrent.IWorkerPool;
 import org.pcmm.concurrent.impl.WorkerPool;
 import org.pcmm.messages.impl.MessageFactory;
 import org.pcmm.rcd.IPCMMServer;
+import org.pcmm.state.IGateTable;
 import org.pcmm.state.IState;
+import org.pcmm.state.IStateful;
+import org.pcmm.state.impl.GateTable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.umu.cops.stack.COPSHeader;
+import org.umu.cops.stack.COPSReactor;
 
 import java.io.IOException;
 import java.net.ServerSocket;
@@ -54,6 +58,11 @@ public abstract class AbstractPCMMServer implements IPCMMServer {
      */
 	protected final IWorkerPool pool;
 
+    /**
+     * Reactor multiplexing the reads of all the PEP connections
+     */
+	protected final COPSReactor reactor;
+
     /**
      * Default constructor who uses the default port number
      */
@@ -71,6 +80,11 @@ public abstract class AbstractPCMMServer implements IPCMMServer {
 		keepAlive = true;
 		int poolSize = PCMMProperties.get(PCMMConstants.PS_POOL_SIZE, Integer.class);
 		pool = new WorkerPool(poolSize);
+		try {
+			reactor = new COPSReactor("PCMM-reactor-" + port);
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to open the COPS reactor", e);
+		}
 	}
 
 	/*
@@ -142,6 +156,7 @@ public abstract class AbstractPCMMServer implements IPCMMServer {
         logger.info("Attempting to stop PCMM server");
 		// set to stop
 		keepAlive = false;
+		reactor.stop();
 		try {
 			if (serverSocket != null) {
 				stopSocket = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort());
@@ -155,14 +170,19 @@ public abstract class AbstractPCMMServer implements IPCMMServer {
     @Override
 	public void recordState() {
         logger.info("Recording state");
-        // TODO - Implement me
+        final IGateTable table = GateTable.getDefault();
+        if (table instanceof IStateful)
+            ((IStateful) table).recordState();
 	}
 
+    /**
+     * The gate table is rebuilt from its journal when first used, see
+     * {@link GateTable#getDefault()}
+     */
     @Override
 	public IState getRecoredState() {
         logger.info("Retrieving the recorded state");
-        // TODO - Implement me
-		return null;
+		return GateTable.getDefault();
 	}
 
 	/*
@@ -0,0 +1,279 @@
+/**
+ @header@
+ */
+package org.pcmm.rcd.impl;
+
+import com.google.common.base.Predicate;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.pcmm.concurrent.IWorkerPool;
+import org.pcmm.gates.impl.PCMMError;
+import org.pcmm.messages.impl.MessageFactory;
+import org.pcmm.nio.PCMMChannel;
+import org.pcmm.objects.MMVersionInfo;
+import org.pcmm.rcd.IPCMMPolicyServer.IPSCMTSClient;
+import org.pcmm.rcd.impl.PCMMPolicyServer.PSCMTSClient;
+import org.pcmm.utils.PCMMException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.umu.cops.COPSTimerWheel;
+import org.umu.cops.COPSTimerWheel.Timeout;
+import org.umu.cops.prpdp.COPSPdpConnection;
+import org.umu.cops.stack.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Opens the COPS connection of the policy server with a CMTS without holding
+ * a thread. The TCP connection is opened by the reactor, the Client-Open of
+ * the CMTS is answered by a Client-Accept and the connection is established
+ * once the CMTS has sent its Request.
+ * </p>
+ * <p>
+ * Each stage is given a time to complete, the handshake fails and the
+ * connection is closed when a stage times out, when the CMTS closes the
+ * connection or sends an unexpected message. The callbacks are made from the
+ * reactor and the timer threads.
+ * </p>
+ */
+class CMTSHandshake implements COPSConnectListener, Predicate<COPSMsg> {
+
+	private final static Logger logger = LoggerFactory.getLogger(CMTSHandshake.class);
+
+	enum Stage {
+		CONNECTING, AWAIT_OPN, AWAIT_REQ, ESTABLISHED, FAILED
+	}
+
+	private final PSCMTSClient client;
+	private final InetSocketAddress address;
+	private final COPSReactor reactor;
+	private final IWorkerPool pool;
+	private final COPSTimerWheel timers;
+	private final long connectTimeout;
+	private final long stageTimeout;
+	private final SettableFuture<IPSCMTSClient> future;
+
+	private Stage stage;
+	private Timeout timeout;
+	private SocketChannel channel;
+	private COPSClientOpenMsg opn;
+	private COPSMsg cat;
+
+	/**
+	 * @param client
+	 *            the client connected
+	 * @param address
+	 *            the CMTS address
+	 * @param reactor
+	 *            the reactor reading the connection
+	 * @param pool
+	 *            runs the keep-alive of the established connection
+	 * @param timers
+	 *            the timer of the stages
+	 * @param connectTimeout
+	 *            the time allowed to the TCP connection (ms)
+	 * @param stageTimeout
+	 *            the time allowed to each COPS message of the handshake (ms)
+	 */
+	CMTSHandshake(final PSCMTSClient client, final InetSocketAddress address, final COPSReactor reactor,
+			final IWorkerPool pool, final COPSTimerWheel timers, final long connectTimeout, final long stageTimeout) {
+		this.client = client;
+		this.address = address;
+		this.reactor = reactor;
+		this.pool = pool;
+		this.timers = timers;
+		this.connectTimeout = connectTimeout;
+		this.stageTimeout = stageTimeout;
+		future = SettableFuture.create();
+	}
+
+	/**
+	 * Starts the handshake
+	 *
+	 * @return completed with the client once the connection is established
+	 */
+	synchronized ListenableFuture<IPSCMTSClient> start() {
+		enter(Stage.CONNECTING, connectTimeout);
+		try {
+			channel = SocketChannel.open();
+			reactor.connect(channel, address, this);
+		} catch (IOException e) {
+			fail(e);
+		}
+		return future;
+	}
+
+	synchronized Stage getStage() {
+		return stage;
+	}
+
+	@Override
+	public synchronized void onConnect(final SocketChannel sc) {
+		if (stage != Stage.CONNECTING)
+			return;
+		logger.debug("Connected to " + address + ", waiting for OPN message from CMTS");
+		// registers the channel with the reactor, the messages are read from
+		// the next selection on and consumed here until established
+		client.setSocket(sc.socket());
+		final PCMMChannel pcmmChannel = client.getChannel();
+		pcmmChannel.setInboundFilter(this);
+		pcmmChannel.addListener(this);
+		enter(Stage.AWAIT_OPN, stageTimeout);
+	}
+
+	@Override
+	public synchronized boolean apply(final COPSMsg msg) {
+		switch (stage) {
+		case AWAIT_OPN:
+			onOpen(msg);
+			return true;
+		case AWAIT_REQ:
+			onRequest(msg);
+			return true;
+		case FAILED:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	@Override
+	public void onMessage(final SocketChannel sc, final COPSMsg msg) {
+	}
+
+	@Override
+	public synchronized void onClose(final SocketChannel sc, final Exception cause) {
+		fail(cause != null ? cause : new COPSException("Connection closed by the CMTS"));
+	}
+
+	private void onOpen(final COPSMsg msg) {
+		if (msg.getHeader().isAClientClose()) {
+			closedByCMTS(msg);
+			return;
+		}
+		if (!(msg instanceof COPSClientOpenMsg)) {
+			fail(new COPSException("Can't understand request"));
+			return;
+		}
+		logger.debug("OPN message received from CMTS " + address);
+		opn = (COPSClientOpenMsg) msg;
+		if (opn.getClientSI() == null) {
+			fail(new COPSException("CMTS shoud have sent MM version info in Client-Open message"));
+			return;
+		}
+		final MMVersionInfo vInfo = new MMVersionInfo(opn.getClientSI().getData().getData());
+		client.setVersionInfo(vInfo);
+		logger.debug("CMTS sent MMVersion info : major:" + vInfo.getMajorVersionNB() + "  minor:"
+				+ vInfo.getMinorVersionNB());
+		if (vInfo.getMajorVersionNB() == vInfo.getMinorVersionNB()) {
+			// the CMTS has exhausted all protocol selection attempts
+			fail(new COPSException("CMTS exhausted all protocol selection attempts"));
+			return;
+		}
+		logger.debug("send CAT to the CMTS ");
+		cat = MessageFactory.getInstance().create(COPSHeader.COPS_OP_CAT, new Properties());
+		try {
+			client.getChannel().sendMsg(cat);
+		} catch (IOException | COPSException e) {
+			fail(e);
+			return;
+		}
+		enter(Stage.AWAIT_REQ, stageTimeout);
+	}
+
+	private void onRequest(final COPSMsg msg) {
+		if (msg.getHeader().isAClientClose()) {
+			closedByCMTS(msg);
+			return;
+		}
+		if (!(msg instanceof COPSReqMsg)) {
+			fail(new COPSException("Can't understand request"));
+			return;
+		}
+		logger.debug("Received REQ message form CMTS " + address);
+		// set the client handle to be used later by the gate commands
+		client.setClientHandle(((COPSReqMsg) msg).getClientHandle().getId().str());
+		if (cat instanceof COPSClientAcceptMsg) {
+			final COPSPdpConnection copsPdpConnection = new COPSPdpConnection(opn.getPepId(), client.getSocket(),
+					null, ((COPSClientAcceptMsg) cat).getKATimer().getTimerVal()) {
+				@Override
+				protected void connectionClosed() {
+					super.connectionClosed();
+					// also called on a keep-alive timeout, which the reactor
+					// does not see
+					client.onConnectionLost(new COPSException("Connection with CMTS " + address + " closed"));
+				}
+			};
+			client.getChannel().addListener(copsPdpConnection);
+			// the work of a CMTS is serialized
+			pool.schedule(address, pool.adapt(copsPdpConnection), 0);
+		} else {
+			logger.error("Message is not of instance COPSClientAcceptMsg");
+		}
+		enter(Stage.ESTABLISHED, 0);
+		final PCMMChannel pcmmChannel = client.getChannel();
+		pcmmChannel.removeListener(this);
+		pcmmChannel.setInboundFilter(client.getTransactions());
+		logger.info("COPS connection with CMTS " + address + " established");
+		future.set(client);
+	}
+
+	private void closedByCMTS(final COPSMsg msg) {
+		if (msg instanceof COPSClientCloseMsg) {
+			final COPSError error = ((COPSClientCloseMsg) msg).getError();
+			logger.debug("CMTS requetsed Client-Close");
+			fail(new PCMMException(new PCMMError(error.getErrCode(), error.getErrSubCode())));
+		} else {
+			fail(new COPSException("Message is not an instance of COPSClientCloseMsg"));
+		}
+	}
+
+	/**
+	 * Moves to a stage and arms its timeout
+	 *
+	 * @param next
+	 *            the stage
+	 * @param delay
+	 *            the time allowed to the stage, 0 for none
+	 */
+	private void enter(final Stage next, final long delay) {
+		stage = next;
+		if (timeout != null)
+			timeout.cancel();
+		timeout = delay > 0 ? timers.schedule(new Runnable() {
+			@Override
+			public void run() {
+				expire(next);
+			}
+		}, delay, TimeUnit.MILLISECONDS) : null;
+	}
+
+	private synchronized void expire(final Stage expired) {
+		if (stage == expired)
+			fail(new COPSException("Timed out in stage " + expired + " of the handshake with CMTS " + address));
+	}
+
+	private void fail(final Throwable cause) {
+		if (stage == Stage.ESTABLISHED || stage == Stage.FAILED)
+			return;
+		logger.error("Unable to connect to CMTS " + address + ": " + cause.getMessage());
+		enter(Stage.FAILED, 0);
+		// no need to keep connection.
+		if (client.getChannel() != null) {
+			client.disconnect();
+		} else if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				logger.error("Unexpected error closing channel", e);
+			}
+		}
+		future.setException(cause);
+	}
+
+}
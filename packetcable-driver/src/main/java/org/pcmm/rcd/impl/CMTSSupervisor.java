@@ -0,0 +1,621 @@
+/**
+ @header@
+ */
+package org.pcmm.rcd.impl;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import org.pcmm.PCMMConstants;
+import org.pcmm.PCMMProperties;
+import org.pcmm.gates.impl.GateResult;
+import org.pcmm.objects.SyncOptions;
+import org.pcmm.rcd.IPCMMPolicyServer;
+import org.pcmm.rcd.IPCMMPolicyServer.IPSCMTSClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.umu.cops.COPSTimerWheel;
+import org.umu.cops.COPSTimerWheel.Timeout;
+import org.umu.cops.stack.COPSException;
+
+import java.net.InetAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * <p>
+ * Keeps the COPS connection with a CMTS up. A lost connection is opened again
+ * after an exponential backoff with jitter, so CMTSs dropping together do not
+ * reconnect together. The handshake of a new connection negotiates the
+ * MMVersionInfo and opens a new request state, an incremental Gate-Synchronize
+ * then brings the gate table up to date.
+ * </p>
+ * <p>
+ * The operations submitted while the connection is down are queued, they are
+ * run in order on the executor once the synchronization has completed. The
+ * queue is bounded and an operation waits at most the gate timeout. Only
+ * a window of them waits for its result at a time, the completion of one
+ * running the next, so a long outage does not overflow the admission queue
+ * of the connection. {@link #submitAll(List)} paces a batch the same way.
+ * </p>
+ * <p>
+ * A CMTS has a single connection per JVM: the component starting the
+ * supervisor owns it, the other components look it up with
+ * {@link #get(InetAddress)}.
+ * </p>
+ */
+public class CMTSSupervisor {
+
+	private final static Logger logger = LoggerFactory.getLogger(CMTSSupervisor.class);
+
+	// ms
+	private static final int DEFAULT_MIN_DELAY = 500;
+	// ms
+	private static final int DEFAULT_MAX_DELAY = 60000;
+	// operations of a drain waiting for their result
+	private static final int DEFAULT_WINDOW = 32;
+	private static final int DEFAULT_MAX_QUEUED = 4096;
+	// ms
+	private static final int DEFAULT_TIMEOUT = 10000;
+
+	/**
+	 * the supervisors started and not closed, by CMTS address
+	 */
+	private static final ConcurrentMap<InetAddress, CMTSSupervisor> supervisors = new ConcurrentHashMap<>();
+
+	private final IPCMMPolicyServer server;
+	private final InetAddress host;
+	private final Executor executor;
+	private final COPSTimerWheel timers;
+	private final long minDelay;
+	private final long maxDelay;
+	private final int window;
+	private final int maxQueued;
+	private final long timeout;
+	private final Random random;
+	private final SettableFuture<IPSCMTSClient> connected;
+	private final Queue<Operation<?>> queued;
+
+	/**
+	 * client ready for the operations, null while reconnecting
+	 */
+	private IPSCMTSClient client;
+	/**
+	 * drain of the queued operations in progress, the operations submitted
+	 * meanwhile queue behind
+	 */
+	private Drain drain;
+	private int attempts;
+	private int reconnects;
+	private boolean closed;
+
+	/**
+	 * @param server
+	 *            the policy server
+	 * @param host
+	 *            the CMTS address
+	 * @param executor
+	 *            runs the operations queued during an outage
+	 */
+	public CMTSSupervisor(final IPCMMPolicyServer server, final InetAddress host, final Executor executor) {
+		this(server, host, executor, COPSTimerWheel.getDefault(),
+				PCMMProperties.get(PCMMConstants.PS_RECONNECT_MIN_DELAY, Integer.class, DEFAULT_MIN_DELAY),
+				PCMMProperties.get(PCMMConstants.PS_RECONNECT_MAX_DELAY, Integer.class, DEFAULT_MAX_DELAY));
+	}
+
+	/**
+	 * @param server
+	 *            the policy server
+	 * @param host
+	 *            the CMTS address
+	 * @param executor
+	 *            runs the operations queued during an outage
+	 * @param timers
+	 *            the timer of the reconnections
+	 * @param minDelay
+	 *            the delay before the first reconnection (ms)
+	 * @param maxDelay
+	 *            the maximum delay between two reconnections (ms)
+	 */
+	public CMTSSupervisor(final IPCMMPolicyServer server, final InetAddress host, final Executor executor,
+			final COPSTimerWheel timers, final long minDelay, final long maxDelay) {
+		this(server, host, executor, timers, minDelay, maxDelay,
+				PCMMProperties.get(PCMMConstants.PS_MAX_INFLIGHT, host, Integer.class, DEFAULT_WINDOW),
+				PCMMProperties.get(PCMMConstants.PS_RECONNECT_MAX_QUEUED, host, Integer.class, DEFAULT_MAX_QUEUED),
+				PCMMProperties.get(PCMMConstants.PS_GATE_TIMEOUT, host, Integer.class, DEFAULT_TIMEOUT));
+	}
+
+	/**
+	 * @param server
+	 *            the policy server
+	 * @param host
+	 *            the CMTS address
+	 * @param executor
+	 *            runs the operations queued during an outage
+	 * @param timers
+	 *            the timer of the reconnections and of the queued operations
+	 * @param minDelay
+	 *            the delay before the first reconnection (ms)
+	 * @param maxDelay
+	 *            the maximum delay between two reconnections (ms)
+	 * @param window
+	 *            the maximum number of queued operations waiting for their
+	 *            result, the next one is run when one completes
+	 * @param maxQueued
+	 *            the maximum number of operations queued while the
+	 *            connection is down, the others are rejected
+	 * @param timeout
+	 *            the time an operation waits for the connection before
+	 *            failing (ms)
+	 */
+	public CMTSSupervisor(final IPCMMPolicyServer server, final InetAddress host, final Executor executor,
+			final COPSTimerWheel timers, final long minDelay, final long maxDelay, final int window,
+			final int maxQueued, final long timeout) {
+		this.server = server;
+		this.host = host;
+		this.executor = executor;
+		this.timers = timers;
+		this.minDelay = Math.max(1, minDelay);
+		this.maxDelay = Math.max(this.minDelay, maxDelay);
+		this.window = Math.max(1, window);
+		this.maxQueued = Math.max(0, maxQueued);
+		this.timeout = Math.max(1, timeout);
+		random = new Random();
+		connected = SettableFuture.create();
+		queued = new ArrayDeque<>();
+	}
+
+	/**
+	 * Opens the first connection, retried until it succeeds
+	 *
+	 * @return completed with the client of the first connection
+	 */
+	public ListenableFuture<IPSCMTSClient> start() {
+		final CMTSSupervisor previous = supervisors.put(host, this);
+		if (previous != null && previous != this)
+			logger.warn("CMTS " + host + " supervised twice, the previous supervisor is no longer shared");
+		connect();
+		return connected;
+	}
+
+	/**
+	 * @param host
+	 *            the CMTS address
+	 * @return the supervisor started for the CMTS or null
+	 */
+	public static CMTSSupervisor get(final InetAddress host) {
+		return supervisors.get(host);
+	}
+
+	/**
+	 * @return the CMTS address
+	 */
+	public InetAddress getHost() {
+		return host;
+	}
+
+	/**
+	 * Runs an operation on the connection, it is queued while the connection
+	 * is down or queued operations are being drained
+	 *
+	 * @param operation
+	 *            sends a command on the connection
+	 * @return the result of the operation, failed with a
+	 *         {@link RejectedExecutionException} when too many operations
+	 *         wait for the connection or with a {@link TimeoutException} when
+	 *         the connection is not back within the timeout
+	 */
+	public <T> ListenableFuture<T> submit(final Function<IPSCMTSClient, ListenableFuture<T>> operation) {
+		final SettableFuture<T> future = SettableFuture.create();
+		final IPSCMTSClient ready;
+		synchronized (this) {
+			if (closed)
+				return Futures.immediateFailedFuture(new COPSException("Supervision of CMTS " + host + " closed"));
+			ready = client;
+			if (ready == null || drain != null) {
+				if (!enqueue(new Operation<>(operation, future)))
+					return Futures.immediateFailedFuture(rejected());
+				return future;
+			}
+		}
+		new Operation<>(operation, future).run(ready);
+		return future;
+	}
+
+	/**
+	 * Runs a batch of operations in order, the next one when the result of a
+	 * previous one is known so that no more than the window of the supervisor
+	 * waits for the CMTS at a time
+	 *
+	 * @param operations
+	 *            send a command on the connection
+	 * @return the results of the operations, in the same order
+	 */
+	public <T> List<ListenableFuture<T>> submitAll(
+			final List<? extends Function<IPSCMTSClient, ListenableFuture<T>>> operations) {
+		final List<ListenableFuture<T>> futures = new ArrayList<>(operations.size());
+		final Drain started;
+		synchronized (this) {
+			if (closed) {
+				for (int i = 0; i < operations.size(); i++)
+					futures.add(Futures.<T> immediateFailedFuture(
+							new COPSException("Supervision of CMTS " + host + " closed")));
+				return futures;
+			}
+			for (final Function<IPSCMTSClient, ListenableFuture<T>> operation : operations) {
+				final SettableFuture<T> future = SettableFuture.create();
+				if (enqueue(new Operation<>(operation, future)))
+					futures.add(future);
+				else
+					futures.add(Futures.<T> immediateFailedFuture(rejected()));
+			}
+			started = startDrain();
+		}
+		if (started != null)
+			executor.execute(started);
+		return futures;
+	}
+
+	/**
+	 * Queues an operation, the queue is bounded while the connection is down
+	 * and an operation then waits at most the timeout. The lock is held.
+	 *
+	 * @return false when the queue is full
+	 */
+	private boolean enqueue(final Operation<?> operation) {
+		if (client == null) {
+			if (queued.size() >= maxQueued)
+				return false;
+			expire(operation);
+		}
+		queued.add(operation);
+		return true;
+	}
+
+	/**
+	 * Fails a queued operation once the timeout elapses, the lock is held
+	 */
+	private void expire(final Operation<?> operation) {
+		if (operation.expiry != null)
+			return;
+		operation.expiry = timers.schedule(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (CMTSSupervisor.this) {
+					if (!queued.remove(operation))
+						return;
+				}
+				operation.future.setException(new TimeoutException("No connection with CMTS " + host + " within "
+						+ timeout + " ms"));
+			}
+		}, timeout, TimeUnit.MILLISECONDS);
+	}
+
+	private RejectedExecutionException rejected() {
+		return new RejectedExecutionException("Too many operations waiting for the connection with CMTS " + host);
+	}
+
+	/**
+	 * @return the client of the current connection or null while
+	 *         reconnecting
+	 */
+	public synchronized IPSCMTSClient getClient() {
+		return client;
+	}
+
+	public synchronized boolean isConnected() {
+		return client != null;
+	}
+
+	/**
+	 * @return the number of operations waiting for the connection
+	 */
+	public synchronized int getQueued() {
+		return queued.size();
+	}
+
+	/**
+	 * @return the number of connections opened again after a loss
+	 */
+	public synchronized int getReconnects() {
+		return reconnects;
+	}
+
+	/**
+	 * Stops the supervision and disconnects, the queued operations fail
+	 */
+	public void close() {
+		final IPSCMTSClient current;
+		final Queue<Operation<?>> dropped;
+		synchronized (this) {
+			if (closed)
+				return;
+			closed = true;
+			current = client;
+			client = null;
+			drain = null;
+			dropped = new ArrayDeque<>(queued);
+			queued.clear();
+		}
+		supervisors.remove(host, this);
+		if (current != null)
+			current.disconnect();
+		connected.setException(new COPSException("Supervision of CMTS " + host + " closed"));
+		for (final Operation<?> operation : dropped) {
+			operation.cancelTimeout();
+			operation.run(null);
+		}
+	}
+
+	private void connect() {
+		synchronized (this) {
+			if (closed)
+				return;
+		}
+		Futures.addCallback(server.requestCMTSConnectionAsync(host), new FutureCallback<IPSCMTSClient>() {
+			@Override
+			public void onSuccess(final IPSCMTSClient newClient) {
+				established(newClient);
+			}
+
+			@Override
+			public void onFailure(final Throwable t) {
+				logger.warn("Unable to connect to CMTS " + host + ": " + t.getMessage());
+				retry();
+			}
+		}, MoreExecutors.directExecutor());
+	}
+
+	private void established(final IPSCMTSClient newClient) {
+		final boolean reconnected;
+		synchronized (this) {
+			if (closed) {
+				newClient.disconnect();
+				return;
+			}
+			attempts = 0;
+			reconnected = connected.isDone();
+			if (reconnected)
+				reconnects++;
+		}
+		Futures.addCallback(newClient.connectionLost(), new FutureCallback<Throwable>() {
+			@Override
+			public void onSuccess(final Throwable cause) {
+				lost(newClient, cause);
+			}
+
+			@Override
+			public void onFailure(final Throwable t) {
+				lost(newClient, t);
+			}
+		}, MoreExecutors.directExecutor());
+		if (!reconnected) {
+			ready(newClient);
+			connected.set(newClient);
+			return;
+		}
+		logger.info("Reconnected to CMTS " + host + ", synchronizing the gates");
+		// the gates changed during the outage, the queued operations wait
+		// for the table to be up to date
+		final ListenableFuture<GateResult> synch = newClient
+				.gateSynchronizeAsync(SyncOptions.INCREMENTAL_SYNCHRONIZATION);
+		synch.addListener(new Runnable() {
+			@Override
+			public void run() {
+				ready(newClient);
+			}
+		}, MoreExecutors.directExecutor());
+	}
+
+	/**
+	 * Hands the connection to the operations, the queued ones are run first in
+	 * the order they were submitted. The operations not run yet when the
+	 * connection is lost wait for the next one, still ahead of those submitted
+	 * meanwhile.
+	 */
+	private void ready(final IPSCMTSClient newClient) {
+		final Drain started;
+		synchronized (this) {
+			if (closed || newClient.connectionLost().isDone())
+				return;
+			client = newClient;
+			started = startDrain();
+		}
+		if (started != null)
+			executor.execute(started);
+	}
+
+	/**
+	 * @return the drain to run on the executor, null when there is nothing to
+	 *         drain or a drain is already in progress
+	 */
+	private Drain startDrain() {
+		if (client == null || drain != null || queued.isEmpty())
+			return null;
+		logger.info("Draining " + queued.size() + " operations queued for CMTS " + host);
+		drain = new Drain(client);
+		drain.running = true;
+		return drain;
+	}
+
+	private void lost(final IPSCMTSClient lostClient, final Throwable cause) {
+		synchronized (this) {
+			if (closed)
+				return;
+			if (client == lostClient) {
+				client = null;
+				drain = null;
+				// the operations left by the drain wait for the next
+				// connection no longer than the others
+				for (final Operation<?> operation : queued)
+					expire(operation);
+			}
+		}
+		logger.warn("Connection with CMTS " + host + " lost: " + (cause != null ? cause.getMessage() : null));
+		lostClient.disconnect();
+		retry();
+	}
+
+	/**
+	 * Schedules the next connection attempt, the delay doubles up to the
+	 * maximum and a random half of it is taken off
+	 */
+	private void retry() {
+		final long delay;
+		synchronized (this) {
+			if (closed)
+				return;
+			final long ceiling = attempts >= 30 ? maxDelay : Math.min(maxDelay, minDelay << attempts);
+			attempts++;
+			delay = ceiling / 2 + (long) (random.nextDouble() * (ceiling - ceiling / 2));
+		}
+		logger.info("Reconnecting to CMTS " + host + " in " + delay + " ms");
+		timers.schedule(new Runnable() {
+			@Override
+			public void run() {
+				connect();
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Runs the queued operations on a connection, up to the window at a time,
+	 * the completion of one of them running the next. Ends when the queue is
+	 * empty, the connection is lost or the supervision is closed.
+	 */
+	private class Drain implements Runnable {
+		private final IPSCMTSClient drained;
+		/**
+		 * operations run and waiting for their result
+		 */
+		private int outstanding;
+		/**
+		 * the drain is running or scheduled on the executor
+		 */
+		private boolean running;
+
+		Drain(final IPSCMTSClient drained) {
+			this.drained = drained;
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				final Operation<?> next;
+				synchronized (CMTSSupervisor.this) {
+					if (drain != this || drained.connectionLost().isDone()) {
+						running = false;
+						return;
+					}
+					if (queued.isEmpty()) {
+						drain = null;
+						running = false;
+						return;
+					}
+					if (outstanding >= window) {
+						// resumed by a completion
+						running = false;
+						return;
+					}
+					next = queued.poll();
+					next.cancelTimeout();
+					outstanding++;
+				}
+				next.future.addListener(new Runnable() {
+					@Override
+					public void run() {
+						completed();
+					}
+				}, MoreExecutors.directExecutor());
+				next.run(drained);
+			}
+		}
+
+		private void completed() {
+			synchronized (CMTSSupervisor.this) {
+				outstanding--;
+				if (running || drain != this)
+					return;
+				running = true;
+			}
+			executor.execute(this);
+		}
+	}
+
+	/**
+	 * An operation and its result
+	 */
+	private static class Operation<T> {
+		private final Function<IPSCMTSClient, ListenableFuture<T>> operation;
+		private final SettableFuture<T> future;
+		/**
+		 * the timeout while waiting for a connection, guarded by the
+		 * supervisor
+		 */
+		private Timeout expiry;
+
+		Operation(final Function<IPSCMTSClient, ListenableFuture<T>> operation, final SettableFuture<T> future) {
+			this.operation = operation;
+			this.future = future;
+		}
+
+		void cancelTimeout() {
+			if (expiry != null)
+				expiry.cancel();
+		}
+
+		/**
+		 * @param client
+		 *            the connection or null when the supervision is closed
+		 */
+		void run(final IPSCMTSClient client) {
+			if (client == null) {
+				future.setException(new COPSException("CMTS supervision closed"));
+				return;
+			}
+			final ListenableFuture<T> result;
+			try {
+				result = operation.apply(client);
+			} catch (final RuntimeException e) {
+				future.setException(e);
+				return;
+			}
+			Futures.addCallback(result, new FutureCallback<T>() {
+				@Override
+				public void onSuccess(final T value) {
+					future.set(value);
+				}
+
+				@Override
+				public void onFailure(final Throwable t) {
+					if (t instanceof CancellationException)
+						future.cancel(false);
+					else
+						future.setException(t);
+				}
+			}, MoreExecutors.directExecutor());
+			// a caller cancelling the operation cancels the command
+			future.addListener(new Runnable() {
+				@Override
+				public void run() {
+					if (future.isCancelled())
+						result.cancel(false);
+				}
+			}, MoreExecutors.directExecutor());
+		}
+	}
+
+}
@@ -0,0 +1,269 @@
+/**
+ @header@
+ */
+package org.pcmm.rcd.impl;
+
+import com.google.common.base.Predicate;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import org.pcmm.gates.ITransactionID;
+import org.pcmm.gates.impl.GateReportView;
+import org.pcmm.gates.impl.GateResult;
+import org.pcmm.nio.PCMMChannel;
+import org.pcmm.state.impl.GateSynchronizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.umu.cops.COPSTimerWheel;
+import org.umu.cops.stack.COPSClientSI;
+import org.umu.cops.stack.COPSHeader;
+import org.umu.cops.stack.COPSMsg;
+import org.umu.cops.stack.COPSReportMsg;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Correlates the Gate reports received from a CMTS with the outstanding gate
+ * commands of a connection using the PCMM TransactionID.
+ * <p>
+ * The number of commands in flight is bounded, {@link #register} never waits
+ * for a slot: a command registered while the table is full is failed at once
+ * with a {@link RejectedExecutionException}, the admission control of the
+ * connection keeps the commands sent below the bound. Each command is failed
+ * with a {@link TimeoutException} when no report has been received in time.
+ * </p>
+ * The table is used as the frame filter of the connection channel, the
+ * reports it matches are decoded straight from the framed bytes by a single
+ * {@link GateReportView}, consumed and never queued for
+ * {@link AbstractPCMMClient#readMessage()}. It is also the inbound filter of
+ * the channel for the reports parsed by a caller pumping a blocking channel.
+ * <p>
+ * A Synch-Request is answered by a stream of Synch-Reports ended by a
+ * Synch-Complete, each report is handed to the {@link GateSynchronizer} of
+ * the command and restarts its timeout, the Synch-Complete completes it.
+ * </p>
+ */
+class GateTransactionTable implements Predicate<COPSMsg>, PCMMChannel.FrameFilter {
+
+	private final static Logger logger = LoggerFactory.getLogger(GateTransactionTable.class);
+
+	private final ConcurrentMap<Short, Pending> pending;
+	private final Semaphore slots;
+	private final long timeout;
+	private final COPSTimerWheel timerWheel;
+	/**
+	 * only used by the reactor thread
+	 */
+	private final GateReportView frameView;
+
+	/**
+	 * @param maxInFlight
+	 *            maximum number of outstanding commands
+	 * @param timeout
+	 *            time to wait for a report (ms)
+	 * @param timerWheel
+	 *            timer used to expire the commands
+	 */
+	GateTransactionTable(final int maxInFlight, final long timeout, final COPSTimerWheel timerWheel) {
+		if (maxInFlight <= 0 || timeout <= 0)
+			throw new IllegalArgumentException("In-flight depth and timeout must be positive");
+		this.pending = new ConcurrentHashMap<>();
+		this.slots = new Semaphore(maxInFlight);
+		this.timeout = timeout;
+		this.timerWheel = timerWheel;
+		this.frameView = new GateReportView();
+	}
+
+	/**
+	 * Registers an outstanding command
+	 *
+	 * @param transactionID
+	 *            the transaction identifier of the command
+	 * @param commandType
+	 *            the gate command type sent
+	 * @return the future completed by the matching report, failed when no
+	 *         slot is free
+	 */
+	SettableFuture<GateResult> register(final short transactionID, final short commandType) {
+		return register(transactionID, commandType, null);
+	}
+
+	/**
+	 * Registers an outstanding Synch-Request
+	 *
+	 * @param transactionID
+	 *            the transaction identifier of the command
+	 * @param commandType
+	 *            the gate command type sent
+	 * @param synchronizer
+	 *            the synchronizer fed with the Synch-Reports or null
+	 * @return the future completed by the Synch-Complete, failed when no slot
+	 *         is free
+	 */
+	SettableFuture<GateResult> register(final short transactionID, final short commandType,
+			final GateSynchronizer synchronizer) {
+		final SettableFuture<GateResult> future = SettableFuture.create();
+		// the caller may be the reactor thread, it must not wait
+		if (!slots.tryAcquire()) {
+			future.setException(new RejectedExecutionException("Too many gate commands in flight"));
+			return future;
+		}
+		final Pending entry = new Pending(transactionID, commandType, future, synchronizer);
+		if (pending.putIfAbsent(transactionID, entry) != null) {
+			slots.release();
+			future.setException(new IllegalStateException("TransactionID " + transactionID + " already in flight"));
+			return future;
+		}
+		entry.expiry = new Runnable() {
+			public void run() {
+				if (release(entry))
+					future.setException(new TimeoutException("No report received for TransactionID " + transactionID));
+			}
+		};
+		entry.timer = timerWheel.schedule(entry.expiry, timeout, TimeUnit.MILLISECONDS);
+		// a command cancelled by the caller frees its slot
+		future.addListener(new Runnable() {
+			public void run() {
+				release(entry);
+			}
+		}, MoreExecutors.directExecutor());
+		return future;
+	}
+
+
+	/**
+	 * @return the number of outstanding commands
+	 */
+	int inFlight() {
+		return pending.size();
+	}
+
+	/**
+	 * Completes the command matching the report frame, called from the
+	 * reactor thread
+	 *
+	 * @return true when the frame has been consumed
+	 */
+	@Override
+	public boolean apply(final byte[] frame, final int offset, final int length) {
+		if (frame[offset + 1] != COPSHeader.COPS_OP_RPT)
+			return false;
+		final GateReportView view = frameView.wrapReport(frame, offset, length);
+		return view != null && complete(view);
+	}
+
+	/**
+	 * Completes the command matching the report, called from a caller
+	 * pumping a blocking channel
+	 *
+	 * @return true when the message has been consumed
+	 */
+	@Override
+	public boolean apply(final COPSMsg msg) {
+		if (!msg.getHeader().isAReport() || !(msg instanceof COPSReportMsg))
+			return false;
+		final COPSReportMsg report = (COPSReportMsg) msg;
+		if (report.getClientSI().isEmpty())
+			return false;
+		final COPSClientSI clientSI = report.getClientSI().get(0);
+		return complete(new GateReportView().wrap(clientSI));
+	}
+
+	/**
+	 * @return true when the report has been consumed
+	 */
+	private boolean complete(final GateReportView view) {
+		if (!view.hasTransactionID())
+			return false;
+		final Pending entry = pending.get(view.getTransactionIdentifier());
+		if (entry == null || !entry.matches(view.getGateCommandType())) {
+			logger.debug("No outstanding gate command for {}", view);
+			return false;
+		}
+		final GateResult result = GateResult.fromReport(view);
+		if (entry.synchronizer != null) {
+			if (result.getCommandType() == ITransactionID.SynchReport) {
+				entry.synchronizer.onReport(result);
+				// the timeout applies to the gap between two reports
+				final COPSTimerWheel.Timeout timer = entry.timer;
+				if (timer != null && timer.cancel())
+					entry.timer = timerWheel.schedule(entry.expiry, timeout, TimeUnit.MILLISECONDS);
+				return true;
+			}
+			if (result.getCommandType() == ITransactionID.SynchComplete && pending.get(entry.transactionID) == entry)
+				entry.synchronizer.complete();
+		}
+		if (release(entry))
+			entry.future.set(result);
+		return true;
+	}
+
+	/**
+	 * Fails all the outstanding commands, called once the connection is lost
+	 *
+	 * @param cause
+	 *            the failure
+	 */
+	void failAll(final Throwable cause) {
+		for (final Pending entry : pending.values()) {
+			if (release(entry))
+				entry.future.setException(cause);
+		}
+	}
+
+	/**
+	 * Removes the entry and frees its slot, only the first caller succeeds
+	 */
+	private boolean release(final Pending entry) {
+		if (!pending.remove(entry.transactionID, entry))
+			return false;
+		if (entry.timer != null)
+			entry.timer.cancel();
+		slots.release();
+		return true;
+	}
+
+	/**
+	 * An outstanding command
+	 */
+	private static class Pending {
+		final short transactionID;
+		final short commandType;
+		final SettableFuture<GateResult> future;
+		final GateSynchronizer synchronizer;
+		Runnable expiry;
+		volatile COPSTimerWheel.Timeout timer;
+
+		Pending(final short transactionID, final short commandType, final SettableFuture<GateResult> future,
+				final GateSynchronizer synchronizer) {
+			this.transactionID = transactionID;
+			this.commandType = commandType;
+			this.future = future;
+			this.synchronizer = synchronizer;
+		}
+
+		/**
+		 * @return true when the reported command answers this one
+		 */
+		boolean matches(final short reported) {
+			switch (commandType) {
+			case ITransactionID.GateSet:
+			case ITransactionID.GateInfo:
+			case ITransactionID.GateDelete:
+				// Ack and Err follow the command
+				return reported == commandType + 1 || reported == commandType + 2
+						|| reported == ITransactionID.GateCmdErr;
+			case ITransactionID.SynchRequest:
+				return reported == ITransactionID.SynchReport || reported == ITransactionID.SynchComplete
+						|| reported == ITransactionID.GateCmdErr;
+			default:
+				return reported == ITransactionID.GateCmdErr;
+			}
+		}
+	}
+
+}
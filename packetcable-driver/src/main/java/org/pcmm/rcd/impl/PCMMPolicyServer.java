@@ -3,29 +3,46 @@
  */
 package org.pcmm.rcd.impl;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import org.pcmm.PCMMConstants;
 import org.pcmm.PCMMGlobalConfig;
 import org.pcmm.PCMMProperties;
+import org.pcmm.concurrent.impl.AdmissionControl;
+import org.pcmm.concurrent.impl.TokenBucket;
+import org.pcmm.concurrent.impl.TransactionIDAllocator;
 import org.pcmm.gates.*;
 import org.pcmm.gates.IGateSpec.DSCPTOS;
 import org.pcmm.gates.IGateSpec.Direction;
 import org.pcmm.gates.impl.*;
 import org.pcmm.messages.IMessage.MessageProperties;
 import org.pcmm.messages.impl.MessageFactory;
-import org.pcmm.objects.MMVersionInfo;
+import org.pcmm.nio.PCMMChannel;
+import org.pcmm.objects.SyncOptions;
 import org.pcmm.rcd.IPCMMPolicyServer;
-import org.pcmm.utils.PCMMException;
+import org.pcmm.state.IGateTable;
+import org.pcmm.state.impl.GateRecord;
+import org.pcmm.state.impl.GateSynchronizer;
+import org.pcmm.state.impl.GateTable;
+import org.pcmm.state.impl.JournaledGateTable;
+import org.pcmm.utils.IPAddressCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.umu.cops.prpdp.COPSPdpConnection;
-import org.umu.cops.prpdp.COPSPdpDataProcess;
+import org.umu.cops.COPSTimerWheel;
 import org.umu.cops.stack.*;
 
-import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * 
@@ -35,6 +52,10 @@ import java.util.Properties;
 public class PCMMPolicyServer extends AbstractPCMMServer implements IPCMMPolicyServer {
 
     private final static Logger logger = LoggerFactory.getLogger(PCMMPolicyServer.class);
+	// ms
+	private static final int DEFAULT_CONNECT_TIMEOUT = 5000;
+	// ms
+	private static final int DEFAULT_HANDSHAKE_TIMEOUT = 10000;
 
 	/**
 	 * since PCMMPolicyServer can connect to multiple CMTS (PEP) we need to
@@ -69,99 +90,32 @@ public class PCMMPolicyServer extends AbstractPCMMServer implements IPCMMPolicyS
 	 * )
 	 */
 	public IPSCMTSClient requestCMTSConnection(final InetAddress host) {
-        logger.info("Requesting CMTS Connection");
-        final PSCMTSClient client = new PSCMTSClient();
 		try {
-			if (client.tryConnect(host, PCMMProperties.get(PCMMConstants.PCMM_PORT, Integer.class))) {
-				boolean endNegotiation = false;
-				while (!endNegotiation) {
-					logger.debug("waiting for OPN message from CMTS");
-                    final COPSMsg opnMessage = client.readMessage();
-					// Client-Close
-					if (opnMessage.getHeader().isAClientClose()) {
-                        if (opnMessage instanceof COPSClientCloseMsg) {
-                            final COPSError error = ((COPSClientCloseMsg) opnMessage).getError();
-                            logger.debug("CMTS requetsed Client-Close");
-                            throw new PCMMException(new PCMMError(error.getErrCode(), error.getErrSubCode()));
-                        } else {
-                            logger.error("Message is not an instance of COPSClientCloseMsg");
-                        }
-					} else if (opnMessage.getHeader().isAClientOpen()) { // Client-Open
-						logger.debug("OPN message received from CMTS");
-                        if (opnMessage instanceof COPSClientOpenMsg) {
-                            final COPSClientOpenMsg opn = (COPSClientOpenMsg) opnMessage;
-                            if (opn.getClientSI() == null)
-                                throw new COPSException("CMTS shoud have sent MM version info in Client-Open message");
-                            else {
-                                // set the version info
-                                final MMVersionInfo vInfo = new MMVersionInfo(opn.getClientSI().getData().getData());
-                                client.setVersionInfo(vInfo);
-                                logger.debug("CMTS sent MMVersion info : major:" + vInfo.getMajorVersionNB() + "  minor:" + vInfo.getMinorVersionNB()); //
-                                if (client.getVersionInfo().getMajorVersionNB() == client.getVersionInfo().getMinorVersionNB()) {
-                                    // send a CC since CMTS has exhausted all
-                                    // protocol selection attempts
-                                    throw new COPSException("CMTS exhausted all protocol selection attempts");
-                                }
-                            }
-                            // send CAT response
-                            final Properties prop = new Properties();
-                            logger.debug("send CAT to the CMTS ");
-                            final COPSMsg catMsg = MessageFactory.getInstance().create(COPSHeader.COPS_OP_CAT, prop);
-                            client.sendRequest(catMsg);
-                            // wait for REQ msg
-                            final COPSMsg reqMsg = client.readMessage();
-                            // Client-Close
-                            if (reqMsg.getHeader().isAClientClose()) {
-                                // This will never occur please see if instanceof above
-                                if (reqMsg instanceof COPSClientCloseMsg) {
-                                    final COPSError error = ((COPSClientCloseMsg) reqMsg).getError();
-                                    logger.debug("CMTS requetsed Client-Close");
-                                    throw new PCMMException(new PCMMError(error.getErrCode(), error.getErrSubCode()));
-                                } else {
-                                    logger.error("Message is not of type COPSClientCloseMsg");
-                                    throw new RuntimeException("Unable process Client close");
-                                }
-                            } else // Request
-                                if (reqMsg.getHeader().isARequest()) {
-                                    logger.debug("Received REQ message form CMTS");
-                                    // end connection attempts
-                                    if (reqMsg instanceof COPSReqMsg) {
-                                        final COPSReqMsg req = (COPSReqMsg) reqMsg;
-                                        // set the client handle to be used later by the
-                                        // gate-set
-                                        client.setClientHandle(req.getClientHandle().getId().str());
-
-                                        if (catMsg instanceof COPSClientAcceptMsg) {
-                                            final COPSPdpDataProcess processor = null;
-                                            final COPSPdpConnection copsPdpConnection =
-                                                    new COPSPdpConnection(opn.getPepId(), client.getSocket(), processor,
-                                                            ((COPSClientAcceptMsg) catMsg).getKATimer().getTimerVal());
-                                            pool.schedule(pool.adapt(copsPdpConnection));
-                                        } else {
-                                            logger.error("Message is not of instance COPSClientAcceptMsg");
-                                        }
-                                    } else {
-                                        logger.error("Message not of type COPSReqMsg");
-                                    }
-                                    endNegotiation = true;
-                                } else
-                                    throw new COPSException("Can't understand request");
-                        } else {
-                            logger.error("Message is not an instance of COPSClientOpenMsg");
-                        }
-					} else {
-						throw new COPSException("Can't understand request");
-					}
-				}
-			}
-			// else raise exception.
-		} catch (final Exception e) {
-			logger.error(e.getMessage());
-			// no need to keep connection.
-			client.disconnect();
-			return null;
+			return requestCMTSConnectionAsync(host).get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.error("Interrupted while connecting to " + host);
+		} catch (final ExecutionException e) {
+			logger.error(e.getCause().getMessage());
 		}
-		return client;
+		return null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.pcmm.rcd.IPCMMPolicyServer#requestCMTSConnectionAsync(java.net.
+	 * InetAddress)
+	 */
+	public ListenableFuture<IPSCMTSClient> requestCMTSConnectionAsync(final InetAddress host) {
+        logger.info("Requesting CMTS Connection to " + host);
+		final InetSocketAddress address = new InetSocketAddress(host,
+				PCMMProperties.get(PCMMConstants.PCMM_PORT, Integer.class));
+		return new CMTSHandshake(new PSCMTSClient(reactor), address, reactor, pool, COPSTimerWheel.getDefault(),
+				PCMMProperties.get(PCMMConstants.PS_CONNECT_TIMEOUT, Integer.class, DEFAULT_CONNECT_TIMEOUT),
+				PCMMProperties.get(PCMMConstants.PS_HANDSHAKE_TIMEOUT, Integer.class, DEFAULT_HANDSHAKE_TIMEOUT))
+				.start();
 	}
 
 	@Override
@@ -176,17 +130,73 @@ public class PCMMPolicyServer extends AbstractPCMMServer implements IPCMMPolicyS
 	 * @see {@link IPSCMTSClient}
 	 */
 	static class PSCMTSClient extends AbstractPCMMClient implements IPSCMTSClient {
+		private static final int DEFAULT_MAX_INFLIGHT = 32;
+		// gate commands per second, 0 for no limit
+		private static final int DEFAULT_RATE_LIMIT = 200;
+		private static final int DEFAULT_RATE_BURST = 50;
+		private static final int DEFAULT_MAX_QUEUED = 4096;
+		// ms
+		private static final int DEFAULT_GATE_TIMEOUT = 10000;
+
 		/**
 		 * Transaction id is
 		 */
 		private transient short transactionID;
 		private final short classifierID;
-		private transient int gateID;
+		private transient volatile int gateID;
+		/**
+		 * source of the transaction IDs of the commands sent
+		 */
+		private final TransactionIDAllocator transactionIDs;
+		/**
+		 * correlates the reports received with the commands in flight
+		 */
+		private final GateTransactionTable transactions;
+		/**
+		 * maximum number of commands in the correlation table
+		 */
+		private final int transactionSlots;
+		/**
+		 * gates acknowledged by the CMTS
+		 */
+		private final IGateTable gateTable;
+		/**
+		 * completed when the connection is lost
+		 */
+		private final SettableFuture<Throwable> lost;
+		private volatile boolean disconnected;
+		/**
+		 * rate and in-flight limits of the commands sent to the CMTS, set
+		 * with the socket
+		 */
+		private volatile TokenBucket rateLimit;
+		private volatile AdmissionControl admission;
+		/**
+		 * encoding of the last Gate-Set sent for a traffic profile, reused
+		 * by the next gates of the same profile
+		 */
+		private volatile ProfileTemplate template;
 
 		public PSCMTSClient() {
-			super();
+			this((COPSReactor) null);
+		}
+
+		/**
+		 * @param reactor
+		 *            the reactor reading the CMTS connection or null for
+		 *            blocking reads
+		 */
+		public PSCMTSClient(final COPSReactor reactor) {
+			super(reactor);
             // TODO - determine how this value should be set
             classifierID = 0;
+			transactionIDs = new TransactionIDAllocator();
+			transactionSlots = PCMMProperties.get(PCMMConstants.PS_MAX_INFLIGHT, Integer.class, DEFAULT_MAX_INFLIGHT);
+			transactions = new GateTransactionTable(transactionSlots,
+					PCMMProperties.get(PCMMConstants.PS_GATE_TIMEOUT, Integer.class, DEFAULT_GATE_TIMEOUT),
+					COPSTimerWheel.getDefault());
+			gateTable = GateTable.getDefault();
+			lost = SettableFuture.create();
 			logger.info("Client " + getClass() + hashCode() + " created and started");
 		}
 
@@ -195,76 +205,193 @@ public class PCMMPolicyServer extends AbstractPCMMServer implements IPCMMPolicyS
 			setSocket(socket);
 		}
 
+		@Override
+		public void setSocket(final Socket socket) {
+			final PCMMChannel previous = getChannel();
+			super.setSocket(socket);
+			final PCMMChannel channel = getChannel();
+			if (channel != null && channel != previous) {
+				configureAdmission(socket.getInetAddress());
+				// the reports answering a command are consumed by the
+				// correlation table, the other messages are still queued
+				channel.setInboundFilter(transactions);
+				channel.setFrameFilter(transactions);
+				channel.addListener(new COPSMsgListener() {
+					@Override
+					public void onMessage(final SocketChannel sc, final COPSMsg msg) {
+					}
+
+					@Override
+					public void onClose(final SocketChannel sc, final Exception cause) {
+						final Exception closed = cause != null ? cause : new COPSException("Connection closed by the CMTS");
+						transactions.failAll(closed);
+						onConnectionLost(closed);
+					}
+				});
+			}
+		}
+
+		/**
+		 * Reads the limits of the CMTS, each limit can be set for a CMTS by
+		 * suffixing its property with the CMTS address, the in-flight depth
+		 * can only be lowered that way
+		 * 
+		 * @param cmts
+		 *            the CMTS address
+		 */
+		private void configureAdmission(final InetAddress cmts) {
+			final AdmissionControl previous = admission;
+			final int maxInFlight = Math.min(transactionSlots,
+					PCMMProperties.get(PCMMConstants.PS_MAX_INFLIGHT, cmts, Integer.class, transactionSlots));
+			rateLimit = new TokenBucket(
+					PCMMProperties.get(PCMMConstants.PS_RATE_LIMIT, cmts, Integer.class, DEFAULT_RATE_LIMIT),
+					PCMMProperties.get(PCMMConstants.PS_RATE_BURST, cmts, Integer.class, DEFAULT_RATE_BURST));
+			admission = new AdmissionControl(rateLimit, maxInFlight,
+					PCMMProperties.get(PCMMConstants.PS_MAX_QUEUED, cmts, Integer.class, DEFAULT_MAX_QUEUED),
+					COPSTimerWheel.getDefault());
+			if (previous != null)
+				previous.flush();
+		}
+
+		@Override
+		public AdmissionControl.Stats getAdmissionStats() {
+			final AdmissionControl admission = this.admission;
+			return admission == null ? null : admission.getStats();
+		}
+
+		/**
+		 * @return the table correlating the reports with the commands in
+		 *         flight, it filters the inbound messages
+		 */
+		GateTransactionTable getTransactions() {
+			return transactions;
+		}
+
+		/**
+		 * Called once the connection with the CMTS is closed, by the CMTS or
+		 * by the keep-alive timeout
+		 *
+		 * @param cause
+		 *            the cause
+		 */
+		void onConnectionLost(final Throwable cause) {
+			if (!disconnected)
+				lost.set(cause);
+			flushAdmission();
+		}
+
+		@Override
+		public ListenableFuture<Throwable> connectionLost() {
+			return lost;
+		}
+
+		@Override
+		public boolean disconnect() {
+			this.disconnected = true;
+			final boolean disconnected = super.disconnect();
+			transactions.failAll(new COPSException("Disconnected from the CMTS"));
+			flushAdmission();
+			return disconnected;
+		}
+
+		/**
+		 * Fails the commands waiting for their admission
+		 */
+		private void flushAdmission() {
+			final AdmissionControl admission = this.admission;
+			if (admission != null)
+				admission.flush();
+		}
+
         @Override
 		public boolean gateSet() {
 			logger.debug("Sending Gate-Set message");
 			if (!isConnected())
 				throw new IllegalArgumentException("Not connected");
+			final GateResult result = await(gateSetAsync());
+			if (result == null)
+				return false;
+			logger.info("the CMTS has sent TransactionID :" + result.getTransactionID());
+			if (result.getCommandType() == ITransactionID.GateSetAck) {
+				logger.info("the CMTS has sent a Gate-Set-Ack response");
+				// here CMTS responded that he acknowledged the Gate-Set
+				// TODO do further check of Gate-Set-Ack GateID etc...
+				gateID = result.getGateID();
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public ListenableFuture<GateResult> gateSetAsync() {
+			if (!isConnected())
+				return Futures.immediateFailedFuture(new IllegalStateException("Not connected"));
 			// XXX check if other values should be provided
 			//
             final ITrafficProfile trafficProfile = buildTrafficProfile();
 			// PCMMGlobalConfig.DefaultBestEffortTrafficRate);
-            final ITransactionID trID = new TransactionID();
-			// set transaction ID to gate set
-			trID.setGateCommandType(ITransactionID.GateSet);
-			transactionID = (transactionID == 0 ? (short) (Math.random() * hashCode()) : transactionID);
-			trID.setTransactionIdentifier(transactionID);
-			// AMID
-            final IAMID amid = getAMID();
-			// GATE SPEC
-            final IGateSpec gateSpec = getGateSpec();
             final ISubscriberID subscriberID = new SubscriberID();
 			// Classifier if MM version <4, Extended Classifier else
             final IClassifier eclassifier = getClassifier(subscriberID);
 
             final IPCMMGate gate = new PCMMGateReq();
-			gate.setTransactionID(trID);
-			gate.setAMID(amid);
 			gate.setSubscriberID(subscriberID);
-			gate.setGateSpec(gateSpec);
 			gate.setTrafficProfile(trafficProfile);
 			gate.setClassifier(eclassifier);
-			byte[] data = gate.getData();
+			return gateSetAsync(gate, 0);
+		}
 
-			// configure message properties
-            final Properties prop = new Properties();
-			prop.put(MessageProperties.CLIENT_HANDLE, getClientHandle());
-			prop.put(MessageProperties.DECISION_CMD_CODE, COPSDecision.DEC_INSTALL);
-			prop.put(MessageProperties.DECISION_FLAG, (short) COPSDecision.DEC_NULL);
-			prop.put(MessageProperties.GATE_CONTROL, new COPSData(data, 0, data.length));
-            final COPSMsg decisionMsg = MessageFactory.getInstance().create(COPSHeader.COPS_OP_DEC, prop);
-			// ** Send the GateSet Decision
-			// **
-			sendRequest(decisionMsg);
-			// TODO check on this ?
-			// waits for the gate-set-ack or error
-            final COPSMsg responseMsg = readMessage();
-			if (responseMsg.getHeader().isAReport()) {
-				logger.info("processing received report from CMTS");
-                final COPSReportMsg reportMsg = (COPSReportMsg) responseMsg;
-				if (reportMsg.getClientSI().size() == 0) {
-					logger.debug("CMTS responded with an empty SI");
-					return false;
-				}
-                final COPSClientSI clientSI = reportMsg.getClientSI().get(0);
-                final IPCMMGate responseGate = new PCMMGateReq(clientSI.getData().getData());
-                final IPCMMError error = responseGate.getError();
-				if (error != null) {
-					logger.error(error.toString());
-					return false;
-				}
-				logger.info("the CMTS has sent TransactionID :"+responseGate.getTransactionID());
-				if (responseGate.getTransactionID() != null && responseGate.getTransactionID().getGateCommandType() == ITransactionID.GateSetAck) {
-					logger.info("the CMTS has sent a Gate-Set-Ack response");
-					// here CMTS responded that he acknowledged the Gate-Set
-					// TODO do further check of Gate-Set-Ack GateID etc...
-					gateID = responseGate.getGateID().getGateID();
-					return true;
-				} else {
-					return false;
-				}
-			}
-			return false;
+		@Override
+		public ListenableFuture<GateResult> gateSetAsync(final IPCMMGate gate, final long flowID) {
+			if (!isConnected())
+				return Futures.immediateFailedFuture(new IllegalStateException("Not connected"));
+			// a gate without its subscriber would be installed and recorded for 0.0.0.0
+			if (gate.getSubscriberID() == null)
+				return Futures.immediateFailedFuture(new IllegalArgumentException("No SubscriberID in the gate"));
+			// only the gates taking the default AMID and GateSpec share the
+			// encoding of their traffic profile
+			final boolean templated = gate.getTrafficProfile() != null && gate.getAMID() == null
+					&& gate.getGateSpec() == null && gate.getGateID() == null;
+            final ITransactionID trID = new TransactionID();
+			// set transaction ID to gate set
+			trID.setGateCommandType(ITransactionID.GateSet);
+			trID.setTransactionIdentifier(nextTransactionID());
+			gate.setTransactionID(trID);
+			if (gate.getAMID() == null)
+				gate.setAMID(getAMID());
+			if (gate.getGateSpec() == null)
+				gate.setGateSpec(getGateSpec());
+			if (gate.getTrafficProfile() == null)
+				gate.setTrafficProfile(buildTrafficProfile());
+			if (gate.getClassifier() == null)
+				gate.setClassifier(getClassifier(gate.getSubscriberID()));
+			return submit(trID, gate, templated ? encode(gate) : gate.getData(), null, flowID);
+		}
+
+		/**
+		 * Encodes a Gate-Set from the template of its traffic profile, a
+		 * bulk of gates sharing the same profile instance only patches the
+		 * TransactionID, SubscriberID and Classifier of the first gate
+		 * encoded
+		 * 
+		 * @param gate
+		 *            the gate with its TransactionID, default AMID and
+		 *            GateSpec
+		 * @return the gate data
+		 */
+		private byte[] encode(final IPCMMGate gate) {
+			final InetAddress address = gate.getSubscriberID().getSourceIPAddress();
+			if (address == null)
+				return gate.getData();
+			final byte[] subscriber = address.getAddress();
+			final short id = gate.getTransactionID().getTransactionIdentifier();
+			final ProfileTemplate last = template;
+			if (last != null && last.profile == gate.getTrafficProfile()
+					&& last.template.accepts(subscriber, gate.getClassifier()))
+				return last.template.getData(id, subscriber, gate.getClassifier());
+			final GateTemplate next = new GateTemplate(gate);
+			template = new ProfileTemplate(gate.getTrafficProfile(), next);
+			return next.getData(id, null, null);
 		}
 
 		@Override
@@ -274,75 +401,29 @@ public class PCMMPolicyServer extends AbstractPCMMServer implements IPCMMPolicyS
 				logger.error("Not connected");
 				return false;
 			}
-            final ITransactionID trID = new TransactionID();
-			// set transaction ID to gate set
-			trID.setGateCommandType(ITransactionID.GateDelete);
-			trID.setTransactionIdentifier(transactionID);
-			// AMID
-            final IAMID amid = getAMID();
-			// GATE SPEC
-            final ISubscriberID subscriberID = new SubscriberID();
-			try {
-				subscriberID.setSourceIPAddress(InetAddress.getLocalHost());
-			} catch (UnknownHostException e1) {
-				logger.error(e1.getMessage());
-			}
-
-            final IGateID gateIdObj = new GateID();
-			gateIdObj.setGateID(gateID);
-
-            final IPCMMGate gate = new PCMMGateReq();
-			gate.setTransactionID(trID);
-			gate.setAMID(amid);
-			gate.setSubscriberID(subscriberID);
-			gate.setGateID(gateIdObj);
-
-			// configure message properties
-            final Properties prop = new Properties();
-			prop.put(MessageProperties.CLIENT_HANDLE, getClientHandle());
-			prop.put(MessageProperties.DECISION_CMD_CODE, COPSDecision.DEC_INSTALL);
-			prop.put(MessageProperties.DECISION_FLAG, (short) COPSDecision.DEC_NULL);
-			byte[] data = gate.getData();
-			prop.put(MessageProperties.GATE_CONTROL, new COPSData(data, 0, data.length));
-			COPSMsg decisionMsg = MessageFactory.getInstance().create(COPSHeader.COPS_OP_DEC, prop);
-			// ** Send the GateSet Decision
-			// **
-			try {
-				decisionMsg.writeData(getSocket());
-			} catch (IOException e) {
-				logger.error("Failed to send the decision, reason: " + e.getMessage());
-				return false;
-			}
-			// waits for the gate-delete-ack or error
-            final COPSMsg responseMsg = readMessage();
-			if (responseMsg.getHeader().isAReport()) {
-				logger.info("processing received report from CMTS");
-                final COPSReportMsg reportMsg = (COPSReportMsg) responseMsg;
-				if (reportMsg.getClientSI().size() == 0) {
-					return false;
-				}
-                final COPSClientSI clientSI = reportMsg.getClientSI().get(0);
-                final IPCMMGate responseGate = new PCMMGateReq(clientSI.getData().getData());
-                final IPCMMError error = responseGate.getError();
-				if (error != null) {
-					logger.error(error.toString());
-					return false;
-				}
-				// here CMTS responded that he acknowledged the Gate-delete
-				// message
-                final ITransactionID responseTransactionID = responseGate.getTransactionID();
-				if (responseTransactionID != null && responseTransactionID.getGateCommandType() == ITransactionID.GateDeleteAck) {
-					// TODO check : Is this test needed ??
-					if (responseGate.getGateID().getGateID() == gateID && responseTransactionID.getTransactionIdentifier() == transactionID) {
-						logger.info("the CMTS has sent a Gate-Delete-Ack response");
-						return true;
-					}
+			final GateResult result = await(gateDeleteAsync());
+			// here CMTS responded that he acknowledged the Gate-delete
+			// message
+			if (result != null && result.getCommandType() == ITransactionID.GateDeleteAck) {
+				// TODO check : Is this test needed ??
+				if (result.getGateID() == gateID) {
+					logger.info("the CMTS has sent a Gate-Delete-Ack response");
+					return true;
 				}
-
 			}
 			return false;
 		}
 
+		@Override
+		public ListenableFuture<GateResult> gateDeleteAsync() {
+			return submit(ITransactionID.GateDelete, gateID);
+		}
+
+		@Override
+		public ListenableFuture<GateResult> gateDeleteAsync(final int gateID) {
+			return submit(ITransactionID.GateDelete, gateID);
+		}
+
 		@Override
 		public boolean gateInfo() {
             logger.info("Gate info");
@@ -350,85 +431,22 @@ public class PCMMPolicyServer extends AbstractPCMMServer implements IPCMMPolicyS
 				logger.error("Not connected");
 				return false;
 			}
-            final ITransactionID trID = new TransactionID();
-			// set transaction ID to gate set
-			trID.setGateCommandType(ITransactionID.GateInfo);
-			trID.setTransactionIdentifier(transactionID);
-			// AMID
-            final IAMID amid = getAMID();
-			// GATE SPEC
-            final ISubscriberID subscriberID = new SubscriberID();
-			try {
-				subscriberID.setSourceIPAddress(InetAddress.getLocalHost());
-			} catch (UnknownHostException e1) {
-				logger.error(e1.getMessage());
-			}
-            final IGateID gateIdObj = new GateID();
-			gateIdObj.setGateID(gateID);
-
-            final IPCMMGate gate = new PCMMGateReq();
-			gate.setTransactionID(trID);
-			gate.setAMID(amid);
-			gate.setSubscriberID(subscriberID);
-			gate.setGateID(gateIdObj);
-
-			// configure message properties
-            final Properties prop = new Properties();
-			prop.put(MessageProperties.CLIENT_HANDLE, getClientHandle());
-			prop.put(MessageProperties.DECISION_CMD_CODE, COPSDecision.DEC_INSTALL);
-			prop.put(MessageProperties.DECISION_FLAG, (short) COPSDecision.DEC_NULL);
-            final byte[] data = gate.getData();
-			prop.put(MessageProperties.GATE_CONTROL, new COPSData(data, 0, data.length));
-            final COPSMsg decisionMsg = MessageFactory.getInstance().create(COPSHeader.COPS_OP_DEC, prop);
-			// ** Send the GateSet Decision
-			// **
-			try {
-				decisionMsg.writeData(getSocket());
-			} catch (IOException e) {
-				logger.error("Failed to send the decision, reason: " + e.getMessage());
-				return false;
-			}
-			// waits for the gate-Info-ack or error
-            final COPSMsg responseMsg = readMessage();
-			if (responseMsg.getHeader().isAReport()) {
-				logger.info("processing received report from CMTS");
-                final COPSReportMsg reportMsg = (COPSReportMsg) responseMsg;
-				if (reportMsg.getClientSI().size() == 0) {
-					return false;
-				}
-                final COPSClientSI clientSI = reportMsg.getClientSI().get(0);
-                final IPCMMGate responseGate = new PCMMGateReq(clientSI.getData().getData());
-                final IPCMMError error = responseGate.getError();
-                final ITransactionID responseTransactionID = responseGate.getTransactionID();
-				if (error != null) {
-					logger.debug(responseTransactionID != null ? responseTransactionID.toString() : "returned Transaction ID is null");
-					logger.error(error.toString());
-					return false;
-				}
-				// here CMTS responded that he acknowledged the Gate-Info
-				// message
-				/*
-				 * <Gate-Info-Ack> = <ClientSI Header> <TransactionID> <AMID>
-				 * <SubscriberID> <GateID> [<Event Generation Info>] <Gate-Spec>
-				 * <classifier> <classifier...>] <Traffic Profile> <Gate Time
-				 * Info> <Gate Usage Info> [<Volume-Based Usage Limit>] [<PSID>]
-				 * [<Msg-Receipt-Key>] [<UserID>] [<Time-Based Usage Limit>]
-				 * [<Opaque Data>] <GateState> [<SharedResourceID>]
-				 */
-				if (responseTransactionID != null && responseTransactionID.getGateCommandType() == ITransactionID.GateInfoAck) {
-					// TODO need to implement missing data wrapper
-					logger.info("TransactionID : " + responseTransactionID.toString());
-					logger.info("AMID :" + String.valueOf(responseGate.getAMID()));
-					logger.info("SubscriberID :" + String.valueOf(responseGate.getSubscriberID()));
-					logger.info("Traffic Profile :" + String.valueOf(responseGate.getTrafficProfile()));
-					logger.info("Gate Time Info :");
-					logger.info("Gate Usage Info :");
-					logger.info("GateState :");
-					return true;
-				}
+			// here CMTS responded that he acknowledged the Gate-Info
+			// message
+			/*
+			 * <Gate-Info-Ack> = <ClientSI Header> <TransactionID> <AMID>
+			 * <SubscriberID> <GateID> [<Event Generation Info>] <Gate-Spec>
+			 * <classifier> <classifier...>] <Traffic Profile> <Gate Time
+			 * Info> <Gate Usage Info> [<Volume-Based Usage Limit>] [<PSID>]
+			 * [<Msg-Receipt-Key>] [<UserID>] [<Time-Based Usage Limit>]
+			 * [<Opaque Data>] <GateState> [<SharedResourceID>]
+			 */
+			return logGateState(await(gateInfoAsync()), ITransactionID.GateInfoAck);
+		}
 
-			}
-			return false;
+		@Override
+		public ListenableFuture<GateResult> gateInfoAsync() {
+			return submit(ITransactionID.GateInfo, gateID);
 		}
 
 		@Override
@@ -438,19 +456,56 @@ public class PCMMPolicyServer extends AbstractPCMMServer implements IPCMMPolicyS
 				logger.error("Not connected");
 				return false;
 			}
-            final ITransactionID trID = new TransactionID();
-			// set transaction ID to gate set
+			return logGateState(await(gateSynchronizeAsync()), ITransactionID.SynchComplete);
+		}
+
+		@Override
+		public ListenableFuture<GateResult> gateSynchronizeAsync() {
+			if (!isConnected())
+				return Futures.immediateFailedFuture(new IllegalStateException("Not connected"));
+			return gateSynchronizeAsync(GateSynchronizer.synchType(gateTable, getSocket().getInetAddress()));
+		}
+
+		@Override
+		public ListenableFuture<GateResult> gateSynchronizeAsync(final byte synchType) {
+			if (!isConnected())
+				return Futures.immediateFailedFuture(new IllegalStateException("Not connected"));
+			final ITransactionID trID = new TransactionID();
 			trID.setGateCommandType(ITransactionID.SynchRequest);
-			trID.setTransactionIdentifier(transactionID);
+			trID.setTransactionIdentifier(nextTransactionID());
+			final IPCMMGate gate = new PCMMGateReq();
+			gate.setTransactionID(trID);
+			gate.setAMID(getAMID());
+			// <Gate-Synch> = <TransactionID> <AMID> [<SubscriberID>] [<SyncOptions>]
+			final byte[] options = new SyncOptions(SyncOptions.COMPLETE_GATE_DATA, synchType).getAsBinaryArray();
+			final byte[] data = Arrays.copyOf(gate.getData(), gate.getDataLength() + options.length);
+			System.arraycopy(options, 0, data, gate.getDataLength(), options.length);
+			return submit(trID, gate, data,
+					new GateSynchronizer(gateTable, getSocket().getInetAddress(), synchType), 0);
+		}
+
+		/**
+		 * Builds and sends a command addressing a gate
+		 * 
+		 * @param commandType
+		 *            the gate command type
+		 * @param gateID
+		 *            the gate addressed
+		 * @return the future result
+		 */
+		private ListenableFuture<GateResult> submit(final short commandType, final int gateID) {
+			if (!isConnected())
+				return Futures.immediateFailedFuture(new IllegalStateException("Not connected"));
+            final ITransactionID trID = new TransactionID();
+			trID.setGateCommandType(commandType);
+			trID.setTransactionIdentifier(nextTransactionID());
 			// AMID
             final IAMID amid = getAMID();
 			// GATE SPEC
             final ISubscriberID subscriberID = new SubscriberID();
-			try {
-				subscriberID.setSourceIPAddress(InetAddress.getLocalHost());
-			} catch (UnknownHostException e1) {
-				logger.error(e1.getMessage());
-			}
+			// the address of the connection, the local host name is not
+			// resolved for each command
+			subscriberID.setSourceIPAddress(getSocket().getLocalAddress().getAddress());
             final IGateID gateIdObj = new GateID();
 			gateIdObj.setGateID(gateID);
 
@@ -459,64 +514,248 @@ public class PCMMPolicyServer extends AbstractPCMMServer implements IPCMMPolicyS
 			gate.setAMID(amid);
 			gate.setSubscriberID(subscriberID);
 			gate.setGateID(gateIdObj);
+			return submit(trID, gate);
+		}
+
+		/**
+		 * Sends the command once admitted by the admission control of the
+		 * CMTS, the future is completed by the matching report. When the
+		 * channel is not read by a reactor the caller is paced by the rate
+		 * limit of the CMTS and reads the channel until the report is
+		 * received.
+		 * 
+		 * @param trID
+		 *            the transaction ID of the gate
+		 * @param gate
+		 *            the gate to send
+		 * @return the future result
+		 */
+		private ListenableFuture<GateResult> submit(final ITransactionID trID, final IPCMMGate gate) {
+			return submit(trID, gate, gate.getData(), null, 0);
+		}
+
+		/**
+		 * A command rejected or failed before it is sent releases its
+		 * transaction ID here
+		 * 
+		 * @param trID
+		 *            the transaction ID of the gate
+		 * @param gate
+		 *            the gate recorded once acknowledged
+		 * @param data
+		 *            the encoded command
+		 * @param synchronizer
+		 *            the synchronizer of a Synch-Request or null
+		 * @param flowID
+		 *            the flow of the gate in the gate table, 0 for none
+		 * @return the future result, failed with a
+		 *         {@link RejectedExecutionException} when too many commands
+		 *         are waiting for the CMTS. The drains and the batches of the
+		 *         {@link CMTSSupervisor} keep a window of commands in flight,
+		 *         only the callers sending on their own are rejected.
+		 */
+		private ListenableFuture<GateResult> submit(final ITransactionID trID, final IPCMMGate gate,
+				final byte[] data, final GateSynchronizer synchronizer, final long flowID) {
+			final short id = trID.getTransactionIdentifier();
+			if (!getChannel().isReactorDriven()) {
+				// stop-and-wait, the caller is paced
+				try {
+					rateLimit.acquire();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					transactionIDs.release(id);
+					return Futures.immediateFailedFuture(e);
+				}
+				return send(trID, gate, data, synchronizer, flowID);
+			}
+			final AdmissionControl admission = this.admission;
+			final SettableFuture<GateResult> future = SettableFuture.create();
+			final Runnable command = new Runnable() {
+				@Override
+				public void run() {
+					if (future.isDone() || disconnected || lost.isDone()) {
+						transactionIDs.release(id);
+						future.setException(new COPSException("Connection with the CMTS lost"));
+						admission.done();
+						return;
+					}
+					final ListenableFuture<GateResult> sent = send(trID, gate, data, synchronizer, flowID);
+					sent.addListener(new Runnable() {
+						@Override
+						public void run() {
+							admission.done();
+						}
+					}, MoreExecutors.directExecutor());
+					Futures.addCallback(sent, new FutureCallback<GateResult>() {
+						@Override
+						public void onSuccess(final GateResult result) {
+							future.set(result);
+						}
+
+						@Override
+						public void onFailure(final Throwable t) {
+							future.setException(t);
+						}
+					}, MoreExecutors.directExecutor());
+					// the caller cancels the command sent
+					future.addListener(new Runnable() {
+						@Override
+						public void run() {
+							if (future.isCancelled())
+								sent.cancel(false);
+						}
+					}, MoreExecutors.directExecutor());
+				}
+			};
+			if (!admission.submit(command)) {
+				logger.debug("Gate command rejected by the admission control of CMTS {}: {}",
+						getSocket().getInetAddress(), admission.getStats());
+				transactionIDs.release(id);
+				future.setException(new RejectedExecutionException("Too many gate commands waiting for CMTS "
+						+ getSocket().getInetAddress()));
+			}
+			return future;
+		}
+
+		/**
+		 * Registers the command in the correlation table then sends the
+		 * decision, when the channel is not read by a reactor the channel is
+		 * read by the caller until the report is received
+		 * 
+		 * @return the future result
+		 */
+		private ListenableFuture<GateResult> send(final ITransactionID trID, final IPCMMGate gate,
+				final byte[] data, final GateSynchronizer synchronizer, final long flowID) {
+			final short id = trID.getTransactionIdentifier();
+			final SettableFuture<GateResult> future = transactions.register(id, trID.getGateCommandType(),
+					synchronizer);
+			// the ID can be reused once the command is answered, failed or
+			// cancelled
+			future.addListener(new Runnable() {
+				@Override
+				public void run() {
+					transactionIDs.release(id);
+				}
+			}, MoreExecutors.directExecutor());
+			if (future.isDone())
+				return future;
+			final InetAddress cmts = getSocket().getInetAddress();
+			Futures.addCallback(future, new FutureCallback<GateResult>() {
+				@Override
+				public void onSuccess(final GateResult result) {
+					recordGate(cmts, gate, result, flowID);
+				}
+
+				@Override
+				public void onFailure(final Throwable t) {
+				}
+			}, MoreExecutors.directExecutor());
 
 			// configure message properties
             final Properties prop = new Properties();
 			prop.put(MessageProperties.CLIENT_HANDLE, getClientHandle());
 			prop.put(MessageProperties.DECISION_CMD_CODE, COPSDecision.DEC_INSTALL);
 			prop.put(MessageProperties.DECISION_FLAG, (short) COPSDecision.DEC_NULL);
-            final byte[] data = gate.getData();
 			prop.put(MessageProperties.GATE_CONTROL, new COPSData(data, 0, data.length));
-            final COPSMsg decisionMsg = MessageFactory.getInstance().create(COPSHeader.COPS_OP_DEC, prop);
-			// ** Send the GateSet Decision
+			// ** Send the Gate Decision
 			// **
 			try {
-				decisionMsg.writeData(getSocket());
-			} catch (IOException e) {
+				final COPSMsg decisionMsg = MessageFactory.getInstance().create(COPSHeader.COPS_OP_DEC, prop);
+				getChannel().sendMsg(decisionMsg);
+			} catch (final Exception e) {
 				logger.error("Failed to send the decision, reason: " + e.getMessage());
-				return false;
+				future.setException(e);
+				return future;
 			}
-			// waits for the gate-Info-ack or error
-            final COPSMsg responseMsg = readMessage();
-			if (responseMsg.getHeader().isAReport()) {
-				logger.info("processing received report from CMTS");
-                final COPSReportMsg reportMsg = (COPSReportMsg) responseMsg;
-				if (reportMsg.getClientSI().size() == 0) {
-					return false;
-				}
-                final COPSClientSI clientSI = reportMsg.getClientSI().get(0);
-                final IPCMMGate responseGate = new PCMMGateReq(clientSI.getData().getData());
-                final IPCMMError error = responseGate.getError();
-                final ITransactionID responseTransactionID = responseGate.getTransactionID();
-				if (error != null) {
-					logger.debug(responseTransactionID != null ? responseTransactionID.toString() : "returned Transaction ID is null");
-					logger.error(error.toString());
-					return false;
-				}
-				// here CMTS responded that he acknowledged the Gate-Info
-				// message
-				/*
-				 * <Gate-Info-Ack> = <ClientSI Header> <TransactionID> <AMID>
-				 * <SubscriberID> <GateID> [<Event Generation Info>] <Gate-Spec>
-				 * <classifier> <classifier...>] <Traffic Profile> <Gate Time
-				 * Info> <Gate Usage Info> [<Volume-Based Usage Limit>] [<PSID>]
-				 * [<Msg-Receipt-Key>] [<UserID>] [<Time-Based Usage Limit>]
-				 * [<Opaque Data>] <GateState> [<SharedResourceID>]
-				 */
-				if (responseTransactionID != null && responseTransactionID.getGateCommandType() == ITransactionID.SynchReport) {
-					// TODO need to implement missing data wrapper
-					logger.info("TransactionID : " + responseTransactionID.toString());
-					logger.info("AMID :" + String.valueOf(responseGate.getAMID()));
-					logger.info("SubscriberID :" + String.valueOf(responseGate.getSubscriberID()));
-					logger.info("Traffic Profile :" + String.valueOf(responseGate.getTrafficProfile()));
-					logger.info("Gate Time Info :");
-					logger.info("Gate Usage Info :");
-					logger.info("GateState :");
-					return true;
+
+			if (!getChannel().isReactorDriven()) {
+				// stop-and-wait, the caller reads until the report arrives
+				while (!future.isDone()) {
+					final COPSMsg responseMsg = readMessage();
+					if (responseMsg == null) {
+						future.setException(new COPSException("Error reading the CMTS report"));
+					} else if (!transactions.apply(responseMsg)) {
+						logger.warn("Unexpected message from the CMTS: " + responseMsg.getHeader());
+					}
 				}
+			}
+			return future;
+		}
 
+		/**
+		 * Keeps the gate table up to date with the acknowledged commands
+		 */
+		private void recordGate(final InetAddress cmts, final IPCMMGate gate, final GateResult result,
+				final long flowID) {
+			if (!result.isSuccess()) {
+				if (gateTable instanceof JournaledGateTable)
+					((JournaledGateTable) gateTable).recordError(cmts, result.getGateID(),
+							result.getTransactionID(), result.getError().getErrorCode());
+				return;
 			}
-			return false;
+			if (result.getCommandType() == ITransactionID.GateSetAck) {
+				// the later commands address the last gate set
+				gateID = result.getGateID();
+				gateTable.put(GateRecord.fromGate(cmts, result.getGateID(), gate, flowID));
+			}
+			else if (result.getCommandType() == ITransactionID.GateDeleteAck)
+				gateTable.remove(cmts, result.getGateID());
+		}
+
+		/**
+		 * Waits for the result of a command
+		 * 
+		 * @param future
+		 *            the future result
+		 * @return the result or null when failed or when the CMTS returned
+		 *         an error
+		 */
+		private GateResult await(final ListenableFuture<GateResult> future) {
+			final GateResult result;
+			try {
+				result = future.get();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			} catch (final ExecutionException e) {
+				logger.error("Gate command failed", e.getCause());
+				return null;
+			}
+			if (!result.isSuccess()) {
+				logger.error(result.getError().toString());
+				return null;
+			}
+			return result;
+		}
+
+		private boolean logGateState(final GateResult result, final short expected) {
+			if (result == null || result.getCommandType() != expected)
+				return false;
+			// TODO need to implement missing data wrapper
+			final IPCMMGate responseGate = result.getGate();
+			logger.info("TransactionID : " + result.getTransactionID());
+			if (responseGate != null) {
+				logger.info("AMID :" + String.valueOf(responseGate.getAMID()));
+				logger.info("SubscriberID :" + String.valueOf(responseGate.getSubscriberID()));
+				logger.info("Traffic Profile :" + String.valueOf(responseGate.getTrafficProfile()));
+			}
+			logger.info("Gate Time Info :");
+			logger.info("Gate Usage Info :");
+			logger.info("GateState :");
+			return true;
+		}
+
+		/**
+		 * Allocates the transaction ID of a new command, the ID is released
+		 * by {@link #submit(ITransactionID, IPCMMGate, byte[], GateSynchronizer, long)}
+		 * once the command completes
+		 * 
+		 * @return the transaction ID
+		 */
+		private short nextTransactionID() {
+			final short id = transactionIDs.allocate();
+			transactionID = id;
+			return id;
 		}
 
 		private IAMID getAMID() {
@@ -533,17 +772,14 @@ public class PCMMPolicyServer extends AbstractPCMMServer implements IPCMMPolicyS
 				// eclassifier.setProtocol(IClassifier.Protocol.NONE);
 				classifier.setProtocol(IClassifier.Protocol.TCP);
 				try {
-					InetAddress subIP = InetAddress.getByName(PCMMGlobalConfig.SubscriberID);
-					InetAddress srcIP = InetAddress.getByName(PCMMGlobalConfig.srcIP);
-					InetAddress dstIP = InetAddress.getByName(PCMMGlobalConfig.dstIP);
-					InetAddress mask = InetAddress.getByName(PCMMProperties.get(PCMMConstants.DEFAULT_MASK, String.class));
-					subscriberID.setSourceIPAddress(subIP);
-					classifier.setSourceIPAddress(srcIP);
-					classifier.setDestinationIPAddress(dstIP);
+					final int mask = IPAddressCodec.parseIPv4(PCMMProperties.get(PCMMConstants.DEFAULT_MASK, String.class));
+					subscriberID.setSourceIPAddress(IPAddressCodec.parse(PCMMGlobalConfig.SubscriberID));
+					classifier.setSourceIPAddress(IPAddressCodec.parseIPv4(PCMMGlobalConfig.srcIP));
+					classifier.setDestinationIPAddress(IPAddressCodec.parseIPv4(PCMMGlobalConfig.dstIP));
 					classifier.setIPDestinationMask(mask);
 					classifier.setIPSourceMask(mask);
-				} catch (final UnknownHostException unae) {
-					logger.error("Error getByName", unae);
+				} catch (final IllegalArgumentException unae) {
+					logger.error("Invalid default address", unae);
 				}
 				classifier.setSourcePortStart(PCMMGlobalConfig.srcPort);
 				classifier.setSourcePortEnd(PCMMGlobalConfig.srcPort);
@@ -566,14 +802,11 @@ public class PCMMPolicyServer extends AbstractPCMMServer implements IPCMMPolicyS
                 final Classifier classifier = new Classifier();
 				classifier.setProtocol(IClassifier.Protocol.TCP);
 				try {
-					InetAddress subIP = InetAddress.getByName(PCMMGlobalConfig.SubscriberID);
-					InetAddress srcIP = InetAddress.getByName(PCMMGlobalConfig.srcIP);
-					InetAddress dstIP = InetAddress.getByName(PCMMGlobalConfig.dstIP);
-					subscriberID.setSourceIPAddress(subIP);
-					classifier.setSourceIPAddress(srcIP);
-					classifier.setDestinationIPAddress(dstIP);
-				} catch (final UnknownHostException unae) {
-                    logger.error("Error getByName", unae);
+					subscriberID.setSourceIPAddress(IPAddressCodec.parse(PCMMGlobalConfig.SubscriberID));
+					classifier.setSourceIPAddress(IPAddressCodec.parseIPv4(PCMMGlobalConfig.srcIP));
+					classifier.setDestinationIPAddress(IPAddressCodec.parseIPv4(PCMMGlobalConfig.dstIP));
+				} catch (final IllegalArgumentException unae) {
+                    logger.error("Invalid default address", unae);
 				}
 				classifier.setSourcePort(PCMMGlobalConfig.srcPort);
 				classifier.setDestinationPort(PCMMGlobalConfig.dstPort);
@@ -623,6 +856,19 @@ public class PCMMPolicyServer extends AbstractPCMMServer implements IPCMMPolicyS
 			return trafficProfile;
 		}
 
+		/**
+		 * A gate template and the traffic profile it was encoded with
+		 */
+		private static class ProfileTemplate {
+			final ITrafficProfile profile;
+			final GateTemplate template;
+
+			ProfileTemplate(final ITrafficProfile profile, final GateTemplate template) {
+				this.profile = profile;
+				this.template = template;
+			}
+		}
+
 		@Override
 		public short getClassifierId() {
 			return classifierID;
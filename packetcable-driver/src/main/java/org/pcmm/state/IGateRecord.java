@@ -0,0 +1,57 @@
+/**
+ @header@
+ */
+
+
+package org.pcmm.state;
+
+import org.pcmm.gates.IPCMMGate;
+
+import java.net.InetAddress;
+
+/**
+ * <p>
+ * A gate installed on a CMTS as known by the Policy Server, identified by the
+ * CMTS address and the GateID the CMTS allocated.
+ * </p>
+ *
+ */
+public interface IGateRecord {
+
+    /**
+     * @return the CMTS holding the gate
+     */
+    InetAddress getCMTS();
+
+    /**
+     * @return the GateID allocated by the CMTS
+     */
+    int getGateID();
+
+    /**
+     * @return the TransactionID of the last command acknowledged for the gate
+     */
+    short getTransactionID();
+
+    /**
+     * @return the subscriber address bytes (4 or 16) or null when unknown
+     */
+    byte[] getSubscriberID();
+
+    /**
+     * @return the AMID, Application Type in the high 16 bits and Application
+     *         Manager Tag in the low 16 bits
+     */
+    int getAMID();
+
+    /**
+     * @return the flow identifier of the application or 0 when none
+     */
+    long getFlowID();
+
+    /**
+     * @return the gate last sent or received or null when not kept
+     */
+    IPCMMGate getGate();
+
+}
@@ -0,0 +1,103 @@
+/**
+ @header@
+ */
+
+
+package org.pcmm.state;
+
+import java.net.InetAddress;
+import java.util.List;
+
+/**
+ * <p>
+ * Table of the live gates of all the CMTSs, keyed by (CMTS, GateID) with
+ * secondary indexes by SubscriberID, AMID and flow identifier. The table is
+ * safe for concurrent use, every lookup is O(1) plus the number of gates
+ * returned.
+ * </p>
+ *
+ *
+ *
+ */
+public interface IGateTable extends IState {
+
+    /**
+     * adds or replaces a gate
+     *
+     * @param record
+     *            the gate
+     * @return the gate replaced or null
+     */
+    IGateRecord put(IGateRecord record);
+
+    /**
+     * @param cmts
+     *            the CMTS address
+     * @param gateID
+     *            the GateID
+     * @return the gate or null
+     */
+    IGateRecord get(InetAddress cmts, int gateID);
+
+    /**
+     * removes a gate
+     *
+     * @param cmts
+     *            the CMTS address
+     * @param gateID
+     *            the GateID
+     * @return the gate removed or null
+     */
+    IGateRecord remove(InetAddress cmts, int gateID);
+
+    /**
+     * @param flowID
+     *            the flow identifier
+     * @return the gate of the flow or null
+     */
+    IGateRecord getByFlowID(long flowID);
+
+    /**
+     * @param subscriberID
+     *            the subscriber address bytes
+     * @return the gates of the subscriber on all CMTSs
+     */
+    List<IGateRecord> getBySubscriberID(byte[] subscriberID);
+
+    /**
+     * @param amid
+     *            the AMID, see {@link IGateRecord#getAMID()}
+     * @return the gates of the application
+     */
+    List<IGateRecord> getByAMID(int amid);
+
+    /**
+     * @param cmts
+     *            the CMTS address
+     * @return the gates of the CMTS
+     */
+    List<IGateRecord> getGates(InetAddress cmts);
+
+    /**
+     * @param cmts
+     *            the CMTS address
+     * @return true when the table holds a gate of the CMTS, nothing is
+     *         copied
+     */
+    boolean hasGates(InetAddress cmts);
+
+    /**
+     * removes all the gates of a CMTS
+     *
+     * @param cmts
+     *            the CMTS address
+     * @return the number of gates removed
+     */
+    int removeAll(InetAddress cmts);
+
+    /**
+     * @return the number of gates
+     */
+    int size();
+
+}
@@ -0,0 +1,473 @@
+/**
+ @header@
+ */
+package org.pcmm.state.impl;
+
+import org.pcmm.gates.IPCMMGate;
+import org.pcmm.gates.impl.PCMMGateReq;
+import org.pcmm.state.IGateRecord;
+import org.pcmm.state.IGateTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * Append only journal of the gate table updates, used to rebuild the table
+ * after a restart without synchronizing every CMTS again.
+ * </p>
+ * <p>
+ * The entries are appended to memory mapped segment files of a fixed size,
+ * a new segment is started when the current one is full. A snapshot writes
+ * the whole table to a single file and drops the segments it covers, the
+ * recovery loads the last snapshot then replays the following segments in
+ * one sequential scan. The snapshot is written while the table keeps being
+ * updated: each entry replaces the whole state of a gate, so replaying the
+ * following segments over a snapshot holding some of their updates already
+ * yields the same table.
+ * </p>
+ * <p>
+ * Each entry is an int length followed by the entry type and its fields, a
+ * zero length marks the end of a segment. The body of an entry is written
+ * before its length so a partly written entry is never replayed.
+ * </p>
+ */
+public class GateJournal implements Closeable {
+
+    private final static Logger logger = LoggerFactory.getLogger(GateJournal.class);
+
+    private static final int MAGIC = 0x50474a31;
+    private static final String SNAPSHOT = "gates.snapshot";
+    private static final String SEGMENT_PREFIX = "gates-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    // entry types
+    private static final byte GATE_SET = 1;
+    private static final byte GATE_DELETE = 2;
+    private static final byte GATE_ERROR = 3;
+    private static final byte CMTS_CLEAR = 4;
+
+    private static final int ENTRY_SIZE = 1024;
+    // everything but the gate in a gate set entry
+    private static final int GATE_SET_SIZE = 64;
+
+    private final File directory;
+    private final int segmentSize;
+    private ByteBuffer entry;
+    /**
+     * serializes the snapshots, the appends only wait for the segment switch
+     */
+    private final Object snapshotLock = new Object();
+
+    /**
+     * sequence number of the segment written to
+     */
+    private long sequence;
+    /**
+     * sequence number of the first segment not covered by the snapshot
+     */
+    private long snapshotSequence;
+    private RandomAccessFile file;
+    private MappedByteBuffer segment;
+
+    /**
+     * @param directory
+     *            the directory of the journal, created when missing
+     * @param segmentSize
+     *            the size of a segment file in bytes
+     * @throws IOException
+     *             when the directory cannot be created
+     */
+    public GateJournal(final File directory, final int segmentSize) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Unable to create the journal directory " + directory);
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        entry = ByteBuffer.allocate(ENTRY_SIZE);
+    }
+
+    /**
+     * Loads the snapshot and replays the segments into the table then opens
+     * a new segment, must be called before the first append
+     *
+     * @param table
+     *            the table to fill
+     * @return the number of entries read
+     * @throws IOException
+     *             when the journal cannot be read
+     */
+    public synchronized int recover(final IGateTable table) throws IOException {
+        int count = 0;
+        final File snapshot = new File(directory, SNAPSHOT);
+        if (snapshot.isFile())
+            count += readSnapshot(snapshot, table);
+        long last = snapshotSequence - 1;
+        for (final long seq : segments()) {
+            if (seq < snapshotSequence)
+                continue;
+            count += replay(segmentFile(seq), table);
+            last = seq;
+        }
+        // never append after an entry that may have been cut by a crash
+        open(Math.max(last + 1, snapshotSequence));
+        logger.info("Recovered " + count + " journal entries, " + table.size() + " gates");
+        return count;
+    }
+
+    /**
+     * Appends an acknowledged gate
+     *
+     * @param record
+     *            the gate
+     * @throws IOException
+     *             when a new segment cannot be opened
+     */
+    public synchronized void appendSet(final IGateRecord record) throws IOException {
+        entry = encodeSet(entry, record);
+        append();
+    }
+
+    /**
+     * @return the buffer holding the entry, grown when too small
+     */
+    private static ByteBuffer encodeSet(final ByteBuffer buffer, final IGateRecord record) {
+        final IPCMMGate gate = record.getGate();
+        final int gateLength = gate != null ? gate.getDataLength() : 0;
+        final ByteBuffer entry = buffer.capacity() < GATE_SET_SIZE + gateLength
+                ? ByteBuffer.allocate(GATE_SET_SIZE + gateLength) : buffer;
+        entry.clear();
+        entry.put(GATE_SET);
+        putAddress(entry, record.getCMTS());
+        entry.putInt(record.getGateID());
+        entry.putShort(record.getTransactionID());
+        final byte[] subscriberID = record.getSubscriberID();
+        if (subscriberID != null) {
+            entry.put((byte) subscriberID.length);
+            entry.put(subscriberID);
+        } else {
+            entry.put((byte) 0);
+        }
+        entry.putInt(record.getAMID());
+        entry.putLong(record.getFlowID());
+        entry.putInt(gateLength);
+        if (gate != null)
+            gate.writeTo(entry);
+        return entry;
+    }
+
+    /**
+     * Appends a deleted gate
+     *
+     * @param cmts
+     *            the CMTS address
+     * @param gateID
+     *            the GateID
+     * @throws IOException
+     *             when a new segment cannot be opened
+     */
+    public synchronized void appendDelete(final InetAddress cmts, final int gateID) throws IOException {
+        entry.clear();
+        entry.put(GATE_DELETE);
+        putAddress(entry, cmts);
+        entry.putInt(gateID);
+        append();
+    }
+
+    /**
+     * Appends an error returned by a CMTS, the errors are kept for the
+     * record and skipped by the recovery
+     *
+     * @param cmts
+     *            the CMTS address
+     * @param gateID
+     *            the GateID or 0
+     * @param transactionID
+     *            the TransactionID
+     * @param errorCode
+     *            the PCMM error code
+     * @throws IOException
+     *             when a new segment cannot be opened
+     */
+    public synchronized void appendError(final InetAddress cmts, final int gateID, final short transactionID,
+            final short errorCode) throws IOException {
+        entry.clear();
+        entry.put(GATE_ERROR);
+        putAddress(entry, cmts);
+        entry.putInt(gateID);
+        entry.putShort(transactionID);
+        entry.putShort(errorCode);
+        append();
+    }
+
+    /**
+     * Appends the removal of all the gates of a CMTS
+     *
+     * @param cmts
+     *            the CMTS address
+     * @throws IOException
+     *             when a new segment cannot be opened
+     */
+    public synchronized void appendClear(final InetAddress cmts) throws IOException {
+        entry.clear();
+        entry.put(CMTS_CLEAR);
+        putAddress(entry, cmts);
+        append();
+    }
+
+    /**
+     * @return the number of segments written since the last snapshot
+     */
+    public synchronized int getSegmentCount() {
+        return (int) (sequence - snapshotSequence + 1);
+    }
+
+    /**
+     * Starts a new segment, the updates appended from now on are not covered
+     * by a snapshot taken for the returned sequence
+     *
+     * @return the sequence number of the new segment
+     * @throws IOException
+     *             when the segment cannot be opened
+     */
+    public synchronized long rotate() throws IOException {
+        open(sequence + 1);
+        return sequence;
+    }
+
+    /**
+     * Starts a new segment then writes the gates to a new snapshot and deletes
+     * the segments it covers
+     *
+     * @param gates
+     *            the gates of the table
+     * @throws IOException
+     *             when the snapshot cannot be written
+     */
+    public void snapshot(final Iterable<IGateRecord> gates) throws IOException {
+        snapshot(rotate(), gates);
+    }
+
+    /**
+     * Writes the gates to a new snapshot and deletes the segments it covers.
+     * The gates are read while the snapshot is written, the table may be
+     * updated meanwhile and the appends are not held up.
+     *
+     * @param seq
+     *            the sequence returned by {@link #rotate()} before the gates
+     *            are read
+     * @param gates
+     *            the gates of the table
+     * @throws IOException
+     *             when the snapshot cannot be written
+     */
+    public void snapshot(final long seq, final Iterable<IGateRecord> gates) throws IOException {
+        synchronized (snapshotLock) {
+            final File tmp = new File(directory, SNAPSHOT + ".tmp");
+            ByteBuffer buffer = ByteBuffer.allocate(ENTRY_SIZE);
+            int count = 0;
+            try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeLong(seq);
+                for (final IGateRecord record : gates) {
+                    buffer = encodeSet(buffer, record);
+                    buffer.flip();
+                    out.writeInt(buffer.remaining());
+                    out.write(buffer.array(), 0, buffer.remaining());
+                    count++;
+                }
+                out.writeInt(0);
+            }
+            synchronized (this) {
+                // an older snapshot never replaces a newer one
+                if (seq <= snapshotSequence) {
+                    if (!tmp.delete())
+                        logger.warn("Unable to delete " + tmp);
+                    return;
+                }
+                Files.move(tmp.toPath(), new File(directory, SNAPSHOT).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                snapshotSequence = seq;
+            }
+            for (final long segmentSeq : segments()) {
+                if (segmentSeq < seq && !segmentFile(segmentSeq).delete())
+                    logger.warn("Unable to delete the journal segment " + segmentSeq);
+            }
+            logger.info("Gate table snapshot of " + count + " gates");
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (segment != null) {
+            segment.force();
+            segment = null;
+        }
+        if (file != null) {
+            file.close();
+            file = null;
+        }
+    }
+
+
+    /**
+     * Copies the entry to the segment, a new segment is opened when the
+     * entry does not fit
+     */
+    private void append() throws IOException {
+        if (segment == null)
+            throw new IOException("Journal not recovered or closed");
+        entry.flip();
+        final int length = entry.remaining();
+        // the entry, its length and the end marker
+        if (segment.remaining() < length + 8) {
+            if (length + 8 > segmentSize)
+                throw new IOException("Journal entry of " + length + " bytes larger than a segment");
+            open(sequence + 1);
+        }
+        final int position = segment.position();
+        segment.position(position + 4);
+        segment.put(entry);
+        segment.putInt(position, length);
+    }
+
+    private static void putAddress(final ByteBuffer entry, final InetAddress address) {
+        final byte[] bytes = address.getAddress();
+        entry.put((byte) bytes.length);
+        entry.put(bytes);
+    }
+
+    private void open(final long seq) throws IOException {
+        close();
+        file = new RandomAccessFile(segmentFile(seq), "rw");
+        segment = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        sequence = seq;
+    }
+
+    private int readSnapshot(final File snapshot, final IGateTable table) throws IOException {
+        int count = 0;
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshot)))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException("Invalid gate table snapshot " + snapshot);
+            snapshotSequence = in.readLong();
+            for (int length = in.readInt(); length > 0; length = in.readInt()) {
+                final byte[] data = new byte[length];
+                in.readFully(data);
+                apply(ByteBuffer.wrap(data), table);
+                count++;
+            }
+        } catch (EOFException e) {
+            // the snapshot is only renamed once complete
+            throw new IOException("Truncated gate table snapshot " + snapshot, e);
+        }
+        return count;
+    }
+
+    private int replay(final File file, final IGateTable table) throws IOException {
+        int count = 0;
+        try (final RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            final MappedByteBuffer buf = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+            while (buf.remaining() >= 4) {
+                final int length = buf.getInt();
+                if (length <= 0 || length > buf.remaining())
+                    break;
+                final ByteBuffer data = buf.slice();
+                data.limit(length);
+                buf.position(buf.position() + length);
+                apply(data, table);
+                count++;
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            logger.warn("Journal segment " + file + " ends with an invalid entry", e);
+        }
+        return count;
+    }
+
+    private static void apply(final ByteBuffer data, final IGateTable table) throws IOException {
+        final byte type = data.get();
+        final InetAddress cmts = getAddress(data);
+        switch (type) {
+        case GATE_SET:
+            final int gateID = data.getInt();
+            final short transactionID = data.getShort();
+            final int length = data.get() & 0xFF;
+            byte[] subscriberID = null;
+            if (length > 0) {
+                subscriberID = new byte[length];
+                data.get(subscriberID);
+            }
+            final int amid = data.getInt();
+            final long flowID = data.getLong();
+            final int gateLength = data.getInt();
+            IPCMMGate gate = null;
+            if (gateLength > 0) {
+                final byte[] bytes = new byte[gateLength];
+                data.get(bytes);
+                gate = new PCMMGateReq(bytes);
+            }
+            table.put(new GateRecord(cmts, gateID, transactionID, subscriberID, amid, flowID, gate));
+            break;
+        case GATE_DELETE:
+            table.remove(cmts, data.getInt());
+            break;
+        case GATE_ERROR:
+            break;
+        case CMTS_CLEAR:
+            table.removeAll(cmts);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown journal entry " + type);
+        }
+    }
+
+    private static InetAddress getAddress(final ByteBuffer data) throws IOException {
+        final byte[] bytes = new byte[data.get()];
+        data.get(bytes);
+        return InetAddress.getByAddress(bytes);
+    }
+
+    private List<Long> segments() {
+        final List<Long> list = new ArrayList<>();
+        final String[] names = directory.list();
+        if (names != null) {
+            for (final String name : names) {
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        list.add(Long.valueOf(name.substring(SEGMENT_PREFIX.length(),
+                                name.length() - SEGMENT_SUFFIX.length())));
+                    } catch (NumberFormatException e) {
+                        logger.warn("Skipping " + name);
+                    }
+                }
+            }
+        }
+        Collections.sort(list);
+        return list;
+    }
+
+    private File segmentFile(final long seq) {
+        return new File(directory, String.format("%s%016d%s", SEGMENT_PREFIX, seq, SEGMENT_SUFFIX));
+    }
+
+}
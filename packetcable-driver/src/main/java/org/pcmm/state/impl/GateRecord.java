@@ -0,0 +1,151 @@
+/**
+ @header@
+ */
+package org.pcmm.state.impl;
+
+import org.pcmm.gates.IAMID;
+import org.pcmm.gates.IPCMMGate;
+import org.pcmm.gates.ISubscriberID;
+import org.pcmm.state.IGateRecord;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Heap implementation of {@link IGateRecord}. The record doubles as the node
+ * of the {@link GateTable} indexes, a record is linked in at most one table.
+ * </p>
+ */
+public class GateRecord implements IGateRecord {
+
+    private final InetAddress cmts;
+    private final int gateID;
+    private final short transactionID;
+    private final byte[] subscriberID;
+    private final int amid;
+    private final long flowID;
+    private final IPCMMGate gate;
+
+    // index links, guarded by the table lock
+    boolean linked;
+    GateRecord prevByCMTS;
+    GateRecord nextByCMTS;
+    GateRecord prevBySubscriber;
+    GateRecord nextBySubscriber;
+    GateRecord prevByAMID;
+    GateRecord nextByAMID;
+
+    /**
+     * @param cmts
+     *            the CMTS address
+     * @param gateID
+     *            the GateID
+     * @param transactionID
+     *            the TransactionID
+     * @param subscriberID
+     *            the subscriber address bytes or null
+     * @param amid
+     *            the AMID
+     * @param flowID
+     *            the flow identifier or 0
+     * @param gate
+     *            the gate or null
+     */
+    public GateRecord(final InetAddress cmts, final int gateID, final short transactionID, final byte[] subscriberID,
+            final int amid, final long flowID, final IPCMMGate gate) {
+        if (cmts == null)
+            throw new IllegalArgumentException("CMTS cannot be null");
+        this.cmts = cmts;
+        this.gateID = gateID;
+        this.transactionID = transactionID;
+        this.subscriberID = subscriberID;
+        this.amid = amid;
+        this.flowID = flowID;
+        this.gate = gate;
+    }
+
+    /**
+     * @param record
+     *            the record to copy
+     */
+    public GateRecord(final IGateRecord record) {
+        this(record.getCMTS(), record.getGateID(), record.getTransactionID(), record.getSubscriberID(),
+                record.getAMID(), record.getFlowID(), record.getGate());
+    }
+
+    /**
+     * Builds the record of a gate, its TransactionID must be set
+     *
+     * @param cmts
+     *            the CMTS address
+     * @param gateID
+     *            the GateID allocated by the CMTS
+     * @param gate
+     *            the gate
+     * @param flowID
+     *            the flow identifier or 0
+     * @return the record
+     */
+    public static GateRecord fromGate(final InetAddress cmts, final int gateID, final IPCMMGate gate,
+            final long flowID) {
+        final ISubscriberID subscriber = gate.getSubscriberID();
+        final IAMID iamid = gate.getAMID();
+        return new GateRecord(cmts, gateID, gate.getTransactionID().getTransactionIdentifier(),
+                subscriber != null ? subscriber.getSourceAddress() : null,
+                iamid != null ? amid(iamid.getApplicationType(), iamid.getApplicationMgrTag()) : 0, flowID, gate);
+    }
+
+    /**
+     * @param applicationType
+     *            the Application Type
+     * @param applicationMgrTag
+     *            the Application Manager Tag
+     * @return the AMID as an int
+     */
+    public static int amid(final short applicationType, final short applicationMgrTag) {
+        return ((applicationType & 0xFFFF) << 16) | (applicationMgrTag & 0xFFFF);
+    }
+
+    @Override
+    public InetAddress getCMTS() {
+        return cmts;
+    }
+
+    @Override
+    public int getGateID() {
+        return gateID;
+    }
+
+    @Override
+    public short getTransactionID() {
+        return transactionID;
+    }
+
+    @Override
+    public byte[] getSubscriberID() {
+        return subscriberID;
+    }
+
+    @Override
+    public int getAMID() {
+        return amid;
+    }
+
+    @Override
+    public long getFlowID() {
+        return flowID;
+    }
+
+    @Override
+    public IPCMMGate getGate() {
+        return gate;
+    }
+
+    @Override
+    public String toString() {
+        return "GateRecord: CMTS=" + cmts.getHostAddress() + " GateID=" + gateID + " TransactionID=" + transactionID
+                + " SubscriberID=" + Arrays.toString(subscriberID) + " AMID=" + amid + " flowID=" + flowID;
+    }
+
+}
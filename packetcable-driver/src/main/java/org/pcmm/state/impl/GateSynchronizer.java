@@ -0,0 +1,193 @@
+/**
+ @header@
+ */
+package org.pcmm.state.impl;
+
+import org.pcmm.base.IPCMMBaseObject;
+import org.pcmm.gates.IPCMMGate;
+import org.pcmm.gates.impl.GateResult;
+import org.pcmm.objects.SyncOptions;
+import org.pcmm.state.IGateRecord;
+import org.pcmm.state.IGateTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>
+ * Reconciles the gate table with the Synch-Reports of a CMTS as they are
+ * received, the reports are not kept.
+ * </p>
+ * <p>
+ * Each reported gate is added to the table or replaces the gate recorded
+ * when it differs, a gate reported Idle/Closed by its GateState is removed. A
+ * full synchronization reports every gate of the CMTS, the gates not reported
+ * by the Synch-Complete are removed as well. An incremental synchronization
+ * only reports the gates changed while the connection was down, the gates
+ * closed meanwhile among them, so the gates it does not report are kept.
+ * </p>
+ * <p>
+ * Not thread safe, the reports of a synchronization are processed in order
+ * by a single thread.
+ * </p>
+ */
+public class GateSynchronizer {
+
+    private final static Logger logger = LoggerFactory.getLogger(GateSynchronizer.class);
+
+    private final IGateTable table;
+    private final InetAddress cmts;
+    private final byte synchType;
+    /**
+     * GateIDs recorded before a full synchronization and not reported yet
+     */
+    private final Set<Integer> unreported;
+
+    private int added;
+    private int updated;
+    private int unchanged;
+    private int removed;
+
+    /**
+     * @param table
+     *            the gate table
+     * @param cmts
+     *            the CMTS synchronized
+     * @param synchType
+     *            {@link SyncOptions#FULL_SYNCHRONIZATION} or
+     *            {@link SyncOptions#INCREMENTAL_SYNCHRONIZATION}
+     */
+    public GateSynchronizer(final IGateTable table, final InetAddress cmts, final byte synchType) {
+        this.table = table;
+        this.cmts = cmts;
+        this.synchType = synchType;
+        if (synchType == SyncOptions.FULL_SYNCHRONIZATION) {
+            final List<IGateRecord> gates = table.getGates(cmts);
+            unreported = new HashSet<>(gates.size() * 2);
+            for (final IGateRecord record : gates)
+                unreported.add(record.getGateID());
+        } else {
+            unreported = null;
+        }
+    }
+
+    /**
+     * An incremental synchronization is enough when the table already knows
+     * the gates of the CMTS, for instance after a short disconnection
+     *
+     * @param table
+     *            the gate table
+     * @param cmts
+     *            the CMTS address
+     * @return the synchronization type to request
+     */
+    public static byte synchType(final IGateTable table, final InetAddress cmts) {
+        return table.hasGates(cmts) ? SyncOptions.INCREMENTAL_SYNCHRONIZATION
+                : SyncOptions.FULL_SYNCHRONIZATION;
+    }
+
+    public byte getSynchType() {
+        return synchType;
+    }
+
+    /**
+     * Reconciles a Synch-Report
+     *
+     * @param result
+     *            the report, its gate is null unless complete gate data
+     *            were requested
+     */
+    public void onReport(final GateResult result) {
+        if (!result.isSuccess()) {
+            logger.warn("Synch-Report error from " + cmts + ": " + result.getError());
+            return;
+        }
+        final int gateID = result.getGateID();
+        if (unreported != null)
+            unreported.remove(gateID);
+        if (result.isClosed()) {
+            // deleted or expired on the CMTS
+            if (table.remove(cmts, gateID) != null)
+                removed++;
+            return;
+        }
+        final IPCMMGate gate = result.getGate();
+        final IGateRecord recorded = table.get(cmts, gateID);
+        if (recorded == null) {
+            table.put(gate != null ? GateRecord.fromGate(cmts, gateID, gate, 0)
+                    : new GateRecord(cmts, gateID, result.getTransactionID(), null, 0, 0, null));
+            added++;
+        } else if (gate != null && !matches(recorded, gate)) {
+            // the flow and the command that created the gate are kept
+            final GateRecord reported = GateRecord.fromGate(cmts, gateID, gate, recorded.getFlowID());
+            table.put(new GateRecord(cmts, gateID, recorded.getTransactionID(), reported.getSubscriberID(),
+                    reported.getAMID(), recorded.getFlowID(), gate));
+            updated++;
+        } else {
+            unchanged++;
+        }
+    }
+
+    /**
+     * Ends the synchronization on the Synch-Complete, a full synchronization
+     * removes the gates the CMTS did not report
+     */
+    public void complete() {
+        if (unreported != null) {
+            for (final Integer gateID : unreported) {
+                if (table.remove(cmts, gateID) != null)
+                    removed++;
+            }
+            unreported.clear();
+        }
+        logger.info("Gate synchronization of " + cmts + " done: " + this);
+    }
+
+    public int getAdded() {
+        return added;
+    }
+
+    public int getUpdated() {
+        return updated;
+    }
+
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    public int getRemoved() {
+        return removed;
+    }
+
+    @Override
+    public String toString() {
+        return (synchType == SyncOptions.FULL_SYNCHRONIZATION ? "full" : "incremental") + " added=" + added
+                + " updated=" + updated + " unchanged=" + unchanged + " removed=" + removed;
+    }
+
+    /**
+     * Compares the objects present in the report with the recorded gate
+     */
+    private static boolean matches(final IGateRecord recorded, final IPCMMGate reported) {
+        final IPCMMGate gate = recorded.getGate();
+        if (gate == null)
+            return false;
+        return same(gate.getSubscriberID(), reported.getSubscriberID())
+                && same(gate.getAMID(), reported.getAMID())
+                && same(gate.getGateSpec(), reported.getGateSpec())
+                && same(gate.getClassifier(), reported.getClassifier())
+                && same(gate.getTrafficProfile(), reported.getTrafficProfile());
+    }
+
+    private static boolean same(final IPCMMBaseObject recorded, final IPCMMBaseObject reported) {
+        if (reported == null)
+            return true;
+        return recorded != null && Arrays.equals(recorded.getAsBinaryArray(), reported.getAsBinaryArray());
+    }
+
+}
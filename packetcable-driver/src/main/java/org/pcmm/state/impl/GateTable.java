@@ -0,0 +1,348 @@
+/**
+ @header@
+ */
+package org.pcmm.state.impl;
+
+import org.pcmm.PCMMConstants;
+import org.pcmm.PCMMProperties;
+import org.pcmm.state.IGateRecord;
+import org.pcmm.state.IGateTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * <p>
+ * Heap implementation of {@link IGateTable}.
+ * </p>
+ * <p>
+ * The gates are kept in primitive long keyed maps: the primary key packs a
+ * CMTS number with the GateID, the flow identifier is a unique key. The
+ * records of a CMTS, of a subscriber and of an AMID are chained through the
+ * records themselves so the secondary indexes only cost one map entry per
+ * distinct key. Lookups share a read lock, updates take the write lock.
+ * </p>
+ */
+public class GateTable implements IGateTable {
+
+    private final static Logger logger = LoggerFactory.getLogger(GateTable.class);
+
+    private static final int DEFAULT_EXPECTED_SIZE = 1024;
+
+    private final ReadWriteLock lock;
+    /**
+     * CMTS numbers, never reused
+     */
+    private final ConcurrentMap<InetAddress, Integer> cmtsNumbers;
+    private final LongObjectMap<GateRecord> gates;
+    private final LongObjectMap<GateRecord> byFlowID;
+    private final LongObjectMap<GateRecord> byCMTS;
+    private final LongObjectMap<GateRecord> bySubscriber;
+    private final LongObjectMap<GateRecord> byAMID;
+
+    public GateTable() {
+        this(DEFAULT_EXPECTED_SIZE);
+    }
+
+    /**
+     * @param expectedSize
+     *            the expected number of gates
+     */
+    public GateTable(final int expectedSize) {
+        lock = new ReentrantReadWriteLock();
+        cmtsNumbers = new ConcurrentHashMap<>();
+        gates = new LongObjectMap<>(expectedSize);
+        byFlowID = new LongObjectMap<>(expectedSize);
+        byCMTS = new LongObjectMap<>(16);
+        bySubscriber = new LongObjectMap<>(expectedSize);
+        byAMID = new LongObjectMap<>(16);
+    }
+
+    /**
+     * The storage of the table is chosen by the {@link PCMMConstants#GATE_STORE}
+     * property, the gates are kept on the heap unless "offheap" is set. The
+     * table is journaled and rebuilt from its journal when
+     * {@link PCMMConstants#GATE_JOURNAL_DIR} is set.
+     * 
+     * @return the table shared by the Policy Server components of this JVM
+     */
+    public static IGateTable getDefault() {
+        return Holder.INSTANCE;
+    }
+
+    @Override
+    public IGateRecord put(final IGateRecord record) {
+        final GateRecord entry;
+        if (record instanceof GateRecord && !((GateRecord) record).linked)
+            entry = (GateRecord) record;
+        else
+            entry = new GateRecord(record);
+        lock.writeLock().lock();
+        try {
+            final int cmts = cmtsNumber(entry.getCMTS());
+            final GateRecord previous = gates.put(key(cmts, entry.getGateID()), entry);
+            if (previous != null)
+                unlink(cmts, previous);
+            link(cmts, entry);
+            return previous;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public IGateRecord get(final InetAddress cmts, final int gateID) {
+        final Integer number = cmtsNumbers.get(cmts);
+        if (number == null)
+            return null;
+        lock.readLock().lock();
+        try {
+            return gates.get(key(number, gateID));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public IGateRecord remove(final InetAddress cmts, final int gateID) {
+        final Integer number = cmtsNumbers.get(cmts);
+        if (number == null)
+            return null;
+        lock.writeLock().lock();
+        try {
+            final GateRecord entry = gates.remove(key(number, gateID));
+            if (entry != null)
+                unlink(number, entry);
+            return entry;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public IGateRecord getByFlowID(final long flowID) {
+        lock.readLock().lock();
+        try {
+            return byFlowID.get(flowID);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<IGateRecord> getBySubscriberID(final byte[] subscriberID) {
+        final List<IGateRecord> list = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            // the chain holds every address with the same hash
+            for (GateRecord entry = bySubscriber.get(subscriberKey(subscriberID)); entry != null;
+                 entry = entry.nextBySubscriber) {
+                if (Arrays.equals(subscriberID, entry.getSubscriberID()))
+                    list.add(entry);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return list;
+    }
+
+    @Override
+    public List<IGateRecord> getByAMID(final int amid) {
+        final List<IGateRecord> list = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (GateRecord entry = byAMID.get(amid); entry != null; entry = entry.nextByAMID)
+                list.add(entry);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return list;
+    }
+
+    @Override
+    public List<IGateRecord> getGates(final InetAddress cmts) {
+        final List<IGateRecord> list = new ArrayList<>();
+        final Integer number = cmtsNumbers.get(cmts);
+        if (number == null)
+            return list;
+        lock.readLock().lock();
+        try {
+            for (GateRecord entry = byCMTS.get(number); entry != null; entry = entry.nextByCMTS)
+                list.add(entry);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return list;
+    }
+
+    @Override
+    public boolean hasGates(final InetAddress cmts) {
+        final Integer number = cmtsNumbers.get(cmts);
+        if (number == null)
+            return false;
+        lock.readLock().lock();
+        try {
+            return byCMTS.get(number) != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int removeAll(final InetAddress cmts) {
+        final Integer number = cmtsNumbers.get(cmts);
+        if (number == null)
+            return 0;
+        int count = 0;
+        lock.writeLock().lock();
+        try {
+            GateRecord entry = byCMTS.get(number);
+            while (entry != null) {
+                final GateRecord next = entry.nextByCMTS;
+                gates.remove(key(number, entry.getGateID()));
+                unlink(number, entry);
+                entry = next;
+                count++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return count;
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return gates.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of a CMTS, allocated on first use. Called with the
+     * write lock held.
+     */
+    private int cmtsNumber(final InetAddress cmts) {
+        Integer number = cmtsNumbers.get(cmts);
+        if (number == null) {
+            number = cmtsNumbers.size();
+            cmtsNumbers.put(cmts, number);
+        }
+        return number;
+    }
+
+    private void link(final int cmts, final GateRecord entry) {
+        entry.linked = true;
+        entry.prevByCMTS = null;
+        entry.nextByCMTS = byCMTS.put(cmts, entry);
+        if (entry.nextByCMTS != null)
+            entry.nextByCMTS.prevByCMTS = entry;
+
+        if (entry.getSubscriberID() != null) {
+            entry.prevBySubscriber = null;
+            entry.nextBySubscriber = bySubscriber.put(subscriberKey(entry.getSubscriberID()), entry);
+            if (entry.nextBySubscriber != null)
+                entry.nextBySubscriber.prevBySubscriber = entry;
+        }
+
+        entry.prevByAMID = null;
+        entry.nextByAMID = byAMID.put(entry.getAMID(), entry);
+        if (entry.nextByAMID != null)
+            entry.nextByAMID.prevByAMID = entry;
+
+        if (entry.getFlowID() != 0)
+            byFlowID.put(entry.getFlowID(), entry);
+    }
+
+    private void unlink(final int cmts, final GateRecord entry) {
+        if (entry.prevByCMTS != null)
+            entry.prevByCMTS.nextByCMTS = entry.nextByCMTS;
+        else
+            replaceHead(byCMTS, cmts, entry.nextByCMTS);
+        if (entry.nextByCMTS != null)
+            entry.nextByCMTS.prevByCMTS = entry.prevByCMTS;
+
+        if (entry.getSubscriberID() != null) {
+            if (entry.prevBySubscriber != null)
+                entry.prevBySubscriber.nextBySubscriber = entry.nextBySubscriber;
+            else
+                replaceHead(bySubscriber, subscriberKey(entry.getSubscriberID()), entry.nextBySubscriber);
+            if (entry.nextBySubscriber != null)
+                entry.nextBySubscriber.prevBySubscriber = entry.prevBySubscriber;
+        }
+
+        if (entry.prevByAMID != null)
+            entry.prevByAMID.nextByAMID = entry.nextByAMID;
+        else
+            replaceHead(byAMID, entry.getAMID(), entry.nextByAMID);
+        if (entry.nextByAMID != null)
+            entry.nextByAMID.prevByAMID = entry.prevByAMID;
+
+        // a newer gate of the same flow may have taken over the key
+        if (entry.getFlowID() != 0 && byFlowID.get(entry.getFlowID()) == entry)
+            byFlowID.remove(entry.getFlowID());
+
+        entry.prevByCMTS = entry.nextByCMTS = null;
+        entry.prevBySubscriber = entry.nextBySubscriber = null;
+        entry.prevByAMID = entry.nextByAMID = null;
+        entry.linked = false;
+    }
+
+    private static void replaceHead(final LongObjectMap<GateRecord> index, final long key, final GateRecord head) {
+        if (head != null)
+            index.put(key, head);
+        else
+            index.remove(key);
+    }
+
+    private static long key(final int cmts, final int gateID) {
+        return ((long) cmts << 32) | (gateID & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Hashes an address on 64 bits, lookups compare the full address
+     */
+    static long subscriberKey(final byte[] address) {
+        long key = 0;
+        for (final byte b : address)
+            key = key * 1099511628211L + (b & 0xFF);
+        return key;
+    }
+
+    private static class Holder {
+        static final IGateTable INSTANCE = create();
+
+        private static IGateTable create() {
+            final String dir = PCMMProperties.get(PCMMConstants.GATE_JOURNAL_DIR, String.class);
+            if (dir == null)
+                return store();
+            try {
+                final GateJournal journal = new GateJournal(new File(dir),
+                        PCMMProperties.get(PCMMConstants.GATE_JOURNAL_SEGMENT_SIZE, Integer.class, 16 << 20));
+                return new JournaledGateTable(store(), journal,
+                        PCMMProperties.get(PCMMConstants.GATE_JOURNAL_SEGMENTS, Integer.class, 4));
+            } catch (IOException e) {
+                logger.error("Unable to recover the gate table journal in " + dir + ", not journaling", e);
+                return store();
+            }
+        }
+
+        private static IGateTable store() {
+            return "offheap".equalsIgnoreCase(PCMMProperties.get(PCMMConstants.GATE_STORE, String.class, "heap"))
+                    ? new OffHeapGateTable() : new GateTable();
+        }
+    }
+
+}
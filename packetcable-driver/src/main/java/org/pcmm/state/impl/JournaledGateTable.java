@@ -0,0 +1,276 @@
+/**
+ @header@
+ */
+package org.pcmm.state.impl;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Iterables;
+import org.pcmm.state.IGateRecord;
+import org.pcmm.state.IGateTable;
+import org.pcmm.state.IState;
+import org.pcmm.state.IStateful;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ * {@link IGateTable} recording its updates in a {@link GateJournal}. The
+ * table is rebuilt from the journal when created and a snapshot compacts the
+ * journal once it has grown past a number of segments.
+ * </p>
+ * <p>
+ * Lookups go straight to the underlying table, updates are serialized so the
+ * journal replays them in the order they were applied. A journal write
+ * failure is logged and does not fail the update.
+ * </p>
+ * <p>
+ * The updating thread only switches the journal to a new segment, the
+ * snapshot itself is written by a dedicated compaction thread reading the
+ * gates CMTS by CMTS while the table keeps being updated.
+ * </p>
+ */
+public class JournaledGateTable implements IGateTable, IStateful {
+
+    private final static Logger logger = LoggerFactory.getLogger(JournaledGateTable.class);
+
+    private final IGateTable table;
+    private final GateJournal journal;
+    private final int maxSegments;
+    private final Executor compactor;
+    private final AtomicBoolean compacting;
+    private final Set<InetAddress> cmtses;
+    private boolean recovering;
+
+    /**
+     * @param table
+     *            the table, filled from the journal
+     * @param journal
+     *            the journal
+     * @param maxSegments
+     *            the number of segments written before a snapshot
+     * @throws IOException
+     *             when the journal cannot be read
+     */
+    public JournaledGateTable(final IGateTable table, final GateJournal journal, final int maxSegments)
+            throws IOException {
+        this(table, journal, maxSegments, newCompactor());
+    }
+
+    /**
+     * @param table
+     *            the table, filled from the journal
+     * @param journal
+     *            the journal
+     * @param maxSegments
+     *            the number of segments written before a snapshot
+     * @param compactor
+     *            the executor writing the snapshots
+     * @throws IOException
+     *             when the journal cannot be read
+     */
+    public JournaledGateTable(final IGateTable table, final GateJournal journal, final int maxSegments,
+            final Executor compactor) throws IOException {
+        this.table = table;
+        this.journal = journal;
+        this.maxSegments = maxSegments;
+        this.compactor = compactor;
+        this.compacting = new AtomicBoolean();
+        cmtses = Collections.newSetFromMap(new ConcurrentHashMap<InetAddress, Boolean>());
+        // the replayed updates are not journaled again
+        recovering = true;
+        try {
+            journal.recover(this);
+        } finally {
+            recovering = false;
+        }
+    }
+
+    @Override
+    public synchronized IGateRecord put(final IGateRecord record) {
+        final IGateRecord previous = table.put(record);
+        cmtses.add(record.getCMTS());
+        if (recovering)
+            return previous;
+        try {
+            journal.appendSet(record);
+            compact();
+        } catch (IOException e) {
+            logger.error("Unable to journal the gate " + record, e);
+        }
+        return previous;
+    }
+
+    @Override
+    public IGateRecord get(final InetAddress cmts, final int gateID) {
+        return table.get(cmts, gateID);
+    }
+
+    @Override
+    public synchronized IGateRecord remove(final InetAddress cmts, final int gateID) {
+        final IGateRecord record = table.remove(cmts, gateID);
+        if (record != null && !recovering) {
+            try {
+                journal.appendDelete(cmts, gateID);
+                compact();
+            } catch (IOException e) {
+                logger.error("Unable to journal the deletion of the gate " + record, e);
+            }
+        }
+        return record;
+    }
+
+    @Override
+    public IGateRecord getByFlowID(final long flowID) {
+        return table.getByFlowID(flowID);
+    }
+
+    @Override
+    public List<IGateRecord> getBySubscriberID(final byte[] subscriberID) {
+        return table.getBySubscriberID(subscriberID);
+    }
+
+    @Override
+    public List<IGateRecord> getByAMID(final int amid) {
+        return table.getByAMID(amid);
+    }
+
+    @Override
+    public List<IGateRecord> getGates(final InetAddress cmts) {
+        return table.getGates(cmts);
+    }
+
+    @Override
+    public boolean hasGates(final InetAddress cmts) {
+        return table.hasGates(cmts);
+    }
+
+    @Override
+    public synchronized int removeAll(final InetAddress cmts) {
+        final int count = table.removeAll(cmts);
+        if (count > 0 && !recovering) {
+            try {
+                journal.appendClear(cmts);
+                compact();
+            } catch (IOException e) {
+                logger.error("Unable to journal the removal of the gates of " + cmts, e);
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int size() {
+        return table.size();
+    }
+
+    /**
+     * Records an error returned by a CMTS in the journal
+     *
+     * @param cmts
+     *            the CMTS address
+     * @param gateID
+     *            the GateID or 0
+     * @param transactionID
+     *            the TransactionID
+     * @param errorCode
+     *            the PCMM error code
+     */
+    public void recordError(final InetAddress cmts, final int gateID, final short transactionID,
+            final short errorCode) {
+        try {
+            journal.appendError(cmts, gateID, transactionID, errorCode);
+        } catch (IOException e) {
+            logger.error("Unable to journal the error " + errorCode + " of " + cmts, e);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the table from the calling thread and drops the
+     * journal segments it covers
+     */
+    @Override
+    public void recordState() {
+        try {
+            journal.snapshot(gates());
+        } catch (IOException e) {
+            logger.error("Unable to write the gate table snapshot", e);
+        }
+    }
+
+    @Override
+    public IState getRecoredState() {
+        return this;
+    }
+
+    /**
+     * Called holding the lock, hands a snapshot over to the compactor once
+     * the journal has too many segments and none is being written
+     */
+    private void compact() throws IOException {
+        if (journal.getSegmentCount() <= maxSegments || !compacting.compareAndSet(false, true))
+            return;
+        // the updates from now on are replayed over the snapshot
+        final long seq;
+        try {
+            seq = journal.rotate();
+        } catch (IOException e) {
+            compacting.set(false);
+            throw e;
+        }
+        try {
+            compactor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        journal.snapshot(seq, gates());
+                    } catch (IOException | RuntimeException e) {
+                        logger.error("Unable to write the gate table snapshot", e);
+                    } finally {
+                        compacting.set(false);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            compacting.set(false);
+            logger.error("Gate table compaction rejected", e);
+        }
+    }
+
+    /**
+     * @return the gates of the table, read one CMTS at a time while iterated
+     */
+    private Iterable<IGateRecord> gates() {
+        return Iterables.concat(Iterables.transform(cmtses, new Function<InetAddress, Iterable<IGateRecord>>() {
+            @Override
+            public Iterable<IGateRecord> apply(final InetAddress cmts) {
+                return table.getGates(cmts);
+            }
+        }));
+    }
+
+    private static ExecutorService newCompactor() {
+        return Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                // like the reactor and the timer wheel threads
+                final Thread thread = new Thread(runnable, "PCMM-gate-compactor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+}
@@ -0,0 +1,164 @@
+/**
+ @header@
+ */
+package org.pcmm.state.impl;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Open addressing hash map from primitive long keys to non negative int
+ * values with linear probing, used to index records by their slot number.
+ * Two primitive arrays hold all the mappings. Not thread safe.
+ * </p>
+ */
+class LongIntMap {
+
+    /**
+     * value returned for a missing key
+     */
+    static final int NO_VALUE = -1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    /**
+     * value + 1, 0 marks a free slot
+     */
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    /**
+     * @param expectedSize
+     *            the expected number of mappings
+     */
+    LongIntMap(final int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 0.75f <= expectedSize)
+            capacity <<= 1;
+        allocate(capacity);
+    }
+
+    /**
+     * @param key
+     *            the key
+     * @return the value or {@link #NO_VALUE}
+     */
+    int get(final long key) {
+        for (int i = slot(key);; i = (i + 1) & mask) {
+            final int value = values[i];
+            if (value == 0)
+                return NO_VALUE;
+            if (keys[i] == key)
+                return value - 1;
+        }
+    }
+
+    /**
+     * @param key
+     *            the key
+     * @param value
+     *            the value, cannot be negative
+     * @return the previous value or {@link #NO_VALUE}
+     */
+    int put(final long key, final int value) {
+        if (value < 0)
+            throw new IllegalArgumentException("Value cannot be negative");
+        int i = slot(key);
+        for (;; i = (i + 1) & mask) {
+            final int previous = values[i];
+            if (previous == 0)
+                break;
+            if (keys[i] == key) {
+                values[i] = value + 1;
+                return previous - 1;
+            }
+        }
+        keys[i] = key;
+        values[i] = value + 1;
+        if (++size >= resizeAt)
+            allocate(keys.length << 1);
+        return NO_VALUE;
+    }
+
+    /**
+     * @param key
+     *            the key
+     * @return the value removed or {@link #NO_VALUE}
+     */
+    int remove(final long key) {
+        for (int i = slot(key);; i = (i + 1) & mask) {
+            final int value = values[i];
+            if (value == 0)
+                return NO_VALUE;
+            if (keys[i] == key) {
+                shiftBack(i);
+                size--;
+                return value - 1;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    /**
+     * Fills the slot freed by a removal with the next entries of the probe
+     * sequence, no tombstone is left behind
+     */
+    private void shiftBack(int free) {
+        int i = free;
+        while (true) {
+            values[free] = 0;
+            int value;
+            long key;
+            while (true) {
+                i = (i + 1) & mask;
+                value = values[i];
+                if (value == 0)
+                    return;
+                key = keys[i];
+                final int home = slot(key);
+                if (free <= i ? (home <= free || home > i) : (home <= free && home > i))
+                    break;
+            }
+            keys[free] = key;
+            values[free] = value;
+            free = i;
+        }
+    }
+
+    private int slot(final long key) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void allocate(final int capacity) {
+        final long[] oldKeys = keys;
+        final int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * 0.75f);
+        if (oldValues != null) {
+            for (int j = 0; j < oldValues.length; j++) {
+                if (oldValues[j] == 0)
+                    continue;
+                int i = slot(oldKeys[j]);
+                while (values[i] != 0)
+                    i = (i + 1) & mask;
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+}
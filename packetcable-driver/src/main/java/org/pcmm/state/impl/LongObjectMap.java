@@ -0,0 +1,169 @@
+/**
+ @header@
+ */
+package org.pcmm.state.impl;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Open addressing hash map with primitive long keys and linear probing. The
+ * keys are stored in a long array so a lookup touches no boxed key and a
+ * mapping costs two array slots. Not thread safe.
+ * </p>
+ *
+ * @param <V>
+ *            the value type, values cannot be null
+ */
+class LongObjectMap<V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    /**
+     * @param expectedSize
+     *            the expected number of mappings
+     */
+    LongObjectMap(final int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * @param key
+     *            the key
+     * @return the value or null
+     */
+    @SuppressWarnings("unchecked")
+    V get(final long key) {
+        for (int i = slot(key);; i = (i + 1) & mask) {
+            final Object value = values[i];
+            if (value == null)
+                return null;
+            if (keys[i] == key)
+                return (V) value;
+        }
+    }
+
+    /**
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     * @return the previous value or null
+     */
+    @SuppressWarnings("unchecked")
+    V put(final long key, final V value) {
+        if (value == null)
+            throw new IllegalArgumentException("Value cannot be null");
+        int i = slot(key);
+        for (;; i = (i + 1) & mask) {
+            final Object previous = values[i];
+            if (previous == null)
+                break;
+            if (keys[i] == key) {
+                values[i] = value;
+                return (V) previous;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size >= resizeAt)
+            allocate(keys.length << 1);
+        return null;
+    }
+
+    /**
+     * @param key
+     *            the key
+     * @return the value removed or null
+     */
+    @SuppressWarnings("unchecked")
+    V remove(final long key) {
+        for (int i = slot(key);; i = (i + 1) & mask) {
+            final Object value = values[i];
+            if (value == null)
+                return null;
+            if (keys[i] == key) {
+                shiftBack(i);
+                size--;
+                return (V) value;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Fills the slot freed by a removal with the next entries of the probe
+     * sequence, no tombstone is left behind
+     */
+    private void shiftBack(int free) {
+        int i = free;
+        while (true) {
+            values[free] = null;
+            Object value;
+            long key;
+            while (true) {
+                i = (i + 1) & mask;
+                value = values[i];
+                if (value == null)
+                    return;
+                key = keys[i];
+                final int home = slot(key);
+                // the entry can move to the free slot unless its home slot
+                // lies cyclically in (free, i]
+                if (free <= i ? (home <= free || home > i) : (home <= free && home > i))
+                    break;
+            }
+            keys[free] = key;
+            values[free] = value;
+            free = i;
+        }
+    }
+
+    private int slot(final long key) {
+        // Fibonacci hashing spreads sequential keys
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void allocate(final int capacity) {
+        final long[] oldKeys = keys;
+        final Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * 0.75f);
+        if (oldValues != null) {
+            for (int j = 0; j < oldValues.length; j++) {
+                if (oldValues[j] == null)
+                    continue;
+                int i = slot(oldKeys[j]);
+                while (values[i] != null)
+                    i = (i + 1) & mask;
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private static int capacityFor(final int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 0.75f <= expectedSize)
+            capacity <<= 1;
+        return capacity;
+    }
+
+}
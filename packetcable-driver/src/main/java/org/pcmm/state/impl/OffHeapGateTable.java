@@ -0,0 +1,686 @@
+/**
+ @header@
+ */
+package org.pcmm.state.impl;
+
+import org.pcmm.gates.IClassifier;
+import org.pcmm.gates.IExtendedClassifier;
+import org.pcmm.gates.IGateSpec;
+import org.pcmm.gates.IPCMMGate;
+import org.pcmm.gates.ITrafficProfile;
+import org.pcmm.gates.impl.AMID;
+import org.pcmm.gates.impl.BestEffortService;
+import org.pcmm.gates.impl.Classifier;
+import org.pcmm.gates.impl.DOCSISServiceClassNameTrafficProfile;
+import org.pcmm.gates.impl.ExtendedClassifier;
+import org.pcmm.gates.impl.GateID;
+import org.pcmm.gates.impl.GateSpec;
+import org.pcmm.gates.impl.PCMMGateReq;
+import org.pcmm.gates.impl.SubscriberID;
+import org.pcmm.gates.impl.TransactionID;
+import org.pcmm.state.IGateRecord;
+import org.pcmm.state.IGateTable;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * <p>
+ * Implementation of {@link IGateTable} keeping the gates out of the Java heap,
+ * for gate populations large enough for one object graph per gate to weigh on
+ * the garbage collector.
+ * </p>
+ * <p>
+ * Each gate is a fixed width record in a direct buffer slab: GateID,
+ * TransactionID, subscriber address, AMID, flow identifier, the encoded
+ * classifier and GateSpec, a reference to a shared traffic profile and the
+ * index links. A classifier longer than its slot, e.g. an IPv6 classifier, is
+ * spilled to the heap and found by record number. The indexes are primitive open addressing maps from the keys
+ * to record numbers, the records of a CMTS, a subscriber or an AMID are
+ * chained through the records. The records returned are snapshots, their
+ * gate is only decoded when asked for.
+ * </p>
+ * <p>
+ * Distinct traffic profiles are expected to be few, their encodings are kept
+ * on the heap and shared by the gates using them, never the caller's
+ * instance, and dropped with the last gate using them. Each record returned
+ * decodes its own profile, a caller changing it changes no other gate.
+ * </p>
+ */
+public class OffHeapGateTable implements IGateTable {
+
+    private static final int RECORD_SIZE = 128;
+    private static final int RECORD_SHIFT = 7;
+    // 8192 records, 1 MiB per slab
+    private static final int SLAB_SHIFT = 13;
+    private static final int SLAB_MASK = (1 << SLAB_SHIFT) - 1;
+
+    private static final int MAX_SUBSCRIBER_LENGTH = 16;
+    private static final int MAX_CLASSIFIER_LENGTH = IExtendedClassifier.LENGTH;
+    private static final int GATE_SPEC_LENGTH = 16;
+
+    // record layout
+    private static final int STATE = 0;
+    private static final int CMTS = 4;
+    private static final int GATE_ID = 8;
+    private static final int TRANSACTION_ID = 12;
+    private static final int SUBSCRIBER_LENGTH = 14;
+    private static final int CLASSIFIER_LENGTH = 15;
+    private static final int SUBSCRIBER = 16;
+    private static final int AMID = 32;
+    private static final int PROFILE = 36;
+    private static final int FLOW_ID = 40;
+    private static final int NEXT_BY_CMTS = 48;
+    private static final int PREV_BY_CMTS = 52;
+    private static final int NEXT_BY_SUBSCRIBER = 56;
+    private static final int PREV_BY_SUBSCRIBER = 60;
+    private static final int NEXT_BY_AMID = 64;
+    private static final int PREV_BY_AMID = 68;
+    private static final int CLASSIFIER = 72;
+    private static final int GATE_SPEC = CLASSIFIER + MAX_CLASSIFIER_LENGTH;
+
+    // CLASSIFIER_LENGTH of a spilled classifier
+    private static final int SPILLED = 0xFF;
+
+    private static final int FREE = 0;
+    private static final int USED = 1;
+    private static final int NONE = -1;
+
+    private final ReadWriteLock lock;
+    private final ConcurrentMap<InetAddress, Integer> cmtsNumbers;
+    private final List<InetAddress> cmtsAddresses;
+    private final List<ByteBuffer> slabs;
+    private final LongIntMap gates;
+    private final LongIntMap byFlowID;
+    private final LongIntMap byCMTS;
+    private final LongIntMap bySubscriber;
+    private final LongIntMap byAMID;
+    private final Map<ByteBuffer, Integer> profileRefs;
+    private final List<Profile> profiles;
+    private final Deque<Integer> freeProfiles;
+    /**
+     * the classifiers longer than their slot, by record
+     */
+    private final Map<Integer, byte[]> spilledClassifiers;
+    private final byte[] scratch;
+
+    /**
+     * first free record, the free records are chained by NEXT_BY_CMTS
+     */
+    private int freeList;
+    /**
+     * number of records ever allocated
+     */
+    private int allocated;
+
+    public OffHeapGateTable() {
+        this(1 << SLAB_SHIFT);
+    }
+
+    /**
+     * @param expectedSize
+     *            the expected number of gates
+     */
+    public OffHeapGateTable(final int expectedSize) {
+        lock = new ReentrantReadWriteLock();
+        cmtsNumbers = new ConcurrentHashMap<>();
+        cmtsAddresses = new ArrayList<>();
+        slabs = new ArrayList<>();
+        gates = new LongIntMap(expectedSize);
+        byFlowID = new LongIntMap(expectedSize);
+        byCMTS = new LongIntMap(16);
+        bySubscriber = new LongIntMap(expectedSize);
+        byAMID = new LongIntMap(16);
+        profileRefs = new HashMap<>();
+        profiles = new ArrayList<>();
+        freeProfiles = new ArrayDeque<>();
+        spilledClassifiers = new HashMap<>();
+        scratch = new byte[MAX_CLASSIFIER_LENGTH];
+        freeList = NONE;
+    }
+
+    @Override
+    public IGateRecord put(final IGateRecord record) {
+        final byte[] subscriberID = record.getSubscriberID();
+        if (subscriberID != null && subscriberID.length > MAX_SUBSCRIBER_LENGTH)
+            throw new IllegalArgumentException("Subscriber address of " + subscriberID.length + " bytes");
+        lock.writeLock().lock();
+        try {
+            final int cmts = cmtsNumber(record.getCMTS());
+            final long key = key(cmts, record.getGateID());
+            IGateRecord previous = null;
+            int slot = gates.get(key);
+            if (slot != LongIntMap.NO_VALUE) {
+                previous = snapshot(slot);
+                unlink(slot);
+            } else {
+                slot = allocate();
+                gates.put(key, slot);
+            }
+            write(slot, cmts, record);
+            link(slot);
+            return previous;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public IGateRecord get(final InetAddress cmts, final int gateID) {
+        final Integer number = cmtsNumbers.get(cmts);
+        if (number == null)
+            return null;
+        lock.readLock().lock();
+        try {
+            final int slot = gates.get(key(number, gateID));
+            return slot != LongIntMap.NO_VALUE ? snapshot(slot) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public IGateRecord remove(final InetAddress cmts, final int gateID) {
+        final Integer number = cmtsNumbers.get(cmts);
+        if (number == null)
+            return null;
+        lock.writeLock().lock();
+        try {
+            final int slot = gates.remove(key(number, gateID));
+            if (slot == LongIntMap.NO_VALUE)
+                return null;
+            final IGateRecord record = snapshot(slot);
+            unlink(slot);
+            release(slot);
+            return record;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public IGateRecord getByFlowID(final long flowID) {
+        lock.readLock().lock();
+        try {
+            final int slot = byFlowID.get(flowID);
+            return slot != LongIntMap.NO_VALUE ? snapshot(slot) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<IGateRecord> getBySubscriberID(final byte[] subscriberID) {
+        final List<IGateRecord> list = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int slot = bySubscriber.get(GateTable.subscriberKey(subscriberID)); slot != NONE;
+                 slot = getInt(slot, NEXT_BY_SUBSCRIBER)) {
+                final IGateRecord record = snapshot(slot);
+                // the chain holds every address with the same hash
+                if (Arrays.equals(subscriberID, record.getSubscriberID()))
+                    list.add(record);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return list;
+    }
+
+    @Override
+    public List<IGateRecord> getByAMID(final int amid) {
+        final List<IGateRecord> list = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int slot = byAMID.get(amid); slot != NONE; slot = getInt(slot, NEXT_BY_AMID))
+                list.add(snapshot(slot));
+        } finally {
+            lock.readLock().unlock();
+        }
+        return list;
+    }
+
+    @Override
+    public List<IGateRecord> getGates(final InetAddress cmts) {
+        final List<IGateRecord> list = new ArrayList<>();
+        final Integer number = cmtsNumbers.get(cmts);
+        if (number == null)
+            return list;
+        lock.readLock().lock();
+        try {
+            for (int slot = byCMTS.get(number); slot != NONE; slot = getInt(slot, NEXT_BY_CMTS))
+                list.add(snapshot(slot));
+        } finally {
+            lock.readLock().unlock();
+        }
+        return list;
+    }
+
+    @Override
+    public boolean hasGates(final InetAddress cmts) {
+        final Integer number = cmtsNumbers.get(cmts);
+        if (number == null)
+            return false;
+        lock.readLock().lock();
+        try {
+            return byCMTS.get(number) != NONE;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int removeAll(final InetAddress cmts) {
+        final Integer number = cmtsNumbers.get(cmts);
+        if (number == null)
+            return 0;
+        int count = 0;
+        lock.writeLock().lock();
+        try {
+            int slot = byCMTS.get(number);
+            while (slot != NONE) {
+                final int next = getInt(slot, NEXT_BY_CMTS);
+                gates.remove(key(number, getInt(slot, GATE_ID)));
+                unlink(slot);
+                release(slot);
+                slot = next;
+                count++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return count;
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return gates.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of distinct traffic profiles held by the table
+     */
+    public int getProfileCount() {
+        lock.readLock().lock();
+        try {
+            return profileRefs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of bytes of record storage allocated off the heap
+     */
+    public long getAllocatedMemory() {
+        lock.readLock().lock();
+        try {
+            return (long) slabs.size() * (RECORD_SIZE << SLAB_SHIFT);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int cmtsNumber(final InetAddress cmts) {
+        Integer number = cmtsNumbers.get(cmts);
+        if (number == null) {
+            number = cmtsAddresses.size();
+            cmtsAddresses.add(cmts);
+            cmtsNumbers.put(cmts, number);
+        }
+        return number;
+    }
+
+    /**
+     * Takes a record from the free list or from the last slab, a slab is
+     * added when full
+     */
+    private int allocate() {
+        final int slot;
+        if (freeList != NONE) {
+            slot = freeList;
+            freeList = getInt(slot, NEXT_BY_CMTS);
+        } else {
+            slot = allocated++;
+            if ((slot >>> SLAB_SHIFT) == slabs.size())
+                slabs.add(ByteBuffer.allocateDirect(RECORD_SIZE << SLAB_SHIFT));
+        }
+        putInt(slot, STATE, USED);
+        putInt(slot, PROFILE, NONE);
+        return slot;
+    }
+
+    private void release(final int slot) {
+        unref(getInt(slot, PROFILE));
+        putInt(slot, PROFILE, NONE);
+        spilledClassifiers.remove(slot);
+        putInt(slot, STATE, FREE);
+        putInt(slot, NEXT_BY_CMTS, freeList);
+        freeList = slot;
+    }
+
+    private void write(final int slot, final int cmts, final IGateRecord record) {
+        final ByteBuffer slab = slab(slot);
+        final int base = base(slot);
+        slab.putInt(base + CMTS, cmts);
+        slab.putInt(base + GATE_ID, record.getGateID());
+        slab.putShort(base + TRANSACTION_ID, record.getTransactionID());
+        final byte[] subscriberID = record.getSubscriberID();
+        slab.put(base + SUBSCRIBER_LENGTH, (byte) (subscriberID != null ? subscriberID.length : 0));
+        if (subscriberID != null)
+            put(slab, base + SUBSCRIBER, subscriberID, subscriberID.length);
+        slab.putInt(base + AMID, record.getAMID());
+        slab.putLong(base + FLOW_ID, record.getFlowID());
+
+        final IPCMMGate gate = record.getGate();
+        final IClassifier classifier = gate != null ? gate.getClassifier() : null;
+        spilledClassifiers.remove(slot);
+        if (classifier == null) {
+            slab.put(base + CLASSIFIER_LENGTH, (byte) 0);
+        } else {
+            final byte[] data = classifier.getAsBinaryArray();
+            if (data.length <= MAX_CLASSIFIER_LENGTH) {
+                slab.put(base + CLASSIFIER_LENGTH, (byte) data.length);
+                put(slab, base + CLASSIFIER, data, data.length);
+            } else {
+                slab.put(base + CLASSIFIER_LENGTH, (byte) SPILLED);
+                spilledClassifiers.put(slot, data);
+            }
+        }
+        final IGateSpec gateSpec = gate != null ? gate.getGateSpec() : null;
+        if (gateSpec != null && gateSpec.getLength() == GATE_SPEC_LENGTH) {
+            final byte[] data = gateSpec.getAsBinaryArray();
+            put(slab, base + GATE_SPEC, data, data.length);
+        } else {
+            slab.putInt(base + GATE_SPEC, 0);
+        }
+        // the new reference is taken first, a gate keeping its profile does not re-decode it
+        final int previous = slab.getInt(base + PROFILE);
+        slab.putInt(base + PROFILE, gate != null ? ref(gate.getTrafficProfile()) : NONE);
+        unref(previous);
+    }
+
+    /**
+     * Interns a traffic profile by its encoding, later changes to the caller's
+     * instance do not leak into the table
+     */
+    private int ref(final ITrafficProfile profile) {
+        if (profile == null)
+            return NONE;
+        final byte[] data = profile.getAsBinaryArray().clone();
+        final ByteBuffer encoded = ByteBuffer.wrap(data);
+        Integer ref = profileRefs.get(encoded);
+        if (ref == null) {
+            final Profile interned = new Profile(encoded);
+            ref = freeProfiles.poll();
+            if (ref == null) {
+                ref = profiles.size();
+                profiles.add(interned);
+            } else {
+                profiles.set(ref, interned);
+            }
+            profileRefs.put(encoded, ref);
+        }
+        profiles.get(ref).refs++;
+        return ref;
+    }
+
+    /**
+     * Drops a reference to an interned profile, the profile goes with its last
+     * gate
+     */
+    private void unref(final int ref) {
+        if (ref == NONE)
+            return;
+        final Profile profile = profiles.get(ref);
+        if (--profile.refs > 0)
+            return;
+        profileRefs.remove(profile.encoded);
+        profiles.set(ref, null);
+        freeProfiles.push(ref);
+    }
+
+    private static ITrafficProfile decodeProfile(final byte[] data) {
+        if (data[3] == DOCSISServiceClassNameTrafficProfile.STYPE)
+            return new DOCSISServiceClassNameTrafficProfile(data);
+        // as parsed by PCMMGateReq
+        return new BestEffortService(data);
+    }
+
+    private void link(final int slot) {
+        link(slot, byCMTS, getInt(slot, CMTS), NEXT_BY_CMTS, PREV_BY_CMTS);
+        final byte[] subscriberID = subscriberID(slot);
+        if (subscriberID != null)
+            link(slot, bySubscriber, GateTable.subscriberKey(subscriberID), NEXT_BY_SUBSCRIBER, PREV_BY_SUBSCRIBER);
+        else
+            putInt(slot, NEXT_BY_SUBSCRIBER, NONE);
+        link(slot, byAMID, getInt(slot, AMID), NEXT_BY_AMID, PREV_BY_AMID);
+        final long flowID = getLong(slot, FLOW_ID);
+        if (flowID != 0)
+            byFlowID.put(flowID, slot);
+    }
+
+    private void link(final int slot, final LongIntMap heads, final long key, final int next, final int prev) {
+        final int head = heads.put(key, slot);
+        putInt(slot, prev, NONE);
+        putInt(slot, next, head);
+        if (head != NONE)
+            putInt(head, prev, slot);
+    }
+
+    private void unlink(final int slot) {
+        unlink(slot, byCMTS, getInt(slot, CMTS), NEXT_BY_CMTS, PREV_BY_CMTS);
+        final byte[] subscriberID = subscriberID(slot);
+        if (subscriberID != null)
+            unlink(slot, bySubscriber, GateTable.subscriberKey(subscriberID), NEXT_BY_SUBSCRIBER,
+                    PREV_BY_SUBSCRIBER);
+        unlink(slot, byAMID, getInt(slot, AMID), NEXT_BY_AMID, PREV_BY_AMID);
+        // a newer gate of the same flow may have taken over the key
+        final long flowID = getLong(slot, FLOW_ID);
+        if (flowID != 0 && byFlowID.get(flowID) == slot)
+            byFlowID.remove(flowID);
+    }
+
+    private void unlink(final int slot, final LongIntMap heads, final long key, final int next, final int prev) {
+        final int nextSlot = getInt(slot, next);
+        final int prevSlot = getInt(slot, prev);
+        if (prevSlot != NONE)
+            putInt(prevSlot, next, nextSlot);
+        else if (nextSlot != NONE)
+            heads.put(key, nextSlot);
+        else
+            heads.remove(key);
+        if (nextSlot != NONE)
+            putInt(nextSlot, prev, prevSlot);
+    }
+
+    private byte[] subscriberID(final int slot) {
+        final ByteBuffer slab = slab(slot);
+        final int base = base(slot);
+        final int length = slab.get(base + SUBSCRIBER_LENGTH);
+        if (length == 0)
+            return null;
+        final byte[] address = new byte[length];
+        for (int i = 0; i < length; i++)
+            address[i] = slab.get(base + SUBSCRIBER + i);
+        return address;
+    }
+
+    /**
+     * Copies a record on the heap
+     */
+    private IGateRecord snapshot(final int slot) {
+        final ByteBuffer slab = slab(slot);
+        final int base = base(slot);
+        final byte[] copy = new byte[RECORD_SIZE];
+        for (int i = 0; i < RECORD_SIZE; i++)
+            copy[i] = slab.get(base + i);
+        final ByteBuffer record = ByteBuffer.wrap(copy);
+        final int profile = record.getInt(PROFILE);
+        final byte[] classifier = (copy[CLASSIFIER_LENGTH] & 0xFF) == SPILLED ? spilledClassifiers.get(slot)
+                : null;
+        // the encodings are never changed, the snapshot decodes its own copies
+        return new Snapshot(cmtsAddresses.get(record.getInt(CMTS)), record, subscriberID(slot),
+                profile != NONE ? profiles.get(profile).encoded.array() : null, classifier);
+    }
+
+    private int getInt(final int slot, final int field) {
+        return slab(slot).getInt(base(slot) + field);
+    }
+
+    private long getLong(final int slot, final int field) {
+        return slab(slot).getLong(base(slot) + field);
+    }
+
+    private void putInt(final int slot, final int field, final int value) {
+        slab(slot).putInt(base(slot) + field, value);
+    }
+
+    private ByteBuffer slab(final int slot) {
+        return slabs.get(slot >>> SLAB_SHIFT);
+    }
+
+    private static int base(final int slot) {
+        return (slot & SLAB_MASK) << RECORD_SHIFT;
+    }
+
+    private static void put(final ByteBuffer slab, final int index, final byte[] data, final int length) {
+        for (int i = 0; i < length; i++)
+            slab.put(index + i, data[i]);
+    }
+
+    private static long key(final int cmts, final int gateID) {
+        return ((long) cmts << 32) | (gateID & 0xFFFFFFFFL);
+    }
+
+    /**
+     * An interned traffic profile encoding and the number of gates using it
+     */
+    private static class Profile {
+        private final ByteBuffer encoded;
+        private int refs;
+
+        Profile(final ByteBuffer encoded) {
+            this.encoded = encoded;
+        }
+    }
+
+    /**
+     * Heap copy of a record, the gate is rebuilt on demand
+     */
+    private static class Snapshot implements IGateRecord {
+        private final InetAddress cmts;
+        private final ByteBuffer record;
+        private final byte[] subscriberID;
+        /**
+         * shared with the table, only read
+         */
+        private final byte[] profile;
+        private final byte[] spilledClassifier;
+        private IPCMMGate gate;
+
+        Snapshot(final InetAddress cmts, final ByteBuffer record, final byte[] subscriberID,
+                final byte[] profile, final byte[] spilledClassifier) {
+            this.cmts = cmts;
+            this.record = record;
+            this.subscriberID = subscriberID;
+            this.profile = profile;
+            this.spilledClassifier = spilledClassifier;
+        }
+
+        @Override
+        public InetAddress getCMTS() {
+            return cmts;
+        }
+
+        @Override
+        public int getGateID() {
+            return record.getInt(GATE_ID);
+        }
+
+        @Override
+        public short getTransactionID() {
+            return record.getShort(TRANSACTION_ID);
+        }
+
+        @Override
+        public byte[] getSubscriberID() {
+            return subscriberID;
+        }
+
+        @Override
+        public int getAMID() {
+            return record.getInt(AMID);
+        }
+
+        @Override
+        public long getFlowID() {
+            return record.getLong(FLOW_ID);
+        }
+
+        @Override
+        public synchronized IPCMMGate getGate() {
+            if (gate == null)
+                gate = decode();
+            return gate;
+        }
+
+        private IPCMMGate decode() {
+            final byte[] data = record.array();
+            final IPCMMGate decoded = new PCMMGateReq();
+            final TransactionID trID = new TransactionID();
+            trID.setTransactionIdentifier(getTransactionID());
+            decoded.setTransactionID(trID);
+            final GateID gateID = new GateID();
+            gateID.setGateID(getGateID());
+            decoded.setGateID(gateID);
+            final AMID amid = new AMID();
+            amid.setApplicationType((short) (getAMID() >>> 16));
+            amid.setApplicationMgrTag((short) getAMID());
+            decoded.setAMID(amid);
+            if (subscriberID != null && (subscriberID.length == 4 || subscriberID.length == 16)) {
+                final SubscriberID subscriber = new SubscriberID();
+                subscriber.setSourceIPAddress(subscriberID);
+                decoded.setSubscriberID(subscriber);
+            }
+            if (record.getInt(GATE_SPEC) != 0)
+                decoded.setGateSpec(new GateSpec(Arrays.copyOfRange(data, GATE_SPEC, GATE_SPEC + GATE_SPEC_LENGTH)));
+            if (profile != null)
+                decoded.setTrafficProfile(decodeProfile(profile.clone()));
+            final int classifierLength = data[CLASSIFIER_LENGTH] & 0xFF;
+            if (classifierLength > 0) {
+                final byte[] classifier = classifierLength == SPILLED ? spilledClassifier.clone()
+                        : Arrays.copyOfRange(data, CLASSIFIER, CLASSIFIER + classifierLength);
+                if (classifier[3] == IExtendedClassifier.STYPE)
+                    decoded.setClassifier(new ExtendedClassifier(classifier));
+                else
+                    decoded.setClassifier(new Classifier(classifier));
+            }
+            return decoded;
+        }
+
+        @Override
+        public String toString() {
+            return "GateRecord: CMTS=" + cmts.getHostAddress() + " GateID=" + getGateID() + " TransactionID="
+                    + getTransactionID() + " SubscriberID=" + Arrays.toString(subscriberID) + " AMID=" + getAMID()
+                    + " flowID=" + getFlowID();
+        }
+    }
+
+}
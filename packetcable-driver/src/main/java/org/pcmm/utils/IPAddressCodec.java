@@ -0,0 +1,313 @@
+/**
+ @header@
+ */
+package org.pcmm.utils;
+
+/**
+ * <p>
+ * Converts IP addresses between their text form and the 4 or 16 bytes of
+ * the PCMM objects without going through {@link java.net.InetAddress}, the
+ * text is never resolved and an invalid address is rejected instead of being
+ * looked up.
+ * </p>
+ * <p>
+ * IPv4 addresses are read in dotted-quad form, IPv6 addresses in any form of
+ * RFC 4291, trailing dotted-quad included, and are written in the canonical
+ * form of RFC 5952. A zone index (%zone) is ignored.
+ * </p>
+ */
+public class IPAddressCodec {
+
+    public static final int IPV4_LENGTH = 4;
+    public static final int IPV6_LENGTH = 16;
+
+    private IPAddressCodec() {
+    }
+
+    /**
+     * @param text
+     *            an IPv4 or IPv6 address
+     * @return the 4 or 16 bytes of the address
+     * @throws IllegalArgumentException
+     *             when the text is not an address
+     */
+    public static byte[] parse(final CharSequence text) {
+        final byte[] address = new byte[isIPv6(text) ? IPV6_LENGTH : IPV4_LENGTH];
+        parse(text, address, 0);
+        return address;
+    }
+
+    /**
+     * Parses an address into a buffer
+     *
+     * @param text
+     *            an IPv4 or IPv6 address
+     * @param dst
+     *            the buffer
+     * @param offset
+     *            the position of the address in the buffer
+     * @return the number of bytes written, 4 or 16
+     * @throws IllegalArgumentException
+     *             when the text is not an address
+     */
+    public static int parse(final CharSequence text, final byte[] dst, final int offset) {
+        final int end = end(text);
+        if (isIPv6(text)) {
+            parseIPv6(text, end, dst, offset);
+            return IPV6_LENGTH;
+        }
+        writeInt(parseIPv4(text, 0, end), dst, offset);
+        return IPV4_LENGTH;
+    }
+
+    /**
+     * @param text
+     *            an IPv4 address in dotted-quad form
+     * @return the address, most significant byte first
+     * @throws IllegalArgumentException
+     *             when the text is not an IPv4 address
+     */
+    public static int parseIPv4(final CharSequence text) {
+        return parseIPv4(text, 0, end(text));
+    }
+
+    /**
+     * @param text
+     *            an address
+     * @return true when the text is an IPv6 address, which does not
+     *         validate it
+     */
+    public static boolean isIPv6(final CharSequence text) {
+        if (text == null)
+            throw new IllegalArgumentException("No address");
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == ':')
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param address
+     *            the 4 or 16 bytes of an address
+     * @return the dotted-quad or RFC 5952 form
+     */
+    public static String format(final byte[] address) {
+        if (address == null)
+            throw new IllegalArgumentException("No address");
+        if (address.length == IPV4_LENGTH)
+            return format(toInt(address, 0));
+        if (address.length != IPV6_LENGTH)
+            throw new IllegalArgumentException("Invalid address length " + address.length);
+        return formatIPv6(address);
+    }
+
+    /**
+     * @param address
+     *            an IPv4 address
+     * @return the dotted-quad form
+     */
+    public static String format(final int address) {
+        return new StringBuilder(15).append(address >>> 24).append('.').append((address >>> 16) & 0xFF)
+                .append('.').append((address >>> 8) & 0xFF).append('.').append(address & 0xFF).toString();
+    }
+
+    /**
+     * @param address
+     *            an IPv4 address
+     * @return the 4 bytes of the address
+     */
+    public static byte[] toBytes(final int address) {
+        final byte[] bytes = new byte[IPV4_LENGTH];
+        writeInt(address, bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * @param bytes
+     *            a buffer
+     * @param offset
+     *            the position of an IPv4 address in the buffer
+     * @return the address, most significant byte first
+     */
+    public static int toInt(final byte[] bytes, final int offset) {
+        return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16)
+                | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+    }
+
+    /**
+     * @param bytes
+     *            a buffer
+     * @param offset
+     *            the position of 8 bytes of an IPv6 address in the buffer,
+     *            0 for the network half and 8 for the interface half
+     * @return the 8 bytes, most significant byte first
+     */
+    public static long toLong(final byte[] bytes, final int offset) {
+        return ((long) toInt(bytes, offset) << 32) | (toInt(bytes, offset + 4) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return the length of the text without its zone index
+     */
+    private static int end(final CharSequence text) {
+        if (text == null)
+            throw new IllegalArgumentException("No address");
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '%')
+                return i;
+        }
+        return text.length();
+    }
+
+    private static int parseIPv4(final CharSequence text, final int from, final int to) {
+        int address = 0;
+        int parts = 0;
+        int i = from;
+        while (true) {
+            int value = 0;
+            int digits = 0;
+            while (i < to && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+                // no leading zero, they read as octal elsewhere
+                if (digits == 1 && value == 0)
+                    throw invalid(text);
+                value = value * 10 + (text.charAt(i) - '0');
+                if (++digits > 3 || value > 255)
+                    throw invalid(text);
+                i++;
+            }
+            if (digits == 0)
+                throw invalid(text);
+            address = (address << 8) | value;
+            if (++parts == 4)
+                break;
+            if (i >= to || text.charAt(i) != '.')
+                throw invalid(text);
+            i++;
+        }
+        if (i != to)
+            throw invalid(text);
+        return address;
+    }
+
+    private static void parseIPv6(final CharSequence text, final int to, final byte[] dst, final int offset) {
+        if (dst.length - offset < IPV6_LENGTH)
+            throw new IllegalArgumentException("Buffer too small for an IPv6 address");
+        // groups written, position of the "::"
+        int groups = 0;
+        int gap = -1;
+        int i = 0;
+        if (to >= 2 && text.charAt(0) == ':' && text.charAt(1) == ':') {
+            gap = 0;
+            i = 2;
+        } else if (to > 0 && text.charAt(0) == ':') {
+            throw invalid(text);
+        }
+        while (i < to) {
+            int value = 0;
+            int j = i;
+            while (j < to && j - i < 5) {
+                final int digit = Character.digit(text.charAt(j), 16);
+                if (digit < 0)
+                    break;
+                value = (value << 4) | digit;
+                j++;
+            }
+            if (j < to && text.charAt(j) == '.') {
+                // trailing dotted-quad, the last 32 bits
+                if (groups > 6)
+                    throw invalid(text);
+                writeInt(parseIPv4(text, i, to), dst, offset + groups * 2);
+                groups += 2;
+                i = to;
+                break;
+            }
+            if (j == i || j - i > 4 || groups == 8)
+                throw invalid(text);
+            dst[offset + groups * 2] = (byte) (value >> 8);
+            dst[offset + groups * 2 + 1] = (byte) value;
+            groups++;
+            if (j == to) {
+                i = j;
+                break;
+            }
+            if (text.charAt(j) != ':')
+                throw invalid(text);
+            j++;
+            if (j < to && text.charAt(j) == ':') {
+                if (gap >= 0)
+                    throw invalid(text);
+                gap = groups;
+                j++;
+            } else if (j == to) {
+                throw invalid(text);
+            }
+            i = j;
+        }
+        if (gap < 0) {
+            if (groups != 8)
+                throw invalid(text);
+            return;
+        }
+        if (groups > 7)
+            throw invalid(text);
+        // moves the groups after the "::" to the end and zeroes the gap
+        final int tail = (groups - gap) * 2;
+        System.arraycopy(dst, offset + gap * 2, dst, offset + IPV6_LENGTH - tail, tail);
+        for (int k = offset + gap * 2; k < offset + IPV6_LENGTH - tail; k++)
+            dst[k] = 0;
+    }
+
+    private static String formatIPv6(final byte[] address) {
+        // longest run of at least two zero groups, the first one on a tie
+        int bestStart = -1;
+        int bestLength = 1;
+        for (int g = 0; g < 8;) {
+            if (group(address, g) != 0) {
+                g++;
+                continue;
+            }
+            int e = g;
+            while (e < 8 && group(address, e) == 0)
+                e++;
+            if (e - g > bestLength) {
+                bestStart = g;
+                bestLength = e - g;
+            }
+            g = e;
+        }
+        final StringBuilder builder = new StringBuilder(39);
+        // IPv4-mapped addresses keep the dotted-quad
+        final boolean mapped = bestStart == 0 && bestLength == 5 && group(address, 5) == 0xFFFF;
+        final int groups = mapped ? 6 : 8;
+        for (int g = 0; g < groups; g++) {
+            if (g == bestStart) {
+                builder.append("::");
+                g += bestLength - 1;
+                continue;
+            }
+            if (builder.length() > 0 && builder.charAt(builder.length() - 1) != ':')
+                builder.append(':');
+            builder.append(Integer.toHexString(group(address, g)));
+        }
+        if (mapped)
+            builder.append(':').append(format(toInt(address, 12)));
+        return builder.toString();
+    }
+
+    private static int group(final byte[] address, final int g) {
+        return ((address[g * 2] & 0xFF) << 8) | (address[g * 2 + 1] & 0xFF);
+    }
+
+    private static void writeInt(final int value, final byte[] dst, final int offset) {
+        dst[offset] = (byte) (value >> 24);
+        dst[offset + 1] = (byte) (value >> 16);
+        dst[offset + 2] = (byte) (value >> 8);
+        dst[offset + 3] = (byte) value;
+    }
+
+    private static IllegalArgumentException invalid(final CharSequence text) {
+        return new IllegalArgumentException("Invalid IP address: " + text);
+    }
+
+}
@@ -88,6 +88,9 @@ public abstract class AbstractCOPSPdpAgent extends Thread {
         for (final Thread thread : _threadMap.values()) {
             thread.interrupt();
         }
+        for (final COPSConnection conn : _connectionMap.values()) {
+            conn.stopTimers();
+        }
         logger.info("Completed stopping all threads");
     }
 
@@ -104,7 +107,14 @@ public abstract class AbstractCOPSPdpAgent extends Thread {
             // a COPSPdpConnection to handle the rest of the communications
             while (_socket.isConnected()) {
                 try {
-                    processMessage(COPSTransceiver.receiveMsg(_socket));
+                    final COPSMsg msg = COPSTransceiver.receiveMsg(_socket);
+                    // The connections sharing the socket do not read it, reset their KA timeout
+                    for (final COPSConnection conn : _connectionMap.values()) {
+                        if (conn.getSocket() == _socket) {
+                            conn.messageReceived();
+                        }
+                    }
+                    processMessage(msg);
                 } catch (IOException e) {
                     logger.error("IOException - exiting thread");
                     break;
@@ -115,6 +125,12 @@ public abstract class AbstractCOPSPdpAgent extends Thread {
         } catch (Exception e) {
             logger.error("Unexpected exception. Exiting thread");
         }
+
+        for (final COPSConnection conn : _connectionMap.values()) {
+            if (conn.getSocket() == _socket) {
+                conn.connectionClosed();
+            }
+        }
     }
 
     private void processMessage(final COPSMsg msg) throws IOException, COPSException {
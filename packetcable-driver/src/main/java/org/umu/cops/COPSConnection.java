@@ -5,10 +5,13 @@ import org.slf4j.LoggerFactory;
 import org.umu.cops.common.COPSDebug;
 import org.umu.cops.stack.*;
 
+import java.io.IOException;
 import java.net.Socket;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Abstract class for all COPS connections
@@ -41,11 +44,171 @@ public abstract class COPSConnection {
      */
     protected COPSError _error;
 
+    /**
+     * Timer wheel driving the keep-alive and accounting timers
+     */
+    protected final COPSTimerWheel _timerWheel;
+
+    /**
+     * Time of the latest message received (System.nanoTime())
+     */
+    protected volatile long _lastRecKa;
+
+    /**
+     * Single writer queue shared by every thread writing on the socket
+     */
+    protected final COPSOutboundQueue _outbound;
+
+    private final AtomicBoolean _closed;
+    private volatile COPSTimerWheel.Timeout _kaSendTimeout;
+    private volatile COPSTimerWheel.Timeout _kaRecvTimeout;
+    private volatile COPSTimerWheel.Timeout _acctTimeout;
+
     public COPSConnection(final COPSPepId pepId, final Socket sock, final short kaTimer) {
+        this(pepId, sock, kaTimer, COPSTimerWheel.getDefault());
+    }
+
+    public COPSConnection(final COPSPepId pepId, final Socket sock, final short kaTimer,
+                          final COPSTimerWheel timerWheel) {
         this._pepId = pepId;
         this._sock = sock;
         this._kaTimer = kaTimer;
+        this._timerWheel = timerWheel;
         _managerMap = new ConcurrentHashMap<>();
+        _outbound = COPSOutboundQueue.of(sock);
+        _closed = new AtomicBoolean(false);
+        _lastRecKa = System.nanoTime();
+    }
+
+    /**
+     * Starts the keep-alive timers, a keep-alive is sent every 3/4 of the KA timer and the connection is closed
+     * when nothing has been received for a whole KA timer
+     * @param acctTimer - accounting timer value (secs), 0 to disable the accounting timer
+     */
+    protected void startTimers(final short acctTimer) {
+        _lastRecKa = System.nanoTime();
+        if (_kaTimer > 0) {
+            _kaRecvTimeout = _timerWheel.schedule(new Runnable() {
+                public void run() {
+                    checkKeepAlive(this);
+                }
+            }, _kaTimer, TimeUnit.SECONDS);
+            _kaSendTimeout = _timerWheel.schedule(new Runnable() {
+                public void run() {
+                    keepAliveSendTimer(this);
+                }
+            }, _kaTimer * 750L, TimeUnit.MILLISECONDS);
+        }
+        if (acctTimer > 0) {
+            final long period = acctTimer * 750L;
+            _acctTimeout = _timerWheel.schedule(new Runnable() {
+                public void run() {
+                    if (_closed.get()) return;
+                    try {
+                        accountingTimerExpired();
+                    } catch (final COPSException e) {
+                        logger.error("Unexpected error notifying the accounting timer", e);
+                    }
+                    _acctTimeout = _timerWheel.schedule(this, period, TimeUnit.MILLISECONDS);
+                }
+            }, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Cancels all the timers of this connection
+     */
+    protected void stopTimers() {
+        cancel(_kaSendTimeout);
+        cancel(_kaRecvTimeout);
+        cancel(_acctTimeout);
+    }
+
+    private static void cancel(final COPSTimerWheel.Timeout timeout) {
+        if (timeout != null) timeout.cancel();
+    }
+
+    /**
+     * Records the reception of a message, any message received from the peer resets the KA timeout
+     */
+    protected void messageReceived() {
+        _lastRecKa = System.nanoTime();
+    }
+
+    private void checkKeepAlive(final Runnable task) {
+        if (_closed.get()) return;
+        final long timeout = TimeUnit.SECONDS.toNanos(_kaTimer);
+        final long idle = System.nanoTime() - _lastRecKa;
+        if (idle < timeout) {
+            _kaRecvTimeout = _timerWheel.schedule(task, timeout - idle, TimeUnit.NANOSECONDS);
+            return;
+        }
+        logger.info("Keep-alive timeout on connection " + _sock);
+        try {
+            _sock.close();
+        } catch (final IOException e) {
+            logger.error("Unexpected error closing _socket", e);
+        }
+        // Notify all Request State Managers
+        try {
+            notifyNoKAAllReqStateMan();
+        } catch (final COPSException e) {
+            logger.error("Unexpected error notifying all request state managers", e);
+        }
+        connectionClosed();
+    }
+
+    private void keepAliveSendTimer(final Runnable task) {
+        if (_closed.get()) return;
+        if (_sock.isClosed()) {
+            connectionClosed();
+            return;
+        }
+        try {
+            sendKeepAlive();
+        } catch (final Exception e) {
+            logger.error("Unexpected error sending keep-alive", e);
+            connectionClosed();
+            return;
+        }
+        _kaSendTimeout = _timerWheel.schedule(task, _kaTimer * 750L, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends a keep-alive to the peer, called every 3/4 of the KA timer
+     * @throws IOException
+     * @throws COPSException
+     */
+    protected void sendKeepAlive() throws IOException, COPSException {
+        final COPSKAMsg msg = new COPSKAMsg();
+        msg.add(new COPSHeader(COPSHeader.COPS_OP_KA));
+        _outbound.send(_sock, msg);
+    }
+
+    /**
+     * Called every 3/4 of the accounting timer, nothing to do by default
+     * @throws COPSException
+     */
+    protected void accountingTimerExpired() throws COPSException {
+    }
+
+    /**
+     * Releases the connection once, cancels the timers, closes the socket and notifies all the request state managers
+     */
+    protected void connectionClosed() {
+        if (!_closed.compareAndSet(false, true)) return;
+        stopTimers();
+        try {
+            _sock.close();
+        } catch (final IOException e) {
+            logger.error("Unexpected error closing _socket", e);
+        }
+        COPSOutboundQueue.release(_sock);
+        try {
+            notifyCloseAllReqStateMan();
+        } catch (final COPSException e) {
+            logger.error("Unexpected error notifying all request state managers", e);
+        }
     }
 
     /**
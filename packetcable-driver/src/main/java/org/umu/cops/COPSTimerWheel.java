@@ -0,0 +1,247 @@
+package org.umu.cops;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashed timing wheel shared by the COPS connections to drive their keep-alive and accounting timers.
+ *
+ * A single daemon thread advances the wheel one bucket per tick, scheduling and cancelling a timer are O(1) and the
+ * cost of a tick only depends on the number of timers hashed to the current bucket. Deadlines are computed with
+ * {@link System#nanoTime()} so they are not affected by wall clock changes. Expired tasks are run on the wheel thread
+ * and must not block.
+ */
+public class COPSTimerWheel implements Runnable {
+
+    private final static Logger logger = LoggerFactory.getLogger(COPSTimerWheel.class);
+
+    /**
+     * Default tick duration (ms)
+     */
+    public static final long DEFAULT_TICK = 100;
+
+    /**
+     * Default number of buckets
+     */
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final String _name;
+    private final long _tickNanos;
+    private final Entry[] _wheel;
+    private final int _mask;
+
+    /**
+     * Timers scheduled since the last tick, only the wheel thread touches the buckets
+     */
+    private final Queue<Entry> _pending;
+
+    private final long _startTime;
+    private volatile Thread _thread;
+    private volatile boolean _running;
+
+    /**
+     * Handle of a scheduled task
+     */
+    public interface Timeout {
+
+        /**
+         * Cancels the task if not yet run
+         * @return  <tt>true</tt> if the task will not be run
+         */
+        boolean cancel();
+
+        /**
+         * @return  <tt>true</tt> if the task has been run
+         */
+        boolean isExpired();
+
+    }
+
+    /**
+     * Returns the wheel shared by all the COPS connections of this JVM
+     * @return - the shared wheel
+     */
+    public static COPSTimerWheel getDefault() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Constructor
+     * @param name - the name of the wheel thread
+     * @param tickDuration - the duration of a tick
+     * @param unit - the unit of the tick duration
+     * @param wheelSize - the number of buckets, rounded up to a power of 2
+     */
+    public COPSTimerWheel(final String name, final long tickDuration, final TimeUnit unit, final int wheelSize) {
+        if (tickDuration <= 0 || wheelSize <= 0)
+            throw new IllegalArgumentException("Tick duration and wheel size must be positive");
+        _name = name;
+        _tickNanos = unit.toNanos(tickDuration);
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+        _wheel = new Entry[size];
+        _mask = size - 1;
+        _pending = new ConcurrentLinkedQueue<>();
+        _startTime = System.nanoTime();
+    }
+
+    /**
+     * Schedules a task to be run once after the given delay, the wheel thread is started on the first call
+     * @param task - the task
+     * @param delay - the delay, rounded up to the next tick
+     * @param unit - the unit of the delay
+     * @return - the handle to cancel the task
+     */
+    public Timeout schedule(final Runnable task, final long delay, final TimeUnit unit) {
+        if (task == null)
+            throw new IllegalArgumentException("Task cannot be null");
+        final long deadline = System.nanoTime() - _startTime + Math.max(0, unit.toNanos(delay));
+        final Entry entry = new Entry(task, deadline);
+        _pending.add(entry);
+        start();
+        return entry;
+    }
+
+    /**
+     * Starts the wheel thread if not already running
+     */
+    public synchronized void start() {
+        if (_thread == null) {
+            _running = true;
+            _thread = new Thread(this, _name);
+            _thread.setDaemon(true);
+            _thread.start();
+        }
+    }
+
+    /**
+     * Stops the wheel thread, the pending tasks are never run
+     */
+    public synchronized void stop() {
+        _running = false;
+        if (_thread != null) {
+            _thread.interrupt();
+        }
+    }
+
+    /**
+     * Wheel loop
+     */
+    public void run() {
+        logger.info("Starting COPS timer wheel " + _name);
+        long tick = 0;
+        while (_running) {
+            final long deadline = (tick + 1) * _tickNanos;
+            long sleep = deadline - (System.nanoTime() - _startTime);
+            while (sleep > 0 && _running) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    if (!_running) break;
+                }
+                sleep = deadline - (System.nanoTime() - _startTime);
+            }
+            if (!_running) break;
+            transferPending(tick);
+            expire(tick, deadline);
+            tick++;
+        }
+        logger.info("COPS timer wheel " + _name + " stopped");
+    }
+
+    /**
+     * Hashes the newly scheduled timers into their bucket
+     */
+    private void transferPending(final long tick) {
+        Entry entry;
+        while ((entry = _pending.poll()) != null) {
+            if (entry.isCancelled()) continue;
+            final long ticks = Math.max(entry.deadline / _tickNanos, tick);
+            entry.rounds = (ticks - tick) / _wheel.length;
+            final int idx = (int) (ticks & _mask);
+            entry.next = _wheel[idx];
+            _wheel[idx] = entry;
+        }
+    }
+
+    /**
+     * Runs the expired timers of the current bucket
+     */
+    private void expire(final long tick, final long deadline) {
+        final int idx = (int) (tick & _mask);
+        Entry entry = _wheel[idx];
+        Entry kept = null;
+        while (entry != null) {
+            final Entry next = entry.next;
+            entry.next = null;
+            if (entry.isCancelled()) {
+                // dropped
+            } else if (entry.rounds <= 0 && entry.deadline <= deadline) {
+                entry.expire();
+            } else {
+                entry.rounds--;
+                entry.next = kept;
+                kept = entry;
+            }
+            entry = next;
+        }
+        _wheel[idx] = kept;
+    }
+
+    /**
+     * A scheduled task, linked in its bucket
+     */
+    private static class Entry implements Timeout {
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        final Runnable task;
+        final long deadline;
+        final AtomicInteger state;
+        long rounds;
+        Entry next;
+
+        Entry(final Runnable task, final long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+            this.state = new AtomicInteger(ST_INIT);
+        }
+
+        @Override
+        public boolean cancel() {
+            return state.compareAndSet(ST_INIT, ST_CANCELLED);
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state.get() == ST_EXPIRED;
+        }
+
+        boolean isCancelled() {
+            return state.get() == ST_CANCELLED;
+        }
+
+        void expire() {
+            if (!state.compareAndSet(ST_INIT, ST_EXPIRED)) return;
+            try {
+                task.run();
+            } catch (final Exception e) {
+                logger.error("Unexpected error running COPS timer task", e);
+            }
+        }
+    }
+
+    private static class Holder {
+        static final COPSTimerWheel INSTANCE =
+                new COPSTimerWheel("COPS-timer", DEFAULT_TICK, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE);
+    }
+
+}
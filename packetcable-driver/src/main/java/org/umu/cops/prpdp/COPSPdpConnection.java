@@ -15,20 +15,15 @@ import org.umu.cops.stack.*;
 
 import java.io.IOException;
 import java.net.Socket;
-import java.util.Date;
+import java.nio.channels.SocketChannel;
 
 /**
  * Class for managing an provisioning connection at the PDP side.
  */
-public class COPSPdpConnection extends COPSConnection implements Runnable {
+public class COPSPdpConnection extends COPSConnection implements Runnable, COPSFrameListener {
 
     private final static Logger logger = LoggerFactory.getLogger(COPSPdpConnection.class);
 
-    /**
-     * Time of the latest keep-alive received
-     */
-    protected Date _lastRecKa;
-
     /**
      * PDP policy data processor class
      */
@@ -49,69 +44,53 @@ public class COPSPdpConnection extends COPSConnection implements Runnable {
     }
 
     /**
-     * Main loop
+     * Starts the keep-alive timers on the shared timer wheel. No thread is kept for the connection, when the socket
+     * is read by a COPSReactor the connection is driven by {@link #onMessage} and {@link #onClose}, otherwise the
+     * reader of the socket must call {@link #messageReceived()}.
      */
     public void run() {
-        Date _lastSendKa = new Date();
-        _lastRecKa = new Date();
-        try {
-            while (_sock.isConnected()) {
-                if (_sock.getInputStream().available() != 0) {
-                    _lastRecKa = new Date();
-                }
-
-                // Keep Alive
-                if (_kaTimer > 0) {
-                    // Timeout at PDP
-                    int _startTime = (int) (_lastRecKa.getTime());
-                    int cTime = (int) (new Date().getTime());
-
-                    if (cTime - _startTime > _kaTimer * 1000) {
-                        _sock.close();
-                        // Notify all Request State Managers
-                        notifyNoKAAllReqStateMan();
-                    }
-
-                    // Send to PEP
-                    _startTime = (int) (_lastSendKa.getTime());
-                    cTime = (int) (new Date().getTime());
-
-                    if ((cTime - _startTime) > ((_kaTimer * 3 / 4) * 1000)) {
-                        final COPSHeader hdr = new COPSHeader(COPSHeader.COPS_OP_KA);
-                        final COPSKAMsg msg = new COPSKAMsg();
-
-                        msg.add(hdr);
-
-                        COPSTransceiver.sendMsg(msg, _sock);
-                        _lastSendKa = new Date();
-                    }
-                }
-
-                try {
-                    // TODO - find a better means than sleep (i.e. make this into a Timer)
-                    Thread.sleep(500);
-                } catch (Exception e) {
-                    logger.error("Unexpected error while thread was sleeping", e);
-                }
-            }
-        } catch (final Exception e) {
-            logger.error(COPSDebug.ERROR_SOCKET, e);
+        if (_sock.isClosed()) {
+            connectionClosed();
+            return;
         }
+        startTimers((short) 0);
+    }
 
-        // connection closed by server
-        // COPSDebug.out(getClass().getName(),"Connection closed by client");
-        try {
-            _sock.close();
-        } catch (final IOException e) {
-            logger.error("Unexpected error closing _socket");
+    /**
+     * Called by the reactor reading the PEP socket, records the reception time and answers keep-alives
+     *
+     * @param channel the channel connected to the PEP
+     * @param msg     the received message
+     */
+    @Override
+    public void onMessage(final SocketChannel channel, final COPSMsg msg) {
+        messageReceived();
+        if (msg.getHeader().isAKeepAlive() && msg instanceof COPSKAMsg) {
+            handleKeepAliveMsg(_sock, (COPSKAMsg)msg);
         }
+    }
 
-        // Notify all Request State Managers
-        try {
-            notifyCloseAllReqStateMan();
-        } catch (final COPSException e) {
-            logger.error("Unexpected error notifying all request state managers");
-        }
+    /**
+     * Called for the frames consumed before being parsed, they keep the connection alive too
+     *
+     * @param channel the channel connected to the PEP
+     * @return false, the frame is only observed
+     */
+    @Override
+    public boolean onFrame(final SocketChannel channel, final byte[] frame, final int offset, final int length) {
+        messageReceived();
+        return false;
+    }
+
+    /**
+     * Called by the reactor once the PEP socket has been closed
+     *
+     * @param channel the channel connected to the PEP
+     * @param cause   the error that caused the close or null
+     */
+    @Override
+    public void onClose(final SocketChannel channel, final Exception cause) {
+        connectionClosed();
     }
 
     /**
@@ -190,7 +169,7 @@ public class COPSPdpConnection extends COPSConnection implements Runnable {
                 logger.error(COPSDebug.ERROR_NOSUPPORTED
                         + " - Unsupported objects (Integrity) to connection " + conn.getInetAddress());
             }
-            cMsg.writeData(conn);
+            _outbound.send(conn, cMsg);
         } catch (final Exception unae) {
             logger.error("Unexpeced error closing the connection", unae);
         }
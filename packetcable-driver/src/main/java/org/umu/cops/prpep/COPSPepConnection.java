@@ -15,7 +15,6 @@ import org.umu.cops.stack.*;
 
 import java.io.IOException;
 import java.net.Socket;
-import java.util.Date;
 import java.util.List;
 
 /**
@@ -37,11 +36,6 @@ public class COPSPepConnection extends COPSConnection implements Runnable {
      */
     protected final short _acctTimer;
 
-    /**
-     *  Time of the latest keep-alive received
-     */
-    protected transient Date _lastRecKa;
-
     /**
         Opcode of the latest message sent
     */
@@ -64,83 +58,30 @@ public class COPSPepConnection extends COPSConnection implements Runnable {
     }
 
     /**
-     * Message-processing loop
+     * Message-processing loop, the keep-alive and accounting timers are driven by the shared timer wheel
      */
     public void run () {
         logger.info("Running in thread");
-        Date _lastSendKa = new Date();
-        Date _lastSendAcc = new Date();
-        _lastRecKa = new Date();
+        startTimers(_acctTimer);
         try {
             while (!_sock.isClosed()) {
-                if (_sock.getInputStream().available() != 0) {
-                    _lastmessage = processMessage(_sock);
-                    _lastRecKa = new Date();
-                }
-
-                // Keep Alive
-                if (_kaTimer > 0) {
-                    // Timeout at PDP
-                    int _startTime = (int) (_lastRecKa.getTime());
-                    int cTime = (int) (new Date().getTime());
-
-                    if ((cTime - _startTime) > _kaTimer * 1000) {
-                        _sock.close();
-                        // Notify all Request State Managers
-                        notifyNoKAAllReqStateMan();
-                    }
-
-                    // Send to PEP
-                    _startTime = (int) (_lastSendKa.getTime());
-                    cTime = (int) (new Date().getTime());
-
-                    if ((cTime - _startTime) > ((_kaTimer * 3/4) * 1000)) {
-                        COPSHeader hdr = new COPSHeader(COPSHeader.COPS_OP_KA);
-                        COPSKAMsg msg = new COPSKAMsg();
-
-                        msg.add(hdr);
-
-                        COPSTransceiver.sendMsg(msg, _sock);
-                        _lastSendKa = new Date();
-                    }
-                }
-
-                // Accounting
-                if (_acctTimer > 0) {
-                    int _startTime = (int) (_lastSendAcc.getTime());
-                    int cTime = (int) (new Date().getTime());
-
-                    if ((cTime - _startTime) > ((_acctTimer* 3/4) * 1000)) {
-                        // Notify all Request State Managers
-                        notifyAcctAllReqStateMan();
-                        _lastSendAcc = new Date();
-                    }
-                }
-
-                try {
-                    Thread.sleep(500);
-                } catch (Exception e) {
-                    logger.error("Unexpected error while thread was sleeping", e);
-                }
+                _lastmessage = processMessage(_sock);
+                messageReceived();
             }
         } catch (Exception e) {
-            logger.error("Unexpected error in thread", e);
+            if (!_sock.isClosed())
+                logger.error("Unexpected error in thread", e);
         }
 
         // connection closed by server
         // COPSDebug.out(getClass().getName(),"Connection closed by server");
-        try {
-            _sock.close();
-        } catch (IOException e) {
-            logger.error("Unexpected error closing _socket", e);
-        }
+        connectionClosed();
+    }
 
+    @Override
+    protected void accountingTimerExpired() throws COPSException {
         // Notify all Request State Managers
-        try {
-            notifyCloseAllReqStateMan();
-        } catch (COPSException e) {
-            logger.error("Unexpected error closing all state managers");
-        }
+        notifyAcctAllReqStateMan();
     }
 
     /**
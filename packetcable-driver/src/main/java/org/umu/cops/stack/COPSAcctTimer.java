@@ -41,8 +41,8 @@ public class COPSAcctTimer extends COPSTimer {
     }
 
     ///
-    protected COPSAcctTimer(byte[] dataPtr) {
-        super (dataPtr);
+    protected COPSAcctTimer(byte[] dataPtr, final int offset) {
+        super(dataPtr, offset);
     }
 
 }
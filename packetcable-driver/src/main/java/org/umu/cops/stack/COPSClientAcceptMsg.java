@@ -11,7 +11,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.net.Socket;
+import java.nio.ByteBuffer;
 
 /**
  *     COPS Client Accept Message
@@ -125,37 +125,41 @@ public class COPSClientAcceptMsg extends COPSMsg {
     }
 
     @Override
-    public void writeData(final Socket id) throws IOException {
-        logger.info("Writing data");
+    public void writeTo(final ByteBuffer buf) {
         // checkSanity();
-        if (_hdr != null) _hdr.writeData(id);
-        if (_kaTimer != null) _kaTimer.writeData(id);
-        if (_acctTimer != null) _acctTimer.writeData(id);
-        if (_integrity != null) _integrity.writeData(id);
+        if (_hdr != null) _hdr.writeTo(buf);
+        if (_kaTimer != null) _kaTimer.writeTo(buf);
+        if (_acctTimer != null) _acctTimer.writeTo(buf);
+        if (_integrity != null) _integrity.writeTo(buf);
     }
 
     @Override
     protected void parse(final byte[] data) throws COPSException {
         parseHeader(data);
+        parseObjects(data);
+    }
 
+    /**
+     * Decodes the objects found between _dataStart and _dataLength, straight from the given buffer
+     * @param    data                a  byte[]
+     * @throws   COPSException
+     */
+    private void parseObjects(final byte[] data) throws COPSException {
         while (_dataStart < _dataLength) {
-            byte[] buf = new byte[data.length - _dataStart];
-            System.arraycopy(data,_dataStart,buf,0,data.length - _dataStart);
-
-            COPSObjHeader objHdr = new COPSObjHeader (buf);
+            COPSObjHeader objHdr = new COPSObjHeader(data, _dataStart);
             switch (objHdr.getCNum()) {
             case COPSObjHeader.COPS_KA: {
-                _kaTimer = new COPSKATimer(buf);
+                _kaTimer = new COPSKATimer(data, _dataStart);
                 _dataStart += _kaTimer.getDataLength();
             }
             break;
             case COPSObjHeader.COPS_ACCT_TIMER: {
-                _acctTimer = new COPSAcctTimer(buf);
+                _acctTimer = new COPSAcctTimer(data, _dataStart);
                 _dataStart += _acctTimer.getDataLength();
             }
             break;
             case COPSObjHeader.COPS_MSG_INTEGRITY: {
-                _integrity = new COPSIntegrity(buf);
+                _integrity = new COPSIntegrity(data, _dataStart);
                 _dataStart += _integrity.getDataLength();
             }
             break;
@@ -168,11 +172,14 @@ public class COPSClientAcceptMsg extends COPSMsg {
     }
 
     @Override
-    protected void parse(final COPSHeader hdr, final byte[] data) throws COPSException {
+    protected void parse(final COPSHeader hdr, final byte[] data, final int offset, final int length)
+            throws COPSException {
         if (hdr.getOpCode() != COPSHeader.COPS_OP_CAT)
             throw new COPSException("Error Header");
         _hdr = hdr;
-        parse(data);
+        _dataStart = offset;
+        _dataLength = offset + length;
+        parseObjects(data);
         setMsgLength();
     }
 
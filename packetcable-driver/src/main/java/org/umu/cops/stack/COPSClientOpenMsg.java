@@ -8,7 +8,7 @@ package org.umu.cops.stack;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.net.Socket;
+import java.nio.ByteBuffer;
 
 /**
  * COPS Client Open Message
@@ -45,13 +45,13 @@ public class COPSClientOpenMsg extends COPSMsg {
     }
 
     @Override
-    public void writeData(final Socket id) throws IOException {
+    public void writeTo(final ByteBuffer buf) {
         // checkSanity();
-        if (_hdr != null)_hdr.writeData(id);
-        if (_pepId != null) _pepId.writeData(id);
-        if (_clientSI != null) _clientSI.writeData(id);
-        if (_pdpAddress != null) _pdpAddress.writeData(id);
-        if (_integrity != null) _integrity.writeData(id);
+        if (_hdr != null)_hdr.writeTo(buf);
+        if (_pepId != null) _pepId.writeTo(buf);
+        if (_clientSI != null) _clientSI.writeTo(buf);
+        if (_pdpAddress != null) _pdpAddress.writeTo(buf);
+        if (_integrity != null) _integrity.writeTo(buf);
     }
 
     /**
@@ -178,33 +178,39 @@ public class COPSClientOpenMsg extends COPSMsg {
     @Override
     protected void parse(final byte[] data) throws COPSException {
         parseHeader(data);
-        while (_dataStart < _dataLength) {
-            byte[] buf = new byte[data.length - _dataStart];
-            System.arraycopy(data,_dataStart,buf,0,data.length - _dataStart);
+        parseObjects(data);
+    }
 
-            final COPSObjHeader objHdr = new COPSObjHeader (buf);
+    /**
+     * Decodes the objects found between _dataStart and _dataLength, straight from the given buffer
+     * @param    data                a  byte[]
+     * @throws   COPSException
+     */
+    private void parseObjects(final byte[] data) throws COPSException {
+        while (_dataStart < _dataLength) {
+            final COPSObjHeader objHdr = new COPSObjHeader(data, _dataStart);
             switch (objHdr.getCNum()) {
             case COPSObjHeader.COPS_PEPID: {
-                _pepId = new COPSPepId(buf);
+                _pepId = new COPSPepId(data, _dataStart);
                 _dataStart += _pepId.getDataLength();
             }
             break;
             case COPSObjHeader.COPS_LAST_PDP_ADDR: {
                 if (objHdr.getCType() == 1) {
-                    _pdpAddress = new COPSIpv4LastPdpAddr(buf);
+                    _pdpAddress = new COPSIpv4LastPdpAddr(data, _dataStart);
                 } else if (objHdr.getCType() == 2) {
-                    _pdpAddress = new COPSIpv6LastPdpAddr(buf);
+                    _pdpAddress = new COPSIpv6LastPdpAddr(data, _dataStart);
                 }
                 _dataStart += _pdpAddress.getDataLength();
             }
             break;
             case COPSObjHeader.COPS_CSI: {
-                _clientSI = new COPSClientSI(buf);
+                _clientSI = new COPSClientSI(data, _dataStart);
                 _dataStart += _clientSI.getDataLength();
             }
             break;
             case COPSObjHeader.COPS_MSG_INTEGRITY: {
-                _integrity = new COPSIntegrity(buf);
+                _integrity = new COPSIntegrity(data, _dataStart);
                 _dataStart += _integrity.getDataLength();
             }
             break;
@@ -217,11 +223,14 @@ public class COPSClientOpenMsg extends COPSMsg {
     }
 
     @Override
-    protected void parse(final COPSHeader hdr, final byte[] data) throws COPSException {
+    protected void parse(final COPSHeader hdr, final byte[] data, final int offset, final int length)
+            throws COPSException {
         if (hdr.getOpCode() != COPSHeader.COPS_OP_OPN)
             throw new COPSException("Error Header");
         _hdr = hdr;
-        parse(data);
+        _dataStart = offset;
+        _dataLength = offset + length;
+        parseObjects(data);
         setMsgLength();
     }
 
@@ -8,7 +8,7 @@ package org.umu.cops.stack;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.net.Socket;
+import java.nio.ByteBuffer;
 
 /**
  * COPS Client Specific Information Object
@@ -46,14 +46,14 @@ public class COPSClientSI extends COPSObjBase {
     /**
      Parse the data and create a ClientSI object
      */
-    protected COPSClientSI(final byte[] dataPtr) {
+    protected COPSClientSI(final byte[] dataPtr, final int offset) {
         _objHdr = new COPSObjHeader();
-        _objHdr.parse(dataPtr);
+        _objHdr.parse(dataPtr, offset);
         // _objHdr.checkDataLength();
 
         //Get the length of data following the obj header
         final short dLen = (short) (_objHdr.getDataLength() - 4);
-        setData(new COPSData(dataPtr, 4, dLen));
+        setData(new COPSData(dataPtr, offset + 4, dLen));
     }
 
     /**
@@ -91,11 +91,15 @@ public class COPSClientSI extends COPSObjBase {
     }
 
     @Override
-    public void writeData(final Socket id) throws IOException {
-        _objHdr.writeData(id);
-        COPSUtil.writeData(id, _data.getData(), _data.length());
+    /**
+     * Encodes the object, header included, at the current position of the buffer
+     * @param    buf                 a  ByteBuffer
+     */
+    public void writeTo(final ByteBuffer buf) {
+        _objHdr.writeTo(buf);
+        buf.put(_data.getData(), 0, _data.length());
         if (_padding != null) {
-            COPSUtil.writeData(id, _padding.getData(), _padding.length());
+            buf.put(_padding.getData(), 0, _padding.length());
         }
     }
 
@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2003 University of Murcia.  All rights reserved.
+ * --------------------------------------------------------------
+ * For more information, please see <http://www.umu.euro6ix.org/>.
+ */
+
+package org.umu.cops.stack;
+
+import java.nio.channels.SocketChannel;
+
+/**
+ * Told by a {@link COPSReactor} when a connection it opened is established.
+ *
+ * Callbacks are made from the reactor thread and must not block.
+ */
+public interface COPSConnectListener extends COPSMsgListener {
+
+    /**
+     * Called once the connection is established, the channel is not read until it is registered
+     * @param    channel             the connected channel
+     */
+    void onConnect(SocketChannel channel);
+
+}
@@ -8,7 +8,7 @@ package org.umu.cops.stack;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.net.Socket;
+import java.nio.ByteBuffer;
 
 /**
  * COPS Context Object
@@ -40,33 +40,28 @@ public class COPSContext extends COPSObjBase {
     /**
           Parse the data and create a Context object
      */
-    protected COPSContext(final byte[] dataPtr) {
+    protected COPSContext(final byte[] dataPtr, final int offset) {
         _objHdr = new COPSObjHeader();
-        _objHdr.parse(dataPtr);
+        _objHdr.parse(dataPtr, offset);
         // _objHdr.checkDataLength();
 
-        _rType |= ((short) dataPtr[4]) << 8;
-        _rType |= ((short) dataPtr[5]) & 0xFF;
+        _rType |= ((short) dataPtr[offset + 4]) << 8;
+        _rType |= ((short) dataPtr[offset + 5]) & 0xFF;
 
-        _mType |= ((short) dataPtr[6]) << 8;
-        _mType |= ((short) dataPtr[7]) & 0xFF;
+        _mType |= ((short) dataPtr[offset + 6]) << 8;
+        _mType |= ((short) dataPtr[offset + 7]) & 0xFF;
 
         _objHdr.setDataLength( (short) 4);
     }
 
     /**
-     * Write object in network byte order to a given network socket
-     * @param    id                  a  Socket
-     * @throws   IOException
+     * Encodes the object, header included, at the current position of the buffer
+     * @param    buf                 a  ByteBuffer
      */
-    public void writeData(final Socket id) throws IOException {
-        _objHdr.writeData(id);
-        byte[] buf = new byte[4];
-        buf[0] = (byte) (_rType >> 8);
-        buf[1] = (byte) _rType;
-        buf[2] = (byte) (_mType >> 8);
-        buf[3] = (byte) _mType;
-        COPSUtil.writeData(id, buf, 4);
+    public void writeTo(final ByteBuffer buf) {
+        _objHdr.writeTo(buf);
+        buf.putShort(_rType);
+        buf.putShort(_mType);
     }
 
     /**
@@ -21,7 +21,7 @@ public class COPSData {
     private final int _dLen;
 
     public COPSData() {
-        _dataBuf = null;
+        _dataBuf = new byte[0];
         _dLen = 0;
     }
 
@@ -8,7 +8,7 @@ package org.umu.cops.stack;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.net.Socket;
+import java.nio.ByteBuffer;
 
 /**
  * COPS Decision
@@ -54,7 +54,7 @@ public class COPSDecision extends COPSObjBase {
     }
 
     public COPSDecision() {
-        this(null);
+        this(DEC_DEF);
         _objHdr = new COPSObjHeader();
         _cmdCode = 0;
         _flags = 0;
@@ -66,23 +66,23 @@ public class COPSDecision extends COPSObjBase {
     /**
           Initialize the decision object with values from COPSObj header
      */
-    protected COPSDecision(final byte[] dataPtr) {
+    protected COPSDecision(final byte[] dataPtr, final int offset) {
         _objHdr = new COPSObjHeader();
-        _objHdr.parse(dataPtr);
+        _objHdr.parse(dataPtr, offset);
         // _objHdr.checkDataLength();
 
         _cmdCode = 0;
         _flags = 0;
         if (_objHdr.getCType() == DEC_DEF) {
-            _cmdCode |= ((short) dataPtr[4]) << 8;
-            _cmdCode |= ((short) dataPtr[5]) & 0xFF;
-            _flags |= ((short) dataPtr[6]) << 8;
-            _flags |= ((short) dataPtr[7]) & 0xFF;
+            _cmdCode |= ((short) dataPtr[offset + 4]) << 8;
+            _cmdCode |= ((short) dataPtr[offset + 5]) & 0xFF;
+            _flags |= ((short) dataPtr[offset + 6]) << 8;
+            _flags |= ((short) dataPtr[offset + 7]) & 0xFF;
 
             _objHdr.setDataLength((short) 4);
         } else {
             final int dLen = _objHdr.getDataLength() - 4;
-            setData(new COPSData(dataPtr, 4, dLen));
+            setData(new COPSData(dataPtr, offset + 4, dLen));
         }
     }
 
@@ -214,25 +214,19 @@ public class COPSDecision extends COPSObjBase {
     }
 
     /**
-     * Writes data to a given network socket
-     * @param    id                  a  Socket
-     * @throws   IOException
+     * Encodes the object, header included, at the current position of the buffer
+     * @param    buf                 a  ByteBuffer
      */
-    public void writeData(final Socket id) throws IOException {
-        _objHdr.writeData(id);
-
+    public void writeTo(final ByteBuffer buf) {
+        _objHdr.writeTo(buf);
         if (_objHdr.getCType() >= 2) {
-            COPSUtil.writeData(id, _data.getData(), _data.length());
+            buf.put(_data.getData(), 0, _data.length());
             if (_padding != null) {
-                COPSUtil.writeData(id, _padding.getData(), _padding.length());
+                buf.put(_padding.getData(), 0, _padding.length());
             }
         } else {
-            final byte[] buf = new byte[4];
-            buf[0] = (byte) (_cmdCode >> 8);
-            buf[1] = (byte) _cmdCode;
-            buf[2] = (byte) (_flags >> 8);
-            buf[3] = (byte) _flags;
-            COPSUtil.writeData(id, buf, 4);
+            buf.putShort(_cmdCode);
+            buf.putShort(_flags);
         }
     }
 
@@ -8,7 +8,7 @@ package org.umu.cops.stack;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -58,37 +58,42 @@ public class COPSDecisionMsg extends COPSMsg {
     @Override
     protected void parse(final byte[] data) throws COPSException {
         super.parseHeader(data);
+        parseObjects(data);
+    }
 
+    /**
+     * Decodes the objects found between _dataStart and _dataLength, straight from the given buffer
+     * @param    data                a  byte[]
+     * @throws   COPSException
+     */
+    private void parseObjects(final byte[] data) throws COPSException {
         while (_dataStart < _dataLength) {
-            final byte[] buf = new byte[data.length - _dataStart];
-            System.arraycopy(data,_dataStart,buf,0,data.length - _dataStart);
-
-            final COPSObjHeader objHdr = new COPSObjHeader (buf);
+            final COPSObjHeader objHdr = new COPSObjHeader(data, _dataStart);
             switch (objHdr.getCNum()) {
                 case COPSObjHeader.COPS_HANDLE: {
-                    _clientHandle = new COPSHandle(buf);
+                    _clientHandle = new COPSHandle(data, _dataStart);
                     _dataStart += _clientHandle.getDataLength();
                 }
                 break;
                 case COPSObjHeader.COPS_CONTEXT: {
                     //dec context
-                    _decContext = new COPSContext(buf);
+                    _decContext = new COPSContext(data, _dataStart);
                     _dataStart += _decContext.getDataLength();
                 }
                 break;
                 case COPSObjHeader.COPS_ERROR: {
-                    _error = new COPSError(buf);
+                    _error = new COPSError(data, _dataStart);
                     _dataStart += _error.getDataLength();
                 }
                 break;
                 case COPSObjHeader.COPS_DEC: {
-                    COPSDecision decs = new COPSDecision(buf);
+                    COPSDecision decs = new COPSDecision(data, _dataStart);
                     _dataStart += decs.getDataLength();
                     addDecision(decs, _decContext);
                 }
                 break;
                 case COPSObjHeader.COPS_MSG_INTEGRITY: {
-                    _integrity = new COPSIntegrity(buf);
+                    _integrity = new COPSIntegrity(data, _dataStart);
                     _dataStart += _integrity.getDataLength();
                 }
                 break;
@@ -101,9 +106,12 @@ public class COPSDecisionMsg extends COPSMsg {
     }
 
     @Override
-    protected void parse(final COPSHeader hdr, final byte[] data) throws COPSException {
+    protected void parse(final COPSHeader hdr, final byte[] data, final int offset, final int length)
+            throws COPSException {
         _hdr = hdr;
-        parse(data);
+        _dataStart = offset;
+        _dataLength = offset + length;
+        parseObjects(data);
         setMsgLength();
     }
 
@@ -227,23 +235,23 @@ public class COPSDecisionMsg extends COPSMsg {
     }
 
     @Override
-    public void writeData(final Socket id) throws IOException {
+    public void writeTo(final ByteBuffer buf) {
         // checkSanity();
-        if (_hdr != null) _hdr.writeData(id);
-        if (_clientHandle != null) _clientHandle.writeData(id);
-        if (_error != null) _error.writeData(id);
+        if (_hdr != null) _hdr.writeTo(buf);
+        if (_clientHandle != null) _clientHandle.writeTo(buf);
+        if (_error != null) _error.writeTo(buf);
 
         //Display decisions
         //Display any local decisions
         for (final Map.Entry<COPSContext, List<COPSDecision>> entry : _decisions.entrySet()) {
-            entry.getKey().writeData(id);
+            entry.getKey().writeTo(buf);
             for (final COPSDecision decision : entry.getValue()) {
-                decision.writeData(id);
+                decision.writeTo(buf);
             }
         }
 
-        if (_decSI != null) _decSI.writeData(id);
-        if (_integrity != null) _integrity.writeData(id);
+        if (_decSI != null) _decSI.writeTo(buf);
+        if (_integrity != null) _integrity.writeTo(buf);
     }
 
     @Override
@@ -8,7 +8,7 @@ package org.umu.cops.stack;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.net.Socket;
+import java.nio.ByteBuffer;
 
 /**
  * COPS Delete Message (RFC 2748 pag. 24)
@@ -144,35 +144,40 @@ public class COPSDeleteMsg extends COPSMsg {
     }
 
     @Override
-    public void writeData(final Socket id) throws IOException {
-        if (_hdr != null) _hdr.writeData(id);
-        if (_clientHandle != null) _clientHandle.writeData(id);
-        if (_reason != null) _reason.writeData(id);
-        if (_integrity != null) _integrity.writeData(id);
+    public void writeTo(final ByteBuffer buf) {
+        if (_hdr != null) _hdr.writeTo(buf);
+        if (_clientHandle != null) _clientHandle.writeTo(buf);
+        if (_reason != null) _reason.writeTo(buf);
+        if (_integrity != null) _integrity.writeTo(buf);
     }
 
     @Override
     protected void parse(final byte[] data) throws COPSException {
         super.parseHeader(data);
+        parseObjects(data);
+    }
 
+    /**
+     * Decodes the objects found between _dataStart and _dataLength, straight from the given buffer
+     * @param    data                a  byte[]
+     * @throws   COPSException
+     */
+    private void parseObjects(final byte[] data) throws COPSException {
         while (_dataStart < _dataLength) {
-            byte[] buf = new byte[data.length - _dataStart];
-            System.arraycopy(data,_dataStart,buf,0,data.length - _dataStart);
-
-            final COPSObjHeader objHdr = new COPSObjHeader (buf);
+            final COPSObjHeader objHdr = new COPSObjHeader(data, _dataStart);
             switch (objHdr.getCNum()) {
                 case COPSObjHeader.COPS_HANDLE: {
-                    _clientHandle = new COPSHandle(buf);
+                    _clientHandle = new COPSHandle(data, _dataStart);
                     _dataStart += _clientHandle.getDataLength();
                 }
                 break;
                 case COPSObjHeader.COPS_REASON_CODE: {
-                    _reason = new COPSReason(buf);
+                    _reason = new COPSReason(data, _dataStart);
                     _dataStart += _reason.getDataLength();
                 }
                 break;
                 case COPSObjHeader.COPS_MSG_INTEGRITY: {
-                    _integrity = new COPSIntegrity(buf);
+                    _integrity = new COPSIntegrity(data, _dataStart);
                     _dataStart += _integrity.getDataLength();
                 }
                 break;
@@ -185,11 +190,14 @@ public class COPSDeleteMsg extends COPSMsg {
     }
 
     @Override
-    protected void parse(final COPSHeader hdr, final byte[] data) throws COPSException {
+    protected void parse(final COPSHeader hdr, final byte[] data, final int offset, final int length)
+            throws COPSException {
         if (hdr.getOpCode() != COPSHeader.COPS_OP_DRQ)
             throw new COPSException("Error Header");
         _hdr = hdr;
-        parse(data);
+        _dataStart = offset;
+        _dataLength = offset + length;
+        parseObjects(data);
         setMsgLength();
     }
 
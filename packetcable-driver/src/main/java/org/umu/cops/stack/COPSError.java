@@ -8,7 +8,7 @@ package org.umu.cops.stack;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.net.Socket;
+import java.nio.ByteBuffer;
 
 /**
  * COPS Error
@@ -67,15 +67,15 @@ public class COPSError extends COPSObjBase {
         _objHdr.setDataLength((short) 4);
     }
 
-    protected COPSError(final byte[] dataPtr) {
+    protected COPSError(final byte[] dataPtr, final int offset) {
         _objHdr = new COPSObjHeader();
-        _objHdr.parse(dataPtr);
+        _objHdr.parse(dataPtr, offset);
         // _objHdr.checkDataLength();
 
-        _errCode |= ((short) dataPtr[4]) << 8;
-        _errCode |= ((short) dataPtr[5]) & 0xFF;
-        _errSubCode |= ((short) dataPtr[6]) << 8;
-        _errSubCode |= ((short) dataPtr[7]) & 0xFF;
+        _errCode |= ((short) dataPtr[offset + 4]) << 8;
+        _errCode |= ((short) dataPtr[offset + 5]) & 0xFF;
+        _errSubCode |= ((short) dataPtr[offset + 6]) << 8;
+        _errSubCode |= ((short) dataPtr[offset + 7]) & 0xFF;
 
         // _objHdr.setDataLength(sizeof(u_int32_t));
         _objHdr.setDataLength((short) 4);
@@ -109,17 +109,14 @@ public class COPSError extends COPSObjBase {
     }
 
     @Override
-    public void writeData(final Socket id) throws IOException {
-        _objHdr.writeData(id);
-
-        final byte[] buf = new byte[4];
-
-        buf[0] = (byte) (_errCode >> 8);
-        buf[1] = (byte) _errCode;
-        buf[2] = (byte) (_errSubCode >> 8);
-        buf[3] = (byte) _errSubCode;
-
-        COPSUtil.writeData(id, buf, 4);
+    /**
+     * Encodes the object, header included, at the current position of the buffer
+     * @param    buf                 a  ByteBuffer
+     */
+    public void writeTo(final ByteBuffer buf) {
+        _objHdr.writeTo(buf);
+        buf.putShort(_errCode);
+        buf.putShort(_errSubCode);
     }
 
     /**
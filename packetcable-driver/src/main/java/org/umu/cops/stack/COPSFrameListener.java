@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2003 University of Murcia.  All rights reserved.
+ * --------------------------------------------------------------
+ * For more information, please see <http://www.umu.euro6ix.org/>.
+ */
+
+package org.umu.cops.stack;
+
+import java.nio.channels.SocketChannel;
+
+/**
+ * Sees the frames read by a {@link COPSReactor} before they are parsed, a frame it consumes is never parsed
+ * into a {@link COPSMsg} nor passed to {@link #onMessage(SocketChannel, COPSMsg)}.
+ *
+ * Callbacks are made from the reactor thread and must not block.
+ */
+public interface COPSFrameListener extends COPSMsgListener {
+
+    /**
+     * Called for every complete frame read from the channel
+     * @param    channel             the channel the frame was read from
+     * @param    frame               the buffer holding the frame, only valid during the call
+     * @param    offset              position of the COPS common header
+     * @param    length              length of the COPS message
+     * @return   true when the frame has been consumed
+     */
+    boolean onFrame(SocketChannel channel, byte[] frame, int offset, int length);
+
+}
@@ -8,7 +8,7 @@ package org.umu.cops.stack;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.net.Socket;
+import java.nio.ByteBuffer;
 
 /**
  * COPS Handle Object (RFC 2748 pag. 9)
@@ -56,14 +56,14 @@ public class COPSHandle extends COPSObjBase {
     /**
           Parse data and create COPSHandle object
      */
-    protected COPSHandle(final byte[] dataPtr) {
+    protected COPSHandle(final byte[] dataPtr, final int offset) {
         _objHdr = new COPSObjHeader();
-        _objHdr.parse(dataPtr);
+        _objHdr.parse(dataPtr, offset);
         // _objHdr.checkDataLength();
 
         //Get the length of data following the obj header
         final int dLen = _objHdr.getDataLength() - 4;
-        _id = new COPSData (dataPtr, 4, dLen);
+        _id = new COPSData(dataPtr, offset + 4, dLen);
         processId(_id);
     }
 
@@ -104,12 +104,15 @@ public class COPSHandle extends COPSObjBase {
     }
 
     @Override
-    public void writeData(final Socket id) throws IOException {
-        _objHdr.writeData(id);
-
-        COPSUtil.writeData(id, _id.getData(), _id.length());
+    /**
+     * Encodes the object, header included, at the current position of the buffer
+     * @param    buf                 a  ByteBuffer
+     */
+    public void writeTo(final ByteBuffer buf) {
+        _objHdr.writeTo(buf);
+        buf.put(_id.getData(), 0, _id.length());
         if (_padding != null) {
-            COPSUtil.writeData(id, _padding.getData(), _padding.length());
+            buf.put(_padding.getData(), 0, _padding.length());
         }
     }
 
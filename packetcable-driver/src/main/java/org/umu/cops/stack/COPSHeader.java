@@ -9,6 +9,7 @@ package org.umu.cops.stack;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 
 /**
  * COPS Header (RFC 2748 pag. 6)
@@ -104,14 +105,21 @@ public class COPSHeader {
           Parse data and create COPSHeader object
      */
     public COPSHeader(final byte[] buf) {
-        _versionNflg = buf[0];
-        _opCode = buf[1];
-        _cType |= ((short) buf[2]) << 8;
-        _cType |= ((short) buf[3]) & 0xFF;
-        _msgLength |= ((short) buf[4]) << 24;
-        _msgLength |= ((short) buf[5]) << 16;
-        _msgLength |= ((short) buf[6]) << 8;
-        _msgLength |= ((short) buf[7]) & 0xFF;
+        this(buf, 0);
+    }
+
+    /**
+          Parse the header found at the given offset of the buffer
+     */
+    public COPSHeader(final byte[] buf, final int offset) {
+        _versionNflg = buf[offset];
+        _opCode = buf[offset + 1];
+        _cType |= ((short) buf[offset + 2]) << 8;
+        _cType |= ((short) buf[offset + 3]) & 0xFF;
+        _msgLength |= (buf[offset + 4] & 0xFF) << 24;
+        _msgLength |= (buf[offset + 5] & 0xFF) << 16;
+        _msgLength |= (buf[offset + 6] & 0xFF) << 8;
+        _msgLength |= buf[offset + 7] & 0xFF;
     }
 
     /**
@@ -281,18 +289,20 @@ public class COPSHeader {
      *
      */
     public void writeData(final Socket id) throws IOException {
-        byte buf[] = new byte[8];
-
-        buf[0] = _versionNflg;
-        buf[1] = _opCode;
-        buf[2] = (byte) (_cType >> 8);
-        buf[3] = (byte) _cType;
-        buf[4] = (byte) (_msgLength >> 24);
-        buf[5] = (byte) (_msgLength >> 16);
-        buf[6] = (byte) (_msgLength >> 8);
-        buf[7] = (byte) _msgLength;
-
-        COPSUtil.writeData(id, buf, 8);
+        final ByteBuffer buf = ByteBuffer.allocate(getHdrLength());
+        writeTo(buf);
+        COPSUtil.writeData(id, buf.array(), buf.position());
+    }
+
+    /**
+     * Encodes the header at the current position of the buffer
+     * @param    buf                 a  ByteBuffer
+     */
+    public void writeTo(final ByteBuffer buf) {
+        buf.put(_versionNflg);
+        buf.put(_opCode);
+        buf.putShort(_cType);
+        buf.putInt(_msgLength);
     }
 
     @Override
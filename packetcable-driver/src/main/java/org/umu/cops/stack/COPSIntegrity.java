@@ -8,7 +8,7 @@ package org.umu.cops.stack;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.net.Socket;
+import java.nio.ByteBuffer;
 
 /**
  * COPS Integrity Object
@@ -31,26 +31,30 @@ public class COPSIntegrity extends COPSObjBase {
         _seqNum = 0;
     }
 
-    public COPSIntegrity(byte[] dataPtr) {
+    public COPSIntegrity(final byte[] dataPtr) {
+        this(dataPtr, 0);
+    }
+
+    public COPSIntegrity(byte[] dataPtr, final int offset) {
         _objHdr = new COPSObjHeader();
-        _objHdr.parse(dataPtr);
+        _objHdr.parse(dataPtr, offset);
         // _objHdr.checkDataLength();
         int tempKeyId = 0;
-        tempKeyId |= ((short) dataPtr[4]) << 24;
-        tempKeyId |= ((short) dataPtr[5]) << 16;
-        tempKeyId |= ((short) dataPtr[6]) << 8;
-        tempKeyId |= ((short) dataPtr[7]) & 0xFF;
+        tempKeyId |= ((short) dataPtr[offset + 4]) << 24;
+        tempKeyId |= ((short) dataPtr[offset + 5]) << 16;
+        tempKeyId |= ((short) dataPtr[offset + 6]) << 8;
+        tempKeyId |= ((short) dataPtr[offset + 7]) & 0xFF;
         _keyId = tempKeyId;
 
         int tempSeqNum = 0;
-        tempSeqNum |= ((short) dataPtr[8]) << 24;
-        tempSeqNum |= ((short) dataPtr[9]) << 16;
-        tempSeqNum |= ((short) dataPtr[10]) << 8;
-        tempSeqNum |= ((short) dataPtr[11]) & 0xFF;
+        tempSeqNum |= ((short) dataPtr[offset + 8]) << 24;
+        tempSeqNum |= ((short) dataPtr[offset + 9]) << 16;
+        tempSeqNum |= ((short) dataPtr[offset + 10]) << 8;
+        tempSeqNum |= ((short) dataPtr[offset + 11]) & 0xFF;
         _seqNum = tempSeqNum;
 
         final int dLen = _objHdr.getDataLength() - 12;
-        setKeyDigest(new COPSData(dataPtr, 12, dLen));
+        setKeyDigest(new COPSData(dataPtr, offset + 12, dLen));
     }
 
     /**
@@ -89,27 +93,16 @@ public class COPSIntegrity extends COPSObjBase {
     }
 
     /**
-     * Write data on a given network socket
-     * @param    id                  a  Socket
-     * @throws   IOException
+     * Encodes the object, header included, at the current position of the buffer
+     * @param    buf                 a  ByteBuffer
      */
-    public void writeData(final Socket id) throws IOException {
-        _objHdr.writeData(id);
-
-        final byte[] buf = new byte[8];
-        buf[0] = (byte) (_keyId >> 24);
-        buf[1] = (byte) (_keyId >> 16);
-        buf[2] = (byte) (_keyId >> 8);
-        buf[3] = (byte) _keyId;
-        buf[4] = (byte) (_seqNum >> 24);
-        buf[5] = (byte) (_seqNum >> 16);
-        buf[6] = (byte) (_seqNum >> 8);
-        buf[7] = (byte) _seqNum;
-        COPSUtil.writeData(id, buf, 8);
-
-        COPSUtil.writeData(id, _keyDigest.getData(), _keyDigest.length());
+    public void writeTo(final ByteBuffer buf) {
+        _objHdr.writeTo(buf);
+        buf.putInt(_keyId);
+        buf.putInt(_seqNum);
+        buf.put(_keyDigest.getData(), 0, _keyDigest.length());
         if (_padding != null) {
-            COPSUtil.writeData(id, _padding.getData(), _padding.length());
+            buf.put(_padding.getData(), 0, _padding.length());
         }
     }
 
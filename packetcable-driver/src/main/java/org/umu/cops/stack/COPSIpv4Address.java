@@ -6,11 +6,11 @@
 
 package org.umu.cops.stack;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
 
 /**
  * COPS IPv4 Address
@@ -68,7 +68,16 @@ public class COPSIpv4Address {
      * @param    dataPtr             a  byte[]
      */
     public void parse(final byte[] dataPtr) {
-        new ByteArrayInputStream(dataPtr).read(_addr,0,4);
+        parse(dataPtr, 0);
+    }
+
+    /**
+     * Method parse
+     * @param    dataPtr             a  byte[]
+     * @param    offset              offset of the address in dataPtr
+     */
+    public void parse(final byte[] dataPtr, final int offset) {
+        System.arraycopy(dataPtr, offset, _addr, 0, 4);
     }
 
     /**
@@ -88,5 +97,13 @@ public class COPSIpv4Address {
         COPSUtil.writeData(id, _addr, 4);
     }
 
+    /**
+     * Encodes the address at the current position of the buffer
+     * @param    buf                 a  ByteBuffer
+     */
+    public void writeTo(final ByteBuffer buf) {
+        buf.put(_addr, 0, 4);
+    }
+
 }
 
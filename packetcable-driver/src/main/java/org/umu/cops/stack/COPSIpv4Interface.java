@@ -82,20 +82,18 @@ public abstract class COPSIpv4Interface extends COPSInterface {
         _objHdr.setDataLength((short) (_addr.getDataLength() + 4));
     }
 
-    protected COPSIpv4Interface(byte[] dataPtr) {
+    protected COPSIpv4Interface(byte[] dataPtr, final int offset) {
         _objHdr = new COPSObjHeader();
-        _objHdr.parse(dataPtr);
+        _objHdr.parse(dataPtr, offset);
         // _objHdr.checkDataLength();
 
-        byte[] buf = new byte[4];
-        System.arraycopy(dataPtr,4,buf,0,4);
+        _addr = new COPSIpv4Address();
+        _addr.parse(dataPtr, offset + 4);
 
-        _addr.parse(buf);
-
-        _ifindex |= ((int) dataPtr[8]) << 24;
-        _ifindex |= ((int) dataPtr[9]) << 16;
-        _ifindex |= ((int) dataPtr[10]) << 8;
-        _ifindex |= ((int) dataPtr[11]) & 0xFF;
+        _ifindex |= ((int) dataPtr[offset + 8]) << 24;
+        _ifindex |= ((int) dataPtr[offset + 9]) << 16;
+        _ifindex |= ((int) dataPtr[offset + 10]) << 8;
+        _ifindex |= ((int) dataPtr[offset + 11]) & 0xFF;
 
         _objHdr.setDataLength((short) (_addr.getDataLength() + 4));
     }
@@ -22,8 +22,12 @@ public class COPSIpv4LastPdpAddr extends COPSIpv4PdpAddress {
         _objHdr.setCNum(COPSObjHeader.COPS_LAST_PDP_ADDR);
     }
 
-    public COPSIpv4LastPdpAddr(byte[] dataPtr) {
-        super(dataPtr);
+    public COPSIpv4LastPdpAddr(final byte[] dataPtr) {
+        this(dataPtr, 0);
+    }
+
+    public COPSIpv4LastPdpAddr(byte[] dataPtr, final int offset) {
+        super(dataPtr, offset);
     }
 
     /**
@@ -6,8 +6,7 @@
 
 package org.umu.cops.stack;
 
-import java.io.IOException;
-import java.net.Socket;
+import java.nio.ByteBuffer;
 
 /**
  * COPS IPv4 Output Interface
@@ -22,7 +21,11 @@ public class COPSIpv4OutInterface extends COPSIpv4Interface {
     }
 
     public COPSIpv4OutInterface(final byte[] dataPtr) {
-        super(dataPtr);
+        this(dataPtr, 0);
+    }
+
+    public COPSIpv4OutInterface(final byte[] dataPtr, final int offset) {
+        super(dataPtr, offset);
     }
 
     /**
@@ -34,11 +37,10 @@ public class COPSIpv4OutInterface extends COPSIpv4Interface {
     }
 
     /**
-     * Writes data to given socket
-     * @param    id                  a  Socket
-     * @throws   IOException
+     * Encodes the object, header included, at the current position of the buffer
+     * @param    buf                 a  ByteBuffer
      */
-    public void writeData(final Socket id) throws IOException {
+    public void writeTo(final ByteBuffer buf) {
     }
 
 }
@@ -6,8 +6,7 @@
 
 package org.umu.cops.stack;
 
-import java.io.IOException;
-import java.net.Socket;
+import java.nio.ByteBuffer;
 
 /**
  * COPS IPv4 PDP Address
@@ -32,24 +31,22 @@ abstract public class COPSIpv4PdpAddress extends COPSPdpAddress {
         _tcpPort = (short)0;
     }
 
-    protected COPSIpv4PdpAddress(final byte[] dataPtr) {
+    protected COPSIpv4PdpAddress(final byte[] dataPtr, final int offset) {
         _addr = new COPSIpv4Address();
         _objHdr = new COPSObjHeader();
-        _objHdr.parse(dataPtr);
+        _objHdr.parse(dataPtr, offset);
         // _objHdr.checkDataLength();
 
-        final byte[] buf = new byte[4];
-        System.arraycopy(dataPtr,2,buf,0,4);
-        _addr.parse(buf);
+        _addr.parse(dataPtr, offset + 4);
 
         short tempReserved = (short)0;
-        tempReserved |= ((short) dataPtr[8]) << 8;
-        tempReserved |= ((short) dataPtr[9]) & 0xFF;
+        tempReserved |= ((short) dataPtr[offset + 8]) << 8;
+        tempReserved |= ((short) dataPtr[offset + 9]) & 0xFF;
         _reserved = tempReserved;
 
         short tempTcpPort = (short)0;
-        tempTcpPort |= ((short) dataPtr[10]) << 8;
-        tempTcpPort |= ((short) dataPtr[11]) & 0xFF;
+        tempTcpPort |= ((short) dataPtr[offset + 10]) << 8;
+        tempTcpPort |= ((short) dataPtr[offset + 11]) & 0xFF;
         _tcpPort = tempTcpPort;
 
         // _objHdr.setDataLength(_addr.getDataLength() + sizeof(u_int32_t));
@@ -74,22 +71,14 @@ abstract public class COPSIpv4PdpAddress extends COPSPdpAddress {
     }
 
     /**
-     * Write data on a given network _socket
-     * @param    id                  a  Socket
-     * @throws   IOException
+     * Encodes the object, header included, at the current position of the buffer
+     * @param    buf                 a  ByteBuffer
      */
-    public void writeData(final Socket id) throws IOException {
-        //
-        _objHdr.writeData(id);
-        _addr.writeData(id);
-
-        final byte[] buf = new byte[4];
-        buf[0] = (byte) (_reserved & 0xFF);
-        buf[1] = (byte) (_reserved << 8);
-        buf[2] = (byte) (_tcpPort & 0xFF);
-        buf[3] = (byte) (_tcpPort << 8);
-
-        COPSUtil.writeData(id, buf, 4);
+    public void writeTo(final ByteBuffer buf) {
+        _objHdr.writeTo(buf);
+        _addr.writeTo(buf);
+        buf.putShort(_reserved);
+        buf.putShort(_tcpPort);
     }
 
 }
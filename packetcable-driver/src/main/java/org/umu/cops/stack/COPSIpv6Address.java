@@ -6,11 +6,11 @@
 
 package org.umu.cops.stack;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
 
 /**
  * COPS IPv6 Address
@@ -53,7 +53,16 @@ public class COPSIpv6Address {
      * @param    dataPtr             a  byte[]
      */
     public void parse(final byte[] dataPtr) {
-        new ByteArrayInputStream(dataPtr).read(_addr,0,16);
+        parse(dataPtr, 0);
+    }
+
+    /**
+     * Method parse
+     * @param    dataPtr             a  byte[]
+     * @param    offset              offset of the address in dataPtr
+     */
+    public void parse(final byte[] dataPtr, final int offset) {
+        System.arraycopy(dataPtr, offset, _addr, 0, 16);
     }
 
     /**
@@ -65,7 +74,7 @@ public class COPSIpv6Address {
     }
 
     /**
-     * Write data on a given network socket
+     * Write data on a given network _socket
      * @param    id                  a  Socket
      * @throws   IOException
      */
@@ -73,5 +82,13 @@ public class COPSIpv6Address {
         COPSUtil.writeData(id, _addr, 16);
     }
 
+    /**
+     * Encodes the address at the current position of the buffer
+     * @param    buf                 a  ByteBuffer
+     */
+    public void writeTo(final ByteBuffer buf) {
+        buf.put(_addr, 0, 16);
+    }
+
 }
 
@@ -6,8 +6,7 @@
 
 package org.umu.cops.stack;
 
-import java.io.IOException;
-import java.net.Socket;
+import java.nio.ByteBuffer;
 
 /**
  * COPS IPv6 Input Interface
@@ -26,11 +25,15 @@ public class COPSIpv6InInterface extends COPSIpv6Interface {
     }
 
     public COPSIpv6InInterface(final byte[] dataPtr) {
-        super(null, dataPtr);
+        this(dataPtr, 0);
+    }
+
+    public COPSIpv6InInterface(final byte[] dataPtr, final int offset) {
+        super(new COPSIpv6Address(), dataPtr, offset);
     }
 
     public COPSIpv6InInterface(final COPSIpv6Address addr, final byte[] dataPtr) {
-        super(addr, dataPtr);
+        super(addr, dataPtr, 0);
     }
 
     /**
@@ -42,12 +45,10 @@ public class COPSIpv6InInterface extends COPSIpv6Interface {
     }
 
     /**
-     * Writes data to given socket
-     *
-     * @param    id                  a  Socket
-     * @throws   IOException
+     * Encodes the object, header included, at the current position of the buffer
+     * @param    buf                 a  ByteBuffer
      */
-    public void writeData(final Socket id) throws IOException {
+    public void writeTo(final ByteBuffer buf) {
     }
 }
 
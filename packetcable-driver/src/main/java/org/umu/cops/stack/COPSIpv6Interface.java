@@ -26,22 +26,19 @@ public abstract class COPSIpv6Interface extends COPSInterface {
         this._ifindex = 0;
     }
 
-    protected COPSIpv6Interface(final COPSIpv6Address addr, byte[] dataPtr) {
+    protected COPSIpv6Interface(final COPSIpv6Address addr, byte[] dataPtr, final int offset) {
         this._addr = addr;
         _objHdr = new COPSObjHeader();
-        _objHdr.parse(dataPtr);
+        _objHdr.parse(dataPtr, offset);
         // _objHdr.checkDataLength();
 
-        byte[] buf = new byte[4];
-        System.arraycopy(dataPtr,4,buf,0,16);
-
-        _addr.parse(buf);
+        _addr.parse(dataPtr, offset + 4);
 
         int tmpIfIndex = 0;
-        tmpIfIndex |= ((int) dataPtr[20]) << 24;
-        tmpIfIndex |= ((int) dataPtr[21]) << 16;
-        tmpIfIndex |= ((int) dataPtr[22]) << 8;
-        tmpIfIndex |= ((int) dataPtr[23]) & 0xFF;
+        tmpIfIndex |= ((int) dataPtr[offset + 20]) << 24;
+        tmpIfIndex |= ((int) dataPtr[offset + 21]) << 16;
+        tmpIfIndex |= ((int) dataPtr[offset + 22]) << 8;
+        tmpIfIndex |= ((int) dataPtr[offset + 23]) & 0xFF;
         _ifindex = tmpIfIndex;
 
         _objHdr.setDataLength((short) (_addr.getDataLength() + 4));
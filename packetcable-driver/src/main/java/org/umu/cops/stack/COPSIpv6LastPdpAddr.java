@@ -22,8 +22,12 @@ public class COPSIpv6LastPdpAddr extends COPSIpv6PdpAddress {
         _objHdr.setCNum(COPSObjHeader.COPS_LAST_PDP_ADDR);
     }
 
-    public COPSIpv6LastPdpAddr(byte[] dataPtr) {
-        super(dataPtr);
+    public COPSIpv6LastPdpAddr(final byte[] dataPtr) {
+        this(dataPtr, 0);
+    }
+
+    public COPSIpv6LastPdpAddr(byte[] dataPtr, final int offset) {
+        super(dataPtr, offset);
     }
 
     /**
@@ -6,8 +6,7 @@
 
 package org.umu.cops.stack;
 
-import java.io.IOException;
-import java.net.Socket;
+import java.nio.ByteBuffer;
 
 /**
  * COPS IPv6 Output Interface
@@ -22,11 +21,15 @@ public class COPSIpv6OutInterface extends COPSIpv6Interface {
     }
 
     public COPSIpv6OutInterface(final byte[] dataPtr) {
-        super(null, dataPtr);
+        this(dataPtr, 0);
+    }
+
+    public COPSIpv6OutInterface(final byte[] dataPtr, final int offset) {
+        super(new COPSIpv6Address(), dataPtr, offset);
     }
 
     public COPSIpv6OutInterface(final COPSIpv6Address addr, final byte[] dataPtr) {
-        super(addr, dataPtr);
+        super(addr, dataPtr, 0);
     }
 
     /**
@@ -38,11 +41,10 @@ public class COPSIpv6OutInterface extends COPSIpv6Interface {
     }
 
     /**
-     * Writes data to given _socket
-     * @param    id                  a  Socket
-     * @throws   IOException
+     * Encodes the object, header included, at the current position of the buffer
+     * @param    buf                 a  ByteBuffer
      */
-    public void writeData(final Socket id) throws IOException {
+    public void writeTo(final ByteBuffer buf) {
         // TODO - implement me
     }
 
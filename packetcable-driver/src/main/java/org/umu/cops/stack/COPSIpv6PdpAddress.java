@@ -6,8 +6,7 @@
 
 package org.umu.cops.stack;
 
-import java.io.IOException;
-import java.net.Socket;
+import java.nio.ByteBuffer;
 
 /**
  * COPS IPv6 PDP Address
@@ -32,24 +31,22 @@ abstract public class COPSIpv6PdpAddress extends COPSPdpAddress {
         _tcpPort = (short)0;
     }
 
-    protected COPSIpv6PdpAddress(final byte[] dataPtr) {
+    protected COPSIpv6PdpAddress(final byte[] dataPtr, final int offset) {
         _addr = new COPSIpv6Address();
         _objHdr = new COPSObjHeader();
-        _objHdr.parse(dataPtr);
+        _objHdr.parse(dataPtr, offset);
         // _objHdr.checkDataLength();
 
-        final byte[] buf = new byte[16];
-        System.arraycopy(dataPtr,2,buf,0,16);
-        _addr.parse(buf);
+        _addr.parse(dataPtr, offset + 4);
 
         short tmpReserved = (short)0;
-        tmpReserved |= ((short) dataPtr[20]) << 8;
-        tmpReserved |= ((short) dataPtr[21]) & 0xFF;
+        tmpReserved |= ((short) dataPtr[offset + 20]) << 8;
+        tmpReserved |= ((short) dataPtr[offset + 21]) & 0xFF;
         _reserved = tmpReserved;
 
         short tmpTcpPort = (short)0;
-        tmpTcpPort |= ((short) dataPtr[22]) << 8;
-        tmpTcpPort |= ((short) dataPtr[23]) & 0xFF;
+        tmpTcpPort |= ((short) dataPtr[offset + 22]) << 8;
+        tmpTcpPort |= ((short) dataPtr[offset + 23]) & 0xFF;
         _tcpPort = tmpTcpPort;
 
         // _objHdr.setDataLength(_addr.getDataLength() + sizeof(u_int32_t));
@@ -74,22 +71,14 @@ abstract public class COPSIpv6PdpAddress extends COPSPdpAddress {
     }
 
     /**
-     * Write data on a given network _socket
-     * @param    id                  a  Socket
-     * @throws   IOException
+     * Encodes the object, header included, at the current position of the buffer
+     * @param    buf                 a  ByteBuffer
      */
-    public void writeData(final Socket id) throws IOException {
-        //
-        _objHdr.writeData(id);
-        _addr.writeData(id);
-
-        final byte[] buf = new byte[4];
-        buf[0] = (byte) (_reserved >> 8);
-        buf[1] = (byte) _reserved;
-        buf[2] = (byte) (_tcpPort >> 8);
-        buf[3] = (byte) _tcpPort ;
-
-        COPSUtil.writeData(id, buf, 4);
+    public void writeTo(final ByteBuffer buf) {
+        _objHdr.writeTo(buf);
+        _addr.writeTo(buf);
+        buf.putShort(_reserved);
+        buf.putShort(_tcpPort);
     }
 }
 
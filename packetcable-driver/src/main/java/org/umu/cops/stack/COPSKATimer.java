@@ -39,8 +39,8 @@ public class COPSKATimer extends COPSTimer {
         return true;
     }
 
-    protected COPSKATimer(byte[] dataPtr) {
-        super (dataPtr);
+    protected COPSKATimer(byte[] dataPtr, final int offset) {
+        super(dataPtr, offset);
     }
 
 }
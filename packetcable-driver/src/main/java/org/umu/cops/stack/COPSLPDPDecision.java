@@ -39,8 +39,8 @@ public class COPSLPDPDecision extends COPSDecision {
         return true;
     }
 
-    protected COPSLPDPDecision(byte[] data) {
-        super (data);
+    protected COPSLPDPDecision(byte[] data, final int offset) {
+        super(data, offset);
     }
 
 }
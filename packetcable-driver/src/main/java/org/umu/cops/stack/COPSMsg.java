@@ -9,6 +9,7 @@ package org.umu.cops.stack;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 
 /**
  * COPS Message
@@ -32,18 +33,44 @@ abstract public class COPSMsg {
 
     /**
      * Method writeData
+     *
+     * The message goes through the outbound queue of the socket, the queue writer encodes it with the other
+     * queued messages in a single buffer so concurrent writers never interleave their frames.
+     *
      * @param    id                  a  Socket
      * @throws   IOException
      */
-    public abstract void writeData(Socket id) throws IOException;
+    public void writeData(final Socket id) throws IOException {
+        COPSOutboundQueue.of(id).send(id, this);
+    }
+
+    /**
+     * Encodes the message, header included, at the current position of the buffer. The buffer must have
+     * at least getHeader().getMsgLength() bytes remaining.
+     * @param    buf                 a  ByteBuffer
+     */
+    public abstract void writeTo(ByteBuffer buf);
 
     /**
      * Method parse
      * @param    hdr                 a  COPSHeader
+     * @param    data                a  byte[] holding the data following the header
+     * @throws   COPSException
+     */
+    protected void parse(final COPSHeader hdr, final byte[] data) throws COPSException {
+        parse(hdr, data, 0, hdr.getMsgLength() - hdr.getHdrLength());
+    }
+
+    /**
+     * Parses the objects of a message whose header has already been read. The objects are decoded in place,
+     * at their position within the given buffer.
+     * @param    hdr                 a  COPSHeader
      * @param    data                a  byte[]
+     * @param    offset              offset of the data following the header
+     * @param    length              length of the data following the header
      * @throws   COPSException
      */
-    protected abstract void parse(COPSHeader hdr, byte[] data) throws COPSException;
+    protected abstract void parse(COPSHeader hdr, byte[] data, int offset, int length) throws COPSException;
 
     /**
      * Method parse
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2003 University of Murcia.  All rights reserved.
+ * --------------------------------------------------------------
+ * For more information, please see <http://www.umu.euro6ix.org/>.
+ */
+
+package org.umu.cops.stack;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * COPS Message Framer
+ *
+ * Per-connection accumulation buffer. Bytes are appended as they arrive from the network and complete
+ * COPS messages are cut out of the stream using the message length carried in the 8-byte COPS header.
+ * Partial messages remain buffered until the rest of their bytes arrive.
+ *
+ * Instances are not thread safe, each connection must own its framer.
+ *
+ * @version COPSMsgFramer.java, v 1.00 2003
+ *
+ */
+public class COPSMsgFramer {
+
+    /**
+     * Initial size of the accumulation buffer
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 2048;
+
+    /**
+     * Upper bound accepted for a single COPS message, anything bigger is considered a corrupt stream
+     */
+    public static final int MAX_MSG_LENGTH = 1 << 20;
+
+    private static final int HEADER_LENGTH = 8;
+
+    /**
+     * Accumulated bytes, always left in write mode between calls
+     */
+    private ByteBuffer _buf;
+
+    public COPSMsgFramer() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    public COPSMsgFramer(final int initialSize) {
+        _buf = ByteBuffer.allocate(Math.max(initialSize, HEADER_LENGTH));
+    }
+
+    /**
+     * Reads whatever is available from the channel into the accumulation buffer
+     * @param    channel             a  ReadableByteChannel
+     * @return   the number of bytes read, -1 when the end of the stream has been reached
+     * @throws   IOException
+     */
+    public int readFrom(final ReadableByteChannel channel) throws IOException {
+        if (!_buf.hasRemaining()) {
+            ensureCapacity(_buf.capacity() * 2);
+        }
+        return channel.read(_buf);
+    }
+
+    /**
+     * Appends raw bytes to the accumulation buffer
+     * @param    data                a  byte[]
+     * @param    offset              an int
+     * @param    len                 an int
+     */
+    public void append(final byte[] data, final int offset, final int len) {
+        ensureCapacity(_buf.position() + len);
+        _buf.put(data, offset, len);
+    }
+
+    /**
+     * Returns the number of bytes buffered and not yet consumed as messages
+     * @return   an int
+     */
+    public int buffered() {
+        return _buf.position();
+    }
+
+    /**
+     * Returns the next complete message held in the buffer
+     * @return   a COPSMsg or null when no complete message has been received yet
+     * @throws   COPSException when the buffered stream does not hold a valid COPS frame
+     */
+    public COPSMsg next() throws COPSException {
+        final int msgLength = nextFrame();
+        if (msgLength == 0) {
+            return null;
+        }
+
+        // Objects are decoded in place, they copy what they keep so the frame can be dropped afterwards
+        final byte[] array = _buf.array();
+        final COPSMsgParser prser = new COPSMsgParser();
+        final COPSMsg msg = prser.parse(array, 0, msgLength);
+        if (msg == null) {
+            throw new COPSException("Unknown COPS message type " + array[1]);
+        }
+        skip(msgLength);
+        return msg;
+    }
+
+    /**
+     * Returns the length of the next complete frame, the frame starts at offset 0 of {@link #frame()} and
+     * stays there until consumed by {@link #next()} or {@link #skip(int)}
+     * @return   the length of the frame or 0 when no complete frame has been received yet
+     * @throws   COPSException when the buffered stream does not hold a valid COPS frame
+     */
+    public int nextFrame() throws COPSException {
+        final int available = _buf.position();
+        if (available < HEADER_LENGTH) {
+            return 0;
+        }
+
+        final byte[] array = _buf.array();
+        final int msgLength = ((array[4] & 0xFF) << 24) | ((array[5] & 0xFF) << 16)
+                | ((array[6] & 0xFF) << 8) | (array[7] & 0xFF);
+        if (msgLength < HEADER_LENGTH || msgLength > MAX_MSG_LENGTH || (msgLength % 4) != 0) {
+            throw new COPSException("Bad COPS message length: " + msgLength);
+        }
+
+        if (available < msgLength) {
+            // Make room for the remainder of the message
+            ensureCapacity(msgLength);
+            return 0;
+        }
+        return msgLength;
+    }
+
+    /**
+     * Returns the accumulation buffer, only valid until the next call to this framer
+     * @return   a byte[]
+     */
+    public byte[] frame() {
+        return _buf.array();
+    }
+
+    /**
+     * Drops the frame returned by {@link #nextFrame()}, keeping any bytes of the following messages
+     * @param    length              the length of the frame
+     */
+    public void skip(final int length) {
+        _buf.flip();
+        _buf.position(length);
+        _buf.compact();
+    }
+
+    /**
+     * Grows the buffer so it can hold at least the given number of bytes
+     * @param    size                an int
+     */
+    private void ensureCapacity(final int size) {
+        if (_buf.capacity() >= size) {
+            return;
+        }
+        final ByteBuffer grown = ByteBuffer.allocate(Math.max(size, _buf.capacity() * 2));
+        _buf.flip();
+        grown.put(_buf);
+        _buf = grown;
+    }
+
+}
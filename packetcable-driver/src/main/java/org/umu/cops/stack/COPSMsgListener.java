@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2003 University of Murcia.  All rights reserved.
+ * --------------------------------------------------------------
+ * For more information, please see <http://www.umu.euro6ix.org/>.
+ */
+
+package org.umu.cops.stack;
+
+import java.nio.channels.SocketChannel;
+
+/**
+ * Receives the messages framed by a {@link COPSReactor} for a registered channel.
+ *
+ * Callbacks are made from the reactor thread and must not block.
+ */
+public interface COPSMsgListener {
+
+    /**
+     * Called for every complete message read from the channel
+     * @param    channel             the channel the message was read from
+     * @param    msg                 the parsed message
+     */
+    void onMessage(SocketChannel channel, COPSMsg msg);
+
+    /**
+     * Called once when the channel has been closed by the peer or because of an error
+     * @param    channel             the closed channel
+     * @param    cause               the error that caused the close or null when the peer closed the stream
+     */
+    void onClose(SocketChannel channel, Exception cause);
+
+}
@@ -33,12 +33,25 @@ public class COPSMsgParser {
      *
      */
     public COPSMsg parse(byte[] data) throws COPSException {
-        COPSHeader hdr = new COPSHeader(data);
-
-        byte[] buf = new byte[data.length - 8];
-        System.arraycopy(data,8,buf,0,data.length - 8);
+        return parse(data, 0, data.length);
+    }
 
-        return (parse(hdr, buf));
+    /** Parses the COPS message found at the given offset of the buffer,
+     *     the header and objects are decoded in place without copying
+     *     the buffer
+     *
+     * @param    data                a  byte[]
+     * @param    offset              offset of the message header
+     * @param    length              length of the message, header included
+     *
+     * @return   a COPSMsg
+     *
+     * @throws   COPSException
+     *
+     */
+    public COPSMsg parse(byte[] data, int offset, int length) throws COPSException {
+        COPSHeader hdr = new COPSHeader(data, offset);
+        return (parse(hdr, data, offset + hdr.getHdrLength(), length - hdr.getHdrLength()));
     }
 
     /**
@@ -54,67 +67,85 @@ public class COPSMsgParser {
      *
      */
     public COPSMsg parse(COPSHeader hdr, byte[] data) throws COPSException {
+        return (parse(hdr, data, 0, hdr.getMsgLength() - hdr.getHdrLength()));
+    }
+
+    /**
+     * Parse the message with given header, the objects are decoded
+     * in place from the given region of the buffer
+     *
+     * @param    hdr                 a  COPSHeader
+     * @param    data                a  byte[]
+     * @param    offset              offset of the data following the header
+     * @param    length              length of the data following the header
+     *
+     * @return   a COPSMsg
+     *
+     * @throws   COPSException
+     *
+     */
+    public COPSMsg parse(COPSHeader hdr, byte[] data, int offset, int length) throws COPSException {
         COPSMsg copsMsg = null;
         short cCode = hdr.getOpCode();
         switch (cCode) {
         case COPSHeader.COPS_OP_REQ: {
             // COPSDebug.out(getClass().getName(), "Creating REQ msg");
             copsMsg = new COPSReqMsg();
-            copsMsg.parse(hdr, data);
+            copsMsg.parse(hdr, data, offset, length);
         }
         break;
         case COPSHeader.COPS_OP_DEC: {
             // COPSDebug.out(getClass().getName(), "Creating DEC msg");
             copsMsg = new COPSDecisionMsg();
-            copsMsg.parse(hdr, data);
+            copsMsg.parse(hdr, data, offset, length);
         }
         break;
         case COPSHeader.COPS_OP_RPT: {
             // COPSDebug.out(getClass().getName(), "Creating RPT msg");
             copsMsg = new COPSReportMsg();
-            copsMsg.parse(hdr, data);
+            copsMsg.parse(hdr, data, offset, length);
         }
         break;
         case COPSHeader.COPS_OP_DRQ: {
             // COPSDebug.out(getClass().getName(), "Creating DRQ msg");
             copsMsg = new COPSDeleteMsg();
-            copsMsg.parse(hdr, data);
+            copsMsg.parse(hdr, data, offset, length);
         }
         break;
         case COPSHeader.COPS_OP_OPN: {
             // COPSDebug.out(getClass().getName(), "Creating Client-Open msg");
             copsMsg = new COPSClientOpenMsg();
-            copsMsg.parse(hdr, data);
+            copsMsg.parse(hdr, data, offset, length);
         }
         break;
         case COPSHeader.COPS_OP_CAT: {
             // COPSDebug.out(getClass().getName(), "Creating Client-Accept msg");
             copsMsg = new COPSClientAcceptMsg();
-            copsMsg.parse(hdr, data);
+            copsMsg.parse(hdr, data, offset, length);
         }
         break;
         case COPSHeader.COPS_OP_CC: {
             // COPSDebug.out(getClass().getName(), "Creating Client-Close msg");
             copsMsg = new COPSClientCloseMsg();
-            copsMsg.parse(hdr, data);
+            copsMsg.parse(hdr, data, offset, length);
         }
         break;
         case COPSHeader.COPS_OP_KA: {
             // COPSDebug.out(getClass().getName(), "Creating KA msg");
             copsMsg = new COPSKAMsg();
-            copsMsg.parse(hdr, data);
+            copsMsg.parse(hdr, data, offset, length);
         }
         break;
         case COPSHeader.COPS_OP_SSQ: {
             // COPSDebug.out(getClass().getName(), "Creating Sync-State Request msg");
             copsMsg = new COPSSyncStateMsg();
-            copsMsg.parse(hdr, data);
+            copsMsg.parse(hdr, data, offset, length);
         }
         break;
         case COPSHeader.COPS_OP_SSC: {
             // COPSDebug.out(getClass().getName(), "Creating Sync-State Complete msg");
             copsMsg = new COPSSyncStateMsg();
-            copsMsg.parse(hdr, data);
+            copsMsg.parse(hdr, data, offset, length);
         }
         break;
         default:
@@ -8,6 +8,7 @@ package org.umu.cops.stack;
 
 import java.io.IOException;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
@@ -34,7 +35,18 @@ public abstract class COPSObjBase {
      * @param    id                  a  Socket
      * @throws   IOException
      */
-    public abstract void writeData(Socket id) throws IOException;
+    public void writeData(final Socket id) throws IOException {
+        final ByteBuffer buf = ByteBuffer.allocate(getDataLength());
+        writeTo(buf);
+        COPSUtil.writeData(id, buf.array(), buf.position());
+    }
+
+    /**
+     * Encodes the object, header included, at the current position of the buffer. The buffer must have at
+     * least getDataLength() bytes remaining.
+     * @param    buf                 a  ByteBuffer
+     */
+    public abstract void writeTo(ByteBuffer buf);
 
     /**
      * Method getDataLength
@@ -8,7 +8,7 @@ package org.umu.cops.stack;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.net.Socket;
+import java.nio.ByteBuffer;
 
 /**
  * COPS Object Header
@@ -51,8 +51,8 @@ public class COPSObjHeader extends COPSObjBase {
         _cType = 0;
     }
 
-    protected COPSObjHeader(final byte[] data) {
-        parse(data);
+    protected COPSObjHeader(final byte[] data, final int offset) {
+        parse(data, offset);
     }
 
     /**
@@ -158,19 +158,13 @@ public class COPSObjHeader extends COPSObjBase {
     }
 
     /**
-     * Writes data to a given network _socket
-     * @param    id                  a  Socket
-     * @throws   IOException
+     * Encodes the object, header included, at the current position of the buffer
+     * @param    buf                 a  ByteBuffer
      */
-    public void writeData(final Socket id) throws IOException {
-        final byte[] buf = new byte[4];
-
-        buf[0] = (byte) (_len >> 8);
-        buf[1] = (byte) _len;
-        buf[2] = _cNum;
-        buf[3] = _cType;
-
-        COPSUtil.writeData(id, buf, 4);
+    public void writeTo(final ByteBuffer buf) {
+        buf.putShort(_len);
+        buf.put(_cNum);
+        buf.put(_cType);
     }
 
     /**
@@ -178,11 +172,20 @@ public class COPSObjHeader extends COPSObjBase {
      * @param    data                a  byte[]
      */
     public void parse(final byte[] data) {
+        parse(data, 0);
+    }
+
+    /**
+     * Method parse
+     * @param    data                a  byte[]
+     * @param    offset              offset of the object header in data
+     */
+    public void parse(final byte[] data, final int offset) {
         _len = 0;
-        _len |= ((short) data[0]) << 8;
-        _len |= ((short) data[1]) & 0xFF;
-        _cNum |= data[2];
-        _cType |= data[3];
+        _len |= ((short) data[offset]) << 8;
+        _len |= ((short) data[offset + 1]) & 0xFF;
+        _cNum |= data[offset + 2];
+        _cType |= data[offset + 3];
     }
 
     /**
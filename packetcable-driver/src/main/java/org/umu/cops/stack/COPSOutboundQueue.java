@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2003 University of Murcia.  All rights reserved.
+ * --------------------------------------------------------------
+ * For more information, please see <http://www.umu.euro6ix.org/>.
+ */
+
+package org.umu.cops.stack;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * COPS Outbound Queue
+ *
+ * Ordered and bounded queue of the messages to be written on a socket. Any number of threads may enqueue,
+ * only one of them at a time drains the queue: the messages queued while it writes are encoded back to back
+ * in one buffer and leave with a single write, so frames from different threads can never interleave.
+ *
+ * The writer never waits on a non-blocking channel. When the socket send buffer is full the bytes not written
+ * are kept, the reactor of the channel is asked to report it writable and the queue is drained again from the
+ * reactor thread. Meanwhile the messages pile up in the queue and a sender gets an IOException once it is
+ * full, so a peer that stops reading cannot stall the reactor or the timer threads.
+ *
+ * There is one queue per socket, shared by every writer through {@link #of(Socket)}.
+ *
+ * @version COPSOutboundQueue.java, v 1.00 2003
+ *
+ */
+public class COPSOutboundQueue {
+
+    private final static Logger logger = LoggerFactory.getLogger(COPSOutboundQueue.class);
+
+    /**
+     * Default maximum number of queued messages
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Size of the write buffer, bounds the number of bytes coalesced in one write. The buffer only grows to
+     * hold a single larger message.
+     */
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * The queues are not holding their socket, the entry goes away with the socket
+     */
+    private static final Map<Socket, COPSOutboundQueue> QUEUES =
+            Collections.synchronizedMap(new WeakHashMap<Socket, COPSOutboundQueue>());
+
+    private final BlockingQueue<COPSMsg> _queue;
+    private final AtomicBoolean _writing;
+
+    /**
+     * Only used by the writer
+     */
+    private ByteBuffer _buffer;
+
+    /**
+     * Bytes encoded but not written yet, only written by the writer
+     */
+    private volatile ByteBuffer _remainder;
+
+    /**
+     * The reactor of the non-blocking channel of the socket
+     */
+    private volatile COPSReactor _reactor;
+
+    /**
+     * True while waiting for the reactor to report the channel writable
+     */
+    private volatile boolean _blocked;
+
+    private volatile IOException _failure;
+
+    /**
+     * Returns the queue of the socket, created on the first call
+     * @param    sock                a  Socket
+     * @return   the queue of the socket
+     */
+    public static COPSOutboundQueue of(final Socket sock) {
+        synchronized (QUEUES) {
+            COPSOutboundQueue queue = QUEUES.get(sock);
+            if (queue == null) {
+                queue = new COPSOutboundQueue(DEFAULT_CAPACITY);
+                QUEUES.put(sock, queue);
+            }
+            return queue;
+        }
+    }
+
+    /**
+     * Forgets the queue of a closed socket
+     * @param    sock                a  Socket
+     */
+    public static void release(final Socket sock) {
+        QUEUES.remove(sock);
+    }
+
+    /**
+     * Creates a new queue
+     * @param    capacity            maximum number of queued messages
+     */
+    public COPSOutboundQueue(final int capacity) {
+        _queue = new ArrayBlockingQueue<>(capacity);
+        _writing = new AtomicBoolean(false);
+    }
+
+    /**
+     * Sets the reactor watching the non-blocking channel of the socket, it finishes the writes the socket send
+     * buffer could not take
+     * @param    reactor             a  COPSReactor
+     */
+    public void attach(final COPSReactor reactor) {
+        _reactor = reactor;
+    }
+
+    /**
+     * Queues a message then writes the queue unless another thread is already writing it, in which case that
+     * thread writes the message, or the channel is not writable, in which case the reactor writes it
+     * @param    sock                the socket of this queue
+     * @param    msg                 a  COPSMsg
+     * @throws   IOException when the queue is full or a previous write failed
+     */
+    public void send(final Socket sock, final COPSMsg msg) throws IOException {
+        if (_failure != null) {
+            throw new IOException("A previous write on " + sock + " failed", _failure);
+        }
+        if (!_queue.offer(msg)) {
+            throw new IOException("Outbound queue full for " + sock);
+        }
+        drain(sock);
+    }
+
+    /**
+     * @return   the number of messages waiting to be written
+     */
+    public int size() {
+        return _queue.size();
+    }
+
+    /**
+     * @return   true while the channel does not take more bytes, the queued messages are written by the reactor
+     *           once it does
+     */
+    public boolean isBlocked() {
+        return _blocked;
+    }
+
+    /**
+     * Writes the queue unless another thread is writing it or the channel is not writable
+     */
+    private void drain(final Socket sock) throws IOException {
+        // re-check after releasing the writer role, a message may have been queued in between
+        while (!_blocked && (!_queue.isEmpty() || _remainder != null) && _writing.compareAndSet(false, true)) {
+            try {
+                flush(sock);
+            } finally {
+                _writing.set(false);
+            }
+        }
+    }
+
+    /**
+     * Writes the queued messages, several messages per write
+     * @param    sock                a  Socket
+     * @throws   IOException
+     */
+    private void flush(final Socket sock) throws IOException {
+        final SocketChannel channel = sock.getChannel();
+        final COPSReactor reactor = _reactor;
+        final boolean async = channel != null && !channel.isBlocking() && reactor != null;
+        if (_remainder != null && !write(channel, _remainder, reactor, sock)) {
+            return;
+        }
+        _remainder = null;
+        COPSMsg msg = _queue.poll();
+        while (msg != null) {
+            final ByteBuffer buf = buffer(msg.getHeader().getMsgLength());
+            do {
+                try {
+                    msg.writeTo(buf);
+                } catch (final BufferOverflowException e) {
+                    fail(new IOException("COPS message objects exceed the header length of "
+                            + msg.getHeader().getMsgLength(), e));
+                }
+                msg = _queue.peek();
+                if (msg == null || buf.remaining() < msg.getHeader().getMsgLength()) {
+                    break;
+                }
+                _queue.poll();
+            } while (true);
+
+            if (async) {
+                buf.flip();
+                if (!write(channel, buf, reactor, sock)) {
+                    // the buffer holds the remainder until written
+                    _remainder = buf;
+                    _buffer = null;
+                    return;
+                }
+            } else {
+                try {
+                    COPSUtil.writeData(sock, buf.array(), buf.position());
+                } catch (final IOException e) {
+                    fail(e);
+                }
+            }
+            msg = _queue.poll();
+        }
+    }
+
+    /**
+     * Writes what the non-blocking channel takes, asks the reactor to finish the write otherwise
+     * @return   true when the whole buffer has been written
+     */
+    private boolean write(final SocketChannel channel, final ByteBuffer buf, final COPSReactor reactor,
+                          final Socket sock) throws IOException {
+        try {
+            while (buf.hasRemaining()) {
+                if (channel.write(buf) == 0) {
+                    break;
+                }
+            }
+        } catch (final IOException e) {
+            fail(e);
+        }
+        if (!buf.hasRemaining()) {
+            return true;
+        }
+        _blocked = true;
+        reactor.awaitWritable(channel, new Runnable() {
+            @Override
+            public void run() {
+                _blocked = false;
+                try {
+                    drain(sock);
+                } catch (final IOException e) {
+                    logger.error("Unable to write the COPS messages queued for " + sock, e);
+                }
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                // the channel is closed or no longer watched, the senders are told from now on
+                drop(new IOException("Channel of " + sock + " closed before the queued COPS messages were written"));
+                _blocked = false;
+            }
+        });
+        return false;
+    }
+
+    /**
+     * Returns the cleared write buffer, grown to hold at least the given length
+     */
+    private ByteBuffer buffer(final int length) {
+        if (_buffer == null || _buffer.capacity() < length) {
+            _buffer = ByteBuffer.allocate(Math.max(length, BUFFER_SIZE));
+        }
+        _buffer.clear();
+        return _buffer;
+    }
+
+    /**
+     * Records the failure and drops the queued messages, they would be sent out of sequence
+     */
+    private void fail(final IOException e) throws IOException {
+        drop(e);
+        throw e;
+    }
+
+    private void drop(final IOException e) {
+        _failure = e;
+        _queue.clear();
+        _remainder = null;
+    }
+
+}
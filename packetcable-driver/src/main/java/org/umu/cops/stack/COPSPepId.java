@@ -8,7 +8,7 @@ package org.umu.cops.stack;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.net.Socket;
+import java.nio.ByteBuffer;
 
 /**
  * COPS PEP Identification Object
@@ -33,14 +33,14 @@ public class COPSPepId extends COPSObjBase {
         setData(data);
     }
 
-    protected COPSPepId(byte[] dataPtr) {
+    protected COPSPepId(byte[] dataPtr, final int offset) {
         _objHdr = new COPSObjHeader();
-        _objHdr.parse(dataPtr);
+        _objHdr.parse(dataPtr, offset);
         // _objHdr.checkDataLength();
 
         //Get the length of data following the obj header
         short dLen = (short) (_objHdr.getDataLength() - 4);
-        COPSData d = new COPSData (dataPtr, 4, dLen);
+        COPSData d = new COPSData(dataPtr, offset + 4, dLen);
         setData(d);
     }
 
@@ -93,18 +93,14 @@ public class COPSPepId extends COPSObjBase {
     }
 
     /**
-     * Write data to given netwrok socket
-     *
-     * @param    id                  a  Socket
-     *
-     * @throws   IOException
-     *
+     * Encodes the object, header included, at the current position of the buffer
+     * @param    buf                 a  ByteBuffer
      */
-    public void writeData(final Socket id) throws IOException {
-        _objHdr.writeData(id);
-        COPSUtil.writeData(id, _data.getData(), _data.length());
+    public void writeTo(final ByteBuffer buf) {
+        _objHdr.writeTo(buf);
+        buf.put(_data.getData(), 0, _data.length());
         if (_padding != null) {
-            COPSUtil.writeData(id, _padding.getData(), _padding.length());
+            buf.put(_padding.getData(), 0, _padding.length());
         }
     }
 
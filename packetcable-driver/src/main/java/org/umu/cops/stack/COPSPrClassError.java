@@ -57,8 +57,8 @@ public class COPSPrClassError extends COPSPrError {
     /**
           Parse the data and create a PrClassError object
      */
-    protected COPSPrClassError(byte[] dataPtr) {
-        super(dataPtr);
+    protected COPSPrClassError(byte[] dataPtr, final int offset) {
+        super(dataPtr, offset);
     }
 
     /**
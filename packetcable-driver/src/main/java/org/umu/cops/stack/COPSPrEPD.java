@@ -34,8 +34,8 @@ public class COPSPrEPD extends COPSPrObjBase {
     /**
           Parse the data and create a PrEPD object
      */
-    protected COPSPrEPD(byte[] dataPtr) {
-        super(dataPtr);
+    protected COPSPrEPD(byte[] dataPtr, final int offset) {
+        super(dataPtr, offset);
     }
 
 
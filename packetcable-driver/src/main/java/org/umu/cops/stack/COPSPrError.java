@@ -6,8 +6,7 @@
 
 package org.umu.cops.stack;
 
-import java.io.IOException;
-import java.net.Socket;
+import java.nio.ByteBuffer;
 
 /**
  * COPS Provisioning Error
@@ -29,23 +28,23 @@ public class COPSPrError extends COPSPrObjBase {
     /**
           Parse the data and create a PrGlobalError object
      */
-    protected COPSPrError(byte[] dataPtr) {
+    protected COPSPrError(byte[] dataPtr, final int offset) {
         _dataRep = null;
 
-        _len |= ((short) dataPtr[0]) << 8;
-        _len |= ((short) dataPtr[1]) & 0xFF;
+        _len |= ((short) dataPtr[offset + 0]) << 8;
+        _len |= ((short) dataPtr[offset + 1]) & 0xFF;
 
-        _sNum |= ((short) dataPtr[2]) << 8;
-        _sNum |= ((short) dataPtr[3]) & 0xFF;
+        _sNum |= ((short) dataPtr[offset + 2]) << 8;
+        _sNum |= ((short) dataPtr[offset + 3]) & 0xFF;
 
         short tmpErrCode = (short)0;
-        tmpErrCode |= ((short) dataPtr[4]) << 8;
-        tmpErrCode |= ((short) dataPtr[5]) & 0xFF;
+        tmpErrCode |= ((short) dataPtr[offset + 4]) << 8;
+        tmpErrCode |= ((short) dataPtr[offset + 5]) & 0xFF;
         _errCode = tmpErrCode;
 
         short tmpErrSubCode = (short)0;
-        tmpErrSubCode |= ((short) dataPtr[6]) << 8;
-        tmpErrSubCode |= ((short) dataPtr[7]) & 0xFF;
+        tmpErrSubCode |= ((short) dataPtr[offset + 6]) << 8;
+        tmpErrSubCode |= ((short) dataPtr[offset + 7]) & 0xFF;
         _errSubCode = tmpErrSubCode;
     }
 
@@ -56,13 +55,15 @@ public class COPSPrError extends COPSPrObjBase {
     public void setData(final COPSData data) { }
 
     /**
-     * Write data on a given network socket
-     * @param    id                  a  Socket
-     * @throws   IOException
+     * Encodes the object, header included, at the current position of the buffer
+     * @param    buf                 a  ByteBuffer
      */
-    public void writeData(final Socket id) throws IOException {
-        final byte[] dataRep = getDataRep();
-        COPSUtil.writeData(id, dataRep, dataRep.length);
+    public void writeTo(final ByteBuffer buf) {
+        buf.putShort(_len);
+        buf.put((byte) (_sNum >> 8));
+        buf.put(_sNum);
+        buf.putShort(_errCode);
+        buf.putShort(_errSubCode);
     }
 
     /**
@@ -24,8 +24,8 @@ public class COPSPrErrorPRID extends COPSPrObjBase {
     /**
           Parse the data and create a PrErrorPRID object
      */
-    protected COPSPrErrorPRID(byte[] dataPtr) {
-        super(dataPtr);
+    protected COPSPrErrorPRID(byte[] dataPtr, final int offset) {
+        super(dataPtr, offset);
     }
 
     /**
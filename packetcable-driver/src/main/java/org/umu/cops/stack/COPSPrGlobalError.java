@@ -55,8 +55,8 @@ public class COPSPrGlobalError extends COPSPrError {
     /**
           Parse the data and create a PrGlobalError object
      */
-    protected COPSPrGlobalError(byte[] dataPtr) {
-        super(dataPtr);
+    protected COPSPrGlobalError(byte[] dataPtr, final int offset) {
+        super(dataPtr, offset);
     }
 
 
@@ -22,8 +22,8 @@ public class COPSPrID extends COPSPrObjBase {
     }
 
     ///Parse the data and create a PrID object
-    protected COPSPrID(byte[] dataPtr) {
-        super(dataPtr);
+    protected COPSPrID(byte[] dataPtr, final int offset) {
+        super(dataPtr, offset);
     }
 
     /**
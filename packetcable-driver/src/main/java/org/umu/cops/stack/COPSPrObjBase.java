@@ -8,6 +8,7 @@ package org.umu.cops.stack;
 
 import java.io.IOException;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
@@ -40,17 +41,21 @@ public class COPSPrObjBase {
     }
 
     public COPSPrObjBase(final byte[] dataPtr) {
+        this(dataPtr, 0);
+    }
+
+    public COPSPrObjBase(final byte[] dataPtr, final int offset) {
         _dataRep = null;
 
-        _len |= ((short) dataPtr[0]) << 8;
-        _len |= ((short) dataPtr[1]) & 0xFF;
+        _len |= ((short) dataPtr[offset + 0]) << 8;
+        _len |= ((short) dataPtr[offset + 1]) & 0xFF;
 
-        _sNum |= ((short) dataPtr[2]) << 8;
-        _sNum |= ((short) dataPtr[3]) & 0xFF;
+        _sNum |= ((short) dataPtr[offset + 2]) << 8;
+        _sNum |= ((short) dataPtr[offset + 3]) & 0xFF;
 
         //Get the length of data following the obj header
         short dLen = (short) (_len - 4);
-        COPSData d = new COPSData(dataPtr, 4, dLen);
+        COPSData d = new COPSData(dataPtr, offset + 4, dLen);
         setData(d);
     }
 
@@ -193,8 +198,23 @@ public class COPSPrObjBase {
      * @throws   IOException
      */
     public void writeData(final Socket id) throws IOException {
-        final byte[] dataRep = getDataRep();
-        COPSUtil.writeData(id, dataRep, dataRep.length);
+        final ByteBuffer buf = ByteBuffer.allocate(getDataLength());
+        writeTo(buf);
+        COPSUtil.writeData(id, buf.array(), buf.position());
+    }
+
+    /**
+     * Encodes the object, header included, at the current position of the buffer
+     * @param    buf                 a  ByteBuffer
+     */
+    public void writeTo(final ByteBuffer buf) {
+        buf.putShort(_len);
+        buf.put((byte) (_sNum >> 8));
+        buf.put(_sNum);
+        buf.put(_data.getData(), 0, _data.length());
+        if (_padding != null) {
+            buf.put(_padding.getData(), 0, _padding.length());
+        }
     }
 
     /**
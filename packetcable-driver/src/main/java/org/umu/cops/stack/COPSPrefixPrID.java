@@ -35,8 +35,8 @@ public class COPSPrefixPrID extends COPSPrObjBase {
     /**
           Parse the data and create a PrefixPrID object
      */
-    protected COPSPrefixPrID(byte[] dataPtr) {
-        super(dataPtr);
+    protected COPSPrefixPrID(byte[] dataPtr, final int offset) {
+        super(dataPtr, offset);
     }
 }
 
@@ -0,0 +1,397 @@
+/*
+ * Copyright (c) 2003 University of Murcia.  All rights reserved.
+ * --------------------------------------------------------------
+ * For more information, please see <http://www.umu.euro6ix.org/>.
+ */
+
+package org.umu.cops.stack;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * COPS Reactor
+ *
+ * Single thread multiplexing the reads of any number of COPS connections through a {@link Selector}.
+ * Each registered channel owns a {@link COPSMsgFramer}, complete messages are handed to the channel's
+ * {@link COPSMsgListener}, a {@link COPSFrameListener} sees the raw frames first. Outbound connections can
+ * also be opened without blocking, see {@link #connect(SocketChannel, SocketAddress, COPSConnectListener)}. The {@link COPSOutboundQueue} of a
+ * registered channel hands its writes over to the reactor when the socket send buffer is full, see
+ * {@link #awaitWritable(SocketChannel, Runnable)}.
+ *
+ * @version COPSReactor.java, v 1.00 2003
+ *
+ */
+public class COPSReactor implements Runnable {
+
+    private final static Logger logger = LoggerFactory.getLogger(COPSReactor.class);
+
+    private final String _name;
+    private final Selector _selector;
+
+    /**
+     * Channels waiting to be registered by the reactor thread
+     */
+    private final Queue<Endpoint> _pending;
+
+    /**
+     * Channels to watch for writability
+     */
+    private final Queue<WriteRequest> _writeRequests;
+
+    private volatile Thread _thread;
+    private volatile boolean _running;
+
+    /**
+     * Creates a new reactor, the selector thread is started on the first registration
+     * @param    name                name of the reactor thread
+     * @throws   IOException when the selector cannot be opened
+     */
+    public COPSReactor(final String name) throws IOException {
+        _name = name;
+        _selector = Selector.open();
+        _pending = new ConcurrentLinkedQueue<>();
+        _writeRequests = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Registers a connected channel, the channel is switched to non-blocking mode
+     * @param    channel             a  SocketChannel
+     * @param    listener            a  COPSMsgListener
+     * @throws   IOException
+     */
+    public void register(final SocketChannel channel, final COPSMsgListener listener) throws IOException {
+        if (!_selector.isOpen()) {
+            throw new ClosedChannelException();
+        }
+        channel.configureBlocking(false);
+        COPSOutboundQueue.of(channel.socket()).attach(this);
+        _pending.add(new Endpoint(channel, listener, false));
+        start();
+        _selector.wakeup();
+    }
+
+    /**
+     * Opens a connection without blocking, the listener is told from the reactor thread once the
+     * connection is established and the channel is then not read until registered with
+     * {@link #register(SocketChannel, COPSMsgListener)}. A failed connection is reported through
+     * {@link COPSMsgListener#onClose(SocketChannel, Exception)}.
+     * @param    channel             an unconnected SocketChannel
+     * @param    remote              the address to connect to
+     * @param    listener            a  COPSConnectListener
+     * @throws   IOException when the connection cannot be initiated
+     */
+    public void connect(final SocketChannel channel, final SocketAddress remote, final COPSConnectListener listener)
+            throws IOException {
+        if (!_selector.isOpen()) {
+            throw new ClosedChannelException();
+        }
+        channel.configureBlocking(false);
+        COPSOutboundQueue.of(channel.socket()).attach(this);
+        channel.connect(remote);
+        _pending.add(new Endpoint(channel, listener, true));
+        start();
+        _selector.wakeup();
+    }
+
+    /**
+     * Runs the callback from the reactor thread once the registered channel can be written, once per call.
+     * The callback is dropped if the channel is closed or not registered.
+     * @param    channel             a registered SocketChannel
+     * @param    callback            finishes the write
+     */
+    public void awaitWritable(final SocketChannel channel, final Runnable callback) {
+        awaitWritable(channel, callback, null);
+    }
+
+    /**
+     * Runs the callback from the reactor thread once the registered channel can be written, once per call.
+     * When the channel is closed or not registered the callback is dropped and the other one is run instead.
+     * @param    channel             a registered SocketChannel
+     * @param    callback            finishes the write
+     * @param    dropped             tells the writer its write will not be finished, may be null
+     */
+    public void awaitWritable(final SocketChannel channel, final Runnable callback, final Runnable dropped) {
+        _writeRequests.add(new WriteRequest(channel, callback, dropped));
+        _selector.wakeup();
+    }
+
+    /**
+     * Stops watching the channel, the listener is not notified
+     * @param    channel             a  SocketChannel
+     */
+    public void unregister(final SocketChannel channel) {
+        final SelectionKey key = channel.keyFor(_selector);
+        if (key != null) {
+            key.cancel();
+            _selector.wakeup();
+        }
+    }
+
+    /**
+     * Starts the selector thread if not already running
+     */
+    public synchronized void start() {
+        if (_thread == null) {
+            _running = true;
+            _thread = new Thread(this, _name);
+            _thread.setDaemon(true);
+            _thread.start();
+        }
+    }
+
+    /**
+     * Stops the selector thread and closes all the registered channels
+     */
+    public void stop() {
+        _running = false;
+        _selector.wakeup();
+    }
+
+    /**
+     * Returns true if called from the reactor thread
+     * @return   a boolean
+     */
+    public boolean inReactorThread() {
+        return Thread.currentThread() == _thread;
+    }
+
+    /**
+     * Selector loop
+     */
+    public void run() {
+        logger.info("Starting COPS reactor " + _name);
+        while (_running) {
+            try {
+                _selector.select();
+                registerPending();
+                registerWrites();
+                final Iterator<SelectionKey> keys = _selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid() && key.isConnectable()) {
+                        finishConnect(key);
+                        continue;
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        writable(key);
+                    }
+                    if (key.isValid() && key.isReadable()) {
+                        read(key);
+                    }
+                }
+            } catch (final IOException e) {
+                logger.error("Unexpected error in COPS reactor " + _name, e);
+            }
+        }
+
+        for (final SelectionKey key : _selector.keys()) {
+            close(key, null);
+        }
+        try {
+            _selector.close();
+        } catch (final IOException e) {
+            logger.error("Unexpected error closing selector", e);
+        }
+        logger.info("COPS reactor " + _name + " stopped");
+    }
+
+    private void registerPending() {
+        Endpoint endpoint;
+        while ((endpoint = _pending.poll()) != null) {
+            try {
+                if (!endpoint.connecting) {
+                    endpoint.channel.register(_selector, SelectionKey.OP_READ, endpoint);
+                } else if (endpoint.channel.isConnectionPending()) {
+                    endpoint.channel.register(_selector, SelectionKey.OP_CONNECT, endpoint);
+                } else {
+                    // connected at once, local peers do that
+                    connected(endpoint.channel.register(_selector, 0, endpoint));
+                }
+            } catch (final ClosedChannelException e) {
+                endpoint.listener.onClose(endpoint.channel, e);
+            }
+        }
+    }
+
+    private void registerWrites() {
+        WriteRequest request;
+        while ((request = _writeRequests.poll()) != null) {
+            final SelectionKey key = request.channel.keyFor(_selector);
+            if (key == null || !key.isValid()) {
+                logger.debug("Channel " + request.channel + " not registered, dropping its pending write");
+                request.drop();
+                continue;
+            }
+            // a request already waiting keeps its turn
+            ((Endpoint) key.attachment()).writable.add(request);
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Runs the pending write of a writable channel
+     * @param    key                 a  SelectionKey
+     */
+    private void writable(final SelectionKey key) {
+        final Endpoint endpoint = (Endpoint) key.attachment();
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        final List<WriteRequest> requests = new ArrayList<>(endpoint.writable);
+        endpoint.writable.clear();
+        for (final WriteRequest request : requests) {
+            try {
+                request.callback.run();
+            } catch (final RuntimeException e) {
+                logger.error("Unexpected error writing to " + endpoint.channel, e);
+            }
+        }
+    }
+
+    /**
+     * Completes a pending connection
+     * @param    key                 a  SelectionKey
+     */
+    private void finishConnect(final SelectionKey key) {
+        final Endpoint endpoint = (Endpoint) key.attachment();
+        try {
+            if (endpoint.channel.finishConnect()) {
+                key.interestOps(0);
+                connected(key);
+            }
+        } catch (final IOException e) {
+            logger.error("Unable to connect " + endpoint.channel, e);
+            close(key, e);
+        }
+    }
+
+    private void connected(final SelectionKey key) {
+        final Endpoint endpoint = (Endpoint) key.attachment();
+        try {
+            ((COPSConnectListener) endpoint.listener).onConnect(endpoint.channel);
+        } catch (final RuntimeException e) {
+            logger.error("Unexpected error dispatching COPS connection", e);
+            close(key, e);
+        }
+    }
+
+    /**
+     * Drains the channel and dispatches every complete message
+     * @param    key                 a  SelectionKey
+     */
+    private void read(final SelectionKey key) {
+        final Endpoint endpoint = (Endpoint) key.attachment();
+        try {
+            int count;
+            while ((count = endpoint.framer.readFrom(endpoint.channel)) > 0) {
+                dispatch(endpoint);
+            }
+            if (count < 0) {
+                close(key, null);
+            }
+        } catch (final IOException | COPSException e) {
+            logger.error("Error reading from " + endpoint.channel, e);
+            close(key, e);
+        }
+    }
+
+    private void dispatch(final Endpoint endpoint) throws COPSException {
+        final COPSFrameListener frameListener = endpoint.listener instanceof COPSFrameListener
+                ? (COPSFrameListener) endpoint.listener : null;
+        int length;
+        while ((length = endpoint.framer.nextFrame()) > 0) {
+            try {
+                if (frameListener != null
+                        && frameListener.onFrame(endpoint.channel, endpoint.framer.frame(), 0, length)) {
+                    endpoint.framer.skip(length);
+                    continue;
+                }
+            } catch (final RuntimeException e) {
+                logger.error("Unexpected error dispatching COPS frame", e);
+                endpoint.framer.skip(length);
+                continue;
+            }
+            final COPSMsg msg = endpoint.framer.next();
+            try {
+                endpoint.listener.onMessage(endpoint.channel, msg);
+            } catch (final RuntimeException e) {
+                logger.error("Unexpected error dispatching COPS message", e);
+            }
+        }
+    }
+
+    private void close(final SelectionKey key, final Exception cause) {
+        final Endpoint endpoint = (Endpoint) key.attachment();
+        key.cancel();
+        try {
+            endpoint.channel.close();
+        } catch (final IOException e) {
+            logger.error("Unexpected error closing channel", e);
+        }
+        for (final WriteRequest request : endpoint.writable) {
+            request.drop();
+        }
+        endpoint.writable.clear();
+        endpoint.listener.onClose(endpoint.channel, cause);
+    }
+
+    /**
+     * Per connection state attached to the selection key
+     */
+    private static class Endpoint {
+        final SocketChannel channel;
+        final COPSMsgListener listener;
+        final COPSMsgFramer framer;
+        final boolean connecting;
+        /**
+         * Run once the channel is writable, in order, only used by the reactor thread
+         */
+        final List<WriteRequest> writable = new ArrayList<>();
+
+        Endpoint(final SocketChannel channel, final COPSMsgListener listener, final boolean connecting) {
+            this.channel = channel;
+            this.listener = listener;
+            this.framer = new COPSMsgFramer();
+            this.connecting = connecting;
+        }
+    }
+
+    /**
+     * A channel to watch for writability, the callback finishing its write and the one run if it is dropped
+     */
+    private static class WriteRequest {
+        final SocketChannel channel;
+        final Runnable callback;
+        final Runnable dropped;
+
+        WriteRequest(final SocketChannel channel, final Runnable callback, final Runnable dropped) {
+            this.channel = channel;
+            this.callback = callback;
+            this.dropped = dropped;
+        }
+
+        void drop() {
+            if (dropped == null) {
+                return;
+            }
+            try {
+                dropped.run();
+            } catch (final RuntimeException e) {
+                logger.error("Unexpected error dropping the write to " + channel, e);
+            }
+        }
+    }
+
+}
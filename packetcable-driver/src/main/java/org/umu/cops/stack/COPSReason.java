@@ -8,7 +8,7 @@ package org.umu.cops.stack;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.net.Socket;
+import java.nio.ByteBuffer;
 
 /**
  * COPS Reason Object (RFC 2748 pag. 12)
@@ -81,15 +81,15 @@ public class COPSReason extends COPSPrObjBase {
     /**
           Parse data and create COPSReason object
      */
-    protected COPSReason(final byte[] dataPtr) {
+    protected COPSReason(final byte[] dataPtr, final int offset) {
         _objHdr = new COPSObjHeader();
-        _objHdr.parse(dataPtr);
+        _objHdr.parse(dataPtr, offset);
         // _objHdr.checkDataLength();
 
-        _reasonCode |= ((short) dataPtr[4]) << 8;
-        _reasonCode |= ((short) dataPtr[5]) & 0xFF;
-        _reasonSubCode |= ((short) dataPtr[6]) << 8;
-        _reasonSubCode |= ((short) dataPtr[7]) & 0xFF;
+        _reasonCode |= ((short) dataPtr[offset + 4]) << 8;
+        _reasonCode |= ((short) dataPtr[offset + 5]) & 0xFF;
+        _reasonSubCode |= ((short) dataPtr[offset + 6]) << 8;
+        _reasonSubCode |= ((short) dataPtr[offset + 7]) & 0xFF;
 
         _objHdr.setDataLength((short) 4);
     }
@@ -116,18 +116,14 @@ public class COPSReason extends COPSPrObjBase {
     }
 
     @Override
-    public void writeData(final Socket id) throws IOException {
-        _objHdr.writeData(id);
-
-        byte[] buf = new byte[4];
-
-        buf[0] = (byte) (_reasonCode >> 8);
-        buf[1] = (byte) _reasonCode;
-        buf[2] = (byte) (_reasonSubCode >> 8);
-        buf[3] = (byte) _reasonSubCode;
-
-
-        COPSUtil.writeData(id, buf, 4);
+    /**
+     * Encodes the object, header included, at the current position of the buffer
+     * @param    buf                 a  ByteBuffer
+     */
+    public void writeTo(final ByteBuffer buf) {
+        _objHdr.writeTo(buf);
+        buf.putShort(_reasonCode);
+        buf.putShort(_reasonSubCode);
     }
 
     /**
@@ -8,7 +8,7 @@ package org.umu.cops.stack;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -191,48 +191,53 @@ public class COPSReportMsg extends COPSMsg {
     }
 
     @Override
-    public void writeData(final Socket id) throws IOException {
+    public void writeTo(final ByteBuffer buf) {
         //checkSanity();
-        if (_hdr != null) _hdr.writeData(id);
-        if (_clientHandle != null) _clientHandle.writeData(id);
-        if (_report != null) _report.writeData(id);
+        if (_hdr != null) _hdr.writeTo(buf);
+        if (_clientHandle != null) _clientHandle.writeTo(buf);
+        if (_report != null) _report.writeTo(buf);
 
         for (final COPSClientSI clientSI : _clientSI) {
-            clientSI.writeData(id);
+            clientSI.writeTo(buf);
         }
 
-        if (_integrity != null) _integrity.writeData(id);
+        if (_integrity != null) _integrity.writeTo(buf);
     }
 
     @Override
     protected void parse(final byte[] data) throws COPSException {
         super.parseHeader(data);
+        parseObjects(data);
+    }
 
+    /**
+     * Decodes the objects found between _dataStart and _dataLength, straight from the given buffer
+     * @param    data                a  byte[]
+     * @throws   COPSException
+     */
+    private void parseObjects(final byte[] data) throws COPSException {
         while (_dataStart < _dataLength) {
-            byte[] buf = new byte[data.length - _dataStart];
-            System.arraycopy(data,_dataStart,buf,0,data.length - _dataStart);
-
-            final COPSObjHeader objHdr = new COPSObjHeader (buf);
+            final COPSObjHeader objHdr = new COPSObjHeader(data, _dataStart);
             switch (objHdr.getCNum()) {
                 case COPSObjHeader.COPS_HANDLE: {
-                    _clientHandle = new COPSHandle(buf);
+                    _clientHandle = new COPSHandle(data, _dataStart);
                     _dataStart += _clientHandle.getDataLength();
                 }
                 break;
                 case COPSObjHeader.COPS_RPT: {
-                    _report = new COPSReportType(buf);
+                    _report = new COPSReportType(data, _dataStart);
                     _dataStart += _report.getDataLength();
                 }
                 break;
                 case COPSObjHeader.COPS_CSI: {
-                    COPSClientSI csi = new COPSClientSI(buf);
+                    COPSClientSI csi = new COPSClientSI(data, _dataStart);
                     _dataStart += csi.getDataLength();
                     _clientSI.add(csi);
                 }
                 break;
 
                 case COPSObjHeader.COPS_MSG_INTEGRITY: {
-                    _integrity = new COPSIntegrity(buf);
+                    _integrity = new COPSIntegrity(data, _dataStart);
                     _dataStart += _integrity.getDataLength();
                 }
                 break;
@@ -246,11 +251,14 @@ public class COPSReportMsg extends COPSMsg {
     }
 
     @Override
-    protected void parse(final COPSHeader hdr, final byte[] data) throws COPSException {
+    protected void parse(final COPSHeader hdr, final byte[] data, final int offset, final int length)
+            throws COPSException {
         if (hdr.getOpCode() != COPSHeader.COPS_OP_RPT)
             throw new COPSException ("Null Header");
         _hdr = hdr;
-        parse(data);
+        _dataStart = offset;
+        _dataLength = offset + length;
+        parseObjects(data);
         setMsgLength();
     }
 
@@ -8,7 +8,7 @@ package org.umu.cops.stack;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.net.Socket;
+import java.nio.ByteBuffer;
 
 /**
  * COPS Report Type (RFC 2748 pag. 16
@@ -60,19 +60,19 @@ public class COPSReportType extends COPSPrObjBase {
     /**
           Parse data and create COPSReportType object
      */
-    protected COPSReportType(final byte[] dataPtr) {
+    protected COPSReportType(final byte[] dataPtr, final int offset) {
         _objHdr = new COPSObjHeader();
-        _objHdr.parse(dataPtr);
+        _objHdr.parse(dataPtr, offset);
         // _objHdr.checkDataLength();
 
         short tmpRType = (short)0;
-        tmpRType |= ((short) dataPtr[4]) << 8;
-        tmpRType |= ((short) dataPtr[5]) & 0xFF;
+        tmpRType |= ((short) dataPtr[offset + 4]) << 8;
+        tmpRType |= ((short) dataPtr[offset + 5]) & 0xFF;
         _rType = tmpRType;
 
         short tmpReserved = (short)0;
-        tmpReserved |= ((short) dataPtr[6]) << 8;
-        tmpReserved |= ((short) dataPtr[7]) & 0xFF;
+        tmpReserved |= ((short) dataPtr[offset + 6]) << 8;
+        tmpReserved |= ((short) dataPtr[offset + 7]) & 0xFF;
         _reserved = tmpReserved;
 
         _objHdr.setDataLength((short) 4);
@@ -120,21 +120,13 @@ public class COPSReportType extends COPSPrObjBase {
     }
 
     /**
-     * Write data in network byte order on a given network socket
-     * @param    id                  a  Socket
-     * @throws   IOException
+     * Encodes the object, header included, at the current position of the buffer
+     * @param    buf                 a  ByteBuffer
      */
-    public void writeData(final Socket id) throws IOException {
-        _objHdr.writeData(id);
-
-        byte[] buf = new byte[4];
-
-        buf[0] = (byte) (_rType >> 8);
-        buf[1] = (byte) _rType;
-        buf[2] = (byte) (_reserved >> 8);
-        buf[3] = (byte) _reserved;
-
-        COPSUtil.writeData(id, buf, 4);
+    public void writeTo(final ByteBuffer buf) {
+        _objHdr.writeTo(buf);
+        buf.putShort(_rType);
+        buf.putShort(_reserved);
     }
 
     /**
@@ -8,7 +8,7 @@ package org.umu.cops.stack;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -248,24 +248,24 @@ public class COPSReqMsg extends COPSMsg {
     }
 
     @Override
-    public void writeData(final Socket id) throws IOException {
+    public void writeTo(final ByteBuffer buf) {
         // checkSanity();
-        if (_hdr != null) _hdr.writeData(id);
-        if (_clientHandle != null) _clientHandle.writeData(id);
-        if (_context != null) _context.writeData(id);
+        if (_hdr != null) _hdr.writeTo(buf);
+        if (_clientHandle != null) _clientHandle.writeTo(buf);
+        if (_context != null) _context.writeTo(buf);
 
         for (final COPSClientSI clientSI : _clientSIs) {
-            clientSI.writeData(id);
+            clientSI.writeTo(buf);
         }
 
         //Display any local decisions
         for (final Map.Entry<COPSContext, List<COPSLPDPDecision>> entry : _decisions.entrySet()) {
-            entry.getKey().writeData(id);
+            entry.getKey().writeTo(buf);
             for (final COPSLPDPDecision decision : entry.getValue()) {
-                decision.writeData(id);
+                decision.writeTo(buf);
             }
         }
-        if (_integrity != null) _integrity.writeData(id);
+        if (_integrity != null) _integrity.writeTo(buf);
     }
 
     @Override
@@ -309,62 +309,67 @@ public class COPSReqMsg extends COPSMsg {
     @Override
     protected void parse(final byte[] data) throws COPSException {
         super.parseHeader(data);
+        parseObjects(data);
+    }
 
+    /**
+     * Decodes the objects found between _dataStart and _dataLength, straight from the given buffer
+     * @param    data                a  byte[]
+     * @throws   COPSException
+     */
+    private void parseObjects(final byte[] data) throws COPSException {
         while (_dataStart < _dataLength) {
-            final byte[] buf = new byte[data.length - _dataStart];
-            System.arraycopy(data,_dataStart,buf,0,data.length - _dataStart);
-
-            final COPSObjHeader objHdr = new COPSObjHeader (buf);
+            final COPSObjHeader objHdr = new COPSObjHeader(data, _dataStart);
             switch (objHdr.getCNum()) {
                 case COPSObjHeader.COPS_HANDLE: {
-                    _clientHandle = new COPSHandle(buf);
+                    _clientHandle = new COPSHandle(data, _dataStart);
                     _dataStart += _clientHandle.getDataLength();
                 }
                 break;
                 case COPSObjHeader.COPS_CONTEXT: {
                     if (_context == null) {
                         //Message context
-                        _context = new COPSContext(buf);
+                        _context = new COPSContext(data, _dataStart);
                         _dataStart += _context.getDataLength();
                     } else {
                         //lpdp context
-                        _lpdpContext = new COPSContext(buf);
+                        _lpdpContext = new COPSContext(data, _dataStart);
                         _dataStart += _lpdpContext.getDataLength();
                     }
                 }
                 break;
                 case COPSObjHeader.COPS_ININTF: {
                     if (objHdr.getCType() == 1) {
-                        _inInterface = new COPSIpv4InInterface(buf);
+                        _inInterface = new COPSIpv4InInterface(data, _dataStart);
                     } else {
-                        _inInterface = new COPSIpv6InInterface(buf);
+                        _inInterface = new COPSIpv6InInterface(data, _dataStart);
                     }
                     _dataStart += _inInterface.getDataLength();
                 }
                 break;
                 case COPSObjHeader.COPS_OUTINTF: {
                     if (objHdr.getCType() == 1) {
-                        _outInterface = new COPSIpv4OutInterface(buf);
+                        _outInterface = new COPSIpv4OutInterface(data, _dataStart);
                     } else {
-                        _outInterface = new COPSIpv6OutInterface(buf);
+                        _outInterface = new COPSIpv6OutInterface(data, _dataStart);
                     }
                     _dataStart += _outInterface.getDataLength();
                 }
                 break;
                 case COPSObjHeader.COPS_LPDP_DEC: {
-                    final COPSLPDPDecision lpdp = new COPSLPDPDecision(buf);
+                    final COPSLPDPDecision lpdp = new COPSLPDPDecision(data, _dataStart);
                     _dataStart += lpdp.getDataLength();
                     addLocalDecision(lpdp, _lpdpContext);
                 }
                 break;
                 case COPSObjHeader.COPS_CSI: {
-                    final COPSClientSI csi = new COPSClientSI(buf);
+                    final COPSClientSI csi = new COPSClientSI(data, _dataStart);
                     _dataStart += csi.getDataLength();
                     _clientSIs.add(csi);
                 }
                 break;
                 case COPSObjHeader.COPS_MSG_INTEGRITY: {
-                    _integrity = new COPSIntegrity(buf);
+                    _integrity = new COPSIntegrity(data, _dataStart);
                     _dataStart += _integrity.getDataLength();
                 }
                 break;
@@ -377,9 +382,12 @@ public class COPSReqMsg extends COPSMsg {
     }
 
     @Override
-    protected void parse(final COPSHeader hdr, final byte[] data) throws COPSException {
+    protected void parse(final COPSHeader hdr, final byte[] data, final int offset, final int length)
+            throws COPSException {
         _hdr = hdr;
-        parse(data);
+        _dataStart = offset;
+        _dataLength = offset + length;
+        parseObjects(data);
         setMsgLength();
     }
 
@@ -8,7 +8,7 @@ package org.umu.cops.stack;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.net.Socket;
+import java.nio.ByteBuffer;
 
 /**
  * COPS Timer Object
@@ -74,23 +74,13 @@ public class COPSTimer extends COPSObjBase {
     }
 
     /**
-     * Write data to given _socket in Network byte order
-     *
-     * @param    id                  a  Socket
-     *
-     * @throws   IOException
-     *
+     * Encodes the object, header included, at the current position of the buffer
+     * @param    buf                 a  ByteBuffer
      */
-    public void writeData(final Socket id) throws IOException {
-        _objHdr.writeData(id);
-
-        final byte[] buf = new byte[4];
-
-        buf[0] = (byte) (_reserved >> 8);
-        buf[1] = (byte) _reserved;
-        buf[2] = (byte) (_timerValue >> 8);
-        buf[3] = (byte) _timerValue;
-        COPSUtil.writeData(id, buf, 4);
+    public void writeTo(final ByteBuffer buf) {
+        _objHdr.writeTo(buf);
+        buf.putShort(_reserved);
+        buf.putShort(_timerValue);
     }
 
     protected COPSTimer(final short timeVal) {
@@ -104,15 +94,15 @@ public class COPSTimer extends COPSObjBase {
     /**
      * Receive data that is in netwrok byte order and fill in the obj.
      */
-    protected COPSTimer(final byte[] dataPtr) {
+    protected COPSTimer(final byte[] dataPtr, final int offset) {
         _objHdr = new COPSObjHeader();
-        _objHdr.parse(dataPtr);
+        _objHdr.parse(dataPtr, offset);
         // _objHdr.checkDataLength();
 
-        _reserved |= ((short) dataPtr[4]) << 8;
-        _reserved |= ((short) dataPtr[5]) & 0xFF;
-        _timerValue |= ((short) dataPtr[6]) << 8;
-        _timerValue |= ((short) dataPtr[7]) & 0xFF;
+        _reserved |= ((short) dataPtr[offset + 4]) << 8;
+        _reserved |= ((short) dataPtr[offset + 5]) & 0xFF;
+        _timerValue |= ((short) dataPtr[offset + 6]) << 8;
+        _timerValue |= ((short) dataPtr[offset + 7]) & 0xFF;
 
         // _objHdr.setDataLength(sizeof(u_int32_t));
         _objHdr.setDataLength((short) 4);
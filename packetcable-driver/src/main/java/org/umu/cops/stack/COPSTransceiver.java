@@ -59,9 +59,8 @@ public class COPSTransceiver {
         final COPSHeader hdr = new COPSHeader(hBuf);
         final int dataLen = hdr.getMsgLength() - hdr.getHdrLength();
         logger.info("COPS Msg length :[" + dataLen + "]");
-        final byte[] buf = new byte[dataLen + 1];
+        final byte[] buf = new byte[dataLen];
         nread = COPSUtil.readData(fd, buf, dataLen);
-        buf[dataLen] = (byte) '\0';
         logger.info("Data read length:[" + nread + "]");
 
         if (nread != dataLen) {
@@ -69,7 +68,7 @@ public class COPSTransceiver {
         }
 
         final COPSMsgParser prser = new COPSMsgParser();
-        return prser.parse(hdr, buf);
+        return prser.parse(hdr, buf, 0, dataLen);
     }
 }
 
@@ -12,7 +12,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.Socket;
-import java.util.Date;
+import java.nio.channels.SocketChannel;
 
 /**
  * COPS Utils
@@ -32,13 +32,19 @@ public class COPSUtil {
      * @throws   IOException
      */
     static void writeData(final Socket id, final byte[] data, final int len) throws IOException {
-        logger.info("Writing COPS data");
-        id.getOutputStream().write(data,0,len);
+        logger.debug("Writing COPS data");
+        final SocketChannel channel = id.getChannel();
+        if (channel != null && !channel.isBlocking()) {
+            // only the outbound queue writes a non-blocking channel, it does not wait for the channel
+            throw new IOException("Non-blocking channel of " + id + " written outside of its outbound queue");
+        }
+        id.getOutputStream().write(data, 0, len);
     }
 
     /**
      * Reads nchar from a given sockets, blocks on read untill nchar are read of conenction has error
-     * bRead returns the bytes read
+     * bRead returns the bytes read. The read gives up with a SocketTimeoutException when the socket has
+     * a read timeout (SO_TIMEOUT) and no data arrives within it.
      * @param    connId              a  Socket
      * @param    dataRead            a  byte[]
      * @param    nchar               an int
@@ -46,20 +52,16 @@ public class COPSUtil {
      * @throws   IOException
      */
     static int readData(final Socket connId, final byte[] dataRead, final int nchar)  throws IOException {
-        logger.info("Reading COPS data");
+        logger.debug("Reading COPS data");
         final InputStream input = connId.getInputStream();
         int nread = 0;
-        int startTime = (int) (new Date().getTime());
-        do {
-            if (input.available() != 0) {
-                nread += input.read(dataRead,nread,nchar-nread);
-                startTime = (int) (new Date().getTime());
-            } else {
-                int nowTime = (int) (new Date().getTime());
-                if ((nowTime - startTime) > 2000)
-                    break;
+        while (nread < nchar) {
+            final int count = input.read(dataRead, nread, nchar - nread);
+            if (count < 0) {
+                break;
             }
-        } while (nread != nchar);
+            nread += count;
+        }
         return nread;
     }
-}
\ No newline at end of file
+}
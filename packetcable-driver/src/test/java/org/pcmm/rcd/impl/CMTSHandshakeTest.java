@@ -0,0 +1,157 @@
+package org.pcmm.rcd.impl;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.pcmm.concurrent.impl.WorkerPool;
+import org.pcmm.messages.impl.MessageFactory;
+import org.pcmm.rcd.IPCMMPolicyServer.IPSCMTSClient;
+import org.pcmm.rcd.impl.PCMMPolicyServer.PSCMTSClient;
+import org.pcmm.test.ManualTimerWheel;
+import org.pcmm.utils.PCMMException;
+import org.umu.cops.stack.COPSClientAcceptMsg;
+import org.umu.cops.stack.COPSException;
+import org.umu.cops.stack.COPSHeader;
+import org.umu.cops.stack.COPSMsg;
+import org.umu.cops.stack.COPSReactor;
+import org.umu.cops.stack.COPSTransceiver;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class CMTSHandshakeTest {
+
+	private static final long CONNECT_TIMEOUT = 5000;
+	private static final long STAGE_TIMEOUT = 1000;
+
+	private COPSReactor reactor;
+	private WorkerPool pool;
+	private ManualTimerWheel wheel;
+	private ServerSocket cmts;
+	private Socket peer;
+	private CMTSHandshake handshake;
+
+	@Before
+	public void init() throws IOException {
+		reactor = new COPSReactor("handshake-test");
+		pool = new WorkerPool(1);
+		wheel = new ManualTimerWheel();
+		cmts = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+		handshake = new CMTSHandshake(new PSCMTSClient(reactor),
+				new InetSocketAddress(InetAddress.getLoopbackAddress(), cmts.getLocalPort()), reactor, pool, wheel,
+				CONNECT_TIMEOUT, STAGE_TIMEOUT);
+	}
+
+	@After
+	public void close() throws IOException {
+		pool.killAll();
+		reactor.stop();
+		if (peer != null)
+			peer.close();
+		cmts.close();
+	}
+
+	@Test(timeout = 20000)
+	public void testEstablished() throws Exception {
+		final ListenableFuture<IPSCMTSClient> future = handshake.start();
+		accept();
+		send(COPSHeader.COPS_OP_OPN);
+		Assert.assertTrue(COPSTransceiver.receiveMsg(peer) instanceof COPSClientAcceptMsg);
+		send(COPSHeader.COPS_OP_REQ);
+		final IPSCMTSClient client = future.get(5, TimeUnit.SECONDS);
+		Assert.assertEquals(CMTSHandshake.Stage.ESTABLISHED, handshake.getStage());
+		Assert.assertNotNull(client.getClientHandle());
+		// no stage timeout left behind
+		Assert.assertEquals(0, wheel.pending());
+		client.disconnect();
+	}
+
+	@Test(timeout = 20000)
+	public void testOpenTimeout() throws Exception {
+		final ListenableFuture<IPSCMTSClient> future = handshake.start();
+		accept();
+		awaitStage(CMTSHandshake.Stage.AWAIT_OPN);
+		// the connect timeout has been replaced by the stage timeout
+		Assert.assertEquals(1, wheel.pending());
+		wheel.advance(STAGE_TIMEOUT - 1);
+		Assert.assertEquals(CMTSHandshake.Stage.AWAIT_OPN, handshake.getStage());
+		wheel.advance(1);
+		assertFailed(future, COPSException.class, "AWAIT_OPN");
+		// the connection is closed
+		Assert.assertEquals(-1, peer.getInputStream().read());
+	}
+
+	@Test(timeout = 20000)
+	public void testRequestTimeout() throws Exception {
+		final ListenableFuture<IPSCMTSClient> future = handshake.start();
+		accept();
+		send(COPSHeader.COPS_OP_OPN);
+		COPSTransceiver.receiveMsg(peer);
+		awaitStage(CMTSHandshake.Stage.AWAIT_REQ);
+		wheel.advance(STAGE_TIMEOUT);
+		assertFailed(future, COPSException.class, "AWAIT_REQ");
+		Assert.assertEquals(-1, peer.getInputStream().read());
+		// a late request is ignored
+		Assert.assertEquals(CMTSHandshake.Stage.FAILED, handshake.getStage());
+	}
+
+	@Test(timeout = 20000)
+	public void testClientCloseBeforeOpen() throws Exception {
+		final ListenableFuture<IPSCMTSClient> future = handshake.start();
+		accept();
+		send(COPSHeader.COPS_OP_CC);
+		assertFailed(future, PCMMException.class, null);
+		Assert.assertEquals(0, wheel.pending());
+	}
+
+	@Test(timeout = 20000)
+	public void testClientCloseBeforeRequest() throws Exception {
+		final ListenableFuture<IPSCMTSClient> future = handshake.start();
+		accept();
+		send(COPSHeader.COPS_OP_OPN);
+		COPSTransceiver.receiveMsg(peer);
+		send(COPSHeader.COPS_OP_CC);
+		assertFailed(future, PCMMException.class, null);
+		Assert.assertEquals(CMTSHandshake.Stage.FAILED, handshake.getStage());
+		Assert.assertEquals(0, wheel.pending());
+		Assert.assertEquals(-1, peer.getInputStream().read());
+	}
+
+	private void accept() throws IOException {
+		peer = cmts.accept();
+		peer.setSoTimeout(5000);
+	}
+
+	private void send(final byte opCode) throws IOException, COPSException {
+		final COPSMsg msg = MessageFactory.getInstance().create(opCode, new Properties());
+		COPSTransceiver.sendMsg(msg, peer);
+	}
+
+	private void awaitStage(final CMTSHandshake.Stage stage) throws InterruptedException {
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (handshake.getStage() != stage && System.nanoTime() < deadline)
+			Thread.sleep(10);
+		Assert.assertEquals(stage, handshake.getStage());
+	}
+
+	private static void assertFailed(final ListenableFuture<IPSCMTSClient> future,
+			final Class<? extends Exception> type, final String message) throws Exception {
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			Assert.fail("Handshake not failed");
+		} catch (final ExecutionException e) {
+			Assert.assertTrue(e.getCause().toString(), type.isInstance(e.getCause()));
+			if (message != null)
+				Assert.assertTrue(e.getCause().getMessage(), e.getCause().getMessage().contains(message));
+		}
+	}
+
+}
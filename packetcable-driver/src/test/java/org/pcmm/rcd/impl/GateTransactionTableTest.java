@@ -0,0 +1,198 @@
+package org.pcmm.rcd.impl;
+
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.pcmm.gates.ITransactionID;
+import org.pcmm.gates.impl.GateID;
+import org.pcmm.gates.impl.GateResult;
+import org.pcmm.gates.impl.GateSpec;
+import org.pcmm.gates.impl.PCMMGateReq;
+import org.pcmm.gates.impl.TransactionID;
+import org.pcmm.objects.SyncOptions;
+import org.pcmm.state.impl.GateSynchronizer;
+import org.pcmm.state.impl.GateTable;
+import org.pcmm.test.ManualTimerWheel;
+import org.umu.cops.stack.COPSClientSI;
+import org.umu.cops.stack.COPSData;
+import org.umu.cops.stack.COPSException;
+import org.umu.cops.stack.COPSHandle;
+import org.umu.cops.stack.COPSHeader;
+import org.umu.cops.stack.COPSObjHeader;
+import org.umu.cops.stack.COPSReportMsg;
+import org.umu.cops.stack.COPSReportType;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+public class GateTransactionTableTest {
+
+	private static final long TIMEOUT = 1000;
+
+	private ManualTimerWheel wheel;
+	private GateTransactionTable table;
+
+	@Before
+	public void init() {
+		wheel = new ManualTimerWheel();
+		table = new GateTransactionTable(2, TIMEOUT, wheel);
+	}
+
+	@Test
+	public void testCorrelation() throws Exception {
+		final SettableFuture<GateResult> set = table.register((short) 1, ITransactionID.GateSet);
+		final SettableFuture<GateResult> delete = table.register((short) 2, ITransactionID.GateDelete);
+		Assert.assertEquals(2, table.inFlight());
+
+		// unknown TransactionID and a command type not answering the command
+		Assert.assertFalse(apply(frame((short) 3, ITransactionID.GateSetAck, 10)));
+		Assert.assertFalse(apply(frame((short) 1, ITransactionID.GateDeleteAck, 10)));
+		Assert.assertFalse(set.isDone());
+
+		// the reports are matched whatever their order
+		Assert.assertTrue(apply(frame((short) 2, ITransactionID.GateDeleteAck, 20)));
+		Assert.assertFalse(set.isDone());
+		Assert.assertEquals(20, delete.get().getGateID());
+		// the parsed message is matched the same way
+		Assert.assertTrue(table.apply(report((short) 1, ITransactionID.GateSetAck, 10)));
+		Assert.assertEquals(10, set.get().getGateID());
+		Assert.assertTrue(set.get().isSuccess());
+		Assert.assertEquals(0, table.inFlight());
+		Assert.assertEquals(0, wheel.pending());
+
+		// a message other than a report is never consumed
+		final byte[] dec = frame((short) 4, ITransactionID.GateSetAck, 10);
+		dec[1] = COPSHeader.COPS_OP_DEC;
+		Assert.assertFalse(apply(dec));
+	}
+
+	@Test
+	public void testTimeoutRacingReport() throws Exception {
+		final SettableFuture<GateResult> late = table.register((short) 1, ITransactionID.GateSet);
+		final SettableFuture<GateResult> answered = table.register((short) 2, ITransactionID.GateSet);
+		wheel.advance(TIMEOUT / 2);
+		Assert.assertTrue(apply(frame((short) 2, ITransactionID.GateSetAck, 20)));
+		wheel.advance(TIMEOUT);
+		// the report won, its timer has been cancelled
+		Assert.assertEquals(20, answered.get().getGateID());
+		// the timeout won, the late report is not consumed
+		assertTimedOut(late);
+		Assert.assertFalse(apply(frame((short) 1, ITransactionID.GateSetAck, 10)));
+		assertTimedOut(late);
+		Assert.assertEquals(0, table.inFlight());
+		Assert.assertEquals(0, wheel.pending());
+	}
+
+	@Test
+	public void testCancellationFreesSlot() throws Exception {
+		final GateTransactionTable single = new GateTransactionTable(1, 50, wheel);
+		final SettableFuture<GateResult> first = single.register((short) 1, ITransactionID.GateSet);
+		// no slot left, rejected at once
+		final SettableFuture<GateResult> rejected = single.register((short) 2, ITransactionID.GateSet);
+		Assert.assertTrue(rejected.isDone());
+		try {
+			rejected.get();
+			Assert.fail("Command not rejected");
+		} catch (final ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+		}
+		Assert.assertEquals(1, wheel.pending());
+		Assert.assertTrue(first.cancel(false));
+		Assert.assertEquals(0, single.inFlight());
+		Assert.assertEquals(0, wheel.pending());
+		final SettableFuture<GateResult> next = single.register((short) 2, ITransactionID.GateSet);
+		Assert.assertFalse(next.isDone());
+		Assert.assertEquals(1, single.inFlight());
+		// a report of the cancelled command is no longer consumed
+		Assert.assertFalse(apply(single, frame((short) 1, ITransactionID.GateSetAck, 10)));
+	}
+
+	@Test
+	public void testSynchReportRestartsTimer() throws Exception {
+		final InetAddress cmts = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+		final GateTable gates = new GateTable(4);
+		final GateSynchronizer synchronizer = new GateSynchronizer(gates, cmts, SyncOptions.FULL_SYNCHRONIZATION);
+		final SettableFuture<GateResult> synch = table.register((short) 5, ITransactionID.SynchRequest,
+				synchronizer);
+		// each report restarts the timeout, the stream lasts longer than it
+		for (int gateID = 1; gateID <= 3; gateID++) {
+			wheel.advance(TIMEOUT * 3 / 4);
+			Assert.assertTrue(apply(frame((short) 5, ITransactionID.SynchReport, gateID)));
+			Assert.assertFalse(synch.isDone());
+		}
+		Assert.assertEquals(1, wheel.pending());
+		Assert.assertTrue(apply(frame((short) 5, ITransactionID.SynchComplete, 0)));
+		Assert.assertEquals(ITransactionID.SynchComplete, synch.get().getCommandType());
+		Assert.assertEquals(3, synchronizer.getAdded());
+		Assert.assertEquals(3, gates.size());
+		Assert.assertEquals(0, wheel.pending());
+
+		// without reports the stream times out
+		final SettableFuture<GateResult> stalled = table.register((short) 6, ITransactionID.SynchRequest,
+				new GateSynchronizer(gates, cmts, SyncOptions.INCREMENTAL_SYNCHRONIZATION));
+		wheel.advance(TIMEOUT * 3 / 4);
+		Assert.assertTrue(apply(frame((short) 6, ITransactionID.SynchReport, 1)));
+		wheel.advance(TIMEOUT);
+		assertTimedOut(stalled);
+		Assert.assertEquals(0, table.inFlight());
+	}
+
+	private boolean apply(final byte[] frame) {
+		return apply(table, frame);
+	}
+
+	private static boolean apply(final GateTransactionTable table, final byte[] frame) {
+		// the frame sits behind other bytes in the reactor buffer
+		final byte[] buffer = new byte[frame.length + 16];
+		System.arraycopy(frame, 0, buffer, 8, frame.length);
+		return table.apply(buffer, 8, frame.length);
+	}
+
+	private static void assertTimedOut(final SettableFuture<GateResult> future) throws InterruptedException {
+		try {
+			future.get();
+			Assert.fail("Command not timed out");
+		} catch (final ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof TimeoutException);
+		}
+	}
+
+	private static byte[] frame(final short transactionID, final short commandType, final int gateID)
+			throws COPSException {
+		final COPSReportMsg report = report(transactionID, commandType, gateID);
+		final ByteBuffer buf = ByteBuffer.allocate(report.getHeader().getMsgLength());
+		report.writeTo(buf);
+		return buf.array();
+	}
+
+	private static COPSReportMsg report(final short transactionID, final short commandType, final int gateID)
+			throws COPSException {
+		final PCMMGateReq gate = new PCMMGateReq();
+		final TransactionID trID = new TransactionID();
+		trID.setTransactionIdentifier(transactionID);
+		trID.setGateCommandType(commandType);
+		gate.setTransactionID(trID);
+		if (gateID != 0) {
+			final GateID id = new GateID();
+			id.setGateID(gateID);
+			gate.setGateID(id);
+		}
+		if (commandType == ITransactionID.SynchReport)
+			gate.setGateSpec(new GateSpec());
+		final byte[] data = gate.getData();
+
+		final COPSReportMsg rpt = new COPSReportMsg();
+		rpt.add(new COPSHeader(COPSHeader.COPS_OP_RPT, (short) 0x800A));
+		rpt.add(new COPSHandle(new COPSData("handle")));
+		rpt.add(new COPSReportType(COPSReportType.SUCCESS));
+		final COPSClientSI clientSI = new COPSClientSI(COPSObjHeader.COPS_CSI, (byte) 1);
+		clientSI.setData(new COPSData(data, 0, data.length));
+		rpt.add(clientSI);
+		return rpt;
+	}
+
+}
@@ -0,0 +1,125 @@
+package org.pcmm.test;
+
+import com.google.common.base.Ticker;
+import org.junit.Assert;
+import org.junit.Test;
+import org.pcmm.concurrent.impl.AdmissionControl;
+import org.pcmm.concurrent.impl.TokenBucket;
+import org.umu.cops.COPSTimerWheel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AdmissionControlTest {
+
+	@Test
+	public void testTokenBucket() {
+		final ManualTicker ticker = new ManualTicker();
+		// 10 per second, 3 at once
+		final TokenBucket bucket = new TokenBucket(10, 3, ticker);
+		Assert.assertEquals(3, bucket.available());
+		for (int i = 0; i < 3; i++)
+			Assert.assertTrue(bucket.tryAcquire());
+		Assert.assertFalse(bucket.tryAcquire());
+		Assert.assertEquals(100, bucket.delay(TimeUnit.MILLISECONDS));
+		ticker.advance(50);
+		Assert.assertFalse(bucket.tryAcquire());
+		Assert.assertEquals(50, bucket.delay(TimeUnit.MILLISECONDS));
+		ticker.advance(50);
+		Assert.assertTrue(bucket.tryAcquire());
+		Assert.assertFalse(bucket.tryAcquire());
+		// refilled up to the burst only
+		ticker.advance(10000);
+		Assert.assertEquals(3, bucket.available());
+		Assert.assertEquals(0, bucket.delay(TimeUnit.MILLISECONDS));
+
+		final TokenBucket unlimited = new TokenBucket(0, 1, ticker);
+		for (int i = 0; i < 1000; i++)
+			Assert.assertTrue(unlimited.tryAcquire());
+	}
+
+	@Test
+	public void testInFlightAndQueue() {
+		final COPSTimerWheel timers = new COPSTimerWheel("admission-test", 10, TimeUnit.MILLISECONDS, 64);
+		final AdmissionControl admission = new AdmissionControl(new TokenBucket(0, 1), 2, 2, timers);
+		final List<Integer> run = new ArrayList<>();
+		for (int i = 0; i < 4; i++)
+			Assert.assertTrue(admission.submit(record(run, i)));
+		// 2 in flight, 2 deferred, the next one rejected
+		Assert.assertFalse(admission.submit(record(run, 4)));
+		Assert.assertEquals(2, run.size());
+		AdmissionControl.Stats stats = admission.getStats();
+		Assert.assertEquals(2, stats.getQueueDepth());
+		Assert.assertEquals(2, stats.getInFlight());
+		Assert.assertEquals(2, stats.getDeferred());
+		Assert.assertEquals(1, stats.getRejected());
+
+		// a command done admits the next one in order
+		admission.done();
+		Assert.assertEquals(3, run.size());
+		Assert.assertEquals(Integer.valueOf(2), run.get(2));
+		// the remaining one is run at once on flush
+		admission.flush();
+		Assert.assertEquals(4, run.size());
+		stats = admission.getStats();
+		Assert.assertEquals(0, stats.getQueueDepth());
+		Assert.assertEquals(4, stats.getAdmitted());
+	}
+
+	@Test
+	public void testDeferredByRate() throws Exception {
+		final COPSTimerWheel timers = new COPSTimerWheel("admission-test", 10, TimeUnit.MILLISECONDS, 64);
+		timers.start();
+		try {
+			// 20 per second, 1 at once
+			final AdmissionControl admission = new AdmissionControl(new TokenBucket(20, 1), 10, 10, timers);
+			final AdmissionControl.Stats before = admission.getStats();
+			final CountDownLatch latch = new CountDownLatch(3);
+			final long start = System.nanoTime();
+			for (int i = 0; i < 3; i++) {
+				Assert.assertTrue(admission.submit(new Runnable() {
+					@Override
+					public void run() {
+						latch.countDown();
+						admission.done();
+					}
+				}));
+			}
+			Assert.assertEquals(2, latch.getCount());
+			Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+			// 2 commands waited for a token each
+			Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+			final AdmissionControl.Stats after = admission.getStats();
+			Assert.assertEquals(2, after.getDeferred());
+			Assert.assertTrue(after.getDeferredRate(before) > 0);
+			Assert.assertEquals(0.0, after.getRejectedRate(before), 0.0);
+		} finally {
+			timers.stop();
+		}
+	}
+
+	private static Runnable record(final List<Integer> run, final int i) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				run.add(i);
+			}
+		};
+	}
+
+	private static class ManualTicker extends Ticker {
+		private long nanos;
+
+		void advance(final long millis) {
+			nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+		}
+
+		@Override
+		public long read() {
+			return nanos;
+		}
+	}
+
+}
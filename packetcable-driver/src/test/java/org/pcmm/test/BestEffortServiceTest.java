@@ -34,6 +34,18 @@ public class BestEffortServiceTest {
 
     }
 
+    @Test
+    public void testRoundTrip() {
+        // values with the high bit set in every byte
+        be.getAuthorizedEnvelop().setMaximumSustainedTrafficRate(0x80FF80FF);
+        be.getAuthorizedEnvelop().setMaximumConcatenatedBurst((short) 0xFF80);
+        final byte[] data = be.getAsBinaryArray();
+        final BestEffortService parsed = new BestEffortService(data);
+        assertEquals(0x80FF80FF, parsed.getAuthorizedEnvelop().getMaximumSustainedTrafficRate());
+        assertEquals((short) 0xFF80, parsed.getAuthorizedEnvelop().getMaximumConcatenatedBurst());
+        assertArrayEquals(data, parsed.getAsBinaryArray());
+    }
+
     @Test
     public void testGetEnvelop() {
         assertTrue(be.getEnvelop() == 7);
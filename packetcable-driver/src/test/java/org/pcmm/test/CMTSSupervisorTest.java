@@ -0,0 +1,363 @@
+package org.pcmm.test;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.pcmm.gates.impl.GateResult;
+import org.pcmm.rcd.IPCMMPolicyServer;
+import org.pcmm.rcd.IPCMMPolicyServer.IPSCMTSClient;
+import org.pcmm.rcd.impl.CMTSSupervisor;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+public class CMTSSupervisorTest {
+
+	private ManualTimerWheel wheel;
+	private FakeServer server;
+	private InetAddress host;
+	private List<String> run;
+
+	@Before
+	public void init() throws IOException {
+		wheel = new ManualTimerWheel();
+		server = new FakeServer();
+		host = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+		run = new ArrayList<>();
+	}
+
+	@Test
+	public void testBackoff() throws Exception {
+		final CMTSSupervisor supervisor = new CMTSSupervisor(server.proxy, host, MoreExecutors.directExecutor(),
+				wheel, 100, 1000);
+		final ListenableFuture<IPSCMTSClient> started = supervisor.start();
+		Assert.assertTrue(CMTSSupervisor.get(host) == supervisor);
+		// the delay doubles up to the maximum, a random half of it is taken off
+		for (final long ceiling : new long[] { 100, 200, 400, 800, 1000, 1000 }) {
+			Assert.assertEquals(1, server.connections.size());
+			server.connections.poll().setException(new IOException("Connection refused"));
+			final long delay = wheel.nextDelay();
+			Assert.assertTrue("delay " + delay, delay >= ceiling / 2 && delay <= ceiling);
+			wheel.advance(delay);
+		}
+		final FakeClient first = new FakeClient("first");
+		server.connections.poll().set(first.proxy);
+		Assert.assertTrue(started.get() == first.proxy);
+		Assert.assertTrue(supervisor.isConnected());
+		Assert.assertEquals(-1, wheel.nextDelay());
+
+		// a connection established resets the backoff
+		first.lost.set(new IOException("Connection reset"));
+		Assert.assertTrue(first.disconnected);
+		Assert.assertFalse(supervisor.isConnected());
+		final long delay = wheel.nextDelay();
+		Assert.assertTrue("delay " + delay, delay >= 50 && delay <= 100);
+		wheel.advance(delay);
+		Assert.assertEquals(1, server.connections.size());
+
+		// no more attempts once closed
+		supervisor.close();
+		Assert.assertNull(CMTSSupervisor.get(host));
+		server.connections.poll().setException(new IOException("Connection refused"));
+		Assert.assertEquals(-1, wheel.nextDelay());
+	}
+
+	@Test
+	public void testDrainOrder() throws Exception {
+		final CMTSSupervisor supervisor = new CMTSSupervisor(server.proxy, host, MoreExecutors.directExecutor(),
+				wheel, 100, 1000);
+		supervisor.start();
+		final List<ListenableFuture<String>> results = new ArrayList<>();
+		for (int i = 0; i < 3; i++)
+			results.add(supervisor.submit(record(i)));
+		Assert.assertEquals(3, supervisor.getQueued());
+		Assert.assertTrue(run.isEmpty());
+
+		final FakeClient first = new FakeClient("first");
+		server.connections.poll().set(first.proxy);
+		Assert.assertEquals(0, supervisor.getQueued());
+		Assert.assertEquals(3, run.size());
+		for (int i = 0; i < 3; i++)
+			Assert.assertEquals("first:" + i, results.get(i).get());
+		// run at once while connected
+		Assert.assertEquals("first:3", supervisor.submit(record(3)).get());
+
+		// queued again during the outage, then held until the gates are synchronized
+		first.lost.set(new IOException("Connection reset"));
+		results.clear();
+		for (int i = 4; i < 6; i++)
+			results.add(supervisor.submit(record(i)));
+		wheel.advance(wheel.nextDelay());
+		final FakeClient second = new FakeClient("second");
+		server.connections.poll().set(second.proxy);
+		Assert.assertEquals(1, supervisor.getReconnects());
+		Assert.assertEquals(1, second.synchs.size());
+		Assert.assertEquals(2, supervisor.getQueued());
+		Assert.assertFalse(supervisor.isConnected());
+		second.synchs.get(0).set(null);
+		Assert.assertEquals("second:4", results.get(0).get());
+		Assert.assertEquals("second:5", results.get(1).get());
+		Assert.assertTrue(supervisor.getClient() == second.proxy);
+	}
+
+	@Test
+	public void testLossDuringDrain() throws Exception {
+		final Queue<Runnable> tasks = new ArrayDeque<>();
+		final CMTSSupervisor supervisor = new CMTSSupervisor(server.proxy, host, new Executor() {
+			@Override
+			public void execute(final Runnable command) {
+				tasks.add(command);
+			}
+		}, wheel, 100, 1000);
+		supervisor.start();
+		final FakeClient first = new FakeClient("first");
+		final ListenableFuture<String> lost = supervisor.submit(new Function<IPSCMTSClient, ListenableFuture<String>>() {
+			@Override
+			public ListenableFuture<String> apply(final IPSCMTSClient client) {
+				// the connection is lost by the first operation drained
+				first.lost.set(new IOException("Connection reset"));
+				return Futures.immediateFailedFuture(new IOException("Connection reset"));
+			}
+		});
+		final ListenableFuture<String> next = supervisor.submit(record(1));
+		server.connections.poll().set(first.proxy);
+		Assert.assertEquals(1, tasks.size());
+		// submitted before the drain, still behind the queued ones
+		final ListenableFuture<String> last = supervisor.submit(record(2));
+		tasks.poll().run();
+		Assert.assertTrue(lost.isDone());
+		Assert.assertFalse(next.isDone());
+		Assert.assertFalse(supervisor.isConnected());
+		Assert.assertEquals(2, supervisor.getQueued());
+
+		wheel.advance(wheel.nextDelay());
+		final FakeClient second = new FakeClient("second");
+		server.connections.poll().set(second.proxy);
+		second.synchs.get(0).set(null);
+		Assert.assertEquals(1, tasks.size());
+		tasks.poll().run();
+		Assert.assertEquals("second:1", next.get());
+		Assert.assertEquals("second:2", last.get());
+		Assert.assertTrue(supervisor.isConnected());
+	}
+
+	@Test
+	public void testDrainWindow() throws Exception {
+		final CMTSSupervisor supervisor = new CMTSSupervisor(server.proxy, host, MoreExecutors.directExecutor(),
+				wheel, 100, 1000, 2, 16, 1000);
+		supervisor.start();
+		final List<SettableFuture<String>> commands = new ArrayList<>();
+		final List<ListenableFuture<String>> results = new ArrayList<>();
+		for (int i = 0; i < 4; i++)
+			results.add(supervisor.submit(pending(i, commands)));
+
+		// the queued operations are run two at a time
+		server.connections.poll().set(new FakeClient("first").proxy);
+		Assert.assertEquals(2, commands.size());
+		Assert.assertEquals(2, supervisor.getQueued());
+		// submitted during the drain, behind the queued ones
+		results.add(supervisor.submit(pending(4, commands)));
+		Assert.assertEquals(3, supervisor.getQueued());
+		commands.get(1).set("1");
+		Assert.assertEquals(3, commands.size());
+		Assert.assertEquals("[0, 1, 2]", run.toString());
+		commands.get(0).set("0");
+		commands.get(2).set("2");
+		Assert.assertEquals(5, commands.size());
+		Assert.assertEquals(0, supervisor.getQueued());
+		commands.get(3).set("3");
+		commands.get(4).set("4");
+		for (int i = 0; i < 5; i++)
+			Assert.assertEquals(String.valueOf(i), results.get(i).get());
+
+		// a batch is paced the same way while connected
+		run.clear();
+		commands.clear();
+		final List<Function<IPSCMTSClient, ListenableFuture<String>>> batch = new ArrayList<>();
+		for (int i = 0; i < 3; i++)
+			batch.add(pending(i, commands));
+		final List<ListenableFuture<String>> batched = supervisor.submitAll(batch);
+		Assert.assertEquals(2, commands.size());
+		commands.get(0).set("0");
+		Assert.assertEquals(3, commands.size());
+		commands.get(1).set("1");
+		commands.get(2).set("2");
+		Assert.assertEquals("2", batched.get(2).get());
+		Assert.assertEquals("[0, 1, 2]", run.toString());
+	}
+
+	@Test
+	public void testOutageQueue() throws Exception {
+		final CMTSSupervisor supervisor = new CMTSSupervisor(server.proxy, host, MoreExecutors.directExecutor(),
+				wheel, 100, 1000, 2, 2, 1000);
+		supervisor.start();
+		final ListenableFuture<String> first = supervisor.submit(record(0));
+		final ListenableFuture<String> second = supervisor.submit(record(1));
+		// bounded while the connection is down
+		final ListenableFuture<String> rejected = supervisor.submit(record(2));
+		Assert.assertEquals(2, supervisor.getQueued());
+		try {
+			rejected.get();
+			Assert.fail("Operation not rejected");
+		} catch (final ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+		}
+
+		// the queued operations fail once the timeout elapses
+		wheel.advance(999);
+		Assert.assertFalse(first.isDone());
+		wheel.advance(1);
+		Assert.assertEquals(0, supervisor.getQueued());
+		for (final ListenableFuture<String> expired : Arrays.asList(first, second)) {
+			try {
+				expired.get();
+				Assert.fail("Operation not expired");
+			} catch (final ExecutionException e) {
+				Assert.assertTrue(e.getCause() instanceof TimeoutException);
+			}
+		}
+
+		// run in time, the timeout is cancelled
+		final ListenableFuture<String> third = supervisor.submit(record(3));
+		Assert.assertEquals(1, wheel.pending());
+		server.connections.poll().set(new FakeClient("first").proxy);
+		Assert.assertEquals("first:3", third.get());
+		Assert.assertEquals(0, wheel.pending());
+		Assert.assertEquals("[first:3]", run.toString());
+	}
+
+	@Test
+	public void testOperationResult() throws Exception {
+		final CMTSSupervisor supervisor = new CMTSSupervisor(server.proxy, host, MoreExecutors.directExecutor(),
+				wheel, 100, 1000);
+		supervisor.start();
+		server.connections.poll().set(new FakeClient("first").proxy);
+
+		final SettableFuture<String> failed = SettableFuture.create();
+		final ListenableFuture<String> failure = supervisor.submit(constant(failed));
+		failed.setException(new IOException("Gate-Set-Err"));
+		try {
+			failure.get();
+			Assert.fail("Operation not failed");
+		} catch (final ExecutionException e) {
+			Assert.assertEquals("Gate-Set-Err", e.getCause().getMessage());
+		}
+
+		// cancelling the operation cancels the command
+		final SettableFuture<String> command = SettableFuture.create();
+		Assert.assertTrue(supervisor.submit(constant(command)).cancel(false));
+		Assert.assertTrue(command.isCancelled());
+
+		supervisor.close();
+		Assert.assertTrue(supervisor.submit(record(0)).isDone());
+		Assert.assertTrue(run.isEmpty());
+	}
+
+	private Function<IPSCMTSClient, ListenableFuture<String>> record(final int i) {
+		return new Function<IPSCMTSClient, ListenableFuture<String>>() {
+			@Override
+			public ListenableFuture<String> apply(final IPSCMTSClient client) {
+				final String value = client + ":" + i;
+				run.add(value);
+				return Futures.immediateFuture(value);
+			}
+		};
+	}
+
+	private Function<IPSCMTSClient, ListenableFuture<String>> pending(final int i,
+			final List<SettableFuture<String>> commands) {
+		return new Function<IPSCMTSClient, ListenableFuture<String>>() {
+			@Override
+			public ListenableFuture<String> apply(final IPSCMTSClient client) {
+				run.add(String.valueOf(i));
+				final SettableFuture<String> command = SettableFuture.create();
+				commands.add(command);
+				return command;
+			}
+		};
+	}
+
+	private static Function<IPSCMTSClient, ListenableFuture<String>> constant(final ListenableFuture<String> future) {
+		return new Function<IPSCMTSClient, ListenableFuture<String>>() {
+			@Override
+			public ListenableFuture<String> apply(final IPSCMTSClient client) {
+				return future;
+			}
+		};
+	}
+
+	/**
+	 * Policy server whose connections are completed by the test
+	 */
+	private static class FakeServer implements InvocationHandler {
+		final Queue<SettableFuture<IPSCMTSClient>> connections = new ArrayDeque<>();
+		final IPCMMPolicyServer proxy = (IPCMMPolicyServer) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { IPCMMPolicyServer.class }, this);
+
+		@Override
+		public Object invoke(final Object self, final Method method, final Object[] args) {
+			if (!method.getName().equals("requestCMTSConnectionAsync"))
+				throw new UnsupportedOperationException(method.getName());
+			final SettableFuture<IPSCMTSClient> connection = SettableFuture.create();
+			connections.add(connection);
+			return connection;
+		}
+	}
+
+	/**
+	 * Client whose loss and gate synchronizations are driven by the test
+	 */
+	private static class FakeClient implements InvocationHandler {
+		final SettableFuture<Throwable> lost = SettableFuture.create();
+		final List<SettableFuture<GateResult>> synchs = new ArrayList<>();
+		final IPSCMTSClient proxy = (IPSCMTSClient) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { IPSCMTSClient.class }, this);
+		final String name;
+		boolean disconnected;
+
+		FakeClient(final String name) {
+			this.name = name;
+		}
+
+		@Override
+		public Object invoke(final Object self, final Method method, final Object[] args) {
+			switch (method.getName()) {
+			case "connectionLost":
+				return lost;
+			case "gateSynchronizeAsync":
+				final SettableFuture<GateResult> synch = SettableFuture.create();
+				synchs.add(synch);
+				return synch;
+			case "disconnect":
+				disconnected = true;
+				return true;
+			case "toString":
+				return name;
+			case "hashCode":
+				return System.identityHashCode(self);
+			case "equals":
+				return self == args[0];
+			default:
+				throw new UnsupportedOperationException(method.getName());
+			}
+		}
+	}
+
+}
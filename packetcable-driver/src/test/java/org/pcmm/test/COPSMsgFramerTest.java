@@ -0,0 +1,161 @@
+package org.pcmm.test;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.umu.cops.stack.COPSClientAcceptMsg;
+import org.umu.cops.stack.COPSClientSI;
+import org.umu.cops.stack.COPSData;
+import org.umu.cops.stack.COPSException;
+import org.umu.cops.stack.COPSHandle;
+import org.umu.cops.stack.COPSHeader;
+import org.umu.cops.stack.COPSKATimer;
+import org.umu.cops.stack.COPSMsg;
+import org.umu.cops.stack.COPSMsgFramer;
+import org.umu.cops.stack.COPSMsgParser;
+import org.umu.cops.stack.COPSOutboundQueue;
+import org.umu.cops.stack.COPSReportMsg;
+import org.umu.cops.stack.COPSReportType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+
+public class COPSMsgFramerTest {
+
+	// Two back to back Keep-Alive messages
+	private static final byte[] KA_STREAM = { 0x10, COPSHeader.COPS_OP_KA, 0, 0, 0, 0, 0, 8,
+			0x10, COPSHeader.COPS_OP_KA, 0, 0, 0, 0, 0, 8 };
+
+	COPSMsgFramer framer;
+
+	@Before
+	public void init() {
+		framer = new COPSMsgFramer(8);
+	}
+
+	@Test
+	public void testPartialMessages() throws COPSException {
+		int count = 0;
+		for (int i = 0; i < KA_STREAM.length; i++) {
+			framer.append(KA_STREAM, i, 1);
+			final COPSMsg msg = framer.next();
+			if (msg != null) {
+				Assert.assertTrue(msg.getHeader().isAKeepAlive());
+				count++;
+			}
+		}
+		Assert.assertEquals(2, count);
+		Assert.assertEquals(0, framer.buffered());
+	}
+
+	@Test
+	public void testBackToBackMessages() throws COPSException {
+		framer.append(KA_STREAM, 0, KA_STREAM.length);
+		Assert.assertNotNull(framer.next());
+		Assert.assertNotNull(framer.next());
+		Assert.assertNull(framer.next());
+	}
+
+	@Test
+	public void testEncodedMessage() throws COPSException {
+		final COPSClientAcceptMsg cat = new COPSClientAcceptMsg();
+		cat.add(new COPSHeader(COPSHeader.COPS_OP_CAT, (short) 0x800A));
+		cat.add(new COPSKATimer((short) 30));
+		final ByteBuffer buf = ByteBuffer.allocate(cat.getHeader().getMsgLength());
+		cat.writeTo(buf);
+		Assert.assertFalse(buf.hasRemaining());
+
+		framer.append(buf.array(), 0, buf.position());
+		final COPSMsg msg = framer.next();
+		Assert.assertTrue(msg instanceof COPSClientAcceptMsg);
+		Assert.assertEquals(30, ((COPSClientAcceptMsg) msg).getKATimer().getTimerVal());
+	}
+
+	@Test
+	public void testParseAtOffset() throws COPSException {
+		final COPSReportMsg rpt = new COPSReportMsg();
+		rpt.add(new COPSHeader(COPSHeader.COPS_OP_RPT, (short) 0x800A));
+		rpt.add(new COPSHandle(new COPSData("h001")));
+		rpt.add(new COPSReportType(COPSReportType.SUCCESS));
+		for (int i = 0; i < 3; i++) {
+			final COPSClientSI csi = new COPSClientSI(COPSClientSI.CSI_NAMED);
+			csi.setData(new COPSData("csi" + i));
+			rpt.add(csi);
+		}
+		final int length = rpt.getHeader().getMsgLength();
+		final ByteBuffer buf = ByteBuffer.allocate(length + 12);
+		buf.position(5);
+		rpt.writeTo(buf);
+
+		final COPSMsg msg = new COPSMsgParser().parse(buf.array(), 5, length);
+		Assert.assertTrue(msg instanceof COPSReportMsg);
+		Assert.assertEquals(length, msg.getHeader().getMsgLength());
+		Assert.assertEquals(3, ((COPSReportMsg) msg).getClientSI().size());
+		Assert.assertEquals("csi2", ((COPSReportMsg) msg).getClientSI().get(2).getData().str());
+	}
+
+	@Test
+	public void testConcurrentWriters() throws Exception {
+		final int writers = 4;
+		final int messages = 200;
+		try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+				Socket client = new Socket(server.getInetAddress(), server.getLocalPort());
+				Socket peer = server.accept()) {
+			final CountDownLatch start = new CountDownLatch(1);
+			final Thread[] threads = new Thread[writers];
+			for (int i = 0; i < writers; i++) {
+				threads[i] = new Thread(new Runnable() {
+					public void run() {
+						try {
+							start.await();
+							for (int j = 0; j < messages; j++) {
+								final COPSReportMsg rpt = new COPSReportMsg();
+								rpt.add(new COPSHeader(COPSHeader.COPS_OP_RPT, (short) 0x800A));
+								rpt.add(new COPSHandle(new COPSData("h" + j)));
+								rpt.add(new COPSReportType(COPSReportType.SUCCESS));
+								rpt.writeData(client);
+							}
+						} catch (Exception e) {
+							throw new RuntimeException(e);
+						}
+					}
+				});
+				threads[i].start();
+			}
+			start.countDown();
+
+			// every frame must come out whole whatever the interleaving of the writers
+			final InputStream in = peer.getInputStream();
+			final byte[] chunk = new byte[4096];
+			final COPSMsgFramer reader = new COPSMsgFramer(4096);
+			int count = 0;
+			while (count < writers * messages) {
+				final int read = in.read(chunk);
+				if (read < 0)
+					throw new IOException("Connection closed after " + count + " messages");
+				reader.append(chunk, 0, read);
+				COPSMsg msg;
+				while ((msg = reader.next()) != null) {
+					Assert.assertTrue(msg instanceof COPSReportMsg);
+					count++;
+				}
+			}
+			for (final Thread thread : threads)
+				thread.join();
+			Assert.assertEquals(0, COPSOutboundQueue.of(client).size());
+			COPSOutboundQueue.release(client);
+		}
+	}
+
+	@Test(expected = COPSException.class)
+	public void testBadLength() throws COPSException {
+		framer.append(new byte[] { 0x10, COPSHeader.COPS_OP_KA, 0, 0, 0, 0, 0, 3 }, 0, 8);
+		framer.next();
+	}
+
+}
@@ -0,0 +1,240 @@
+package org.pcmm.test;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.umu.cops.stack.COPSClientSI;
+import org.umu.cops.stack.COPSData;
+import org.umu.cops.stack.COPSException;
+import org.umu.cops.stack.COPSHandle;
+import org.umu.cops.stack.COPSHeader;
+import org.umu.cops.stack.COPSMsg;
+import org.umu.cops.stack.COPSMsgFramer;
+import org.umu.cops.stack.COPSMsgListener;
+import org.umu.cops.stack.COPSObjHeader;
+import org.umu.cops.stack.COPSOutboundQueue;
+import org.umu.cops.stack.COPSReactor;
+import org.umu.cops.stack.COPSReportMsg;
+import org.umu.cops.stack.COPSReportType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class COPSOutboundQueueTest {
+
+	private COPSReactor reactor;
+	private ServerSocketChannel server;
+	private SocketChannel client;
+	private Socket peer;
+
+	@Before
+	public void init() throws IOException {
+		reactor = new COPSReactor("queue-test");
+		server = ServerSocketChannel.open();
+		server.socket().setReceiveBufferSize(4096);
+		server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		client = SocketChannel.open(server.getLocalAddress());
+		client.socket().setSendBufferSize(4096);
+		peer = server.accept().socket();
+	}
+
+	@After
+	public void close() throws IOException {
+		COPSOutboundQueue.release(client.socket());
+		reactor.stop();
+		client.close();
+		peer.close();
+		server.close();
+	}
+
+	@Test(timeout = 20000)
+	public void testBackPressure() throws Exception {
+		reactor.register(client, new COPSMsgListener() {
+			@Override
+			public void onMessage(final SocketChannel channel, final COPSMsg msg) {
+			}
+
+			@Override
+			public void onClose(final SocketChannel channel, final Exception cause) {
+			}
+		});
+		final Socket socket = client.socket();
+		final COPSOutboundQueue queue = COPSOutboundQueue.of(socket);
+		// the peer does not read, the writer must not wait for it
+		int sent = 0;
+		try {
+			while (true) {
+				report(sent).writeData(socket);
+				sent++;
+			}
+		} catch (final IOException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Outbound queue full"));
+		}
+		Assert.assertTrue(queue.isBlocked());
+		Assert.assertEquals(COPSOutboundQueue.DEFAULT_CAPACITY, queue.size());
+
+		// the reactor writes the rest, in order, once the peer reads again
+		final InputStream in = peer.getInputStream();
+		final byte[] chunk = new byte[8192];
+		final COPSMsgFramer reader = new COPSMsgFramer(8192);
+		int received = 0;
+		while (received < sent) {
+			final int read = in.read(chunk);
+			if (read < 0)
+				throw new IOException("Connection closed after " + received + " messages");
+			reader.append(chunk, 0, read);
+			COPSMsg msg;
+			while ((msg = reader.next()) != null) {
+				Assert.assertEquals("r" + received, ((COPSReportMsg) msg).getClientHandle().getId().str());
+				received++;
+			}
+		}
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (queue.isBlocked() && System.nanoTime() < deadline)
+			Thread.sleep(10);
+		Assert.assertFalse(queue.isBlocked());
+		Assert.assertEquals(0, queue.size());
+		// the queue takes messages again
+		report(sent).writeData(socket);
+	}
+
+	@Test(timeout = 20000)
+	public void testClosedWhileBlocked() throws Exception {
+		reactor.register(client, new COPSMsgListener() {
+			@Override
+			public void onMessage(final SocketChannel channel, final COPSMsg msg) {
+			}
+
+			@Override
+			public void onClose(final SocketChannel channel, final Exception cause) {
+			}
+		});
+		final Socket socket = client.socket();
+		final COPSOutboundQueue queue = COPSOutboundQueue.of(socket);
+		int sent = 0;
+		while (!queue.isBlocked())
+			report(sent++).writeData(socket);
+
+		// the write waiting for the reactor is dropped with the channel, the senders are told
+		peer.setSoLinger(true, 0);
+		peer.close();
+		IOException failure = null;
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (failure == null && System.nanoTime() < deadline) {
+			try {
+				report(sent).writeData(socket);
+			} catch (final IOException e) {
+				if (e.getMessage().startsWith("A previous write"))
+					failure = e;
+			}
+			Thread.sleep(10);
+		}
+		Assert.assertNotNull(failure);
+		Assert.assertFalse(queue.isBlocked());
+		Assert.assertEquals(0, queue.size());
+	}
+
+	@Test(timeout = 20000)
+	public void testCombiningWriter() throws Exception {
+		final GatedSocket socket = new GatedSocket();
+		final COPSOutboundQueue queue = new COPSOutboundQueue(16);
+		final COPSReportMsg first = report(0);
+		final Thread writer = new Thread() {
+			@Override
+			public void run() {
+				try {
+					queue.send(socket, first);
+				} catch (final IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		writer.start();
+		Assert.assertTrue(socket.writing.await(5, TimeUnit.SECONDS));
+		// the writer holds the socket, the other senders only queue
+		for (int i = 1; i <= 3; i++)
+			queue.send(socket, report(i));
+		Assert.assertEquals(3, queue.size());
+		Assert.assertEquals(1, socket.writes.size());
+
+		// the writer hands nothing back, it writes the queued messages in one write
+		socket.gate.countDown();
+		writer.join(5000);
+		Assert.assertFalse(writer.isAlive());
+		Assert.assertEquals(0, queue.size());
+		Assert.assertEquals(2, socket.writes.size());
+		for (final Thread thread : socket.writers)
+			Assert.assertTrue(writer == thread);
+
+		final COPSMsgFramer reader = new COPSMsgFramer(8192);
+		for (final byte[] write : socket.writes)
+			reader.append(write, 0, write.length);
+		for (int i = 0; i <= 3; i++)
+			Assert.assertEquals("r" + i, ((COPSReportMsg) reader.next()).getClientHandle().getId().str());
+		Assert.assertNull(reader.next());
+
+		// the role is free again, the caller writes its own message
+		queue.send(socket, report(4));
+		Assert.assertEquals(3, socket.writes.size());
+		Assert.assertTrue(Thread.currentThread() == socket.writers.get(2));
+	}
+
+	/**
+	 * Socket without channel whose first write blocks until the gate opens
+	 */
+	private static class GatedSocket extends Socket {
+		final CountDownLatch writing = new CountDownLatch(1);
+		final CountDownLatch gate = new CountDownLatch(1);
+		final List<byte[]> writes = new ArrayList<>();
+		final List<Thread> writers = new ArrayList<>();
+
+		@Override
+		public OutputStream getOutputStream() {
+			return new OutputStream() {
+				@Override
+				public void write(final int b) throws IOException {
+					write(new byte[] { (byte) b }, 0, 1);
+				}
+
+				@Override
+				public void write(final byte[] b, final int off, final int len) throws IOException {
+					synchronized (writes) {
+						final byte[] copy = new byte[len];
+						System.arraycopy(b, off, copy, 0, len);
+						writes.add(copy);
+						writers.add(Thread.currentThread());
+					}
+					writing.countDown();
+					try {
+						gate.await();
+					} catch (final InterruptedException e) {
+						throw new IOException(e);
+					}
+				}
+			};
+		}
+	}
+
+	private static COPSReportMsg report(final int i) throws COPSException {
+		final COPSReportMsg rpt = new COPSReportMsg();
+		rpt.add(new COPSHeader(COPSHeader.COPS_OP_RPT, (short) 0x800A));
+		rpt.add(new COPSHandle(new COPSData("r" + i)));
+		rpt.add(new COPSReportType(COPSReportType.SUCCESS));
+		final COPSClientSI clientSI = new COPSClientSI(COPSObjHeader.COPS_CSI, (byte) 1);
+		clientSI.setData(new COPSData(new byte[1024], 0, 1024));
+		rpt.add(clientSI);
+		return rpt;
+	}
+
+}
@@ -0,0 +1,62 @@
+package org.pcmm.test;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.umu.cops.COPSTimerWheel;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class COPSTimerWheelTest {
+
+	COPSTimerWheel wheel;
+
+	@Before
+	public void init() {
+		// small wheel so that the delays below need several rounds
+		wheel = new COPSTimerWheel("test-timer", 5, TimeUnit.MILLISECONDS, 8);
+	}
+
+	@After
+	public void cleanup() {
+		wheel.stop();
+	}
+
+	@Test
+	public void testExpiration() throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(2);
+		final long start = System.nanoTime();
+		wheel.schedule(new Runnable() {
+			public void run() {
+				latch.countDown();
+			}
+		}, 20, TimeUnit.MILLISECONDS);
+		final COPSTimerWheel.Timeout timeout = wheel.schedule(new Runnable() {
+			public void run() {
+				latch.countDown();
+			}
+		}, 100, TimeUnit.MILLISECONDS);
+		Assert.assertTrue(latch.await(2, TimeUnit.SECONDS));
+		Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+		Assert.assertTrue(timeout.isExpired());
+		Assert.assertFalse(timeout.cancel());
+	}
+
+	@Test
+	public void testCancel() throws InterruptedException {
+		final AtomicInteger count = new AtomicInteger();
+		final COPSTimerWheel.Timeout timeout = wheel.schedule(new Runnable() {
+			public void run() {
+				count.incrementAndGet();
+			}
+		}, 30, TimeUnit.MILLISECONDS);
+		Assert.assertTrue(timeout.cancel());
+		Thread.sleep(100);
+		Assert.assertEquals(0, count.get());
+		Assert.assertFalse(timeout.isExpired());
+	}
+
+}
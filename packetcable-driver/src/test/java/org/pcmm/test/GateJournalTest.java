@@ -0,0 +1,116 @@
+package org.pcmm.test;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.pcmm.gates.impl.GateSpec;
+import org.pcmm.gates.impl.PCMMGateReq;
+import org.pcmm.gates.impl.TransactionID;
+import org.pcmm.state.impl.GateJournal;
+import org.pcmm.state.impl.GateRecord;
+import org.pcmm.state.impl.GateTable;
+import org.pcmm.state.impl.JournaledGateTable;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+public class GateJournalTest {
+
+	File dir;
+	InetAddress cmts;
+
+	@Before
+	public void init() throws IOException {
+		dir = Files.createTempDirectory("gates").toFile();
+		cmts = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+	}
+
+	@After
+	public void cleanup() {
+		for (final File file : dir.listFiles())
+			file.delete();
+		dir.delete();
+	}
+
+	private JournaledGateTable open() throws IOException {
+		return open(MoreExecutors.directExecutor());
+	}
+
+	private JournaledGateTable open(final Executor compactor) throws IOException {
+		// small segments so the test rolls over and compacts
+		return new JournaledGateTable(new GateTable(), new GateJournal(dir, 4096), 2, compactor);
+	}
+
+	private static PCMMGateReq gate(final short transactionID) {
+		final PCMMGateReq gate = new PCMMGateReq();
+		final TransactionID trID = new TransactionID();
+		trID.setTransactionIdentifier(transactionID);
+		gate.setTransactionID(trID);
+		gate.setGateSpec(new GateSpec());
+		return gate;
+	}
+
+	@Test
+	public void testRecovery() throws IOException {
+		final PCMMGateReq gate = gate((short) 7);
+
+		JournaledGateTable table = open();
+		for (int i = 0; i < 1000; i++)
+			table.put(GateRecord.fromGate(cmts, i, gate, i + 1));
+		for (int i = 0; i < 1000; i += 2)
+			table.remove(cmts, i);
+		table.recordError(cmts, 1, (short) 8, (short) 2);
+
+		table = open();
+		Assert.assertEquals(500, table.size());
+		Assert.assertNull(table.get(cmts, 0));
+		Assert.assertEquals(1, table.getByFlowID(2).getGateID());
+		Assert.assertEquals((short) 7, table.get(cmts, 999).getGate().getTransactionID().getTransactionIdentifier());
+
+		table.recordState();
+		table.removeAll(cmts);
+		Assert.assertEquals(0, open().size());
+	}
+
+	@Test
+	public void testCompactionDuringUpdates() throws IOException {
+		final List<Runnable> compactions = new ArrayList<>();
+		final JournaledGateTable table = open(new Executor() {
+			@Override
+			public void execute(final Runnable command) {
+				compactions.add(command);
+			}
+		});
+		int i = 0;
+		while (compactions.isEmpty()) {
+			table.put(GateRecord.fromGate(cmts, i, gate((short) 1), i + 1));
+			i++;
+		}
+		// a single compaction is pending, the updates go on meanwhile
+		final int gates = i;
+		for (int j = 0; j < 1000; j++)
+			table.put(GateRecord.fromGate(cmts, gates + j, gate((short) 1), gates + j + 1));
+		for (int j = 0; j < gates; j += 2)
+			table.remove(cmts, j);
+		table.put(GateRecord.fromGate(cmts, 1, gate((short) 9), 2));
+		Assert.assertEquals(1, compactions.size());
+
+		// the snapshot holds some of the later updates, they are replayed over it
+		compactions.get(0).run();
+		table.remove(cmts, 3);
+		final JournaledGateTable recovered = open();
+		Assert.assertEquals(table.size(), recovered.size());
+		Assert.assertNull(recovered.get(cmts, 0));
+		Assert.assertNull(recovered.get(cmts, 3));
+		Assert.assertEquals((short) 9, recovered.get(cmts, 1).getGate().getTransactionID().getTransactionIdentifier());
+		Assert.assertNotNull(recovered.get(cmts, gates + 999));
+	}
+
+}
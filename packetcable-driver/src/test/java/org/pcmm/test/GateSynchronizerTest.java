@@ -0,0 +1,95 @@
+package org.pcmm.test;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.pcmm.gates.ITransactionID;
+import org.pcmm.gates.impl.GateResult;
+import org.pcmm.gates.impl.GateSpec;
+import org.pcmm.gates.impl.PCMMGateReq;
+import org.pcmm.gates.impl.TransactionID;
+import org.pcmm.objects.SyncOptions;
+import org.pcmm.state.IGateTable;
+import org.pcmm.state.impl.GateRecord;
+import org.pcmm.state.impl.GateSynchronizer;
+import org.pcmm.state.impl.GateTable;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+public class GateSynchronizerTest {
+
+	InetAddress cmts;
+	IGateTable table;
+
+	@Before
+	public void init() throws UnknownHostException {
+		cmts = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+		table = new GateTable(4);
+	}
+
+	private static PCMMGateReq gate(final short timerT1) {
+		final PCMMGateReq gate = new PCMMGateReq();
+		final TransactionID trID = new TransactionID();
+		trID.setGateCommandType(ITransactionID.SynchReport);
+		gate.setTransactionID(trID);
+		final GateSpec gateSpec = new GateSpec();
+		gateSpec.setTimerT1(timerT1);
+		gate.setGateSpec(gateSpec);
+		return gate;
+	}
+
+	private static GateResult report(final int gateID, final PCMMGateReq gate) {
+		return new GateResult((short) 1, ITransactionID.SynchReport, gateID, null, gate);
+	}
+
+	@Test
+	public void testFullSynchronization() {
+		Assert.assertEquals(SyncOptions.FULL_SYNCHRONIZATION, GateSynchronizer.synchType(table, cmts));
+		table.put(GateRecord.fromGate(cmts, 1, gate((short) 10), 5L));
+		table.put(GateRecord.fromGate(cmts, 2, gate((short) 10), 6L));
+
+		final GateSynchronizer synchronizer = new GateSynchronizer(table, cmts, SyncOptions.FULL_SYNCHRONIZATION);
+		synchronizer.onReport(report(1, gate((short) 10)));
+		synchronizer.onReport(report(3, gate((short) 10)));
+		synchronizer.complete();
+		Assert.assertEquals(1, synchronizer.getUnchanged());
+		Assert.assertEquals(1, synchronizer.getAdded());
+		Assert.assertEquals(1, synchronizer.getRemoved());
+		Assert.assertNull(table.get(cmts, 2));
+		Assert.assertNotNull(table.get(cmts, 3));
+	}
+
+	@Test
+	public void testIncrementalSynchronization() {
+		table.put(GateRecord.fromGate(cmts, 1, gate((short) 10), 5L));
+		table.put(GateRecord.fromGate(cmts, 2, gate((short) 10), 6L));
+		Assert.assertEquals(SyncOptions.INCREMENTAL_SYNCHRONIZATION, GateSynchronizer.synchType(table, cmts));
+
+		final GateSynchronizer synchronizer = new GateSynchronizer(table, cmts,
+				SyncOptions.INCREMENTAL_SYNCHRONIZATION);
+		synchronizer.onReport(report(1, gate((short) 20)));
+		// closed on the CMTS during the outage
+		synchronizer.onReport(new GateResult((short) 1, ITransactionID.SynchReport, 2, null, null,
+				GateResult.STATE_IDLE_CLOSED));
+		synchronizer.complete();
+		Assert.assertEquals(1, synchronizer.getUpdated());
+		Assert.assertEquals(1, synchronizer.getRemoved());
+		Assert.assertEquals(1, table.size());
+		Assert.assertNull(table.get(cmts, 2));
+		// the flow of the gate is kept
+		Assert.assertEquals(1, table.getByFlowID(5L).getGateID());
+		Assert.assertEquals((short) 20, table.get(cmts, 1).getGate().getGateSpec().getTimerT1());
+	}
+
+	@Test
+	public void testSyncOptions() {
+		final byte[] encoded = new SyncOptions(SyncOptions.COMPLETE_GATE_DATA,
+				SyncOptions.INCREMENTAL_SYNCHRONIZATION).getAsBinaryArray();
+		Assert.assertEquals(8, encoded.length);
+		final SyncOptions options = new SyncOptions(encoded);
+		Assert.assertEquals(SyncOptions.COMPLETE_GATE_DATA, options.getReportType());
+		Assert.assertEquals(SyncOptions.INCREMENTAL_SYNCHRONIZATION, options.getSynchType());
+	}
+
+}
@@ -0,0 +1,89 @@
+package org.pcmm.test;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.pcmm.state.IGateRecord;
+import org.pcmm.state.IGateTable;
+import org.pcmm.state.impl.GateRecord;
+import org.pcmm.state.impl.GateTable;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class GateTableTest {
+
+	InetAddress cmts1;
+	InetAddress cmts2;
+	IGateTable table;
+
+	@Before
+	public void init() throws UnknownHostException {
+		cmts1 = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+		cmts2 = InetAddress.getByAddress(new byte[] { 10, 0, 0, 2 });
+		table = createTable();
+	}
+
+	protected IGateTable createTable() {
+		return new GateTable(4);
+	}
+
+	@Test
+	public void testIndexes() {
+		final byte[] subscriber = { 10, 1, 1, 1 };
+		final int amid = GateRecord.amid((short) 1, (short) 2);
+		table.put(new GateRecord(cmts1, 100, (short) 1, subscriber, amid, 7L, null));
+		table.put(new GateRecord(cmts2, 100, (short) 2, subscriber, amid, 8L, null));
+		table.put(new GateRecord(cmts1, 101, (short) 3, new byte[] { 10, 1, 1, 2 }, 0, 0, null));
+
+		Assert.assertEquals(3, table.size());
+		Assert.assertEquals((short) 2, table.get(cmts2, 100).getTransactionID());
+		Assert.assertNull(table.get(cmts2, 101));
+		Assert.assertEquals(100, table.getByFlowID(8L).getGateID());
+		Assert.assertEquals(2, table.getBySubscriberID(subscriber).size());
+		Assert.assertEquals(2, table.getByAMID(amid).size());
+		Assert.assertEquals(2, table.getGates(cmts1).size());
+		Assert.assertTrue(table.hasGates(cmts2));
+
+		// replacing a gate moves it out of the old indexes
+		table.put(new GateRecord(cmts1, 100, (short) 4, new byte[] { 10, 1, 1, 2 }, 0, 0, null));
+		Assert.assertEquals(3, table.size());
+		Assert.assertEquals(1, table.getBySubscriberID(subscriber).size());
+		Assert.assertNull(table.getByFlowID(7L));
+
+		Assert.assertNotNull(table.remove(cmts2, 100));
+		Assert.assertFalse(table.hasGates(cmts2));
+		Assert.assertTrue(table.getBySubscriberID(subscriber).isEmpty());
+		Assert.assertEquals(2, table.removeAll(cmts1));
+		Assert.assertEquals(0, table.size());
+		Assert.assertFalse(table.hasGates(cmts1));
+		Assert.assertTrue(table.getByAMID(0).isEmpty());
+	}
+
+	@Test
+	public void testRandomOperations() {
+		final Map<Integer, Long> model = new HashMap<>();
+		final Random random = new Random(42);
+		for (int i = 0; i < 20000; i++) {
+			final int gateID = random.nextInt(2000);
+			if (random.nextBoolean()) {
+				final long flowID = random.nextLong();
+				table.put(new GateRecord(cmts1, gateID, (short) i, null, gateID % 7, flowID, null));
+				model.put(gateID, flowID);
+			} else {
+				Assert.assertEquals(model.remove(gateID) != null, table.remove(cmts1, gateID) != null);
+			}
+		}
+		Assert.assertEquals(model.size(), table.size());
+		Assert.assertEquals(model.size(), table.getGates(cmts1).size());
+		for (final Map.Entry<Integer, Long> entry : model.entrySet()) {
+			final IGateRecord record = table.getByFlowID(entry.getValue());
+			Assert.assertNotNull(record);
+			Assert.assertEquals(entry.getKey().intValue(), record.getGateID());
+		}
+	}
+
+}
@@ -0,0 +1,103 @@
+package org.pcmm.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pcmm.gates.impl.ExtendedClassifier;
+import org.pcmm.gates.impl.SubscriberID;
+import org.pcmm.utils.IPAddressCodec;
+
+import java.net.InetAddress;
+
+public class IPAddressCodecTest {
+
+	@Test
+	public void testIPv4() {
+		Assert.assertArrayEquals(new byte[] { 10, 0, 0, (byte) 254 }, IPAddressCodec.parse("10.0.0.254"));
+		Assert.assertEquals(0xC0A80001, IPAddressCodec.parseIPv4("192.168.0.1"));
+		Assert.assertEquals("255.255.255.0", IPAddressCodec.format(0xFFFFFF00));
+		Assert.assertEquals("192.168.0.1", IPAddressCodec.format(IPAddressCodec.toBytes(0xC0A80001)));
+		for (final String invalid : new String[] { "", "1.2.3", "1.2.3.4.5", "256.1.1.1", "01.2.3.4", "1..2.3",
+				"1.2.3.4 ", "a.b.c.d", "localhost" })
+			assertInvalid(invalid);
+	}
+
+	@Test
+	public void testIPv6() throws Exception {
+		final String[] texts = { "::", "::1", "1::", "2001:db8::1", "2001:DB8:0:0:8:800:200C:417A",
+				"fe80::1:2%eth0", "::ffff:10.1.2.3", "1:2:3:4:5:6:7::", "2001:db8:0:1:1:1:1:1" };
+		for (final String text : texts) {
+			final String address = text.indexOf('%') < 0 ? text : text.substring(0, text.indexOf('%'));
+			// the reference is given the literal, it does not resolve it
+			Assert.assertArrayEquals(text, InetAddress.getByName(address).getAddress().length == 16
+					? InetAddress.getByName(address).getAddress()
+					: mapped(InetAddress.getByName(address).getAddress()), IPAddressCodec.parse(text));
+		}
+		for (final String invalid : new String[] { ":", ":1", "1:", "1:::2", "1::2::3", "12345::", "1:2:3:4:5:6:7:8:9",
+				"1:2:3:4:5:6:7", "1:2:3:4:5:6:7:8::", "::1.2.3", "g::1" })
+			assertInvalid(invalid);
+	}
+
+	@Test
+	public void testRFC5952() {
+		Assert.assertEquals("2001:db8::1", IPAddressCodec.format(IPAddressCodec.parse("2001:0DB8:0:0:0:0:0:0001")));
+		// the longest run is compressed, the first one on a tie
+		Assert.assertEquals("2001:0:0:1::1", IPAddressCodec.format(IPAddressCodec.parse("2001:0:0:1:0:0:0:1")));
+		Assert.assertEquals("2001:db8::1:0:0:1", IPAddressCodec.format(IPAddressCodec.parse("2001:db8:0:0:1:0:0:1")));
+		// a single zero group is not compressed
+		Assert.assertEquals("2001:db8:0:1:1:1:1:1", IPAddressCodec.format(IPAddressCodec.parse("2001:db8::1:1:1:1:1")));
+		Assert.assertEquals("::", IPAddressCodec.format(new byte[16]));
+		Assert.assertEquals("::ffff:10.1.2.3", IPAddressCodec.format(IPAddressCodec.parse("::ffff:a01:203")));
+		final byte[] address = IPAddressCodec.parse("2001:db8::1");
+		Assert.assertEquals(0x20010DB800000000L, IPAddressCodec.toLong(address, 0));
+		Assert.assertEquals(1L, IPAddressCodec.toLong(address, 8));
+	}
+
+	@Test
+	public void testPCMMObjects() {
+		final SubscriberID subscriber = new SubscriberID();
+		subscriber.setSourceIPAddress(IPAddressCodec.parse("2001:db8::5"));
+		// the S-Type and the length follow the address family
+		final SubscriberID decoded = new SubscriberID(subscriber.getAsBinaryArray());
+		Assert.assertEquals(2, decoded.getSType());
+		Assert.assertEquals(20, decoded.getLength());
+		Assert.assertEquals("2001:db8::5", IPAddressCodec.format(decoded.getSourceAddress()));
+		subscriber.setSourceIPAddress(0x0A000001);
+		Assert.assertEquals(1, subscriber.getSType());
+		Assert.assertEquals(8, subscriber.getLength());
+		Assert.assertArrayEquals(new byte[] { 10, 0, 0, 1 }, subscriber.getSourceAddress());
+
+		final ExtendedClassifier classifier = new ExtendedClassifier();
+		classifier.setSourceIPAddress(IPAddressCodec.parse("10.1.2.3"));
+		classifier.setDestinationIPAddress(0x0A010204);
+		classifier.setIPSourceMask(0xFFFFFF00);
+		Assert.assertEquals(0x0A010203, classifier.getSourceIPv4());
+		Assert.assertEquals("10.1.2.4", IPAddressCodec.format(classifier.getDestinationAddress()));
+		Assert.assertEquals("255.255.255.0", classifier.getIPSourceMask().getHostAddress());
+		try {
+			classifier.setDestinationIPAddress(IPAddressCodec.parse("::1"));
+			Assert.fail("The extended classifier holds IPv4 addresses");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * InetAddress returns the IPv4-mapped addresses as IPv4
+	 */
+	private static byte[] mapped(final byte[] ipv4) {
+		final byte[] address = new byte[16];
+		address[10] = address[11] = (byte) 0xFF;
+		System.arraycopy(ipv4, 0, address, 12, 4);
+		return address;
+	}
+
+	private static void assertInvalid(final String text) {
+		try {
+			IPAddressCodec.parse(text);
+			Assert.fail(text + " is not an address");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+}
@@ -0,0 +1,108 @@
+package org.pcmm.test;
+
+import org.umu.cops.COPSTimerWheel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Timer wheel driven by the test, the tasks are run by {@link #advance(long)}
+ * from the calling thread and no thread is ever started.
+ */
+public class ManualTimerWheel extends COPSTimerWheel {
+
+	private final List<Task> tasks = new ArrayList<>();
+	private long now;
+
+	public ManualTimerWheel() {
+		super("manual-timer", 1, TimeUnit.MILLISECONDS, 1);
+	}
+
+	@Override
+	public synchronized Timeout schedule(final Runnable task, final long delay, final TimeUnit unit) {
+		final Task entry = new Task(task, now + unit.toMillis(delay));
+		tasks.add(entry);
+		return entry;
+	}
+
+	/**
+	 * Moves the time forward, running the tasks due in deadline order
+	 */
+	public void advance(final long millis) {
+		final long until;
+		synchronized (this) {
+			now += millis;
+			until = now;
+		}
+		while (true) {
+			Task due = null;
+			synchronized (this) {
+				for (final Task task : tasks) {
+					if (task.deadline <= until && (due == null || task.deadline < due.deadline))
+						due = task;
+				}
+				if (due == null)
+					return;
+				tasks.remove(due);
+			}
+			due.expire();
+		}
+	}
+
+	/**
+	 * @return the time until the next task is due (ms) or -1 when none is
+	 *         scheduled
+	 */
+	public synchronized long nextDelay() {
+		long next = -1;
+		for (final Task task : tasks) {
+			if (next < 0 || task.deadline - now < next)
+				next = task.deadline - now;
+		}
+		return next;
+	}
+
+	/**
+	 * @return the number of tasks scheduled and not cancelled
+	 */
+	public synchronized int pending() {
+		return tasks.size();
+	}
+
+	private class Task implements Timeout {
+		private final Runnable task;
+		private final long deadline;
+		/**
+		 * 0 scheduled, 1 cancelled, 2 expired
+		 */
+		private final AtomicInteger state = new AtomicInteger();
+
+		Task(final Runnable task, final long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		void expire() {
+			if (state.compareAndSet(0, 2))
+				task.run();
+		}
+
+		@Override
+		public boolean cancel() {
+			if (!state.compareAndSet(0, 1))
+				return false;
+			synchronized (ManualTimerWheel.this) {
+				tasks.remove(this);
+			}
+			return true;
+		}
+
+		@Override
+		public boolean isExpired() {
+			return state.get() == 2;
+		}
+	}
+
+}
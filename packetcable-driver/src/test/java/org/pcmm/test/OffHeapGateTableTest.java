@@ -0,0 +1,129 @@
+package org.pcmm.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pcmm.gates.IPCMMGate;
+import org.pcmm.gates.impl.AMID;
+import org.pcmm.gates.impl.BestEffortService;
+import org.pcmm.gates.impl.Classifier;
+import org.pcmm.gates.impl.GateSpec;
+import org.pcmm.gates.impl.PCMMGateReq;
+import org.pcmm.gates.impl.SubscriberID;
+import org.pcmm.gates.impl.TransactionID;
+import org.pcmm.state.IGateTable;
+import org.pcmm.state.impl.GateRecord;
+import org.pcmm.state.impl.OffHeapGateTable;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+public class OffHeapGateTableTest extends GateTableTest {
+
+	@Override
+	protected IGateTable createTable() {
+		return new OffHeapGateTable(4);
+	}
+
+	@Test
+	public void testGateRoundTrip() throws UnknownHostException {
+		final PCMMGateReq gate = new PCMMGateReq();
+		final TransactionID trID = new TransactionID();
+		trID.setTransactionIdentifier((short) 0x1234);
+		gate.setTransactionID(trID);
+		final AMID amid = new AMID();
+		amid.setApplicationType((short) 1);
+		amid.setApplicationMgrTag((short) 2);
+		gate.setAMID(amid);
+		final SubscriberID subscriberID = new SubscriberID();
+		subscriberID.setSourceIPAddress(InetAddress.getByAddress(new byte[] { 10, 1, 1, 1 }));
+		gate.setSubscriberID(subscriberID);
+		final GateSpec gateSpec = new GateSpec();
+		gateSpec.setTimerT1((short) 30);
+		gate.setGateSpec(gateSpec);
+		gate.setTrafficProfile(new BestEffortService((byte) 1));
+		final Classifier classifier = new Classifier();
+		classifier.setDestinationIPAddress(InetAddress.getByAddress(new byte[] { 10, 0, 0, 2 }));
+		classifier.setDestinationPort((short) 8080);
+		gate.setClassifier(classifier);
+
+		table.put(GateRecord.fromGate(cmts1, 100, gate, 9L));
+		final IPCMMGate copy = table.getByFlowID(9L).getGate();
+		Assert.assertEquals(100, copy.getGateID().getGateID());
+		Assert.assertEquals((short) 0x1234, copy.getTransactionID().getTransactionIdentifier());
+		Assert.assertArrayEquals(amid.getAsBinaryArray(), copy.getAMID().getAsBinaryArray());
+		Assert.assertArrayEquals(subscriberID.getAsBinaryArray(), copy.getSubscriberID().getAsBinaryArray());
+		Assert.assertArrayEquals(gateSpec.getAsBinaryArray(), copy.getGateSpec().getAsBinaryArray());
+		Assert.assertArrayEquals(classifier.getAsBinaryArray(), copy.getClassifier().getAsBinaryArray());
+		Assert.assertArrayEquals(gate.getTrafficProfile().getAsBinaryArray(),
+				copy.getTrafficProfile().getAsBinaryArray());
+	}
+
+	@Test
+	public void testProfileInterning() {
+		final OffHeapGateTable offHeap = (OffHeapGateTable) table;
+		final BestEffortService profile = new BestEffortService((byte) 1);
+		profile.getAuthorizedEnvelop().setMaximumSustainedTrafficRate(1000);
+		final byte[] encoded = profile.getAsBinaryArray();
+		table.put(GateRecord.fromGate(cmts1, 1, gate(profile), 1L));
+		table.put(GateRecord.fromGate(cmts1, 2, gate(profile), 2L));
+		Assert.assertEquals(1, offHeap.getProfileCount());
+
+		// the table holds its own copy
+		profile.getAuthorizedEnvelop().setMaximumSustainedTrafficRate(2000);
+		Assert.assertArrayEquals(encoded, table.get(cmts1, 1).getGate().getTrafficProfile().getAsBinaryArray());
+		Assert.assertTrue(profile != table.get(cmts1, 1).getGate().getTrafficProfile());
+		// and a gate read does not share it with the other gates
+		((BestEffortService) table.get(cmts1, 1).getGate().getTrafficProfile()).getAuthorizedEnvelop()
+				.setMaximumSustainedTrafficRate(3000);
+		Assert.assertArrayEquals(encoded, table.get(cmts1, 2).getGate().getTrafficProfile().getAsBinaryArray());
+
+		// the modified profile is another one, replacing a gate drops its reference
+		table.put(GateRecord.fromGate(cmts1, 2, gate(profile), 2L));
+		Assert.assertEquals(2, offHeap.getProfileCount());
+		table.remove(cmts1, 1);
+		Assert.assertEquals(1, offHeap.getProfileCount());
+		Assert.assertEquals(2000, ((BestEffortService) table.get(cmts1, 2).getGate().getTrafficProfile())
+				.getAuthorizedEnvelop().getMaximumSustainedTrafficRate());
+		table.removeAll(cmts1);
+		Assert.assertEquals(0, offHeap.getProfileCount());
+
+		// the freed references are re-used
+		table.put(GateRecord.fromGate(cmts1, 3, gate(profile), 3L));
+		Assert.assertEquals(1, offHeap.getProfileCount());
+		Assert.assertArrayEquals(profile.getAsBinaryArray(),
+				table.get(cmts1, 3).getGate().getTrafficProfile().getAsBinaryArray());
+	}
+
+	@Test
+	public void testSpilledClassifier() {
+		// an IPv6 classifier does not fit in the record
+		final byte[] data = new byte[64];
+		data[1] = 64;
+		data[2] = 6;
+		data[3] = 3;
+		for (int i = 4; i < data.length; i++)
+			data[i] = (byte) i;
+		final PCMMGateReq gate = (PCMMGateReq) gate(new BestEffortService((byte) 1));
+		gate.setClassifier(new Classifier(data));
+		table.put(GateRecord.fromGate(cmts1, 1, gate, 1L));
+		Assert.assertArrayEquals(data, table.get(cmts1, 1).getGate().getClassifier().getAsBinaryArray());
+
+		// replaced by a classifier that fits
+		final Classifier classifier = new Classifier();
+		classifier.setDestinationPort((short) 8080);
+		gate.setClassifier(classifier);
+		table.put(GateRecord.fromGate(cmts1, 1, gate, 1L));
+		Assert.assertArrayEquals(classifier.getAsBinaryArray(),
+				table.get(cmts1, 1).getGate().getClassifier().getAsBinaryArray());
+	}
+
+	private static IPCMMGate gate(final BestEffortService profile) {
+		final PCMMGateReq gate = new PCMMGateReq();
+		gate.setTransactionID(new TransactionID());
+		gate.setAMID(new AMID());
+		gate.setGateSpec(new GateSpec());
+		gate.setTrafficProfile(profile);
+		return gate;
+	}
+
+}
@@ -5,10 +5,28 @@ package org.pcmm.test;
 
 import static org.junit.Assert.fail;
 
+import org.junit.Assert;
 import org.junit.Test;
+import org.pcmm.gates.ITransactionID;
+import org.pcmm.gates.impl.AMID;
+import org.pcmm.gates.impl.BestEffortService;
+import org.pcmm.gates.impl.Classifier;
+import org.pcmm.gates.impl.GateID;
+import org.pcmm.gates.impl.ExtendedClassifier;
+import org.pcmm.gates.impl.GateReportView;
+import org.pcmm.gates.impl.GateResult;
+import org.pcmm.gates.impl.GateSpec;
+import org.pcmm.gates.impl.GateTemplate;
+import org.pcmm.gates.impl.PCMMError;
 import org.pcmm.gates.impl.PCMMGateReq;
+import org.pcmm.gates.impl.SubscriberID;
+import org.pcmm.gates.impl.TransactionID;
 import org.pcmm.utils.PCMMUtils;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+
 /**
  * @author RH030971
  *
@@ -34,7 +52,109 @@ public class PCMMGateReqTest {
      */
     @Test
     public void testGetData() {
-        // fail("Not yet implemented");
+        final PCMMGateReq gate = new PCMMGateReq();
+        final TransactionID trID = new TransactionID();
+        trID.setTransactionIdentifier((short) 7);
+        trID.setGateCommandType(ITransactionID.GateSet);
+        gate.setTransactionID(trID);
+        final AMID amid = new AMID();
+        amid.setApplicationType((short) 1);
+        gate.setAMID(amid);
+        gate.setGateSpec(new GateSpec());
+        final BestEffortService be = new BestEffortService((byte) 7);
+        be.getAuthorizedEnvelop().setMaximumSustainedTrafficRate(1000000);
+        gate.setTrafficProfile(be);
+        final byte[] gateData = gate.getData();
+        Assert.assertEquals(gate.getDataLength(), gateData.length);
+        Assert.assertEquals(trID.getLength() + amid.getLength() + gate.getGateSpec().getLength() + 116,
+                gateData.length);
+
+        final PCMMGateReq parsed = new PCMMGateReq(gateData);
+        Assert.assertEquals((short) 7, parsed.getTransactionID().getTransactionIdentifier());
+        Assert.assertEquals((short) 1, parsed.getAMID().getApplicationType());
+        Assert.assertEquals(1000000, ((BestEffortService) parsed.getTrafficProfile()).getAuthorizedEnvelop()
+                .getMaximumSustainedTrafficRate());
+        Assert.assertArrayEquals(gateData, parsed.getData());
+    }
+
+    /**
+     * Test method for
+     * {@link org.pcmm.gates.impl.GateTemplate#getData(short, byte[], org.pcmm.gates.IClassifier)} and
+     * {@link org.pcmm.gates.impl.GateTemplate#accepts(byte[], org.pcmm.gates.IClassifier)}.
+     */
+    @Test
+    public void testGateTemplate() throws UnknownHostException {
+        final PCMMGateReq gate = new PCMMGateReq();
+        final TransactionID trID = new TransactionID();
+        trID.setGateCommandType(ITransactionID.GateSet);
+        gate.setTransactionID(trID);
+        gate.setAMID(new AMID());
+        final SubscriberID subscriberID = new SubscriberID();
+        gate.setSubscriberID(subscriberID);
+        gate.setGateSpec(new GateSpec());
+        gate.setTrafficProfile(new BestEffortService((byte) 1));
+        final Classifier classifier = new Classifier();
+        gate.setClassifier(classifier);
+        final GateTemplate template = new GateTemplate(gate);
+        Assert.assertFalse(template.hasGateID());
+
+        // the same gate built object by object
+        final byte[] subscriber = { 10, 0, 0, 1 };
+        trID.setTransactionIdentifier((short) 0x4321);
+        subscriberID.setSourceIPAddress(InetAddress.getByAddress(subscriber));
+        classifier.setDestinationIPAddress(InetAddress.getByAddress(new byte[] { 10, 0, 0, 2 }));
+        classifier.setDestinationPort((short) 8080);
+        final byte[] expected = gate.getData();
+
+        final Classifier patched = new Classifier();
+        patched.setDestinationIPAddress(InetAddress.getByAddress(new byte[] { 10, 0, 0, 2 }));
+        patched.setDestinationPort((short) 8080);
+        Assert.assertTrue(template.accepts(subscriber, patched));
+        Assert.assertArrayEquals(expected, template.getData((short) 0x4321, subscriber, patched));
+
+        // an IPv6 subscriber or another classifier type is encoded again
+        Assert.assertFalse(template.accepts(new byte[16], patched));
+        Assert.assertFalse(template.accepts(subscriber, new ExtendedClassifier()));
+    }
+
+    /**
+     * Test method for
+     * {@link org.pcmm.gates.impl.GateReportView#wrap(byte[], int, int)}.
+     */
+    @Test
+    public void testGateReportView() {
+        final PCMMGateReq gate = new PCMMGateReq();
+        final TransactionID trID = new TransactionID();
+        trID.setTransactionIdentifier((short) 0x1234);
+        trID.setGateCommandType(ITransactionID.GateSetAck);
+        gate.setTransactionID(trID);
+        final GateID gateID = new GateID();
+        gateID.setGateID(0x80FF0102);
+        gate.setGateID(gateID);
+        final byte[] gateData = gate.getData();
+
+        final GateReportView view = new GateReportView().wrap(gateData, 0, gateData.length);
+        Assert.assertEquals((short) 0x1234, view.getTransactionIdentifier());
+        Assert.assertEquals(ITransactionID.GateSetAck, view.getGateCommandType());
+        Assert.assertEquals(0x80FF0102, view.getGateID());
+        Assert.assertFalse(view.hasError());
+
+        final byte[] errorData = new PCMMError((short) 2, (short) 0x0F).getAsBinaryArray();
+        final byte[] withError = Arrays.copyOf(gateData, gateData.length + errorData.length);
+        System.arraycopy(errorData, 0, withError, gateData.length, errorData.length);
+        view.wrap(withError, 0, withError.length);
+        Assert.assertTrue(view.hasError());
+        Assert.assertEquals(2, view.getErrorCode());
+        Assert.assertEquals(0x0F, view.getErrorSubcode());
+        Assert.assertEquals(0, view.getGateState());
+
+        // GateState: Idle/Closed, reason 3
+        final byte[] gateState = { 0, 8, 15, 1, 0, 1, 0, 3 };
+        final byte[] withState = Arrays.copyOf(gateData, gateData.length + gateState.length);
+        System.arraycopy(gateState, 0, withState, gateData.length, gateState.length);
+        view.wrap(withState, 0, withState.length);
+        Assert.assertEquals(GateResult.STATE_IDLE_CLOSED, view.getGateState());
+        Assert.assertEquals(0x80FF0102, view.getGateID());
     }
 
 }
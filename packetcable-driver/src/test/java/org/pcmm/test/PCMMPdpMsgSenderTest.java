@@ -0,0 +1,132 @@
+package org.pcmm.test;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.pcmm.PCMMDef;
+import org.pcmm.PCMMPdpMsgSender;
+import org.pcmm.gates.ITransactionID;
+import org.pcmm.gates.impl.GateID;
+import org.pcmm.gates.impl.PCMMGateReq;
+import org.pcmm.gates.impl.TransactionID;
+import org.pcmm.objects.SyncOptions;
+import org.umu.cops.stack.COPSClientSI;
+import org.umu.cops.stack.COPSData;
+import org.umu.cops.stack.COPSHandle;
+import org.umu.cops.stack.COPSHeader;
+import org.umu.cops.stack.COPSObjHeader;
+import org.umu.cops.stack.COPSReportMsg;
+import org.umu.cops.stack.COPSReportType;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+public class PCMMPdpMsgSenderTest {
+
+	private static final int GATE_TIMEOUT = 10000;
+
+	private ServerSocket server;
+	private Socket socket;
+	private Socket peer;
+	private ManualTimerWheel wheel;
+	private PCMMPdpMsgSender sender;
+
+	@Before
+	public void init() throws IOException {
+		server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+		socket = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+		peer = server.accept();
+		wheel = new ManualTimerWheel();
+		sender = new PCMMPdpMsgSender(PCMMDef.C_PCMM, (short) 1, new COPSHandle(new COPSData("handle")), socket,
+				wheel);
+	}
+
+	@After
+	public void close() throws IOException {
+		socket.close();
+		peer.close();
+		server.close();
+	}
+
+	@Test
+	public void testTransactionTimeout() throws Exception {
+		sender.sendGateSynchronize(SyncOptions.FULL_SYNCHRONIZATION);
+		sender.sendGateSynchronize(SyncOptions.FULL_SYNCHRONIZATION);
+		Assert.assertEquals(2, sender.getTransactionsInFlight());
+		Assert.assertEquals(2, wheel.pending());
+
+		// answered, its expiry is cancelled
+		sender.releaseTransactionID((short) 1);
+		Assert.assertEquals(1, sender.getTransactionsInFlight());
+		Assert.assertEquals(1, wheel.pending());
+
+		// a report restarts the timeout of a synchronization
+		wheel.advance(GATE_TIMEOUT - 1);
+		sender.restartTransactionTimeout((short) 2);
+		wheel.advance(1);
+		Assert.assertEquals(1, sender.getTransactionsInFlight());
+		// never answered
+		wheel.advance(GATE_TIMEOUT);
+		Assert.assertEquals(0, sender.getTransactionsInFlight());
+		Assert.assertEquals(0, wheel.pending());
+		// a late report releases nothing
+		sender.sendGateSynchronize(SyncOptions.FULL_SYNCHRONIZATION);
+		sender.releaseTransactionID((short) 2);
+		Assert.assertEquals(1, sender.getTransactionsInFlight());
+	}
+
+	@Test
+	public void testReleaseOnClose() throws Exception {
+		for (int i = 0; i < 3; i++)
+			sender.sendGateSynchronize(SyncOptions.INCREMENTAL_SYNCHRONIZATION);
+		Assert.assertEquals(3, sender.getTransactionsInFlight());
+		sender.releaseTransactionIDs();
+		Assert.assertEquals(0, sender.getTransactionsInFlight());
+		Assert.assertEquals(0, wheel.pending());
+	}
+
+	@Test
+	public void testGateReportReleases() throws Exception {
+		sender.sendGateSynchronize(SyncOptions.FULL_SYNCHRONIZATION);
+		sender.sendGateSynchronize(SyncOptions.FULL_SYNCHRONIZATION);
+		Assert.assertEquals(2, sender.getTransactionsInFlight());
+
+		report((short) 1, ITransactionID.GateSetAck, 42).writeData(peer);
+		Assert.assertTrue(sender.handleGateReport(socket));
+		Assert.assertEquals(1, sender.getTransactionsInFlight());
+		Assert.assertEquals(1, wheel.pending());
+		// an error answers the command as well
+		report((short) 2, ITransactionID.GateSetErr, 0).writeData(peer);
+		Assert.assertFalse(sender.handleGateReport(socket));
+		Assert.assertEquals(0, sender.getTransactionsInFlight());
+		Assert.assertEquals(0, wheel.pending());
+	}
+
+	private static COPSReportMsg report(final short transactionID, final short commandType, final int gateID)
+			throws Exception {
+		final PCMMGateReq gate = new PCMMGateReq();
+		final TransactionID trID = new TransactionID();
+		trID.setTransactionIdentifier(transactionID);
+		trID.setGateCommandType(commandType);
+		gate.setTransactionID(trID);
+		if (gateID != 0) {
+			final GateID id = new GateID();
+			id.setGateID(gateID);
+			gate.setGateID(id);
+		}
+		final byte[] data = gate.getData();
+
+		final COPSReportMsg rpt = new COPSReportMsg();
+		rpt.add(new COPSHeader(COPSHeader.COPS_OP_RPT, PCMMDef.C_PCMM));
+		rpt.add(new COPSHandle(new COPSData("handle")));
+		rpt.add(new COPSReportType(COPSReportType.SUCCESS));
+		final COPSClientSI clientSI = new COPSClientSI(COPSObjHeader.COPS_CSI, (byte) 1);
+		clientSI.setData(new COPSData(data, 0, data.length));
+		rpt.add(clientSI);
+		return rpt;
+	}
+
+}
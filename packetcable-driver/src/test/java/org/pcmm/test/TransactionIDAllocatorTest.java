@@ -0,0 +1,78 @@
+package org.pcmm.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pcmm.concurrent.impl.TransactionIDAllocator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class TransactionIDAllocatorTest {
+
+	@Test
+	public void testWrapAround() {
+		final TransactionIDAllocator allocator = new TransactionIDAllocator((short) -2);
+		final short held = allocator.allocate();
+		Assert.assertEquals((short) -2, held);
+		Assert.assertEquals((short) -1, allocator.allocate());
+		// 0 is skipped
+		Assert.assertEquals((short) 1, allocator.allocate());
+		Assert.assertTrue(allocator.release((short) -1));
+		Assert.assertFalse(allocator.release((short) -1));
+
+		// fill the whole space, only the IDs released come back
+		for (int i = 0; i < 65535 - 2; i++)
+			allocator.allocate();
+		Assert.assertEquals(65535, allocator.inFlight());
+		try {
+			allocator.allocate();
+			Assert.fail("All the IDs are in flight");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		allocator.release(held);
+		Assert.assertEquals(held, allocator.allocate());
+	}
+
+	@Test
+	public void testConcurrentAllocations() throws InterruptedException {
+		final TransactionIDAllocator allocator = new TransactionIDAllocator();
+		final AtomicLongArray owners = new AtomicLongArray(1 << 16);
+		final List<Thread> threads = new ArrayList<>();
+		final boolean[] collision = new boolean[1];
+		for (int t = 0; t < 4; t++) {
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 100000; i++) {
+						final short id = allocator.allocate();
+						if (!owners.compareAndSet(id & 0xFFFF, 0, 1))
+							collision[0] = true;
+						owners.set(id & 0xFFFF, 0);
+						allocator.release(id);
+					}
+				}
+			});
+		}
+		for (final Thread thread : threads)
+			thread.start();
+		for (final Thread thread : threads)
+			thread.join();
+		Assert.assertFalse(collision[0]);
+		Assert.assertEquals(0, allocator.inFlight());
+	}
+
+	@Test
+	public void testReleaseAll() {
+		final TransactionIDAllocator allocator = new TransactionIDAllocator((short) 1);
+		for (int i = 0; i < 100; i++)
+			allocator.allocate();
+		Assert.assertEquals(100, allocator.inFlight());
+		Assert.assertEquals(100, allocator.releaseAll());
+		Assert.assertEquals(0, allocator.inFlight());
+		Assert.assertFalse(allocator.isInFlight((short) 1));
+		Assert.assertEquals(0, allocator.releaseAll());
+	}
+
+}
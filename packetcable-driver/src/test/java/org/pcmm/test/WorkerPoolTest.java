@@ -0,0 +1,90 @@
+package org.pcmm.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pcmm.concurrent.IWorker;
+import org.pcmm.concurrent.impl.WorkerPool;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class WorkerPoolTest {
+
+	@Test
+	public void testDelayedWorkerDoesNotHoldThread() throws InterruptedException {
+		final WorkerPool pool = new WorkerPool(1);
+		final CountDownLatch immediate = new CountDownLatch(1);
+		pool.schedule(worker(pool, null), 60000);
+		pool.schedule(worker(pool, new Runnable() {
+			@Override
+			public void run() {
+				immediate.countDown();
+			}
+		}), 0);
+		// the only thread is free while the first worker waits
+		Assert.assertTrue(immediate.await(5, TimeUnit.SECONDS));
+		pool.killAll();
+	}
+
+	@Test
+	public void testKillSignal() throws InterruptedException {
+		final WorkerPool pool = new WorkerPool(2);
+		final AtomicBoolean ran = new AtomicBoolean();
+		final int pid = pool.schedule(worker(pool, new Runnable() {
+			@Override
+			public void run() {
+				ran.set(true);
+			}
+		}), 200);
+		final int other = pool.schedule(worker(pool, null), 200);
+		Assert.assertNotEquals(pid, other);
+		Assert.assertEquals(2, pool.size());
+		pool.sendKillSignal(pid);
+		Assert.assertEquals(1, pool.size());
+		Thread.sleep(500);
+		Assert.assertFalse(ran.get());
+		Assert.assertEquals(0, pool.size());
+	}
+
+	@Test
+	public void testSerialPerKey() throws InterruptedException {
+		final WorkerPool pool = new WorkerPool(4);
+		final List<Integer> order = new CopyOnWriteArrayList<>();
+		final AtomicBoolean overlap = new AtomicBoolean();
+		final AtomicBoolean running = new AtomicBoolean();
+		final CountDownLatch done = new CountDownLatch(50);
+		for (int i = 0; i < 50; i++) {
+			final int index = i;
+			pool.schedule("cmts", worker(pool, new Runnable() {
+				@Override
+				public void run() {
+					if (!running.compareAndSet(false, true))
+						overlap.set(true);
+					order.add(index);
+					running.set(false);
+					done.countDown();
+				}
+			}), 0);
+		}
+		Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+		Assert.assertFalse(overlap.get());
+		for (int i = 0; i < 50; i++)
+			Assert.assertEquals(i, order.get(i).intValue());
+	}
+
+	private static IWorker worker(final WorkerPool pool, final Runnable task) {
+		return pool.adapt(new Callable<Object>() {
+			@Override
+			public Object call() {
+				if (task != null)
+					task.run();
+				return null;
+			}
+		});
+	}
+
+}
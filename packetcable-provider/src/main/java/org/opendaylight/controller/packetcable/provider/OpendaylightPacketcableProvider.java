@@ -1,21 +1,22 @@
 package org.opendaylight.controller.packetcable.provider;
 
-import com.google.common.base.Optional;
-import com.google.common.collect.Lists;
-import com.google.common.util.concurrent.CheckedFuture;
+import com.google.common.base.Function;
+import com.google.common.net.InetAddresses;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
 import org.opendaylight.controller.md.sal.binding.api.DataChangeListener;
-import org.opendaylight.controller.md.sal.binding.api.ReadOnlyTransaction;
 import org.opendaylight.controller.md.sal.binding.api.WriteTransaction;
 import org.opendaylight.controller.md.sal.common.api.data.AsyncDataBroker.DataChangeScope;
 import org.opendaylight.controller.md.sal.common.api.data.AsyncDataChangeEvent;
 import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
-import org.opendaylight.controller.md.sal.common.api.data.ReadFailedException;
 import org.opendaylight.controller.packetcable.provider.processors.PCMMDataProcessor;
 import org.opendaylight.controller.sal.binding.api.BindingAwareBroker.ProviderContext;
 import org.opendaylight.controller.sal.binding.api.BindingAwareBroker.RoutedRpcRegistration;
+import org.opendaylight.controller.sal.binding.api.BindingAwareBroker.RpcRegistration;
 import org.opendaylight.controller.sal.binding.api.BindingAwareProvider;
 import org.opendaylight.controller.sal.binding.api.NotificationProviderService;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.action.types.rev131112.action.list.Action;
@@ -27,8 +28,8 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.traffic.profile.rev140
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.traffic.profile.rev140908.TrafficProfileFlowspecAttributes;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.traffic.profile.rev140908.add.flow.input.instructions.instruction.instruction.apply.actions._case.apply.actions.action.action.BestEffortCase;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.traffic.profile.rev140908.add.flow.input.instructions.instruction.instruction.apply.actions._case.apply.actions.action.action.DocsisServiceClassNameCase;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.traffic.profile.rev140908.add.flow.input.instructions.instruction.instruction.apply.actions._case.apply.actions.action.action.FlowspecCase;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.transaction.rev131103.TransactionId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.flow.Instructions;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.flow.Match;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.instruction.instruction.ApplyActionsCase;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.instruction.list.Instruction;
@@ -39,33 +40,56 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.N
 import org.opendaylight.yang.gen.v1.urn.opendaylight.node.cmts.broker.rev140909.*;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.node.cmts.rev140909.CmtsCapableNode;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.node.cmts.rev140909.nodes.node.CmtsNode;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.packetcable.match.types.rev140909.UdpMatchRangesRpcRemoveFlow;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.packetcable.match.types.rev140909.UdpMatchRangesRpcUpdateFlowOriginal;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.packetcable.match.types.rev140909.UdpMatchRangesRpcUpdateFlowUpdated;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packetcable.bulk.flow.rev150327.AddFlowsInput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packetcable.bulk.flow.rev150327.AddFlowsOutput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packetcable.bulk.flow.rev150327.AddFlowsOutputBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packetcable.bulk.flow.rev150327.PacketcableBulkFlowService;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packetcable.bulk.flow.rev150327.add.flows.output.FlowResult;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packetcable.bulk.flow.rev150327.add.flows.output.FlowResultBuilder;
 import org.opendaylight.yangtools.concepts.CompositeObjectRegistration;
 import org.opendaylight.yangtools.concepts.CompositeObjectRegistration.CompositeObjectRegistrationBuilder;
 import org.opendaylight.yangtools.concepts.ListenerRegistration;
 import org.opendaylight.yangtools.yang.binding.DataObject;
 import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+import org.opendaylight.yangtools.yang.common.RpcError.ErrorType;
 import org.opendaylight.yangtools.yang.common.RpcResult;
 import org.opendaylight.yangtools.yang.common.RpcResultBuilder;
 import org.pcmm.PCMMDef;
 import org.pcmm.PCMMPdpAgent;
 import org.pcmm.PCMMPdpDataProcess;
 import org.pcmm.gates.IClassifier;
+import org.pcmm.gates.IPCMMGate;
 import org.pcmm.gates.ITrafficProfile;
+import org.pcmm.gates.impl.GateID;
+import org.pcmm.gates.impl.GateResult;
+import org.pcmm.gates.impl.PCMMGateReq;
+import org.pcmm.rcd.IPCMMPolicyServer;
+import org.pcmm.rcd.IPCMMPolicyServer.IPSCMTSClient;
+import org.pcmm.rcd.impl.CMTSSupervisor;
+import org.pcmm.rcd.impl.PCMMPolicyServer;
+import org.pcmm.state.IGateRecord;
+import org.pcmm.state.impl.GateTable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 @SuppressWarnings("unused")
 public class OpendaylightPacketcableProvider implements DataChangeListener, SalFlowService,
-        OpenDaylightPacketCableProviderService, BindingAwareProvider, AutoCloseable {
+        PacketcableBulkFlowService, OpenDaylightPacketCableProviderService, BindingAwareProvider, AutoCloseable {
 
 	private static final Logger logger = LoggerFactory.getLogger(OpendaylightPacketcableProvider.class);
 
@@ -79,11 +103,11 @@ public class OpendaylightPacketcableProvider implements DataChangeListener, SalF
 	private transient DataBroker dataProvider;
 
     /**
-     * Thread pool
-     * TODO - this still has yet to have any Runnables added to it
-     * TODO - may need to provide back pressure for requests going into thread pool as it could cause OutOfMemoryError
+     * Sends the gate commands queued by the CMTS connections while they were down. The flow RPCs send their
+     * commands from the calling thread, the admission control of a connection never blocks it and rejects the
+     * commands beyond its queue.
      */
-//	private final ExecutorService executor;
+	private final ExecutorService executor;
 
 	// The following holds the Future for the current make toast task.
 	// This is used to cancel the current toast.
@@ -99,10 +123,12 @@ public class OpendaylightPacketcableProvider implements DataChangeListener, SalF
     // TODO - this isn't being used really anywhere, why???
 	private transient ListenerRegistration<DataChangeListener> listenerRegistration;
 
+	private transient RpcRegistration<PacketcableBulkFlowService> bulkFlowRegistration;
+
     /**
      * The managed CMTSs
      */
-	private final List<InstanceIdentifier<?>> cmtsInstances;
+	private final Set<InstanceIdentifier<?>> cmtsInstances;
 
     /**
      * Processess PCMM data
@@ -111,16 +137,36 @@ public class OpendaylightPacketcableProvider implements DataChangeListener, SalF
 
     private final Map<String, PCMMPdpAgent> pdpAgents;
 
+    /**
+     * CMTS augmentation of the configured nodes, kept current by {@link #onDataChanged} so the flow RPCs do not
+     * read the datastore
+     */
+    private final ConcurrentMap<InstanceIdentifier<Node>, CmtsNode> cmtsNodes;
+
+    /**
+     * Opens the COPS connections with the CMTSs
+     */
+    private final IPCMMPolicyServer policyServer;
+
+    /**
+     * The connection of each cached CMTS node, the gate commands sent while it is down are queued. The provider
+     * is the single owner of the CMTS connections, the consumers notified of a CMTS use its supervisor.
+     */
+    private final ConcurrentMap<InstanceIdentifier<Node>, CMTSSupervisor> connections;
+
     /**
      * Constructor
      */
 	public OpendaylightPacketcableProvider() {
         logger.info("Constructing OpendaylightPacketcableProvider");
-//		executor = Executors.newCachedThreadPool();
-		cmtsInstances = Lists.newArrayList();
+		executor = Executors.newSingleThreadExecutor();
+		cmtsInstances = Collections.newSetFromMap(new ConcurrentHashMap<InstanceIdentifier<?>, Boolean>());
 		pcmmDataProcessor = new PCMMDataProcessor();
 //        currentConnectionsTasks = new AtomicReference<>();
         pdpAgents = new HashMap<>();
+        cmtsNodes = new ConcurrentHashMap<>();
+        policyServer = new PCMMPolicyServer();
+        connections = new ConcurrentHashMap<>();
     }
 
     /**
@@ -136,8 +182,11 @@ public class OpendaylightPacketcableProvider implements DataChangeListener, SalF
         dataBroker = session.getSALService(DataBroker.class);
         final InstanceIdentifier<CmtsNode> listenTo = InstanceIdentifier.create(Nodes.class).child(Node.class)
                 .augmentation(CmtsCapableNode.class).child(CmtsNode.class);
+        // the existing CMTS nodes are reported as created on registration, the subtree scope also reports the
+        // changes made below a CmtsNode
         listenerRegistration = dataBroker.registerDataChangeListener(LogicalDatastoreType.CONFIGURATION, listenTo, this,
-                DataChangeScope.BASE);
+                DataChangeScope.SUBTREE);
+        bulkFlowRegistration = session.addRpcImplementation(PacketcableBulkFlowService.class, this);
 
         final PCMMPdpAgent agent = new PCMMPdpAgent("localhost", 3918, PCMMDef.C_PCMM, new PCMMPdpDataProcess(),
                 (short)0, (short)0);
@@ -172,8 +221,13 @@ public class OpendaylightPacketcableProvider implements DataChangeListener, SalF
 	@Override
 	public void close() throws ExecutionException, InterruptedException {
         logger.info("Closing provider");
-//		executor.shutdown();
         listenerRegistration.close();
+        if (bulkFlowRegistration != null)
+            bulkFlowRegistration.close();
+        for (final CMTSSupervisor connection : connections.values())
+            connection.close();
+        connections.clear();
+		executor.shutdown();
 		if (dataProvider != null) {
 			for (final InstanceIdentifier<?> instance : cmtsInstances) {
 				WriteTransaction tx = dataProvider.newWriteOnlyTransaction();
@@ -206,8 +260,66 @@ public class OpendaylightPacketcableProvider implements DataChangeListener, SalF
         logger.info("Data changed");
         final DataObject dataObject = change.getUpdatedSubtree();
 		logger.debug("OpendaylightPacketcableProvider.onDataChanged() :" + dataObject);
+        cacheCmtsNodes(change.getCreatedData());
+        cacheCmtsNodes(change.getUpdatedData());
+        for (final InstanceIdentifier<?> removed : change.getRemovedPaths()) {
+            if (CmtsNode.class.equals(removed.getTargetType())) {
+                final InstanceIdentifier<Node> node = removed.firstIdentifierOf(Node.class);
+                final CmtsNode cmts = node != null ? cmtsNodes.remove(node) : null;
+                if (cmts != null) {
+                    logger.debug("CMTS node removed: " + node);
+                    disconnect(node);
+                    notifyConsumerOnCmtsRemove(cmts, null);
+                }
+            }
+        }
 	}
 
+    private void cacheCmtsNodes(final Map<InstanceIdentifier<?>, DataObject> data) {
+        for (final Map.Entry<InstanceIdentifier<?>, DataObject> entry : data.entrySet()) {
+            if (entry.getValue() instanceof CmtsNode) {
+                final InstanceIdentifier<Node> node = entry.getKey().firstIdentifierOf(Node.class);
+                if (node != null) {
+                    final CmtsNode cmts = (CmtsNode) entry.getValue();
+                    final CmtsNode previous = cmtsNodes.put(node, cmts);
+                    logger.debug("CMTS node cached: " + node);
+                    if (previous == null) {
+                        connect(node, cmts);
+                        notifyConsumerOnCmtsAdd(cmts, null);
+                    } else if (!cmts.getAddress().equals(previous.getAddress())) {
+                        connect(node, cmts);
+                        notifyConsumerOnCmtsUpdate(cmts, null);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens the connection with a CMTS, the handshake completes on the reactor of the policy server
+     * @param node - the node of the CMTS
+     * @param cmts - the CMTS
+     */
+    private void connect(final InstanceIdentifier<Node> node, final CmtsNode cmts) {
+        if (cmts.getAddress() == null || cmts.getAddress().getIpv4Address() == null) {
+            logger.warn("No IPv4 address configured for CMTS " + node);
+            disconnect(node);
+            return;
+        }
+        final String ipv4 = cmts.getAddress().getIpv4Address().getValue();
+        final CMTSSupervisor supervisor = new CMTSSupervisor(policyServer, InetAddresses.forString(ipv4), executor);
+        final CMTSSupervisor previous = connections.put(node, supervisor);
+        if (previous != null)
+            previous.close();
+        supervisor.start();
+    }
+
+    private void disconnect(final InstanceIdentifier<Node> node) {
+        final CMTSSupervisor supervisor = connections.remove(node);
+        if (supervisor != null)
+            supervisor.close();
+    }
+
 	public void notifyConsumerOnCmtsAdd(final CmtsNode input, final TransactionId transactionId) {
         logger.info("CMTS Add");
         final CmtsAdded cmtsRemoved = new CmtsAddedBuilder().setAddress(input.getAddress()).setPort(input.getPort())
@@ -232,40 +344,23 @@ public class OpendaylightPacketcableProvider implements DataChangeListener, SalF
 	@Override
 	public Future<RpcResult<AddFlowOutput>> addFlow(final AddFlowInput input) {
         logger.info("Adding flow");
-        final Match match = input.getMatch();
-        final CmtsNode cmts = getCmtsNode(input);
-		if (cmts != null)
-			cmtsInstances.add(input.getNode().getValue());
-        final IClassifier classifier = buildClassifier(match);
-//        final ITrafficProfile trafficProfie = null;
-		for (Instruction i : input.getInstructions().getInstruction()) {
-			if (i.getInstruction() instanceof ApplyActionsCase) {
-                final ApplyActionsCase aac = (ApplyActionsCase) i.getInstruction();
-				for (Action a : aac.getApplyActions().getAction()) {
-					if (a.getAction() instanceof FlowspecCase) {
-						// TODO - Implement me
-						// trafficProfie = buildTrafficProfile(((FlowspecCase)
-						// a.getAction()).getFlowspec());
-					} else if (a.getAction() instanceof BestEffortCase) {
-                        // TODO - Why is this object not being used downstream
-//						trafficProfie = buildTrafficProfile(((BestEffortCase) a.getAction()).getBestEffort());
-						buildTrafficProfile(((BestEffortCase) a.getAction()).getBestEffort());
-						break;
-					} else if (a.getAction() instanceof DocsisServiceClassNameCase) {
-                        // TODO - Why is this object not being used downstream
-//						trafficProfie = buildTrafficProfile(((DocsisServiceClassNameCase) a.getAction()).getDocsisServiceClassName());
-						buildTrafficProfile(((DocsisServiceClassNameCase) a.getAction()).getDocsisServiceClassName());
-						break;
-					}
-				}
-			}
-		}
-
-        // TODO - Why is this not being set? NPE waiting to happen
-		final TransactionId transactionId = null;
-		notifyConsumerOnCmtsAdd(cmts, transactionId);
-		return Futures.immediateFuture(RpcResultBuilder.success(new AddFlowOutputBuilder().setTransactionId(
-                transactionId).build()).build());
+        final CMTSSupervisor connection = getConnection(input);
+        if (connection == null)
+            return failed("No CMTS connection for node " + input.getNode().getValue());
+        final PCMMGateReq gate;
+        try {
+            gate = buildGate(input.getMatch(), input.getInstructions());
+        } catch (final RuntimeException e) {
+            return failed("Unable to translate the flow: " + e.getMessage());
+        }
+		cmtsInstances.add(input.getNode().getValue());
+        final long flowID = input.getCookie() != null ? input.getCookie().getValue().longValue() : 0;
+        return send(connection, gateSet(gate, flowID), new Function<GateResult, AddFlowOutput>() {
+            @Override
+            public AddFlowOutput apply(final GateResult result) {
+                return new AddFlowOutputBuilder().setTransactionId(transactionId(result)).build();
+            }
+        });
 	}
 
 	@Override
@@ -294,43 +389,298 @@ public class OpendaylightPacketcableProvider implements DataChangeListener, SalF
 	@Override
 	public Future<RpcResult<RemoveFlowOutput>> removeFlow(final RemoveFlowInput input) {
         logger.info("Removing flow");
-        final UdpMatchRangesRpcRemoveFlow updRange = input.getMatch().getAugmentation(
-                UdpMatchRangesRpcRemoveFlow.class);
-		notifyConsumerOnCmtsRemove(getCmtsNode(input), null);
-		return null;
+        final CMTSSupervisor connection = getConnection(input);
+        if (connection == null)
+            return failed("No CMTS connection for node " + input.getNode().getValue());
+        final IGateRecord record = input.getCookie() != null
+                ? GateTable.getDefault().getByFlowID(input.getCookie().getValue().longValue()) : null;
+        if (record == null)
+            return failed("No gate recorded for the flow " + input.getCookie());
+        if (!record.getCMTS().equals(connection.getHost()))
+            return failed("The gate of the flow " + input.getCookie() + " is not on the CMTS of node "
+                    + input.getNode().getValue());
+        final int gateID = record.getGateID();
+        return send(connection, new Function<IPSCMTSClient, ListenableFuture<GateResult>>() {
+            @Override
+            public ListenableFuture<GateResult> apply(final IPSCMTSClient client) {
+                return client.gateDeleteAsync(gateID);
+            }
+        }, new Function<GateResult, RemoveFlowOutput>() {
+            @Override
+            public RemoveFlowOutput apply(final GateResult result) {
+                return new RemoveFlowOutputBuilder().setTransactionId(transactionId(result)).build();
+            }
+        });
 	}
 
+	/**
+	 * Modifies the gate of the original flow, the classifier and the traffic profile are taken from the updated
+	 * flow and the gate is recorded for the cookie of the updated flow
+	 */
 	@Override
 	public Future<RpcResult<UpdateFlowOutput>> updateFlow(final UpdateFlowInput input) {
         logger.info("Updating flow");
-        final OriginalFlow foo = input.getOriginalFlow();
-        final UdpMatchRangesRpcUpdateFlowOriginal bar = foo.getMatch().getAugmentation(
-                UdpMatchRangesRpcUpdateFlowOriginal.class);
+        final CMTSSupervisor connection = getConnection(input);
+        if (connection == null)
+            return failed("No CMTS connection for node " + input.getNode().getValue());
+        final OriginalFlow original = input.getOriginalFlow();
+        final IGateRecord record = original.getCookie() != null
+                ? GateTable.getDefault().getByFlowID(original.getCookie().getValue().longValue()) : null;
+        if (record == null)
+            return failed("No gate recorded for the flow " + original.getCookie());
+        if (!record.getCMTS().equals(connection.getHost()))
+            return failed("The gate of the flow " + original.getCookie() + " is not on the CMTS of node "
+                    + input.getNode().getValue());
         final UpdatedFlow updated = input.getUpdatedFlow();
-        final UdpMatchRangesRpcUpdateFlowUpdated updatedRange = updated.getMatch().getAugmentation(
-                UdpMatchRangesRpcUpdateFlowUpdated.class);
-		notifyConsumerOnCmtsUpdate(getCmtsNode(input), null);
-		return null;
+        final PCMMGateReq gate;
+        try {
+            gate = buildGate(updated.getMatch(), updated.getInstructions());
+        } catch (final RuntimeException e) {
+            return failed("Unable to translate the flow: " + e.getMessage());
+        }
+        final GateID gateID = new GateID();
+        gateID.setGateID(record.getGateID());
+        gate.setGateID(gateID);
+        final IPCMMGate recorded = record.getGate();
+        if (gate.getTrafficProfile() == null && recorded != null)
+            gate.setTrafficProfile(recorded.getTrafficProfile());
+        final long flowID = updated.getCookie() != null ? updated.getCookie().getValue().longValue()
+                : record.getFlowID();
+        return send(connection, gateSet(gate, flowID), new Function<GateResult, UpdateFlowOutput>() {
+            @Override
+            public UpdateFlowOutput apply(final GateResult result) {
+                return new UpdateFlowOutputBuilder().setTransactionId(transactionId(result)).build();
+            }
+        });
+	}
+
+	/**
+	 * Adds a batch of flows. The Gate-Sets of a CMTS are sent in the order of the input without waiting for the
+	 * calling thread, up to the window of its supervisor at a time, the answer of one sending the next. A large batch
+	 * is thus fed to the connection rather than overflowing its admission queue. Each flow is answered in the output,
+	 * a flow failing does not fail the batch. The Gate-Sets of a traffic profile are patched from the encoding of the
+	 * first one.
+	 */
+	@Override
+	public Future<RpcResult<AddFlowsOutput>> addFlows(final AddFlowsInput input) {
+        final List<org.opendaylight.yang.gen.v1.urn.opendaylight.packetcable.bulk.flow.rev150327.add.flows.input.Flow> flows = input.getFlow() != null ? input.getFlow()
+                : Collections.<org.opendaylight.yang.gen.v1.urn.opendaylight.packetcable.bulk.flow.rev150327.add.flows.input.Flow>emptyList();
+        logger.info("Adding " + flows.size() + " flows");
+        final List<ListenableFuture<FlowResult>> results = new ArrayList<>(
+                Collections.<ListenableFuture<FlowResult>>nCopies(flows.size(), null));
+        // the flows of each CMTS, in the order of the input
+        final Map<CMTSSupervisor, List<Integer>> indexes = new LinkedHashMap<>();
+        final Map<CMTSSupervisor, List<Function<IPSCMTSClient, ListenableFuture<GateResult>>>> commands = new HashMap<>();
+        // the flows of the same instructions share their traffic profile, the connection encodes it once
+        final Map<Instructions, ITrafficProfile> profiles = new HashMap<>();
+        for (int i = 0; i < flows.size(); i++) {
+            final org.opendaylight.yang.gen.v1.urn.opendaylight.packetcable.bulk.flow.rev150327.add.flows.input.Flow flow = flows.get(i);
+            final CMTSSupervisor connection = getConnection(flow);
+            if (connection == null) {
+                results.set(i, Futures.immediateFuture(new FlowResultBuilder().setIndex((long) i)
+                        .setErrorMessage("No CMTS connection for node " + flow.getNode().getValue()).build()));
+                continue;
+            }
+            final PCMMGateReq gate;
+            try {
+                gate = buildGate(flow.getMatch(), flow.getInstructions());
+            } catch (final RuntimeException e) {
+                logger.warn("Unable to translate flow " + i, e);
+                results.set(i, Futures.immediateFuture(new FlowResultBuilder().setIndex((long) i)
+                        .setErrorMessage("Unable to translate the flow: " + e.getMessage()).build()));
+                continue;
+            }
+            if (gate.getTrafficProfile() != null) {
+                final ITrafficProfile profile = profiles.get(flow.getInstructions());
+                if (profile != null)
+                    gate.setTrafficProfile(profile);
+                else
+                    profiles.put(flow.getInstructions(), gate.getTrafficProfile());
+            }
+            cmtsInstances.add(flow.getNode().getValue());
+            final long flowID = flow.getCookie() != null ? flow.getCookie().getValue().longValue() : 0;
+            if (!indexes.containsKey(connection)) {
+                indexes.put(connection, new ArrayList<Integer>());
+                commands.put(connection, new ArrayList<Function<IPSCMTSClient, ListenableFuture<GateResult>>>());
+            }
+            indexes.get(connection).add(i);
+            commands.get(connection).add(gateSet(gate, flowID));
+        }
+        for (final Map.Entry<CMTSSupervisor, List<Integer>> entry : indexes.entrySet()) {
+            final List<ListenableFuture<GateResult>> sent = entry.getKey().submitAll(commands.get(entry.getKey()));
+            for (int j = 0; j < sent.size(); j++) {
+                final long index = entry.getValue().get(j);
+                final SettableFuture<FlowResult> result = SettableFuture.create();
+                results.set((int) index, result);
+                Futures.addCallback(sent.get(j), new FutureCallback<GateResult>() {
+                    @Override
+                    public void onSuccess(final GateResult gateResult) {
+                        final FlowResultBuilder builder = new FlowResultBuilder().setIndex(index)
+                                .setTransactionId(transactionId(gateResult));
+                        if (gateResult.isSuccess())
+                            builder.setGateId(gateResult.getGateID() & 0xFFFFFFFFL);
+                        else
+                            builder.setErrorMessage("Gate command rejected: " + gateResult.getError());
+                        result.set(builder.build());
+                    }
+
+                    @Override
+                    public void onFailure(final Throwable t) {
+                        result.set(new FlowResultBuilder().setIndex(index)
+                                .setErrorMessage("Gate command failed: " + t.getMessage()).build());
+                    }
+                }, MoreExecutors.directExecutor());
+            }
+        }
+        return Futures.transform(Futures.allAsList(results), new Function<List<FlowResult>, RpcResult<AddFlowsOutput>>() {
+            @Override
+            public RpcResult<AddFlowsOutput> apply(final List<FlowResult> flowResults) {
+                return RpcResultBuilder.success(new AddFlowsOutputBuilder().setFlowResult(flowResults).build()).build();
+            }
+        }, MoreExecutors.directExecutor());
+	}
+
+	/**
+	 * Translates the match and the traffic profile of a flow into a gate, the objects not given by the flow are
+	 * left for the defaults of the driver. The subscriber is always taken from the match.
+	 * @param match - the match of the flow
+	 * @param instructions - the instructions of the flow, the first traffic profile action applied is used
+	 * @return - the gate
+	 * @throws IllegalArgumentException - when the flow cannot be translated, e.g. no subscriber or an IPv6
+	 * subscriber to classify
+	 */
+	private PCMMGateReq buildGate(final Match match, final Instructions instructions) {
+        if (match == null)
+            throw new IllegalArgumentException("No match in the flow");
+        final PCMMGateReq gate = new PCMMGateReq();
+        gate.setSubscriberID(pcmmDataProcessor.processSubscriber(match));
+        gate.setClassifier(buildClassifier(match));
+		if (instructions == null || instructions.getInstruction() == null)
+			return gate;
+		for (Instruction i : instructions.getInstruction()) {
+			if (i.getInstruction() instanceof ApplyActionsCase) {
+                final ApplyActionsCase aac = (ApplyActionsCase) i.getInstruction();
+				for (Action a : aac.getApplyActions().getAction()) {
+					final ITrafficProfile profile = buildTrafficProfile(a);
+					if (profile != null) {
+						gate.setTrafficProfile(profile);
+						return gate;
+					}
+				}
+			}
+		}
+		return gate;
+	}
+
+	/**
+	 * The traffic profile actions are generated for each RPC input they augment
+	 * @param action - an action of an added, updated or bulk added flow
+	 * @return - the traffic profile or null when the action is not one
+	 */
+	private ITrafficProfile buildTrafficProfile(final Action action) {
+        final Object a = action.getAction();
+        // TODO - Implement me, the flow spec profile is not processed yet
+        if (a instanceof BestEffortCase)
+            return buildTrafficProfile(((BestEffortCase) a).getBestEffort());
+        if (a instanceof DocsisServiceClassNameCase)
+            return buildTrafficProfile(((DocsisServiceClassNameCase) a).getDocsisServiceClassName());
+        if (a instanceof org.opendaylight.yang.gen.v1.urn.opendaylight.flow.traffic.profile.rev140908.update.flow.input.updated.flow.instructions.instruction.instruction.apply.actions._case.apply.actions.action.action.BestEffortCase)
+            return buildTrafficProfile(((org.opendaylight.yang.gen.v1.urn.opendaylight.flow.traffic.profile.rev140908.update.flow.input.updated.flow.instructions.instruction.instruction.apply.actions._case.apply.actions.action.action.BestEffortCase) a).getBestEffort());
+        if (a instanceof org.opendaylight.yang.gen.v1.urn.opendaylight.flow.traffic.profile.rev140908.update.flow.input.updated.flow.instructions.instruction.instruction.apply.actions._case.apply.actions.action.action.DocsisServiceClassNameCase)
+            return buildTrafficProfile(((org.opendaylight.yang.gen.v1.urn.opendaylight.flow.traffic.profile.rev140908.update.flow.input.updated.flow.instructions.instruction.instruction.apply.actions._case.apply.actions.action.action.DocsisServiceClassNameCase) a).getDocsisServiceClassName());
+        if (a instanceof org.opendaylight.yang.gen.v1.urn.opendaylight.packetcable.bulk.flow.rev150327.add.flows.input.flow.instructions.instruction.instruction.apply.actions._case.apply.actions.action.action.BestEffortCase)
+            return buildTrafficProfile(((org.opendaylight.yang.gen.v1.urn.opendaylight.packetcable.bulk.flow.rev150327.add.flows.input.flow.instructions.instruction.instruction.apply.actions._case.apply.actions.action.action.BestEffortCase) a).getBestEffort());
+        if (a instanceof org.opendaylight.yang.gen.v1.urn.opendaylight.packetcable.bulk.flow.rev150327.add.flows.input.flow.instructions.instruction.instruction.apply.actions._case.apply.actions.action.action.DocsisServiceClassNameCase)
+            return buildTrafficProfile(((org.opendaylight.yang.gen.v1.urn.opendaylight.packetcable.bulk.flow.rev150327.add.flows.input.flow.instructions.instruction.instruction.apply.actions._case.apply.actions.action.action.DocsisServiceClassNameCase) a).getDocsisServiceClassName());
+        return null;
 	}
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * @param gate - the gate to set
+	 * @param flowID - the flow the gate is recorded for
+	 * @return - the Gate-Set of the gate on a connection
+	 */
+	private static Function<IPSCMTSClient, ListenableFuture<GateResult>> gateSet(final IPCMMGate gate,
+                                                                                 final long flowID) {
+        return new Function<IPSCMTSClient, ListenableFuture<GateResult>>() {
+            @Override
+            public ListenableFuture<GateResult> apply(final IPSCMTSClient client) {
+                return client.gateSetAsync(gate, flowID);
+            }
+        };
+	}
+
+	/**
+	 * Sends a gate command and completes the RPC with the answer of the CMTS, the calling thread does not wait for
+	 * the connection nor for the answer
+	 * @param connection - the connection of the CMTS
+	 * @param command - the gate command
+	 * @param output - builds the RPC output from a successful answer
+	 * @return - the RPC result, failed on a PCMM error or when the command could not be sent
+	 */
+	private <T> Future<RpcResult<T>> send(final CMTSSupervisor connection,
+                                          final Function<IPSCMTSClient, ListenableFuture<GateResult>> command,
+                                          final Function<GateResult, T> output) {
+        final SettableFuture<RpcResult<T>> future = SettableFuture.create();
+        ListenableFuture<GateResult> result;
+        try {
+            result = connection.submit(command);
+        } catch (final RuntimeException e) {
+            result = Futures.immediateFailedFuture(e);
+        }
+        Futures.addCallback(result, new FutureCallback<GateResult>() {
+            @Override
+            public void onSuccess(final GateResult gateResult) {
+                if (gateResult.isSuccess()) {
+                    future.set(RpcResultBuilder.success(output.apply(gateResult)).build());
+                } else {
+                    logger.warn("Gate command rejected by the CMTS: " + gateResult);
+                    future.set(RpcResultBuilder.<T>failed().withError(ErrorType.APPLICATION,
+                            "Gate command rejected: " + gateResult.getError()).build());
+                }
+            }
+
+            @Override
+            public void onFailure(final Throwable t) {
+                logger.error("Gate command failed", t);
+                future.set(RpcResultBuilder.<T>failed().withError(ErrorType.TRANSPORT,
+                        "Gate command failed: " + t.getMessage(), t).build());
+            }
+        }, MoreExecutors.directExecutor());
+        return future;
+	}
+
+	private static <T> Future<RpcResult<T>> failed(final String message) {
+        logger.warn(message);
+        return Futures.immediateFuture(RpcResultBuilder.<T>failed().withError(ErrorType.APPLICATION, message).build());
+	}
+
+	private static TransactionId transactionId(final GateResult result) {
+        return new TransactionId(BigInteger.valueOf(result.getTransactionID() & 0xFFFF));
+	}
+
+	/**
+	 * @param input - the RPC input referencing the node
+	 * @return - the connection of the CMTS of the node or null when the node is not a configured CMTS
+	 */
+	private CMTSSupervisor getConnection(final NodeContextRef input) {
+        if (getCmtsNode(input) == null)
+            return null;
+        return connections.get(input.getNode().getValue().firstIdentifierOf(Node.class));
+	}
+
+	/**
+	 * Resolves the CMTS of a node from the cache, never reads the datastore
+	 * @param input - the RPC input referencing the node
+	 * @return - the CMTS or null when the node is not a configured CMTS
+	 */
 	protected CmtsNode getCmtsNode(final NodeContextRef input) {
         final NodeRef nodeRef = input.getNode();
-        final InstanceIdentifier<Node> instanceIdentifier = (InstanceIdentifier<Node>) nodeRef.getValue();
-        final ReadOnlyTransaction rtransaction = dataBroker.newReadOnlyTransaction();
-        final CheckedFuture<Optional<Node>, ReadFailedException> value = rtransaction.read(
-                LogicalDatastoreType.CONFIGURATION, instanceIdentifier);
-		rtransaction.close();
-        final Optional<Node> opt;
-		try {
-			opt = value.get();
-		} catch (Exception e) {
-			logger.error(e.getMessage());
-			return null;
-		}
-        final Node node = opt.get();
-        final CmtsCapableNode cmts = node.getAugmentation(CmtsCapableNode.class);
-        return cmts.getCmtsNode();
+        final InstanceIdentifier<Node> instanceIdentifier = nodeRef.getValue().firstIdentifierOf(Node.class);
+        final CmtsNode cmts = instanceIdentifier != null ? cmtsNodes.get(instanceIdentifier) : null;
+        if (cmts == null)
+            logger.warn("No CMTS configured for node " + nodeRef.getValue());
+        return cmts;
 	}
 
 	public void onSessionAdded(/* Whatever you need per CmtsConnection */) {
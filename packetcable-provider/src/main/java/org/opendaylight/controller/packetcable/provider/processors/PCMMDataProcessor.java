@@ -3,6 +3,9 @@
  */
 package org.opendaylight.controller.packetcable.provider.processors;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.Ipv4Address;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.Ipv6Address;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.PortNumber;
@@ -13,79 +16,209 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.traffic.profile.rev140
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.traffic.profile.rev140908.traffic.profile.best.effort.attributes.BeCommittedEnvelope;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.traffic.profile.rev140908.traffic.profile.best.effort.attributes.BeReservedEnvelope;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.flow.Match;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packetcable.bulk.flow.rev150327.SubscriberIdRpcAddFlows;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packetcable.bulk.flow.rev150327.TcpMatchRangesRpcAddFlows;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packetcable.bulk.flow.rev150327.UdpMatchRangesRpcAddFlows;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.packetcable.match.types.rev140909.*;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.packetcable.match.types.rev140909.tcp.match.ranges.attributes.TcpMatchRanges;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.packetcable.match.types.rev140909.udp.match.ranges.attributes.UpdMatchRanges;
 import org.pcmm.gates.IClassifier;
 import org.pcmm.gates.IExtendedClassifier;
+import org.pcmm.gates.ISubscriberID;
 import org.pcmm.gates.ITrafficProfile;
 import org.pcmm.gates.impl.BestEffortService;
 import org.pcmm.gates.impl.BestEffortService.BEEnvelop;
 import org.pcmm.gates.impl.DOCSISServiceClassNameTrafficProfile;
 import org.pcmm.gates.impl.ExtendedClassifier;
+import org.pcmm.gates.impl.SubscriberID;
+import org.pcmm.utils.IPAddressCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.net.InetAddress;
-import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * 
  * PacketCable data processor
  * 
+ * The traffic profiles are encoded once per distinct set of attribute values, the encoded profiles are kept in a
+ * bounded cache evicting the least recently used ones.
+ * 
  */
 public class PCMMDataProcessor {
 
 	private Logger logger = LoggerFactory.getLogger(PCMMDataProcessor.class);
 
+	/**
+	 * Number of traffic profiles kept encoded by default
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 256;
+
+	/**
+	 * encoded traffic profiles by attribute values
+	 */
+	private final Cache<List<?>, byte[]> profiles;
+
+	public PCMMDataProcessor() {
+		this(DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * @param cacheSize - the number of traffic profiles kept encoded
+	 */
+	public PCMMDataProcessor(final int cacheSize) {
+		// a single segment keeps the eviction in least recently used order
+		profiles = CacheBuilder.newBuilder().concurrencyLevel(1).maximumSize(cacheSize).recordStats().build();
+	}
+
 	public ITrafficProfile process(final TrafficProfileBestEffortAttributes bestEffort) {
         logger.info("Processing best effort");
+        final List<?> key = Arrays.asList(BestEffortService.class,
+                bestEffort.getBeAuthorizedEnvelope().getTrafficPriority(),
+                bestEffort.getBeAuthorizedEnvelope().getMaximumTrafficBurst(),
+                bestEffort.getBeAuthorizedEnvelope().getRequestTransmissionPolicy(),
+                bestEffort.getBeAuthorizedEnvelope().getMaximumSustainedTrafficRate(),
+                bestEffort.getBeReservedEnvelope().getTrafficPriority(),
+                bestEffort.getBeReservedEnvelope().getMaximumTrafficBurst(),
+                bestEffort.getBeReservedEnvelope().getRequestTransmissionPolicy(),
+                bestEffort.getBeReservedEnvelope().getMaximumSustainedTrafficRate(),
+                bestEffort.getBeCommittedEnvelope().getTrafficPriority(),
+                bestEffort.getBeCommittedEnvelope().getMaximumTrafficBurst(),
+                bestEffort.getBeCommittedEnvelope().getRequestTransmissionPolicy(),
+                bestEffort.getBeCommittedEnvelope().getMaximumSustainedTrafficRate());
+        final byte[] encoded = profiles.getIfPresent(key);
+        if (encoded != null)
+            return new BestEffortService(encoded);
         final BestEffortService trafficProfile = new BestEffortService(BestEffortService.DEFAULT_ENVELOP);
 		getBEAuthorizedEnvelop(bestEffort, trafficProfile);
 		getBEReservedEnvelop(bestEffort, trafficProfile);
 		getBECommittedEnvelop(bestEffort, trafficProfile);
+		profiles.put(key, trafficProfile.getAsBinaryArray());
 		return trafficProfile;
 	}
 
 	
 	public ITrafficProfile process(final TrafficProfileDocsisServiceClassNameAttributes docsis) {
         logger.info("Processing DOCSIS service class name attributes");
+        final List<?> key = Arrays.asList(DOCSISServiceClassNameTrafficProfile.class, docsis.getServiceClassName());
+        final byte[] encoded = profiles.getIfPresent(key);
+        if (encoded != null)
+            return new DOCSISServiceClassNameTrafficProfile(encoded);
         final DOCSISServiceClassNameTrafficProfile trafficProfile = new DOCSISServiceClassNameTrafficProfile();
 		trafficProfile.setServiceClassName(docsis.getServiceClassName());
+		profiles.put(key, trafficProfile.getAsBinaryArray());
 		return trafficProfile;
 	}
 
+	/**
+	 * @return - the number of traffic profiles found encoded
+	 */
+	public long getCacheHits() {
+		return profiles.stats().hitCount();
+	}
+
+	/**
+	 * @return - the number of traffic profiles encoded
+	 */
+	public long getCacheMisses() {
+		return profiles.stats().missCount();
+	}
+
+	/**
+	 * @return - the statistics of the traffic profile cache, evictions included
+	 */
+	public CacheStats getCacheStats() {
+		return profiles.stats();
+	}
+
 	public ITrafficProfile process(final TrafficProfileFlowspecAttributes flowSpec) {
         // TODO - Implement me
         logger.info("Processing profile flow spec attributes");
 		throw new UnsupportedOperationException("Not impelemnted yet");
 	}
 
+	/**
+	 * @param match - the match of a flow
+	 * @return - the classifier of the flow
+	 * @throws IllegalArgumentException - when the subscriber of the match cannot be classified
+	 */
 	public IClassifier process(final Match match) {
         logger.info("Processing match");
         final ExtendedClassifier classifier = new ExtendedClassifier();
 		classifier.setProtocol(IClassifier.Protocol.NONE);
-		getUdpMatchRangeValues(match.getAugmentation(UdpMatchRangesRpcAddFlow.class), classifier);
-		getTcpMatchRangesValues(match.getAugmentation(TcpMatchRangesRpcAddFlow.class), classifier);
-        final SubscriberIdRpcAddFlow subId = match.getAugmentation(SubscriberIdRpcAddFlow.class);
+		// the match of an added flow, of the updated flow of an update or of a flow of a batch
+		UdpMatchRangesAttributes udpRange = match.getAugmentation(UdpMatchRangesRpcAddFlow.class);
+		if (udpRange == null)
+			udpRange = match.getAugmentation(UdpMatchRangesRpcUpdateFlowUpdated.class);
+		if (udpRange == null)
+			udpRange = match.getAugmentation(UdpMatchRangesRpcAddFlows.class);
+		getUdpMatchRangeValues(udpRange, classifier);
+		TcpMatchRangesAttributes tcpRange = match.getAugmentation(TcpMatchRangesRpcAddFlow.class);
+		if (tcpRange == null)
+			tcpRange = match.getAugmentation(TcpMatchRangesRpcUpdateFlowUpdated.class);
+		if (tcpRange == null)
+			tcpRange = match.getAugmentation(TcpMatchRangesRpcAddFlows.class);
+		getTcpMatchRangesValues(tcpRange, classifier);
+        final SubscriberId subId = getSubscriberId(match);
+        if (subId == null || subId.getSubscriberId() == null)
+            return classifier;
+        // a subscriber not classified must fail the flow, a wildcard destination would match every subscriber
         final Ipv6Address ipv6Address = subId.getSubscriberId().getIpv6Address();
 		if (ipv6Address != null)
 			try {
-				classifier.setDestinationIPAddress(InetAddress.getByName(ipv6Address.getValue()));
-			} catch (UnknownHostException e) {
-				logger.error(e.getMessage());
+				// the extended classifier only holds IPv4 addresses
+				classifier.setDestinationIPAddress(IPAddressCodec.parse(ipv6Address.getValue()));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Subscriber " + ipv6Address.getValue() + " cannot be classified: "
+						+ e.getMessage(), e);
 			}
 
         final Ipv4Address ipv4Address = subId.getSubscriberId().getIpv4Address();
 		if (ipv4Address != null)
 			try {
-				classifier.setDestinationIPAddress(InetAddress.getByName(ipv4Address.getValue()));
-			} catch (UnknownHostException e) {
-				logger.error(e.getMessage());
+				classifier.setDestinationIPAddress(IPAddressCodec.parseIPv4(ipv4Address.getValue()));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Subscriber " + ipv4Address.getValue() + " cannot be classified: "
+						+ e.getMessage(), e);
 			}
 		return classifier;
 	}
 
+	/**
+	 * @param match - the match of a flow
+	 * @return - the SubscriberID of the gate of the flow
+	 * @throws IllegalArgumentException - when the match has no subscriber or an invalid one
+	 */
+	public ISubscriberID processSubscriber(final Match match) {
+        final SubscriberId subId = getSubscriberId(match);
+        if (subId == null || subId.getSubscriberId() == null)
+            throw new IllegalArgumentException("No subscriber-id in the match of the flow");
+        final SubscriberID subscriberID = new SubscriberID();
+        final Ipv4Address ipv4Address = subId.getSubscriberId().getIpv4Address();
+        final Ipv6Address ipv6Address = subId.getSubscriberId().getIpv6Address();
+        if (ipv4Address != null)
+            subscriberID.setSourceIPAddress(IPAddressCodec.parseIPv4(ipv4Address.getValue()));
+        else if (ipv6Address != null)
+            subscriberID.setSourceIPAddress(IPAddressCodec.parse(ipv6Address.getValue()));
+        else
+            throw new IllegalArgumentException("No subscriber address in the match of the flow");
+        return subscriberID;
+	}
+
+	/**
+	 * @param match - the match of an added flow, of the updated flow of an update or of a flow of a batch
+	 * @return - the subscriber augmentation of the match or null
+	 */
+	private static SubscriberId getSubscriberId(final Match match) {
+        SubscriberId subId = match.getAugmentation(SubscriberIdRpcAddFlow.class);
+        if (subId == null)
+            subId = match.getAugmentation(SubscriberIdRpcUpdateFlowUpdated.class);
+        if (subId == null)
+            subId = match.getAugmentation(SubscriberIdRpcAddFlows.class);
+        return subId;
+	}
+
 	private void getBECommittedEnvelop(final TrafficProfileBestEffortAttributes bestEffort,
                                        final BestEffortService trafficProfile) {
         final BEEnvelop committedEnvelop = trafficProfile.getCommittedEnvelop();